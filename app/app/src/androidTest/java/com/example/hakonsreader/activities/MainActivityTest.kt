@@ -9,7 +9,7 @@ import androidx.test.ext.junit.rules.ActivityScenarioRule
 import androidx.test.platform.app.InstrumentationRegistry
 import com.example.hakonsreader.R
 import com.example.hakonsreader.api.RedditApi
-import com.example.hakonsreader.api.persistence.RedditDatabase
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
 import com.example.hakonsreader.constants.SharedPreferencesConstants
 import com.example.hakonsreader.misc.Settings
@@ -36,7 +36,7 @@ class MainActivityTest {
     lateinit var api: RedditApi
 
     @Inject
-    lateinit var database: RedditDatabase
+    lateinit var writeQueue: DatabaseWriteQueue
 
     @Inject
     lateinit var userInfoDatabase: RedditUserInfoDatabase
@@ -49,7 +49,7 @@ class MainActivityTest {
         SharedPreferencesManager.create(InstrumentationRegistry.getInstrumentation().targetContext
                 .getSharedPreferences(SharedPreferencesConstants.PREFS_NAME, Application.MODE_PRIVATE)
         )
-        AppState.init(api, database, userInfoDatabase)
+        AppState.init(api, writeQueue, userInfoDatabase)
     }
 
 
@@ -17,7 +17,7 @@ import com.example.hakonsreader.R
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.enums.Thing
 import com.example.hakonsreader.api.model.RedditPost
-import com.example.hakonsreader.api.persistence.RedditDatabase
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
 import com.example.hakonsreader.constants.SharedPreferencesConstants
 import com.example.hakonsreader.misc.Settings
@@ -51,7 +51,7 @@ class ReplyActivityTest {
     lateinit var api: RedditApi
 
     @Inject
-    lateinit var database: RedditDatabase
+    lateinit var writeQueue: DatabaseWriteQueue
 
     @Inject
     lateinit var userInfoDatabase: RedditUserInfoDatabase
@@ -64,7 +64,7 @@ class ReplyActivityTest {
         SharedPreferencesManager.create(InstrumentationRegistry.getInstrumentation().targetContext
                 .getSharedPreferences(SharedPreferencesConstants.PREFS_NAME, Application.MODE_PRIVATE)
         )
-        AppState.init(api, database, userInfoDatabase)
+        AppState.init(api, writeQueue, userInfoDatabase)
     }
 
 
@@ -14,6 +14,9 @@ import io.noties.markwon.AbstractMarkwonPlugin;
 
 /**
  * Plugin that wraps raw URLs in a {@link URLSpan}
+ *
+ * <p>Replaced by {@link RedditMarkdownPlugin} in the app. This is only kept to compare against in
+ * {@link RedditMarkdownPluginBenchmark}</p>
  */
 public class LinkPlugin extends AbstractMarkwonPlugin {
     private static final String TAG = "LinkPlugin";
@@ -0,0 +1,127 @@
+package com.example.hakonsreader.markwonplugins
+
+import android.content.Context
+import android.widget.TextView
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.platform.app.InstrumentationRegistry
+import com.example.hakonsreader.api.utils.MarkdownAdjuster
+import com.example.hakonsreader.di.MarkwonModule
+import com.example.hakonsreader.misc.Settings
+import io.noties.markwon.Markwon
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Benchmarks the stages of rendering markdown in the app over the markdown corpus in
+ * src/sharedTest/resources/markdown (comments, self posts and wiki pages), with [Markwon] and
+ * [MarkdownAdjuster] as configured in [MarkwonModule]. The JVM parts of the pipeline are also
+ * benchmarked without a device in MarkdownCorpusBenchmark
+ *
+ * Every stage is measured separately, with the input from the previous stage created beforehand. Each
+ * measurement is of every document in the corpus. The results are written by androidx.benchmark
+ * as JSON (see the benchmark arguments in build.gradle), and can be compared between commits when run
+ * on the same device
+ */
+@RunWith(Parameterized::class)
+class MarkdownRenderBenchmark(private val corpus: String) {
+
+    companion object {
+        /**
+         * The separator between the documents in a corpus file
+         */
+        private const val DOCUMENT_SEPARATOR = "\n%%%\n"
+
+        @JvmStatic
+        @Parameterized.Parameters(name = "{0}")
+        fun corpora() = listOf("comments", "selfposts", "wiki")
+    }
+
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private lateinit var context: Context
+    private lateinit var markwon: Markwon
+    private lateinit var adjuster: MarkdownAdjuster
+    private lateinit var documents: List<String>
+
+    @Before
+    fun setup() {
+        val instrumentation = InstrumentationRegistry.getInstrumentation()
+        context = instrumentation.targetContext
+
+        markwon = MarkwonModule.provideMarkwonWithImages(context, Settings(context))
+        adjuster = MarkwonModule.createMarkdownAdjusterWithImages()
+
+        // The corpus is in the assets of the test APK, not the app
+        documents = instrumentation.context.assets.open("markdown/$corpus.md")
+                .bufferedReader()
+                .use { it.readText() }
+                .split(DOCUMENT_SEPARATOR)
+
+        assertTrue("Corpus '$corpus' is empty", documents.isNotEmpty())
+    }
+
+    @Test
+    fun adjust() {
+        benchmarkRule.measureRepeated {
+            documents.forEach { adjuster.adjust(it) }
+        }
+    }
+
+    @Test
+    fun parse() {
+        val adjusted = documents.map { adjuster.adjust(it) }
+
+        benchmarkRule.measureRepeated {
+            adjusted.forEach { markwon.parse(it) }
+        }
+    }
+
+    /**
+     * Renders parsed markdown. This includes the plugins that run when rendering, such as
+     * [RedditMarkdownPlugin] and [EnlargeLinkPlugin]
+     */
+    @Test
+    fun render() {
+        val parsed = documents.map { markwon.parse(adjuster.adjust(it)) }
+
+        benchmarkRule.measureRepeated {
+            parsed.forEach { markwon.render(it) }
+        }
+    }
+
+    /**
+     * Runs [io.noties.markwon.MarkwonPlugin.beforeSetText] of every plugin on the rendered markdown, which
+     * is done on the main thread every time markdown is set on a TextView
+     */
+    @Test
+    fun beforeSetText() {
+        val rendered = documents.map { markwon.render(markwon.parse(adjuster.adjust(it))) }
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            val textView = TextView(context)
+
+            benchmarkRule.measureRepeated {
+                rendered.forEach { markdown ->
+                    markwon.plugins.forEach { it.beforeSetText(textView, markdown) }
+                }
+            }
+        }
+    }
+
+    /**
+     * All stages together, as done in [com.example.hakonsreader.views.MarkdownTextView] when markdown
+     * isn't cached (without setting the text)
+     */
+    @Test
+    fun pipeline() {
+        benchmarkRule.measureRepeated {
+            documents.forEach { markwon.render(markwon.parse(adjuster.adjust(it))) }
+        }
+    }
+}
@@ -16,6 +16,9 @@ import io.noties.markwon.AbstractMarkwonPlugin;
  * Markwon plugin to linkify Reddit links. This plugin wraps the text in a {@link URLSpan}
  *
  * <p>Supported links are: r/subreddit and /r/subreddit, u/user and /u/user, user/user and /user/user</p>
+ *
+ * <p>Replaced by {@link RedditMarkdownPlugin} in the app. This is only kept to compare against in
+ * {@link RedditMarkdownPluginBenchmark}</p>
  */
 public class RedditLinkPlugin extends AbstractMarkwonPlugin {
     private static final String TAG = "RedditLinkPlugin";
@@ -0,0 +1,130 @@
+package com.example.hakonsreader.markwonplugins
+
+import android.content.Context
+import android.text.Spanned
+import android.text.style.SuperscriptSpan
+import android.text.style.URLSpan
+import android.util.Log
+import android.widget.TextView
+import androidx.test.platform.app.InstrumentationRegistry
+import io.noties.markwon.Markwon
+import io.noties.markwon.MarkwonPlugin
+import io.noties.markwon.ext.strikethrough.StrikethroughPlugin
+import io.noties.markwon.ext.tables.TablePlugin
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Compares the cost of binding markdown (rendering the markdown and setting it on a TextView) with
+ * [RedditMarkdownPlugin] against the plugins it replaces, which scan the rendered text in beforeSetText
+ */
+class RedditMarkdownPluginBenchmark {
+
+    companion object {
+        private const val TAG = "RedditMarkdownPluginBenchmark"
+
+        private const val WARMUP_ITERATIONS = 5
+        private const val ITERATIONS = 20
+
+        /**
+         * Comments with a mix of the syntax the plugins handle, from short to long
+         */
+        private val COMMENTS = listOf(
+                "Short comment without anything special",
+                "You should check out r/GlobalOffensive and u/hakonschia, or https://nrk.no/some/article?query=true",
+                ">!The ending was a spoiler!< but ^(this is superscript ^(and this is nested)) and ^word",
+                "*Beep boop* ^(I am a bot) ^| ^[Source](https://github.com/hakonschia) ^| ^(Contact r/HakonsReader)",
+                List(30) { "Paragraph $it with a [link](https://www.reddit.com/r/all) and r/subreddit$it, >!spoiler $it!< and ^super$it" }
+                        .joinToString("\n\n"),
+                List(10) { "Line $it https://i.redd.it/z4sgyaoenlf61.png `r/code https://not.a.link` **bold u/user$it**" }
+                        .joinToString("\n\n")
+        )
+    }
+
+    private lateinit var context: Context
+
+    @Before
+    fun setup() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+    }
+
+    private fun createMarkwon(vararg plugins: MarkwonPlugin): Markwon {
+        return Markwon.builder(context)
+                .usePlugin(TablePlugin.create(context))
+                .usePlugin(StrikethroughPlugin.create())
+                .usePlugins(plugins.toList())
+                .build()
+    }
+
+    /**
+     * Binds every comment with both the previous plugin chain and [RedditMarkdownPlugin], and logs the
+     * average time per bind
+     */
+    @Test
+    fun bindTime() {
+        val pluginChain = createMarkwon(RedditSpoilerPlugin(), RedditLinkPlugin(), SuperscriptPlugin(), LinkPlugin())
+        val fusedPlugin = createMarkwon(RedditMarkdownPlugin())
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            val textView = TextView(context)
+
+            COMMENTS.forEachIndexed { i, comment ->
+                val chainTime = measureBind(pluginChain, textView, comment)
+                val fusedTime = measureBind(fusedPlugin, textView, comment)
+
+                Log.d(TAG, "bindTime: comment $i (${comment.length} characters); " +
+                        "plugin chain=${chainTime / 1000}µs; fused plugin=${fusedTime / 1000}µs")
+            }
+        }
+    }
+
+    /**
+     * Checks that the fused plugin finds the same links and superscripts as the previous plugins in
+     * text where the previous plugins aren't wrong
+     */
+    @Test
+    fun sameSpans() {
+        val pluginChain = createMarkwon(RedditSpoilerPlugin(), RedditLinkPlugin(), SuperscriptPlugin(), LinkPlugin())
+        val fusedPlugin = createMarkwon(RedditMarkdownPlugin())
+
+        val comment = "Check out r/GlobalOffensive, u/hakonschia and https://nrk.no. ^(Sentence) and ^word"
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            val chain = bind(pluginChain, TextView(context), comment)
+            val fused = bind(fusedPlugin, TextView(context), comment)
+
+            assertTrue(fused.getSpans(0, fused.length, URLSpan::class.java).size == 3)
+            assertEquals(
+                    chain.getSpans(0, chain.length, URLSpan::class.java).map { it.url }.sorted(),
+                    fused.getSpans(0, fused.length, URLSpan::class.java).map { it.url }.sorted()
+            )
+            assertEquals(
+                    chain.getSpans(0, chain.length, SuperscriptSpan::class.java).size,
+                    fused.getSpans(0, fused.length, SuperscriptSpan::class.java).size
+            )
+        }
+    }
+
+    /**
+     * @return The average time, in nanoseconds, to bind the markdown
+     */
+    private fun measureBind(markwon: Markwon, textView: TextView, markdown: String): Long {
+        repeat(WARMUP_ITERATIONS) {
+            bind(markwon, textView, markdown)
+        }
+
+        val start = System.nanoTime()
+        repeat(ITERATIONS) {
+            bind(markwon, textView, markdown)
+        }
+        return (System.nanoTime() - start) / ITERATIONS
+    }
+
+    private fun bind(markwon: Markwon, textView: TextView, markdown: String): Spanned {
+        val spanned = markwon.toMarkdown(markdown)
+        markwon.setParsedMarkdown(textView, spanned)
+        return textView.text as Spanned
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.hakonsreader.markwonplugins
+
+import android.text.Spanned
+import android.text.style.SuperscriptSpan
+import android.text.style.URLSpan
+import androidx.test.platform.app.InstrumentationRegistry
+import io.noties.markwon.AbstractMarkwonPlugin
+import io.noties.markwon.Markwon
+import io.noties.markwon.MarkwonVisitor
+import io.noties.markwon.core.spans.StrongEmphasisSpan
+import org.commonmark.ext.gfm.tables.TableCell
+import org.commonmark.ext.gfm.tables.TablesExtension
+import org.commonmark.parser.Parser
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests for the text and spans rendered by [RedditMarkdownPlugin]. What the scanner finds is tested in
+ * RedditMarkdownScannerTest, this tests that the spans end up at the right positions in the rendered text
+ * when the syntax is removed
+ */
+class RedditMarkdownPluginTest {
+
+    private lateinit var markwon: Markwon
+
+    /**
+     * The table cells rendered by the last [render], in the order they were rendered
+     */
+    private val cells = ArrayList<Spanned>()
+
+    @Before
+    fun setup() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+
+        markwon = Markwon.builder(context)
+                // Table cells are moved out of the text when they have been rendered, as done by TablePlugin
+                .usePlugin(object : AbstractMarkwonPlugin() {
+                    override fun configureParser(builder: Parser.Builder) {
+                        builder.extensions(listOf(TablesExtension.create()))
+                    }
+
+                    override fun configureVisitor(builder: MarkwonVisitor.Builder) {
+                        builder.on(TableCell::class.java) { visitor, cell ->
+                            val start = visitor.length()
+                            visitor.visitChildren(cell)
+                            cells.add(visitor.builder().removeFromEnd(start) as Spanned)
+                        }
+                    }
+                })
+                .usePlugin(RedditMarkdownPlugin())
+                .build()
+    }
+
+    private fun render(markdown: String): Spanned {
+        cells.clear()
+        return markwon.toMarkdown(markdown)
+    }
+
+    /**
+     * @return The start and end of the spans of the given type, sorted by their start and end
+     */
+    private fun <T> spans(text: Spanned, type: Class<T>): List<Pair<Int, Int>> {
+        return text.getSpans(0, text.length, type)
+                .map { text.getSpanStart(it) to text.getSpanEnd(it) }
+                .sortedWith(compareBy({ it.first }, { it.second }))
+    }
+
+    /**
+     * @return The URLs of the links in the text, sorted by their start
+     */
+    private fun urls(text: Spanned): List<String> {
+        return text.getSpans(0, text.length, URLSpan::class.java)
+                .sortedBy { text.getSpanStart(it) }
+                .map { it.url }
+    }
+
+    /**
+     * Tests that the spoiler syntax is removed and the spoiler is set on the text between
+     */
+    @Test
+    fun spoiler() {
+        val rendered = render("This is a >!spoiler!< here")
+
+        assertEquals("This is a spoiler here", rendered.toString())
+        assertEquals(listOf(10 to 17), spans(rendered, RedditSpoilerSpan::class.java))
+    }
+
+    /**
+     * Tests that both superscripts are set when a superscript is in another superscript
+     */
+    @Test
+    fun nestedSuperscript() {
+        val rendered = render("a ^(b ^(c)) d")
+
+        assertEquals("a b c d", rendered.toString())
+        assertEquals(listOf(2 to 5, 4 to 5), spans(rendered, SuperscriptSpan::class.java))
+    }
+
+    /**
+     * Tests links in superscripts, both markdown links and links found by the scanner
+     */
+    @Test
+    fun linkInSuperscript() {
+        var rendered = render("^[link](https://nrk.no) after")
+
+        assertEquals("link after", rendered.toString())
+        assertEquals(listOf(0 to 4), spans(rendered, SuperscriptSpan::class.java))
+        assertEquals(listOf(0 to 4), spans(rendered, URLSpan::class.java))
+        assertEquals(listOf("https://nrk.no"), urls(rendered))
+
+        rendered = render("^(see r/GlobalOffensive) after")
+
+        assertEquals("see r/GlobalOffensive after", rendered.toString())
+        assertEquals(listOf(0 to 21), spans(rendered, SuperscriptSpan::class.java))
+        assertEquals(listOf(4 to 21), spans(rendered, URLSpan::class.java))
+        assertEquals(listOf("r/GlobalOffensive"), urls(rendered))
+    }
+
+    /**
+     * Tests that syntax in table cells is removed from the cells, with the spans at the right positions
+     */
+    @Test
+    fun syntaxInTableCell() {
+        render("| a | b |\n|---|---|\n| ^(up) r/test | >!s!< x |")
+
+        assertEquals(listOf("a", "b", "up r/test", "s x"), cells.map { it.toString() })
+
+        val first = cells[2]
+        assertEquals(listOf(0 to 2), spans(first, SuperscriptSpan::class.java))
+        assertEquals(listOf(3 to 9), spans(first, URLSpan::class.java))
+        assertEquals(listOf("r/test"), urls(first))
+
+        val second = cells[3]
+        assertEquals(listOf(0 to 1), spans(second, RedditSpoilerSpan::class.java))
+    }
+
+    /**
+     * Tests that spans after removed syntax are moved with the text, both spans set by the plugin
+     * and spans set by other nodes
+     */
+    @Test
+    fun textAfterRemovedSyntax() {
+        var rendered = render("^(small) and r/GlobalOffensive")
+
+        assertEquals("small and r/GlobalOffensive", rendered.toString())
+        assertEquals(listOf(0 to 5), spans(rendered, SuperscriptSpan::class.java))
+        assertEquals(listOf(10 to 27), spans(rendered, URLSpan::class.java))
+
+        rendered = render(">!spoiler!< **bold** r/test")
+
+        assertEquals("spoiler bold r/test", rendered.toString())
+        assertEquals(listOf(0 to 7), spans(rendered, RedditSpoilerSpan::class.java))
+        assertEquals(listOf(8 to 12), spans(rendered, StrongEmphasisSpan::class.java))
+        assertEquals(listOf(13 to 19), spans(rendered, URLSpan::class.java))
+    }
+}
@@ -1,13 +1,8 @@
 package com.example.hakonsreader.markwonplugins;
 
-import android.graphics.Color;
 import android.text.Spannable;
 import android.text.Spanned;
-import android.text.TextPaint;
-import android.text.style.CharacterStyle;
-import android.text.style.ClickableSpan;
 import android.text.style.RelativeSizeSpan;
-import android.view.View;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
@@ -16,13 +11,15 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import io.noties.markwon.AbstractMarkwonPlugin;
-import io.noties.markwon.utils.ColorUtils;
 
 
 /**
  * Markwon plugin for Reddit spoilers
  *
  * <p>Taken from the Markown samples: https://github.com/noties/Markwon/blob/master/app-sample/src/main/java/io/noties/markwon/app/samples/RedditSpoilerSample.java</p>
+ *
+ * <p>Replaced by {@link RedditMarkdownPlugin} in the app. This is only kept to compare against in
+ * {@link RedditMarkdownPluginBenchmark}</p>
  */
 public class RedditSpoilerPlugin extends AbstractMarkwonPlugin {
 
@@ -46,49 +43,13 @@ public class RedditSpoilerPlugin extends AbstractMarkwonPlugin {
 
         while (matcher.find()) {
 
-            final RedditSpoilerSpan spoilerSpan = new RedditSpoilerSpan();
-            final ClickableSpan clickableSpan = new ClickableSpan() {
-                @Override
-                public void onClick(@NonNull View widget) {
-                    spoilerSpan.setRevealed(true);
-                    widget.postInvalidateOnAnimation();
-                }
-
-                @Override
-                public void updateDrawState(@NonNull TextPaint ds) {
-                    // no op
-                }
-            };
-
             final int s = matcher.start();
             final int e = matcher.end();
-            spannable.setSpan(spoilerSpan, s, e, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-            spannable.setSpan(clickableSpan, s, e, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            spannable.setSpan(new RedditSpoilerSpan(), s, e, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
 
             // we also can hide original syntax
             spannable.setSpan(new RelativeSizeSpan(0f), s, s + 2, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
             spannable.setSpan(new RelativeSizeSpan(0f), e - 2, e, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
         }
     }
-
-    private static class RedditSpoilerSpan extends CharacterStyle {
-
-        private boolean revealed;
-
-        @Override
-        public void updateDrawState(TextPaint tp) {
-            if (!revealed) {
-                // use the same text color
-                tp.bgColor = Color.GRAY;
-                tp.setColor(Color.GRAY);
-            } else {
-                // for example keep a bit of black background to remind that it is a spoiler
-                tp.bgColor = ColorUtils.applyAlpha(Color.GRAY, 50);
-            }
-        }
-
-        public void setRevealed(boolean revealed) {
-            this.revealed = revealed;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -15,6 +15,9 @@ import io.noties.markwon.AbstractMarkwonPlugin;
 
 /**
  * Markwon plugin for Reddit superscript
+ *
+ * <p>Replaced by {@link RedditMarkdownPlugin} in the app. This is only kept to compare against in
+ * {@link RedditMarkdownPluginBenchmark}</p>
  */
 public class SuperscriptPlugin extends AbstractMarkwonPlugin {
     private static final String TAG = "SuperScriptPlugin";
@@ -0,0 +1,161 @@
+package com.example.hakonsreader.recyclerviewadapters
+
+import android.app.Application
+import android.util.Log
+import android.util.SparseIntArray
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.espresso.Espresso.onView
+import androidx.test.espresso.matcher.ViewMatchers.isRoot
+import androidx.test.ext.junit.rules.ActivityScenarioRule
+import androidx.test.platform.app.InstrumentationRegistry
+import com.example.hakonsreader.R
+import com.example.hakonsreader.activities.MainActivity
+import com.example.hakonsreader.api.RedditApi
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
+import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
+import com.example.hakonsreader.constants.SharedPreferencesConstants
+import com.example.hakonsreader.misc.SharedPreferencesManager
+import com.example.hakonsreader.states.AppState
+import com.example.hakonsreader.waitFor
+import dagger.hilt.android.testing.HiltAndroidRule
+import dagger.hilt.android.testing.HiltAndroidTest
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import javax.inject.Inject
+
+/**
+ * Scrolls the front page posts (the fixed list of posts from TestApiModule) down and up, and checks
+ * that [PostsAdapter] reuses its ViewHolders: ViewHolders should only be created for the posts visible
+ * at once plus what is kept in the pools, and each post should only be bound when scrolled into view
+ */
+@HiltAndroidTest
+class PostsAdapterRecyclingTest {
+
+    companion object {
+        private const val TAG = "PostsAdapterRecyclingTest"
+
+        /**
+         * The amount of times to scroll to the bottom of the list and back up
+         */
+        private const val PASSES = 3
+
+        /**
+         * The max amount of scrolls in one direction, in case the list keeps growing
+         */
+        private const val MAX_SCROLLS_PER_DIRECTION = 100
+
+        /**
+         * ViewHolders that can exist in addition to the visible ones and the ones in the pool (the
+         * RecyclerView's view cache and prefetched ViewHolders)
+         */
+        private const val EXTRA_VIEW_HOLDERS = 4
+    }
+
+    @get:Rule(order = 0)
+    var hiltRule = HiltAndroidRule(this)
+
+    @get:Rule(order = 1)
+    val activityScenarioRule = ActivityScenarioRule(MainActivity::class.java)
+
+    @Inject
+    lateinit var api: RedditApi
+
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
+    @Inject
+    lateinit var userInfoDatabase: RedditUserInfoDatabase
+
+    @Before
+    fun init() {
+        hiltRule.inject()
+
+        // This has to set before AppState.init()
+        SharedPreferencesManager.create(InstrumentationRegistry.getInstrumentation().targetContext
+                .getSharedPreferences(SharedPreferencesConstants.PREFS_NAME, Application.MODE_PRIVATE)
+        )
+        AppState.init(api, writeQueue, userInfoDatabase)
+    }
+
+    /**
+     * Scrolls the list and asserts the amount of ViewHolders created and bound for each view type
+     */
+    @Test
+    fun viewHoldersAreReused() {
+        // Wait for the posts to load
+        onView(isRoot()).perform(waitFor(5000))
+
+        // The most posts of each view type visible at the same time
+        val maxVisible = SparseIntArray()
+        var itemCount = 0
+
+        repeat(PASSES * 2) { i ->
+            // Every other pass goes back up
+            val direction = if (i % 2 == 0) 1 else -1
+            var scrolls = 0
+            var canScroll = true
+
+            while (canScroll && scrolls < MAX_SCROLLS_PER_DIRECTION) {
+                activityScenarioRule.scenario.onActivity { activity ->
+                    val posts = activity.findViewById<RecyclerView>(R.id.posts)
+                    val adapter = posts.adapter as PostsAdapter
+                    itemCount = maxOf(itemCount, adapter.itemCount)
+
+                    countVisible(posts, adapter, maxVisible)
+
+                    posts.scrollBy(0, direction * posts.height / 2)
+                    canScroll = posts.canScrollVertically(direction)
+                }
+                onView(isRoot()).perform(waitFor(50))
+                scrolls++
+            }
+        }
+
+        activityScenarioRule.scenario.onActivity { activity ->
+            val adapter = activity.findViewById<RecyclerView>(R.id.posts).adapter as PostsAdapter
+            adapter.logStats()
+
+            assertTrue("No posts were shown", itemCount > 0)
+
+            var totalBound = 0
+            PostsAdapter.VIEW_TYPES.forEach { viewType ->
+                val created = adapter.getCreatedCount(viewType)
+                val limit = maxVisible[viewType] + PostsAdapter.getMaxRecycledViews(viewType) + EXTRA_VIEW_HOLDERS
+
+                assertTrue("$created ViewHolders created for view type $viewType, expected at most $limit", created <= limit)
+                totalBound += adapter.getBoundCount(viewType)
+            }
+
+            // Every post is bound at most once per pass in each direction, plus the posts in the initial layout
+            val bindLimit = PASSES * 2 * itemCount + itemCount
+            Log.d(TAG, "viewHoldersAreReused: # of posts=$itemCount; # of binds=$totalBound; bind limit=$bindLimit")
+            assertTrue("$totalBound binds, expected at most $bindLimit", totalBound <= bindLimit)
+        }
+    }
+
+    /**
+     * Updates the max amount of visible posts of each view type
+     */
+    private fun countVisible(posts: RecyclerView, adapter: PostsAdapter, maxVisible: SparseIntArray) {
+        val layoutManager = posts.layoutManager as LinearLayoutManager
+        val first = layoutManager.findFirstVisibleItemPosition()
+        val last = layoutManager.findLastVisibleItemPosition()
+        if (first < 0) {
+            return
+        }
+
+        val visible = SparseIntArray()
+        for (position in first..last) {
+            val viewType = adapter.getItemViewType(position)
+            visible.put(viewType, visible[viewType] + 1)
+        }
+
+        for (i in 0 until visible.size()) {
+            val viewType = visible.keyAt(i)
+            maxVisible.put(viewType, maxOf(maxVisible[viewType], visible.valueAt(i)))
+        }
+    }
+}
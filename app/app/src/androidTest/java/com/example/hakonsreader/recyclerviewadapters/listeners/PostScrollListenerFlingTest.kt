@@ -0,0 +1,175 @@
+package com.example.hakonsreader.recyclerviewadapters.listeners
+
+import android.app.Application
+import android.util.Log
+import android.view.Choreographer
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.espresso.Espresso.onView
+import androidx.test.espresso.matcher.ViewMatchers.isRoot
+import androidx.test.ext.junit.rules.ActivityScenarioRule
+import androidx.test.platform.app.InstrumentationRegistry
+import com.example.hakonsreader.R
+import com.example.hakonsreader.activities.MainActivity
+import com.example.hakonsreader.api.RedditApi
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
+import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
+import com.example.hakonsreader.constants.SharedPreferencesConstants
+import com.example.hakonsreader.misc.SharedPreferencesManager
+import com.example.hakonsreader.states.AppState
+import com.example.hakonsreader.waitFor
+import dagger.hilt.android.testing.HiltAndroidRule
+import dagger.hilt.android.testing.HiltAndroidTest
+import com.example.hakonsreader.recyclerviewadapters.PostsAdapter
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import javax.inject.Inject
+
+/**
+ * Synthetic fling test for the list of posts, which checks that [PostScrollListener] has selected the
+ * right post when a fling ends, and measures the frame times while the list is flung so the cost of
+ * the listener (and the rest of the scroll path) can be compared between changes
+ */
+@HiltAndroidTest
+class PostScrollListenerFlingTest {
+
+    companion object {
+        private const val TAG = "PostScrollListenerFlingTest"
+
+        /**
+         * The velocity, in pixels per second, to fling the list with
+         */
+        private const val FLING_VELOCITY = 8000
+
+        /**
+         * The amount of flings down (and back up) to perform
+         */
+        private const val FLING_COUNT = 3
+    }
+
+    @get:Rule(order = 0)
+    var hiltRule = HiltAndroidRule(this)
+
+    @get:Rule(order = 1)
+    val activityScenarioRule = ActivityScenarioRule(MainActivity::class.java)
+
+    @Inject
+    lateinit var api: RedditApi
+
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
+    @Inject
+    lateinit var userInfoDatabase: RedditUserInfoDatabase
+
+    @Before
+    fun init() {
+        hiltRule.inject()
+
+        // This has to set before AppState.init()
+        SharedPreferencesManager.create(InstrumentationRegistry.getInstrumentation().targetContext
+                .getSharedPreferences(SharedPreferencesConstants.PREFS_NAME, Application.MODE_PRIVATE)
+        )
+        AppState.init(api, writeQueue, userInfoDatabase)
+    }
+
+    /**
+     * Flings the front page posts down and up, asserts the selected post after each fling, and logs
+     * the frame times during the flings
+     */
+    @Test
+    fun flingFrameTimes() {
+        // Wait for the posts to load
+        onView(isRoot()).perform(waitFor(5000))
+
+        val frameTimes = ArrayList<Long>()
+
+        repeat(FLING_COUNT * 2) { i ->
+            // Every other fling goes back up
+            val velocity = if (i % 2 == 0) FLING_VELOCITY else -FLING_VELOCITY
+            activityScenarioRule.scenario.onActivity { activity ->
+                val posts = activity.findViewById<RecyclerView>(R.id.posts)
+                recordFrameTimes(posts, frameTimes)
+                posts.fling(0, velocity)
+            }
+            onView(isRoot()).perform(waitFor(3000))
+
+            activityScenarioRule.scenario.onActivity { activity ->
+                assertSelectedPost(activity.findViewById(R.id.posts))
+            }
+        }
+
+        assertTrue("No frames were recorded", frameTimes.isNotEmpty())
+
+        val sorted = frameTimes.sorted()
+        val average = frameTimes.average() / 1_000_000
+        val p90 = sorted[(sorted.size * 0.9).toInt().coerceAtMost(sorted.size - 1)] / 1_000_000f
+        val max = sorted.last() / 1_000_000f
+        Log.d(TAG, "flingFrameTimes: # of frames=${frameTimes.size}; average=${average}ms; p90=${p90}ms; max=${max}ms")
+    }
+
+    /**
+     * Asserts that the only selected post is the one whose content is entirely in the list, starts
+     * above 35% of the list and ends below 50% of the list (the post [PostScrollListener] selects when
+     * the list stops scrolling), if there is such a post
+     */
+    private fun assertSelectedPost(posts: RecyclerView) {
+        assertEquals("The list is still scrolling", RecyclerView.SCROLL_STATE_IDLE, posts.scrollState)
+
+        val listHeight = posts.height
+        var expected: String? = null
+        val selected = ArrayList<String>()
+
+        for (i in 0 until posts.childCount) {
+            val holder = posts.getChildViewHolder(posts.getChildAt(i)) as? PostsAdapter.ViewHolder ?: continue
+            val id = holder.getPostId() ?: continue
+
+            val top = holder.getContentY(posts)
+            val bottom = holder.getContentBottomY(posts)
+            if (top >= 0 && bottom <= listHeight && top < listHeight * 0.35f && bottom > listHeight * 0.5f) {
+                expected = id
+            }
+
+            if (holder.isSelected) {
+                selected.add(id)
+            }
+        }
+
+        // Recycled ViewHolders should never be selected. They are put back in the pool afterwards
+        posts.recycledViewPool.run {
+            PostsAdapter.VIEW_TYPES.forEach { viewType ->
+                val recycled = generateSequence { getRecycledView(viewType) }.toList()
+                recycled.forEach {
+                    assertTrue("A recycled ViewHolder is selected", !(it as PostsAdapter.ViewHolder).isSelected)
+                    putRecycledView(it)
+                }
+            }
+        }
+
+        Log.d(TAG, "assertSelectedPost: expected=$expected; selected=$selected")
+        assertEquals(listOfNotNull(expected), selected)
+    }
+
+    /**
+     * Records the time between frames until the list is no longer scrolling
+     */
+    private fun recordFrameTimes(posts: RecyclerView, frameTimes: MutableList<Long>) {
+        Choreographer.getInstance().postFrameCallback(object : Choreographer.FrameCallback {
+            var lastFrame = 0L
+
+            override fun doFrame(frameTimeNanos: Long) {
+                if (lastFrame != 0L) {
+                    frameTimes.add(frameTimeNanos - lastFrame)
+                }
+
+                // The fling starts after the first frame
+                if (lastFrame == 0L || posts.scrollState != RecyclerView.SCROLL_STATE_IDLE) {
+                    lastFrame = frameTimeNanos
+                    Choreographer.getInstance().postFrameCallback(this)
+                }
+            }
+        })
+    }
+}
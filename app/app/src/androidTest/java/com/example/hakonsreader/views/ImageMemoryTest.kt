@@ -0,0 +1,123 @@
+package com.example.hakonsreader.views
+
+import android.app.Application
+import android.os.Debug
+import android.util.Log
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.espresso.Espresso.onView
+import androidx.test.espresso.matcher.ViewMatchers.isRoot
+import androidx.test.ext.junit.rules.ActivityScenarioRule
+import androidx.test.platform.app.InstrumentationRegistry
+import com.example.hakonsreader.R
+import com.example.hakonsreader.activities.MainActivity
+import com.example.hakonsreader.api.RedditApi
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
+import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
+import com.example.hakonsreader.constants.SharedPreferencesConstants
+import com.example.hakonsreader.misc.SharedPreferencesManager
+import com.example.hakonsreader.recyclerviewadapters.PostsAdapter
+import com.example.hakonsreader.states.AppState
+import com.example.hakonsreader.waitFor
+import dagger.hilt.android.testing.HiltAndroidRule
+import dagger.hilt.android.testing.HiltAndroidTest
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import javax.inject.Inject
+
+/**
+ * Scrolls through the front page posts and measures the memory used while images are loaded, so the
+ * memory cost of decoding images can be compared between changes
+ *
+ * The test API returns the same posts for every page, so the list is scrolled down and back up until
+ * [IMAGE_POST_COUNT] image posts have been bound
+ *
+ * Decoded bitmaps are stored in the native heap (API 26+), so both the Java heap and the native heap are measured
+ */
+@HiltAndroidTest
+class ImageMemoryTest {
+
+    companion object {
+        private const val TAG = "ImageMemoryTest"
+
+        /**
+         * The amount of image posts to bind (ie. scroll into view)
+         */
+        private const val IMAGE_POST_COUNT = 200
+
+        /**
+         * The max amount of scrolls to do, in case the list doesn't have enough image posts
+         */
+        private const val MAX_SCROLLS = 2000
+    }
+
+    @get:Rule(order = 0)
+    var hiltRule = HiltAndroidRule(this)
+
+    @get:Rule(order = 1)
+    val activityScenarioRule = ActivityScenarioRule(MainActivity::class.java)
+
+    @Inject
+    lateinit var api: RedditApi
+
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
+    @Inject
+    lateinit var userInfoDatabase: RedditUserInfoDatabase
+
+    @Before
+    fun init() {
+        hiltRule.inject()
+
+        // This has to set before AppState.init()
+        SharedPreferencesManager.create(InstrumentationRegistry.getInstrumentation().targetContext
+                .getSharedPreferences(SharedPreferencesConstants.PREFS_NAME, Application.MODE_PRIVATE)
+        )
+        AppState.init(api, writeQueue, userInfoDatabase)
+    }
+
+    /**
+     * Scrolls until [IMAGE_POST_COUNT] image posts have been bound, asserts that they were, and logs
+     * the peak memory usage
+     */
+    @Test
+    fun peakMemoryWhileScrollingImages() {
+        // Wait for the posts to load
+        onView(isRoot()).perform(waitFor(5000))
+
+        var imagePostsBound = 0
+        var peakJavaHeap = 0L
+        var peakNativeHeap = 0L
+        var scrolls = 0
+        var direction = 1
+
+        while (imagePostsBound < IMAGE_POST_COUNT && scrolls < MAX_SCROLLS) {
+            activityScenarioRule.scenario.onActivity { activity ->
+                val posts = activity.findViewById<RecyclerView>(R.id.posts)
+                val adapter = posts.adapter as PostsAdapter
+
+                imagePostsBound = adapter.getBoundCount(PostsAdapter.VIEW_TYPE_IMAGE)
+
+                // Go back up when the end of the list has been reached, and down again at the top
+                if (!posts.canScrollVertically(direction)) {
+                    direction = -direction
+                }
+                posts.scrollBy(0, direction * posts.height / 2)
+            }
+            // Give the images time to load
+            onView(isRoot()).perform(waitFor(100))
+
+            val runtime = Runtime.getRuntime()
+            peakJavaHeap = maxOf(peakJavaHeap, runtime.totalMemory() - runtime.freeMemory())
+            peakNativeHeap = maxOf(peakNativeHeap, Debug.getNativeHeapAllocatedSize())
+            scrolls++
+        }
+
+        Log.d(TAG, "peakMemoryWhileScrollingImages: # of image posts bound=$imagePostsBound; # of scrolls=$scrolls; " +
+                "peak Java heap=${peakJavaHeap / 1024 / 1024}MB; peak native heap=${peakNativeHeap / 1024 / 1024}MB")
+
+        assertTrue("Only $imagePostsBound of $IMAGE_POST_COUNT image posts were bound", imagePostsBound >= IMAGE_POST_COUNT)
+    }
+}
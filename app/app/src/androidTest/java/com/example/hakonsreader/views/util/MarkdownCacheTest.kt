@@ -0,0 +1,100 @@
+package com.example.hakonsreader.views.util
+
+import android.content.Context
+import android.text.Spanned
+import androidx.test.platform.app.InstrumentationRegistry
+import com.example.hakonsreader.markwonplugins.RedditMarkdownPlugin
+import com.example.hakonsreader.markwonplugins.RedditSpoilerSpan
+import io.noties.markwon.Markwon
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+
+class MarkdownCacheTest {
+
+    private lateinit var context: Context
+    private lateinit var markwon: Markwon
+    private lateinit var cache: MarkdownCache
+
+    @Before
+    fun setup() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        markwon = Markwon.builder(context).usePlugin(RedditMarkdownPlugin()).build()
+        cache = MarkdownCache(context)
+    }
+
+    private fun render(key: MarkdownCache.Key): Spanned {
+        return cache.getOrRender(key) { markwon.toMarkdown(key.markdown) }
+    }
+
+    /**
+     * Tests that the same markdown is only rendered once, and that the hit rate is counted
+     */
+    @Test
+    fun renderedOnce() {
+        val key = cache.createKey(context, "Some **markdown** with r/GlobalOffensive", false, 100)
+
+        var renders = 0
+        repeat(3) {
+            cache.getOrRender(key) {
+                renders++
+                markwon.toMarkdown(key.markdown)
+            }
+        }
+
+        assertEquals(1, renders)
+        assertEquals(2, cache.hitCount)
+        assertEquals(1, cache.missCount)
+        assertEquals(2 / 3f, cache.getHitRate(), 0.001f)
+    }
+
+    /**
+     * Tests that the settings that affect rendering are a part of the key
+     */
+    @Test
+    fun settingsArePartOfKey() {
+        val markdown = "Some **markdown**"
+
+        render(cache.createKey(context, markdown, false, 100))
+        render(cache.createKey(context, markdown, true, 100))
+        render(cache.createKey(context, markdown, false, 150))
+
+        assertEquals(0, cache.hitCount)
+        assertEquals(3, cache.missCount)
+    }
+
+    /**
+     * Tests that revealing a spoiler in one copy doesn't reveal it in other copies
+     */
+    @Test
+    fun spoilersAreNotShared() {
+        val key = cache.createKey(context, "This is a >!spoiler!<", false, 100)
+
+        val first = render(key)
+        val firstSpoiler = first.getSpans(0, first.length, RedditSpoilerSpan::class.java).single()
+        firstSpoiler.isRevealed = true
+
+        val second = render(key)
+        val secondSpoiler = second.getSpans(0, second.length, RedditSpoilerSpan::class.java).single()
+
+        assertNotSame(firstSpoiler, secondSpoiler)
+        assertFalse(secondSpoiler.isRevealed)
+        assertEquals(first.getSpanStart(firstSpoiler), second.getSpanStart(secondSpoiler))
+        assertEquals(first.getSpanEnd(firstSpoiler), second.getSpanEnd(secondSpoiler))
+    }
+
+    /**
+     * Tests that clearing the cache renders the markdown again
+     */
+    @Test
+    fun clear() {
+        val key = cache.createKey(context, "Some markdown", false, 100)
+
+        render(key)
+        cache.clear()
+        render(key)
+
+        assertEquals(0, cache.hitCount)
+        assertEquals(2, cache.missCount)
+    }
+}
@@ -14,6 +14,8 @@ import androidx.work.Configuration
 import com.example.hakonsreader.activities.InvalidAccessTokenActivity
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.model.*
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
+import com.example.hakonsreader.api.persistence.PostVisit
 import com.example.hakonsreader.api.persistence.RedditDatabase
 import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
 import com.example.hakonsreader.broadcastreceivers.InboxWorkerStartReceiver
@@ -22,6 +24,8 @@ import com.example.hakonsreader.states.AppState
 import com.example.hakonsreader.misc.Settings
 import com.example.hakonsreader.misc.SharedPreferencesManager
 import com.example.hakonsreader.misc.TokenManager
+import com.example.hakonsreader.views.util.VideoCache
+import com.example.hakonsreader.workers.DatabaseCompactionWorker
 import dagger.hilt.android.HiltAndroidApp
 import io.noties.markwon.*
 import kotlinx.coroutines.CoroutineScope
@@ -78,6 +82,12 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
     @Inject
     lateinit var userInfoDatabase: RedditUserInfoDatabase
 
+    /**
+     * A [DatabaseWriteQueue] instance. Outside classes should inject this themselves
+     */
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
     @Inject
     lateinit var workerFactory: HiltWorkerFactory
 
@@ -90,7 +100,7 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
 
         super.onCreate()
 
-        AppState.init(api, database, userInfoDatabase)
+        AppState.init(api, writeQueue, userInfoDatabase)
 
         createInboxNotificationChannel()
         createDeveloperNotificationChannel()
@@ -98,9 +108,17 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
         // Always restart the worker on startup (so that messages are retrieved on startup)
         InboxWorkerStartReceiver.startInboxWorker(this, settings.inboxUpdateFrequency(), replace = true)
 
+        // Old posts and post opened values are removed periodically in the background
+        DatabaseCompactionWorker.schedule(this)
+
+        VideoCache.init(this, settings.videoCacheSize())
+        CoroutineScope(IO).launch {
+            VideoCache.deleteLegacyCache(this@App)
+        }
+
         updateTheme()
-        removeOldValues()
         removePrehistoricValues()
+        migratePostOpenedPreferences()
 
         registerActivityLifecycleCallbacks(this)
 
@@ -152,18 +170,6 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
         }
     }
 
-    /**
-     * Removes old database records and post opened values
-     */
-    private fun removeOldValues() {
-        CoroutineScope(IO).launch {
-            removeOldDatabasePosts()
-
-            // Calling this from the Coroutine because then we can pretend to be smart about performance :)
-            removeOldPostOpenedPreferences()
-        }
-    }
-
     /**
      * Removes various values from SharedPreferences and such that are no longer used and should be
      * removed.
@@ -176,42 +182,33 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
     }
 
     /**
-     * Removes posts from the database that are older than 2 days
+     * Moves the post opened values stored in SharedPreferences into [RedditDatabase.postVisits].
+     * The SharedPreferences are cleared afterwards, so this only does any work the first time it is called
      */
-    @Suppress("RedundantSuspendModifier")
-    private suspend fun removeOldDatabasePosts() {
-        // Remove records that are older than 2 days, as they likely won't be used again
-        val maxAge = 60L * 60 * 24 * 2
-        val count = database.posts().getCount()
-        val deleted = database.posts().deleteOld(maxAge)
-
-        Log.d(TAG, "onCreate: # of records=$count; # of deleted=$deleted")
-    }
+    private fun migratePostOpenedPreferences() {
+        CoroutineScope(IO).launch {
+            val prefs = getSharedPreferences(SharedPreferencesConstants.PREFS_NAME_POST_OPENED, MODE_PRIVATE)
+            val values = prefs.all
+            if (values.isEmpty()) {
+                return@launch
+            }
 
-    /**
-     * Removes keys older than 2 weeks from the SharedPreferences holding the opened post values
-     */
-    private fun removeOldPostOpenedPreferences() {
-        // Having these keys in SharedPreferences is kind of weird, but it's way easier than creating
-        // a database for it, so it works I guess
-
-        val twoWeeksAgo = (System.currentTimeMillis() / 1000L) - 60 * 60 * 24 * 14
-
-        val prefs = getSharedPreferences(SharedPreferencesConstants.PREFS_NAME_POST_OPENED, MODE_PRIVATE)
-        val editor = prefs.edit()
-
-        prefs.all.forEach { (key, value) ->
-            // If the timestamp two weeks ago is larger than the stored value it is older
-            // Now: 1000
-            // 2 weeks ago: 986
-            // Post opened 5 days ago: 995. 986 is not larger than 995, keep it
-            // Post opened 15 days ago: 985. 986 is larger than 985, remove it
-            if (twoWeeksAgo > value as Long) {
-                editor.remove(key)
+            val visits = values.mapNotNull { (key, value) ->
+                // The keys are stored as "<postId>postLastOpenedTimestamp"
+                if (value is Long && key.endsWith(SharedPreferencesConstants.POST_LAST_OPENED_TIMESTAMP)) {
+                    PostVisit(
+                        postId = key.removeSuffix(SharedPreferencesConstants.POST_LAST_OPENED_TIMESTAMP),
+                        lastOpened = value,
+                        lastSeenCommentCount = -1
+                    )
+                } else null
             }
-        }
 
-        editor.apply()
+            database.postVisits().insertAll(visits)
+            prefs.edit().clear().apply()
+
+            Log.d(TAG, "migratePostOpenedPreferences: migrated ${visits.size} post opened values")
+        }
     }
 
     /**
@@ -240,7 +237,8 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
             api.logOut()
 
             // Clear any user specific state from database records (such as vote status on posts)
-            database.clearUserState()
+            writeQueue.clearUserState()
+            VideoCache.clear()
 
             AppState.getUserInfo()?.let {
                 userInfoDatabase.userInfo().delete(it)
@@ -297,7 +295,8 @@ class App : Application(), Configuration.Provider, Application.ActivityLifecycle
     }
 
     override fun onActivityPaused(activity: Activity) {
-        // Not implemented
+        // Write any pending changes in case the app is killed while in the background
+        writeQueue.flushAsync()
     }
 
     override fun onActivityStopped(activity: Activity) {
@@ -1,6 +1,5 @@
 package com.example.hakonsreader.activities
 
-import android.graphics.Bitmap
 import android.graphics.drawable.Drawable
 import android.os.Build
 import android.os.Bundle
@@ -21,6 +20,8 @@ import com.example.hakonsreader.misc.Settings
 import com.example.hakonsreader.misc.asFullscreenActivity
 import com.example.hakonsreader.misc.isAvailableForGlide
 import com.example.hakonsreader.views.listeners.PhotoViewDoubleTapListener
+import com.example.hakonsreader.views.util.ImageRequestKey
+import com.example.hakonsreader.views.util.ImageRequests
 import com.github.chrisbanes.photoview.PhotoViewAttacher
 import com.r0adkll.slidr.Slidr
 import com.r0adkll.slidr.model.SlidrInterface
@@ -51,15 +52,14 @@ class ImageActivity : BaseActivity() {
         const val EXTRAS_CACHE_IMAGE = "extras_ImageActivity_cacheImage"
 
         /**
-         * The bitmap to display. This can be used instead of passing an URL if the image has already
-         * been loaded and is in memory.
+         * The key used for the image already loaded in the view the activity is opened from. The image
+         * is shown from the memory cache while the image at [EXTRAS_IMAGE_URL] is loaded, which avoids
+         * the image flashing during the transition (or having to wait for the image at all, if the
+         * image loaded is the same as the image at [EXTRAS_IMAGE_URL])
          *
-         * Using this when possible has the benefit of not asking Picasso to reload the image, which can
-         * have a small (and very noticeable) delay even without having to do a network request
-         *
-         * This should be set just before the activity is started and will be nulled when the activity finishes
+         * The value with this key should be a [Bundle] created with [ImageRequestKey.toBundle]
          */
-        var BITMAP: Bitmap? = null
+        const val EXTRAS_LOADED_IMAGE = "extras_ImageActivity_loadedImage"
     }
 
     @Inject
@@ -100,11 +100,7 @@ class ImageActivity : BaseActivity() {
 
             binding.image.setOnDoubleTapListener(PhotoViewDoubleTapListener(attacher, slidrInterface))
 
-            if (BITMAP != null) {
-                binding.image.setImageBitmap(BITMAP)
-            } else {
-                loadImageByUrl(data)
-            }
+            loadImageByUrl(data)
         } else {
             finish()
         }
@@ -112,7 +108,6 @@ class ImageActivity : BaseActivity() {
 
     override fun finish() {
         super.finish()
-        BITMAP = null
         overridePendingTransition(R.anim.fade_out, R.anim.fade_out)
     }
 
@@ -127,9 +122,18 @@ class ImageActivity : BaseActivity() {
 
         val cache = data.getBoolean(EXTRAS_CACHE_IMAGE, true)
 
-        Glide.with(this)
+        val requestManager = Glide.with(this)
+
+        // The image already loaded is usually still in the memory cache. It is never loaded from the
+        // network, as the full image is loaded anyway
+        val thumbnail = ImageRequestKey.fromBundle(data.getBundle(EXTRAS_LOADED_IMAGE))?.let {
+            ImageRequests.create(requestManager, it).onlyRetrieveFromCache(true)
+        }
+
+        requestManager
             .load(imageUrl)
             .diskCacheStrategy(if (cache) DiskCacheStrategy.AUTOMATIC else DiskCacheStrategy.NONE)
+            .thumbnail(thumbnail)
             .listener(object : RequestListener<Drawable> {
                 override fun onLoadFailed(
                     e: GlideException?,
@@ -3,7 +3,6 @@ package com.example.hakonsreader.activities
 import android.content.Intent
 import android.content.res.Configuration
 import android.content.res.Resources
-import android.graphics.Bitmap
 import android.os.Bundle
 import android.view.View
 import android.view.View.GONE
@@ -21,7 +20,6 @@ import com.example.hakonsreader.api.enums.PostType
 import com.example.hakonsreader.api.interfaces.ReplyableListing
 import com.example.hakonsreader.api.model.RedditComment
 import com.example.hakonsreader.api.model.RedditPost
-import com.example.hakonsreader.constants.SharedPreferencesConstants
 import com.example.hakonsreader.databinding.ActivityPostBinding
 import com.example.hakonsreader.interfaces.OnReplyListener
 import com.example.hakonsreader.misc.Settings
@@ -32,6 +30,7 @@ import com.example.hakonsreader.viewmodels.CommentsViewModel
 import com.example.hakonsreader.views.Content
 import com.example.hakonsreader.views.ContentVideo
 import com.example.hakonsreader.views.VideoPlayer
+import com.example.hakonsreader.views.util.ImageRequestKey
 import com.example.hakonsreader.views.util.goneIf
 import com.google.android.material.snackbar.BaseTransientBottomBar.LENGTH_SHORT
 import com.google.android.material.snackbar.Snackbar
@@ -91,23 +90,15 @@ class PostActivity : BaseActivity(), OnReplyListener {
          */
         const val EXTRAS_COMMENT_ID_CHAIN = "extras_PostActivity_commentIdChain"
 
-
         /**
-         * A Bitmap which can be used to hold an already loaded image. This should be set just before the
-         * activity is started and will be nulled when the activity finishes
+         * The key used to tell the image of the post that has already been loaded (eg. in a list of posts).
+         * The image is shown from the memory cache while the content of the post loads
+         *
+         * The value with this key should be a [Bundle] created with [ImageRequestKey.toBundle]
          */
-        var BITMAP: BitmapWrapper? = null
+        const val EXTRAS_LOADED_IMAGE = "extras_PostActivity_loadedImage"
     }
 
-    /**
-     * Wrapper for passing a bitmap to [PostActivity] that ensures a bitmap is connected to the
-     * post it is meant to, in case a new [PostActivity] is opened through the comments
-     */
-    class BitmapWrapper(
-        val bitmap: Bitmap,
-        val postId: String
-    )
-
 
     @Inject
     lateinit var api: RedditApi
@@ -230,12 +221,6 @@ class PostActivity : BaseActivity(), OnReplyListener {
         // Sometimes video posts flash for a split second when closed by sliding away with Slidr
         // Setting the alpha to 0 "fixes" it as the view wont be visible
         binding.root.alpha = 0f
-
-        post?.let {
-            if (it.id == BITMAP?.postId) {
-                BITMAP = null
-            }
-        }
     }
 
     /**
@@ -290,8 +275,6 @@ class PostActivity : BaseActivity(), OnReplyListener {
      */
     private fun setupCommentsViewModel() {
         with (commentsViewModel) {
-            preferences = getSharedPreferences(SharedPreferencesConstants.PREFS_NAME_POST_OPENED, MODE_PRIVATE)
-
             commentUpdatedCallback = { position ->
                 (binding.comments.adapter as CommentsAdapter).notifyItemChanged(position)
             }
@@ -402,9 +385,7 @@ class PostActivity : BaseActivity(), OnReplyListener {
      * @see updatePostInfo
      */
     private fun onPostLoaded(newPost: RedditPost, extras: Bundle? = null) {
-        if (newPost.id == BITMAP?.postId) {
-            binding.post.bitmap = BITMAP?.bitmap
-        }
+        binding.post.loadedImage = ImageRequestKey.fromBundle(intent.extras?.getBundle(EXTRAS_LOADED_IMAGE))
 
         binding.setPost(newPost)
 
@@ -475,12 +456,8 @@ class PostActivity : BaseActivity(), OnReplyListener {
 
                     // Normally true, but might be ContentPostRemoved
                     if (content is ContentVideo) {
-                        // If a thumbnail was passed to the activity it will be used as the thumbnail during
-                        // the transition
-                        // Otherwise we should love the default thumbnail
-                        if (BITMAP == null) {
-                            content.loadThumbnail()
-                        }
+                        // The thumbnail is usually still in the memory cache from the list of posts
+                        content.loadThumbnail()
 
                         content.setOnVideoFullscreenListener { contentVideo ->
                             val intent = Intent(this, VideoActivity::class.java).apply {
@@ -19,6 +19,7 @@ import com.example.hakonsreader.api.model.RedditPost
 import com.example.hakonsreader.api.model.Submission
 import com.example.hakonsreader.api.model.Subreddit
 import com.example.hakonsreader.api.model.flairs.RedditFlair
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditFlairsDao
 import com.example.hakonsreader.api.persistence.RedditPostsDao
 import com.example.hakonsreader.api.persistence.RedditSubredditsDao
@@ -77,6 +78,9 @@ class SubmitActivity : BaseActivity() {
     @Inject
     lateinit var postsDao: RedditPostsDao
 
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
     @Inject
     lateinit var flairsDao: RedditFlairsDao
 
@@ -158,7 +162,8 @@ class SubmitActivity : BaseActivity() {
                 subredditName,
                 api,
                 subredditsDao,
-                postsDao
+                postsDao,
+                writeQueue
         )).get(SubredditViewModel::class.java).apply {
             subreddit.observe(this@SubmitActivity) {
                 // If this is null then it should probably be reflected on the subreddit field in the fragment?
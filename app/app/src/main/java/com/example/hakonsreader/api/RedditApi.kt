@@ -210,6 +210,10 @@ interface RedditApi {
          *
          * @param loggerLevel The [HttpLoggingInterceptor.Level] to use for logging of the API calls
          *
+         * @param httpClient The client the HTTP clients used by the API are created from. The clients
+         * share the connection pool and dispatcher of this client, so this can be used to share connections
+         * with other network traffic in the application. If this is null a new client is used
+         *
          * @throws IllegalStateException If [userAgent] or [clientId] is empty
          */
         fun create(
@@ -231,10 +235,13 @@ interface RedditApi {
 
                 thirdPartyOptions: ThirdPartyOptions = ThirdPartyOptions(),
 
-                loggerLevel: HttpLoggingInterceptor.Level? = null
+                loggerLevel: HttpLoggingInterceptor.Level? = null,
+
+                httpClient: OkHttpClient? = null
         ) : RedditApi {
             return RedditApiImpl(userAgent, clientId, accessToken, onNewToken, onInvalidToken, callbackUrl,
-                    deviceId, imgurClientId, cache, cacheAge, thirdPartyCache, thirdPartyCacheAge, thirdPartyOptions, loggerLevel)
+                    deviceId, imgurClientId, cache, cacheAge, thirdPartyCache, thirdPartyCacheAge, thirdPartyOptions,
+                    loggerLevel, httpClient ?: OkHttpClient())
         }
     }
 
@@ -371,6 +378,8 @@ private class RedditApiImpl constructor(
         override val thirdPartyOptions: ThirdPartyOptions,
 
         private val loggerLevel: HttpLoggingInterceptor.Level? = null,
+
+        private val httpClient: OkHttpClient,
 ) : RedditApi {
 
     /**
@@ -482,7 +491,7 @@ private class RedditApiImpl constructor(
         }
 
         // Http client for API calls that use an access token as the authorization
-        val redditClient = OkHttpClient.Builder()
+        val redditClient = httpClient.newBuilder()
                 // Automatically refresh access token on authentication errors (401)
                 .authenticator(Authenticator())
                 // Add User-Agent header to every request
@@ -520,7 +529,7 @@ private class RedditApiImpl constructor(
         }
 
         if (!imgurClientId.isNullOrBlank()) {
-            val imgurClient = OkHttpClient.Builder()
+            val imgurClient = httpClient.newBuilder()
                     .addInterceptor { chain ->
                         val request = chain.request().newBuilder()
                                 .header("Authorization", "Client-ID $imgurClientId")
@@ -542,7 +551,7 @@ private class RedditApiImpl constructor(
                     }
         }
 
-        val gfycatClient = OkHttpClient.Builder()
+        val gfycatClient = httpClient.newBuilder()
                 .addInterceptor(thirdPartyCacheInterceptor)
                 .cache(thirdPartyCache)
                 .addInterceptor(logger)
@@ -558,7 +567,7 @@ private class RedditApiImpl constructor(
 
         // Http client for OAuth related API calls (such as retrieving access tokens)
         // The service created with this is for "RedditApi.accessToken()"
-        val oauthClient = OkHttpClient.Builder()
+        val oauthClient = httpClient.newBuilder()
                 .addInterceptor(BasicAuthInterceptor(basicAuthHeader))
                 // Logger has to be at the end or else it won't log what has been added before
                 .addInterceptor(logger)
@@ -2,6 +2,7 @@ package com.example.hakonsreader.api.model
 
 import androidx.room.Entity
 import androidx.room.Ignore
+import androidx.room.Index
 import androidx.room.TypeConverters
 import com.example.hakonsreader.api.enums.PostType
 import com.example.hakonsreader.api.interfaces.*
@@ -21,7 +22,7 @@ import com.google.gson.annotations.SerializedName
 import com.google.gson.internal.LinkedTreeMap
 
 
-@Entity(tableName = "posts")
+@Entity(tableName = "posts", indices = [Index(value = ["insertedAt"])])
 @TypeConverters(PostConverter::class)
 class RedditPost : RedditListing(),
         VoteableListing,
@@ -1,14 +1,26 @@
 package com.example.hakonsreader.api.model
 
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Ignore
+import androidx.room.Index
 import com.google.gson.annotations.SerializedName
 
+@Entity(tableName = "subreddit_wiki_pages", primaryKeys = ["subreddit", "pageName"], indices = [Index(value = ["insertedAt"])])
 class SubredditWikiPage {
 
     /**
-     * The subreddit the wiki page is for
+     * The subreddit the wiki page is for. Subreddit names are case insensitive, so the same page is
+     * stored once regardless of the casing it was loaded with
      */
+    @ColumnInfo(collate = ColumnInfo.NOCASE)
     var subreddit: String = ""
 
+    /**
+     * The name of the wiki page, such as "index" or "rules/posting"
+     */
+    var pageName: String = ""
+
     /**
      * The ID of the revision of the wiki page
      */
@@ -22,8 +34,14 @@ class SubredditWikiPage {
     var content: String = ""
 
     /**
-     * The content of the wiki page in HTML
+     * The Unix timestamp (in seconds) the page was last loaded and stored in the database
+     */
+    var insertedAt = System.currentTimeMillis() / 1000
+
+    /**
+     * The content of the wiki page in HTML. This is not stored in the database
      */
+    @Ignore
     @SerializedName("content_html")
     var contentHtml: String? = null
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+package com.example.hakonsreader.api.persistence
+
+import android.util.Log
+import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.api.model.Subreddit
+import kotlinx.coroutines.*
+import kotlinx.coroutines.Dispatchers.IO
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+
+/**
+ * Write-behind queue for posts and subreddits. Writes are held in memory and coalesced per
+ * primary key, so that if the same post is written multiple times before the queue is flushed
+ * only the last version is written. All pending writes are flushed in a single transaction.
+ *
+ * The queue is flushed [flushDelay] milliseconds after the first write after a flush, or
+ * when [flushAsync]/[flush] is called (eg. when an activity is paused).
+ *
+ * Code that reads records that might have pending writes (and then writes them back) should call
+ * [flush] before reading, otherwise the record read might not include the pending changes. Writes that
+ * don't go through the queue should use [writeAfterFlush]
+ *
+ * @param database The database to write to
+ * @param flushDelay The amount of milliseconds to wait after a write before flushing the queue
+ */
+class DatabaseWriteQueue(
+        private val database: RedditDatabase,
+        private val flushDelay: Long = DEFAULT_FLUSH_DELAY
+) {
+
+    companion object {
+        private const val TAG = "DatabaseWriteQueue"
+
+        /**
+         * The default amount of milliseconds to wait after a write before flushing the queue
+         */
+        const val DEFAULT_FLUSH_DELAY = 500L
+    }
+
+    /**
+     * A pending write for a record
+     *
+     * @param value The value to write
+     * @param insert True if the record should be inserted (replacing any existing record), false
+     * if an existing record should be updated
+     */
+    private class PendingWrite<T>(val value: T, val insert: Boolean)
+
+    private val lock = Any()
+    private val flushMutex = Mutex()
+    private val scope = CoroutineScope(SupervisorJob() + IO + CoroutineExceptionHandler { _, throwable ->
+        // The writes of a failed flush are lost, but this shouldn't crash the app, and later writes can still be flushed
+        Log.e(TAG, "Failed to flush pending writes", throwable)
+    })
+
+    private var pendingPosts = LinkedHashMap<String, PendingWrite<RedditPost>>()
+    private var pendingSubreddits = LinkedHashMap<String, PendingWrite<Subreddit>>()
+    private var flushJob: Job? = null
+
+    /**
+     * Queues posts to be inserted. If a post already exists it is replaced
+     *
+     * @param posts The posts to insert
+     */
+    fun insertPosts(posts: List<RedditPost>) {
+        synchronized(lock) {
+            posts.forEach { pendingPosts[it.id] = PendingWrite(it, insert = true) }
+        }
+        scheduleFlush()
+    }
+
+    /**
+     * Queues a post to be updated
+     *
+     * @param post The post to update
+     */
+    fun updatePost(post: RedditPost) {
+        updatePosts(listOf(post))
+    }
+
+    /**
+     * Queues posts to be updated
+     *
+     * @param posts The posts to update
+     */
+    fun updatePosts(posts: List<RedditPost>) {
+        synchronized(lock) {
+            posts.forEach { queue(pendingPosts, it.id, it) }
+        }
+        scheduleFlush()
+    }
+
+    /**
+     * Queues a subreddit to be inserted. If the subreddit already exists it is replaced
+     *
+     * @param subreddit The subreddit to insert
+     */
+    fun insertSubreddit(subreddit: Subreddit) {
+        synchronized(lock) {
+            pendingSubreddits[subreddit.id] = PendingWrite(subreddit, insert = true)
+        }
+        scheduleFlush()
+    }
+
+    /**
+     * Queues a subreddit to be updated
+     *
+     * @param subreddit The subreddit to update
+     */
+    fun updateSubreddit(subreddit: Subreddit) {
+        synchronized(lock) {
+            queue(pendingSubreddits, subreddit.id, subreddit)
+        }
+        scheduleFlush()
+    }
+
+    /**
+     * Queues an update for a record. If an insert is already pending for the record the write
+     * is kept as an insert, as the record might not exist yet
+     */
+    private fun <T> queue(pending: MutableMap<String, PendingWrite<T>>, id: String, value: T) {
+        pending[id] = PendingWrite(value, insert = pending[id]?.insert == true)
+    }
+
+    /**
+     * Starts a delayed flush, if one isn't already started
+     */
+    private fun scheduleFlush() {
+        synchronized(lock) {
+            if (flushJob?.isActive == true) {
+                return
+            }
+
+            flushJob = scope.launch {
+                delay(flushDelay)
+                flush()
+            }
+        }
+    }
+
+    /**
+     * Flushes all pending writes without waiting for the writes to finish
+     */
+    fun flushAsync() {
+        scope.launch {
+            flush()
+        }
+    }
+
+    /**
+     * Writes all pending writes to the database in one transaction
+     */
+    suspend fun flush() = withContext(IO) {
+        // Flushes are serialized so that an older version of a record can't be written after a newer one
+        flushMutex.withLock {
+            writePending()
+        }
+    }
+
+    /**
+     * Flushes all pending writes, and then runs a write that can't be queued (such as an update of
+     * specific columns) before any writes queued later are flushed. Direct writes to posts or subreddits
+     * must go through this, otherwise a pending write of an older version of the record would overwrite it
+     *
+     * @param write The write to run
+     * @return The value returned by [write]
+     */
+    suspend fun <T> writeAfterFlush(write: () -> T): T = withContext(IO) {
+        flushMutex.withLock {
+            writePending()
+            write()
+        }
+    }
+
+    /**
+     * Removes all pending writes and clears user state from the records in the database (see [RedditDatabase.clearUserState]).
+     * The pending writes hold the state of the user that is no longer active (such as vote status on posts),
+     * so they must not be written after the state has been cleared
+     */
+    suspend fun clearUserState() = withContext(IO) {
+        flushMutex.withLock {
+            synchronized(lock) {
+                pendingPosts = LinkedHashMap()
+                pendingSubreddits = LinkedHashMap()
+
+                flushJob?.cancel()
+                flushJob = null
+            }
+
+            database.clearUserState()
+        }
+    }
+
+    /**
+     * Writes all pending writes in one transaction. This must only be called while holding [flushMutex]
+     */
+    private fun writePending() {
+        val posts: Map<String, PendingWrite<RedditPost>>
+        val subreddits: Map<String, PendingWrite<Subreddit>>
+
+        synchronized(lock) {
+            posts = pendingPosts
+            subreddits = pendingSubreddits
+            pendingPosts = LinkedHashMap()
+            pendingSubreddits = LinkedHashMap()
+
+            // Writes queued after this point must schedule a new flush
+            flushJob = null
+        }
+
+        if (posts.isEmpty() && subreddits.isEmpty()) {
+            return
+        }
+
+        database.runInTransaction {
+            val (postInserts, postUpdates) = posts.values.partition { it.insert }
+            database.posts().insertAll(postInserts.map { it.value })
+            database.posts().updateAll(postUpdates.map { it.value })
+
+            val (subredditInserts, subredditUpdates) = subreddits.values.partition { it.insert }
+            database.subreddits().insertAll(subredditInserts.map { it.value })
+            database.subreddits().updateAll(subredditUpdates.map { it.value })
+        }
+
+        Log.d(TAG, "flush: # of posts=${posts.size}; # of subreddits=${subreddits.size}")
+    }
+}
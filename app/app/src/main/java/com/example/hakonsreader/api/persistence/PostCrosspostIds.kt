@@ -0,0 +1,14 @@
+package com.example.hakonsreader.api.persistence
+
+import com.example.hakonsreader.api.model.RedditPost
+
+/**
+ * Holds the crosspost IDs stored on a post, without loading the rest of the post
+ *
+ * @param id The ID of the post
+ * @param crosspostIds The IDs of the crossposts of the post, see [RedditPost.crosspostIds]
+ */
+data class PostCrosspostIds(
+        val id: String,
+        val crosspostIds: List<String>?
+)
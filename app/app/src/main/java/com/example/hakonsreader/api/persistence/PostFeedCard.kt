@@ -0,0 +1,58 @@
+package com.example.hakonsreader.api.persistence
+
+import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.api.model.flairs.RichtextFlair
+
+/**
+ * Projection of the values of a [RedditPost] that can change while the post is shown in a feed
+ * (such as the score and vote). This can be observed instead of the full post, which avoids loading
+ * the selftext, preview, media metadata, awards and so on every time the posts are updated
+ */
+data class PostFeedCard(
+        val id: String,
+        val score: Int,
+        val isScoreHidden: Boolean,
+        val liked: Boolean?,
+        val amountOfComments: Int,
+        val isSaved: Boolean,
+        val isLocked: Boolean,
+        val isStickied: Boolean,
+        val isNsfw: Boolean,
+        val isSpoiler: Boolean,
+        val distinguished: String?,
+        val authorFlairText: String?,
+        val authorFlairTextColor: String?,
+        val authorFlairBackgroundColor: String?,
+        val authorRichtextFlairs: ArrayList<RichtextFlair>?,
+        val linkFlairText: String?,
+        val linkFlairTextColor: String?,
+        val linkFlairBackgroundColor: String?,
+        val linkRichtextFlairs: ArrayList<RichtextFlair>?
+) {
+
+    /**
+     * Copies the values of the projection onto a post
+     *
+     * @param post The post to copy to. This should be the post with the same ID as this projection
+     */
+    fun applyTo(post: RedditPost) {
+        post.score = score
+        post.isScoreHidden = isScoreHidden
+        post.liked = liked
+        post.amountOfComments = amountOfComments
+        post.isSaved = isSaved
+        post.isLocked = isLocked
+        post.isStickied = isStickied
+        post.isNsfw = isNsfw
+        post.isSpoiler = isSpoiler
+        post.distinguished = distinguished
+        post.authorFlairText = authorFlairText
+        post.authorFlairTextColor = authorFlairTextColor
+        post.authorFlairBackgroundColor = authorFlairBackgroundColor
+        post.authorRichtextFlairs = authorRichtextFlairs ?: ArrayList()
+        post.linkFlairText = linkFlairText
+        post.linkFlairTextColor = linkFlairTextColor
+        post.linkFlairBackgroundColor = linkFlairBackgroundColor
+        post.linkRichtextFlairs = linkRichtextFlairs ?: ArrayList()
+    }
+}
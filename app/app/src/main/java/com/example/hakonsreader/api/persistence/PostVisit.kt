@@ -0,0 +1,21 @@
+package com.example.hakonsreader.api.persistence
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Holds information about when a post was last opened by the user
+ *
+ * @param postId The ID of the post
+ * @param lastOpened The Unix timestamp (in seconds) the post was last opened
+ * @param lastSeenCommentCount The amount of comments the post had when it was last opened, or -1
+ * if not known
+ */
+@Entity(tableName = "post_visits", indices = [Index(value = ["lastOpened"])])
+data class PostVisit(
+        @PrimaryKey
+        val postId: String,
+        val lastOpened: Long,
+        val lastSeenCommentCount: Int
+)
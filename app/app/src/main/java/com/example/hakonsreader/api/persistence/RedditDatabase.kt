@@ -11,13 +11,15 @@ import com.example.hakonsreader.api.model.flairs.RedditFlair
 /**
  * The global database for the application, holds [RedditPost] and [Subreddit] entities
  */
-@Database(version = 28, exportSchema = false,
+@Database(version = 31, exportSchema = false,
         entities = [
             RedditPost::class,
             Subreddit::class,
             SubredditRule::class,
             RedditMessage::class,
             RedditFlair::class,
+            PostVisit::class,
+            SubredditWikiPage::class,
         ]
 )
 @TypeConverters(PostConverter::class, EnumConverters::class)
@@ -28,6 +30,8 @@ abstract class RedditDatabase : RoomDatabase() {
     abstract fun messages(): RedditMessagesDao
     abstract fun rules(): RedditSubredditRulesDao
     abstract fun flairs(): RedditFlairsDao
+    abstract fun postVisits(): RedditPostVisitsDao
+    abstract fun wikiPages(): RedditWikiPagesDao
 
     /**
      * Clears user state from any records in the database
@@ -35,11 +39,17 @@ abstract class RedditDatabase : RoomDatabase() {
      *
      * This effectively converts the records into what would be returned for non-logged in users.
      * For example, all posts will convert [RedditPost.getVoteType] to [com.example.hakonsreader.api.enums.VoteType.NO_VOTE]
+     *
+     * Use [DatabaseWriteQueue.clearUserState] instead of calling this directly, otherwise pending writes
+     * with the previous user state would be written after this
      */
     fun clearUserState() {
         posts().clearUserState()
         subreddits().clearUserState()
         messages().deleteAll()
+
+        // Pages of private subreddits might only be visible to the user
+        wikiPages().deleteAll()
     }
 
     companion object {
@@ -0,0 +1,54 @@
+package com.example.hakonsreader.api.persistence
+
+import androidx.room.*
+
+/**
+ * Interface to store when posts were last opened in a persistent Room database
+ */
+@Dao
+interface RedditPostVisitsDao {
+
+    /**
+     * Inserts a post visit into the database. If a visit is already stored for the post it is replaced
+     *
+     * @param visit The visit to insert
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insert(visit: PostVisit)
+
+    /**
+     * Inserts a list of post visits into the database. If a visit is already stored for a post it is replaced
+     *
+     * @param visits The visits to insert
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insertAll(visits: List<PostVisit>)
+
+    /**
+     * Retrieves the visit for a post
+     *
+     * @param postId The ID of the post to retrieve the visit for
+     * @return The visit, or null if the post has not been opened (or the visit has been removed)
+     */
+    @Query("SELECT * FROM post_visits WHERE postId=:postId")
+    fun get(postId: String): PostVisit?
+
+    /**
+     * Retrieves the visits for a list of posts
+     *
+     * @param postIds The IDs of the posts to retrieve visits for
+     * @return A list of visits for the posts that have been opened
+     */
+    @Query("SELECT * FROM post_visits WHERE postId IN (:postIds)")
+    fun getByIds(postIds: List<String>): List<PostVisit>
+
+    /**
+     * Deletes visits that were opened before a given timestamp
+     *
+     * @param cutoff The Unix timestamp (in seconds) the post must have been opened before
+     * @param limit The maximum amount of visits to delete
+     * @return The amount of visits deleted
+     */
+    @Query("DELETE FROM post_visits WHERE postId IN (SELECT postId FROM post_visits WHERE lastOpened < :cutoff LIMIT :limit)")
+    fun deleteOpenedBefore(cutoff: Long, limit: Int): Int
+}
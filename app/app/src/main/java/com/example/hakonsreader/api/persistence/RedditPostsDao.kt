@@ -3,6 +3,7 @@ package com.example.hakonsreader.api.persistence
 import androidx.lifecycle.LiveData
 import androidx.room.*
 import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.api.model.flairs.RichtextFlair
 
 @Dao
 interface RedditPostsDao {
@@ -60,12 +61,33 @@ interface RedditPostsDao {
     fun deleteAll(): Int
 
     /**
-     * Delete posts from the database that are older than the given age
+     * Deletes posts from the database based on a list of IDs
      *
+     * @param ids The IDs of the posts to delete
      * @return The amount of posts deleted
      */
-    @Query("DELETE FROM posts WHERE insertedAt + :maxAge - strftime('%s', 'now') < 0")
-    fun deleteOld(maxAge: Long): Int
+    @Query("DELETE FROM posts WHERE id IN (:ids)")
+    fun deleteById(ids: List<String>): Int
+
+    /**
+     * Retrieves the IDs of posts that were inserted before a given timestamp. This uses the index
+     * on [RedditPost.insertedAt], so it should be preferred over comparing computed values
+     *
+     * @param cutoff The Unix timestamp (in seconds) posts must have been inserted before
+     * @param limit The maximum amount of IDs to return
+     * @return A list of IDs of posts older than [cutoff]
+     */
+    @Query("SELECT id FROM posts WHERE insertedAt < :cutoff LIMIT :limit")
+    fun getIdsInsertedBefore(cutoff: Long, limit: Int): List<String>
+
+    /**
+     * Retrieves the crosspost IDs stored on a list of posts
+     *
+     * @param ids The IDs of the posts to retrieve crosspost IDs for
+     * @return A list of [PostCrosspostIds] for the posts with [RedditPost.crosspostIds] set
+     */
+    @Query("SELECT id, crosspostIds FROM posts WHERE id IN (:ids) AND crosspostIds IS NOT NULL")
+    fun getCrosspostIds(ids: List<String>): List<PostCrosspostIds>
 
 
     /**
@@ -121,6 +143,31 @@ interface RedditPostsDao {
     @Query("UPDATE posts SET liked=null")
     fun clearUserState()
 
-    @Query("SELECT * FROM posts WHERE author=:username")
-    fun getPostsByUser(username: String) : List<RedditPost>
+    /**
+     * Retrieves the feed values of a post. Use this instead of [getPostById] when only the values
+     * that can change while the post is shown are needed
+     *
+     * @param id The ID of the post to retrieve
+     * @return A LiveData that can be observed for the values
+     */
+    @Query("""SELECT id, score, isScoreHidden, liked, amountOfComments, isSaved, isLocked, isStickied, isNsfw, isSpoiler, distinguished,
+            authorFlairText, authorFlairTextColor, authorFlairBackgroundColor, authorRichtextFlairs,
+            linkFlairText, linkFlairTextColor, linkFlairBackgroundColor, linkRichtextFlairs
+            FROM posts WHERE id=:id""")
+    fun getFeedCardById(id: String): LiveData<PostFeedCard?>
+
+    /**
+     * Updates the author flair on all posts by a user
+     *
+     * @param username The username of the author
+     * @param text The text of the flair
+     * @param textColor The text color of the flair
+     * @param backgroundColor The background color of the flair
+     * @param richtextFlairs The richtext flairs the flair is combined of
+     * @return The amount of posts updated
+     */
+    @Query("""UPDATE posts SET authorFlairText=:text, authorFlairTextColor=:textColor,
+            authorFlairBackgroundColor=:backgroundColor, authorRichtextFlairs=:richtextFlairs
+            WHERE author=:username""")
+    fun updateAuthorFlair(username: String, text: String?, textColor: String?, backgroundColor: String?, richtextFlairs: List<RichtextFlair>): Int
 }
\ No newline at end of file
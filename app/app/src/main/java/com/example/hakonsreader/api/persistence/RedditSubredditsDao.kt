@@ -34,6 +34,14 @@ interface RedditSubredditsDao {
     @Update
     fun update(subreddit: Subreddit)
 
+    /**
+     * Updates a list of subreddits
+     *
+     * @param subreddits The subreddits with new information
+     */
+    @Update
+    fun updateAll(subreddits: List<Subreddit>)
+
     /**
      * @return A list of all subreddits stored
      */
@@ -0,0 +1,46 @@
+package com.example.hakonsreader.api.persistence
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.example.hakonsreader.api.model.SubredditWikiPage
+
+@Dao
+interface RedditWikiPagesDao {
+    /**
+     * Inserts a wiki page. If the page is already stored, it is replaced
+     *
+     * @param page The page to insert
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insert(page: SubredditWikiPage)
+
+    /**
+     * Retrieves a stored wiki page
+     *
+     * @param subreddit The name of the subreddit the page is for
+     * @param pageName The name of the page
+     * @return The stored page, or null if the page isn't stored
+     */
+    @Query("SELECT * FROM subreddit_wiki_pages WHERE subreddit=:subreddit AND pageName=:pageName")
+    fun get(subreddit: String, pageName: String): SubredditWikiPage?
+
+    /**
+     * Deletes pages that were stored before a given timestamp
+     *
+     * @param cutoff The Unix timestamp (in seconds) the page must have been stored before
+     * @param limit The maximum amount of pages to delete
+     * @return The amount of pages deleted
+     */
+    @Query("DELETE FROM subreddit_wiki_pages WHERE rowid IN (SELECT rowid FROM subreddit_wiki_pages WHERE insertedAt < :cutoff LIMIT :limit)")
+    fun deleteInsertedBefore(cutoff: Long, limit: Int): Int
+
+    /**
+     * Deletes all stored pages
+     *
+     * @return The amount of pages deleted
+     */
+    @Query("DELETE FROM subreddit_wiki_pages")
+    fun deleteAll(): Int
+}
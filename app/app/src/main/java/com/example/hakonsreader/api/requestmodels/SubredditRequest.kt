@@ -620,6 +620,7 @@ class SubredditRequestImpl(
             val body = response.body()?.data
             if (body != null) {
                 body.subreddit = subredditName
+                body.pageName = page
                 ApiResponse.Success(body)
             } else {
                 apiError(response)
@@ -0,0 +1,338 @@
+package com.example.hakonsreader.api.utils
+
+import java.io.UnsupportedEncodingException
+import java.net.URLDecoder
+
+/**
+ * What a link points to, as resolved by [LinkRouter]
+ */
+sealed class LinkRoute {
+
+    /**
+     * The front page of Reddit, eg. "https://reddit.com"
+     */
+    object FrontPage : LinkRoute()
+
+    /**
+     * A subreddit, eg. "https://reddit.com/r/GlobalOffensive"
+     *
+     * @param subreddit The name of the subreddit, lowercased
+     */
+    data class Subreddit(val subreddit: String) : LinkRoute()
+
+    /**
+     * A subreddit with a sort, eg. "https://reddit.com/r/GlobalOffensive/top?t=all"
+     *
+     * @param subreddit The name of the subreddit
+     * @param sort The sort (hot, new, top, controversial)
+     * @param timeSort The time sort, from the "t" query parameter
+     */
+    data class SubredditSort(val subreddit: String, val sort: String, val timeSort: String?) : LinkRoute()
+
+    /**
+     * The rules of a subreddit, eg. "https://reddit.com/r/GlobalOffensive/about/rules"
+     *
+     * @param subreddit The name of the subreddit
+     */
+    data class SubredditRules(val subreddit: String) : LinkRoute()
+
+    /**
+     * A user, eg. "https://reddit.com/u/hakonschia"
+     *
+     * @param username The username of the user
+     */
+    data class User(val username: String) : LinkRoute()
+
+    /**
+     * Sending a private message, eg. "https://reddit.com/message/compose?to=hakonschia&subject=hello"
+     *
+     * @param recipient The recipient of the message, from the "to" query parameter
+     * @param subject The subject of the message, from the "subject" query parameter
+     * @param message The message, from the "message" query parameter
+     */
+    data class ComposeMessage(val recipient: String?, val subject: String?, val message: String?) : LinkRoute()
+
+    /**
+     * A post, eg. "https://reddit.com/r/GlobalOffensive/comments/gwcxmm" or "https://redd.it/gwcxmm"
+     *
+     * @param postId The ID of the post
+     * @param commentChainId The ID of the comment chain linked to, if the link is to a comment chain
+     */
+    data class Post(val postId: String, val commentChainId: String? = null) : LinkRoute()
+
+    /**
+     * An image
+     *
+     * @param url The URL of the image
+     */
+    data class Image(val url: String) : LinkRoute()
+
+    /**
+     * A YouTube video, eg. "https://www.youtube.com/watch?v=90X5NJleYJQ" or "https://youtu.be/90X5NJleYJQ"
+     *
+     * @param videoId The ID of the video
+     * @param timestamp The timestamp to start the video at, from the "t" query parameter
+     */
+    data class YouTubeVideo(val videoId: String, val timestamp: String?) : LinkRoute()
+
+    /**
+     * A link not handled by the app
+     */
+    object External : LinkRoute()
+}
+
+/**
+ * A route for a Reddit link, with the path segments and query of the link. Returns null if the path
+ * doesn't match the route
+ */
+private typealias RedditRoute = (segments: List<String>, query: String?) -> LinkRoute?
+
+/**
+ * Resolves what a link points to
+ *
+ * The link is parsed once into its host, path segments and query, and links to Reddit are dispatched on
+ * the first path segment through a table of routes, instead of matching the entire link against a
+ * regex for every type of link. Links that aren't to Reddit, or to a Reddit path without a route, fall
+ * back to checking for images and YouTube videos
+ */
+object LinkRouter {
+
+    private val SUBREDDIT_NAME_REGEX = Regex("[A-Za-z0-9_]+")
+    private val USERNAME_REGEX = Regex("[A-Za-z0-9_-]+")
+
+    private val SUBREDDIT_SORTS = setOf("hot", "top", "new", "controversial")
+    private val IMAGE_EXTENSIONS = listOf(".png", ".jpeg", ".jpg")
+    private val IMAGE_FORMATS = setOf("png", "jpg", "jpeg")
+
+    /**
+     * The routes for links to Reddit, mapped to the first path segment (lowercased)
+     */
+    private val REDDIT_ROUTES: Map<String, RedditRoute> = HashMap<String, RedditRoute>().apply {
+        put("r", ::subredditRoute)
+        put("u", ::userRoute)
+        put("user", ::userRoute)
+        put("message", ::messageRoute)
+        put("comments", ::commentsRoute)
+    }
+
+
+    /**
+     * Resolves what a link points to
+     *
+     * @param url The link, with http or https
+     * @return The route of the link, or [LinkRoute.External] if the link isn't handled by the app
+     */
+    fun route(url: String): LinkRoute {
+        val parsed = ParsedUrl.parse(url) ?: return LinkRoute.External
+        val segments = parsed.segments
+
+        when {
+            isRedditHost(parsed.host) -> {
+                if (segments.isEmpty()) {
+                    return LinkRoute.FrontPage
+                }
+
+                REDDIT_ROUTES[segments[0].lowercase()]?.invoke(segments, parsed.query)?.let {
+                    return it
+                }
+            }
+
+            // Shortened links, the only path segment is the ID of the post (i.redd.it is for images)
+            parsed.host == "redd.it" || parsed.host == "www.redd.it" -> {
+                return if (segments.isEmpty()) {
+                    LinkRoute.FrontPage
+                } else {
+                    LinkRoute.Post(segments[0])
+                }
+            }
+        }
+
+        // Some links (like twitter images) don't end in ".png" but have "?format=png" so
+        // if the format parameter is an image format assume this is an image
+        val lastSegment = segments.lastOrNull() ?: ""
+        if (IMAGE_EXTENSIONS.any { lastSegment.length > it.length && lastSegment.endsWith(it) }
+                || IMAGE_FORMATS.contains(queryParameter(parsed.query, "format"))) {
+            return LinkRoute.Image(url)
+        }
+
+        youTubeRoute(parsed)?.let {
+            return it
+        }
+
+        return LinkRoute.External
+    }
+
+    /**
+     * Routes "r/<subreddit>", "r/<subreddit>/<sort>", "r/<subreddit>/about/rules" and
+     * "r/<subreddit>/comments/<postId>/<title>/<commentId>"
+     */
+    private fun subredditRoute(segments: List<String>, query: String?): LinkRoute? {
+        val subreddit = segments.getOrNull(1) ?: return null
+        if (!SUBREDDIT_NAME_REGEX.matches(subreddit)) {
+            return null
+        }
+
+        return when {
+            segments.size == 2 -> LinkRoute.Subreddit(subreddit.lowercase())
+            segments.size == 3 && segments[2] in SUBREDDIT_SORTS -> {
+                LinkRoute.SubredditSort(subreddit, segments[2], queryParameter(query, "t"))
+            }
+            segments.size == 4 && segments[2] == "about" && segments[3] == "rules" -> LinkRoute.SubredditRules(subreddit)
+            else -> postRoute(segments)
+        }
+    }
+
+    /**
+     * Routes "u/<username>" (or "user/<username>") and posts in user subreddits
+     */
+    @Suppress("UNUSED_PARAMETER")
+    private fun userRoute(segments: List<String>, query: String?): LinkRoute? {
+        val username = segments.getOrNull(1) ?: return null
+        if (!USERNAME_REGEX.matches(username)) {
+            return null
+        }
+
+        return if (segments.size == 2) {
+            LinkRoute.User(username)
+        } else {
+            postRoute(segments)
+        }
+    }
+
+    /**
+     * Routes "message/compose?to=<recipient>&subject=<subject>&message=<message>"
+     */
+    private fun messageRoute(segments: List<String>, query: String?): LinkRoute? {
+        return if (segments.getOrNull(1) == "compose") {
+            LinkRoute.ComposeMessage(
+                    queryParameter(query, "to"),
+                    queryParameter(query, "subject"),
+                    queryParameter(query, "message")
+            )
+        } else null
+    }
+
+    /**
+     * Routes "comments/<postId>/<title>/<commentId>"
+     */
+    @Suppress("UNUSED_PARAMETER")
+    private fun commentsRoute(segments: List<String>, query: String?): LinkRoute? {
+        val postId = segments.getOrNull(1) ?: return null
+        return LinkRoute.Post(postId, segments.getOrNull(3))
+    }
+
+    /**
+     * Routes "<r or u>/<name>/comments/<postId>/<title>/<commentId>"
+     */
+    private fun postRoute(segments: List<String>): LinkRoute? {
+        return if (segments.size >= 4 && segments[2] == "comments") {
+            LinkRoute.Post(segments[3], segments.getOrNull(5))
+        } else null
+    }
+
+    /**
+     * Routes "youtube.com/watch?v=<videoId>" and "youtu.be/<videoId>"
+     */
+    private fun youTubeRoute(parsed: ParsedUrl): LinkRoute? {
+        val host = parsed.host
+        val videoId = when {
+            host == "youtube.com" || host.endsWith(".youtube.com") -> queryParameter(parsed.query, "v")
+            host == "youtu.be" || host == "www.youtu.be" -> parsed.segments.firstOrNull()
+            else -> null
+        }
+
+        return if (!videoId.isNullOrEmpty()) {
+            LinkRoute.YouTubeVideo(videoId, queryParameter(parsed.query, "t"))
+        } else null
+    }
+
+    private fun isRedditHost(host: String) = host == "reddit.com" || host.endsWith(".reddit.com")
+
+    /**
+     * Gets the decoded value of a query parameter
+     *
+     * @param query The query of the link (without "?")
+     * @param name The name of the parameter
+     * @return The value of the first parameter with the name, an empty string if the parameter has no
+     * value, or null if the parameter isn't in the query
+     */
+    private fun queryParameter(query: String?, name: String): String? {
+        if (query.isNullOrEmpty()) {
+            return null
+        }
+
+        for (parameter in query.split('&')) {
+            val separator = parameter.indexOf('=')
+            val key = if (separator == -1) parameter else parameter.substring(0, separator)
+
+            if (decode(key) == name) {
+                return if (separator == -1) "" else decode(parameter.substring(separator + 1))
+            }
+        }
+
+        return null
+    }
+
+    /**
+     * Decodes percent-encoded characters. "+" is not decoded to a space, as with Android's `Uri`
+     */
+    private fun decode(value: String): String {
+        if (value.indexOf('%') == -1) {
+            return value
+        }
+
+        return try {
+            URLDecoder.decode(value.replace("+", "%2B"), "UTF-8")
+        } catch (e: IllegalArgumentException) {
+            // Invalid encoding, such as a "%" not followed by two hex digits
+            value
+        } catch (e: UnsupportedEncodingException) {
+            value
+        }
+    }
+
+    /**
+     * A link parsed into the parts the routes use
+     *
+     * @param host The host, lowercased
+     * @param segments The decoded, non-empty, path segments
+     * @param query The query, without "?", or null if there is no query
+     */
+    private class ParsedUrl(val host: String, val segments: List<String>, val query: String?) {
+        companion object {
+            /**
+             * Parses a link
+             *
+             * @return The parsed link, or null if the link doesn't have a http or https scheme
+             */
+            fun parse(url: String): ParsedUrl? {
+                val schemeEnd = url.indexOf("://")
+                if (schemeEnd == -1) {
+                    return null
+                }
+                val scheme = url.substring(0, schemeEnd)
+                if (!scheme.equals("http", ignoreCase = true) && !scheme.equals("https", ignoreCase = true)) {
+                    return null
+                }
+
+                val authorityStart = schemeEnd + 3
+                val fragmentStart = url.indexOf('#', authorityStart).let { if (it == -1) url.length else it }
+                val queryStart = url.indexOf('?', authorityStart).let { if (it == -1 || it > fragmentStart) fragmentStart else it }
+                val pathStart = url.indexOf('/', authorityStart).let { if (it == -1 || it > queryStart) queryStart else it }
+
+                // Remove user info and port from the authority to get the host
+                val authority = url.substring(authorityStart, pathStart)
+                val host = authority.substringAfterLast('@').substringBefore(':').lowercase()
+
+                val segments = url.substring(pathStart, queryStart)
+                        .split('/')
+                        .filter { it.isNotEmpty() }
+                        .map { decode(it) }
+
+                val query = if (queryStart < fragmentStart) url.substring(queryStart + 1, fragmentStart) else null
+
+                return ParsedUrl(host, segments, query)
+            }
+        }
+    }
+}
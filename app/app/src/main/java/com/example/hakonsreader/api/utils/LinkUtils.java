@@ -1,5 +1,6 @@
 package com.example.hakonsreader.api.utils;
 
+import java.util.regex.Pattern;
 
 /**
  * Utility class that contains various regex matchers and functions to deal with common problems for
@@ -151,6 +152,9 @@ public final class LinkUtils {
      */
     public static final String GIF_REGEX = "^.*(gif(v)?)$";
 
+    private static final Pattern IMGUR_IMAGE_PATTERN = Pattern.compile(IMGUR_IMAGE_REGEX);
+    private static final Pattern GIF_PATTERN = Pattern.compile(GIF_REGEX);
+
     private LinkUtils() {}
 
 
@@ -162,12 +166,12 @@ public final class LinkUtils {
      * @return The converted URL. If it couldn't be converted the original URL is returned
      */
     public static String convertToDirectUrl(String url) {
-        if (url.matches(IMGUR_IMAGE_REGEX)) {
+        if (IMGUR_IMAGE_PATTERN.matcher(url).matches()) {
             return url + ".png";
         }
 
         // Replace .gif or .gifv with .mp4
-        if (url.matches(GIF_REGEX)) {
+        if (GIF_PATTERN.matcher(url).matches()) {
             String u = url.replace("gifv", "mp4");
             u = u.replace("gif", "mp4");
 
@@ -1,10 +1,6 @@
 package com.example.hakonsreader.api.utils;
 
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,20 +8,45 @@ import java.util.regex.Pattern;
 /**
  * Class for adjusting some generic Reddit markdown faults
  *
+ * <p>The markdown is adjusted in one pass, line by line. Text in code blocks (fenced with ``` or ~~~)
+ * and in code spans (`code`) is never adjusted</p>
+ *
  * <p>Use {@link MarkdownAdjuster.Builder} to create new objects</p>
  */
 public class MarkdownAdjuster {
-    private static final String IMAGE_LINK_PATTERN =
-            "(^|\\s)https://" +
+
+    /**
+     * Matches a URL pointing to an image. This is matched against a word (ie. no whitespace) starting
+     * with "https://"
+     */
+    private static final Pattern IMAGE_LINK_PATTERN = Pattern.compile(
+            "https://" +
             // This will somewhat limit the URL correctly as it requires a slash before the image format
-            ".*/.*" +
+            "\\S*/\\S*" +
             "(" +
             "\\.(png|jpg|jpeg)" +
             // Kind of (very) bad as the format HAS to be the first query parameter
             "|(\\?format=(png|jpg|jpeg))" +
             ")" +
-            // Match anything afterwards until a whitespace or end of line (if .png isn't the last, or ?format=png&something=else)
-            "[^\\s]*(\\s|$)";
+            // Match anything afterwards (if .png isn't the last, or ?format=png&something=else)
+            "\\S*"
+    );
+
+    /**
+     * Matches a normal link. This regex is taken (mostly) from: https://stackoverflow.com/a/3809435/7750841
+     */
+    private static final Pattern NORMAL_LINK_PATTERN =
+            Pattern.compile("https://[-a-zA-Z0-9@:%._+~#=]{1,256}\\.[a-zA-Z0-9()]{1,6}\\b([-a-zA-Z0-9()@:%_+.~#?&/=]*)");
+
+    /**
+     * Matches links to subreddits (r/... and /r/...)
+     */
+    private static final Pattern SUBREDDIT_LINK_PATTERN = Pattern.compile("/?[rR]/[A-Za-z_]+");
+
+    /**
+     * Matches links to user profiles (u/... and /u/...)
+     */
+    private static final Pattern USER_LINK_PATTERN = Pattern.compile("/?[uU]/[0-9A-Za-z_-]+");
 
     private boolean checkRedditSpecificLinks;
     private boolean checkHeaderSpaces;
@@ -143,344 +164,378 @@ public class MarkdownAdjuster {
      * @return The adjusted markdown text
      */
     public String adjust(String markdown) {
-        if (checkHeaderSpaces) {
-            markdown = this.adjustHeaderSpaces(markdown);
-        }
-        if (checkRedditSpecificLinks) {
-            markdown = this.adjustRedditSpecificLinks(markdown);
-        }
-        if (checkNormalLinks) {
-            markdown = this.adjustNormalLinks(markdown);
-        }
-        if (checkUrlEncoding) {
-            markdown = this.adjustUrlEncoding(markdown);
-        }
-        if (convertImageLinksToMarkdown) {
-            markdown = this.convertImageLinks(markdown);
-        }
+        // Most adjustments add a few characters, so give some room to avoid resizing
+        StringBuilder builder = new StringBuilder(markdown.length() + markdown.length() / 8);
 
-        return markdown;
-    }
+        // The matchers are created for each call as the adjuster can be used on multiple threads
+        Matchers matchers = new Matchers(markdown);
 
-    /**
-     * Adjusts header spacing.
-     *
-     * <p>Headers in markdown are recognized by a hashtag (#), and there can be multiple hashtags
-     * in a row to produce smaller headers. Proper markdown has to have a space between the header
-     * and the content of the header, and this function ensures that is added</p>
-     * <p>Markdown links, [](), can include a hashtag as the link to link to a part on the same web page.
-     * Spaces are not added to links as that would break the link</p>
-     *
-     * @param markdown The markdown to adjust
-     * @return A new string with the headers spaced out
-     */
-    private String adjustHeaderSpaces(String markdown) {
-        // Find everywhere where there are # without a space next, and insert a space (technically max 6 # but it's
-        // not super important to be strictly compliant here)
-
-        // Markdown works on lines, so for headers we only need to care about the first section of hashtags as a header
-        // So if another hashtag that would be seen as a header appears, nothing will be done (as it should be)
-        // TODO this ruins the formatting
-        String[] lines = markdown.split("\n");
-
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            line = this.addSpacesToHeader(line);
-
-            // The line object has now either been edited, or is as it should be, so append it on the builder
-            builder.append(line);
-
-            // Add back the newline unless we are at the end
-            if (i + 1 != lines.length) {
-                builder.append("\n");
+        // The character and length of the fence of the code block currently in, or 0 if not in a code block
+        char fenceCharacter = 0;
+        int fenceLength = 0;
+
+        int lineStart = 0;
+        int length = markdown.length();
+
+        while (lineStart <= length) {
+            int lineEnd = markdown.indexOf('\n', lineStart);
+            if (lineEnd == -1) {
+                lineEnd = length;
             }
+
+            int fenceStart = findFenceStart(markdown, lineStart, lineEnd);
+            int fence = fenceStart == -1 ? 0 : countRepeated(markdown, fenceStart, lineEnd);
+
+            if (fenceCharacter != 0) {
+                // Code blocks are closed with a fence at least as long as the opening fence, with nothing after
+                if (fence >= fenceLength && markdown.charAt(fenceStart) == fenceCharacter
+                        && isBlank(markdown, fenceStart + fence, lineEnd)) {
+                    fenceCharacter = 0;
+                }
+                builder.append(markdown, lineStart, lineEnd);
+            } else if (fenceStart != -1) {
+                fenceCharacter = markdown.charAt(fenceStart);
+                fenceLength = fence;
+                builder.append(markdown, lineStart, lineEnd);
+            } else {
+                adjustLine(markdown, lineStart, lineEnd, builder, matchers);
+            }
+
+            if (lineEnd < length) {
+                builder.append('\n');
+            }
+            lineStart = lineEnd + 1;
         }
 
         return builder.toString();
     }
 
     /**
-     * Adjusts reddit specific links (to subreddits, r/..., and users, u/...) and wraps them
-     * in markdown links
+     * Adjusts one line of markdown that is not in a code block
      *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
+     * @param markdown The full markdown text
+     * @param lineStart The index the line starts at
+     * @param lineEnd The index the line ends at (exclusive)
+     * @param builder The builder to append the adjusted line to
+     * @param matchers The matchers for {@code markdown}
      */
-    private String adjustRedditSpecificLinks(String markdown) {
-        markdown = this.replaceSubredditLinks(markdown);
-        markdown = this.replaceRedditUserLinks(markdown);
+    private void adjustLine(String markdown, int lineStart, int lineEnd, StringBuilder builder, Matchers matchers) {
+        int i = lineStart;
 
-        return markdown;
-    }
+        if (checkHeaderSpaces) {
+            i = adjustHeaderSpace(markdown, lineStart, lineEnd, builder);
+        }
 
-    /**
-     * Wraps normal links that aren't already wrapped with markdown links
-     *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
-     */
-    private String adjustNormalLinks(String markdown) {
-        // This regex is taken (mostly) from: https://stackoverflow.com/a/3809435/7750841
-        String pattern = "(^|\\s)https://[-a-zA-Z0-9@:%._\\+~#=]{1,256}\\.[a-zA-Z0-9()]{1,6}\\b([-a-zA-Z0-9()@:%_\\+.~#?&//=]*)";
-        String replaceFormat = "[%s](%s)";
+        while (i < lineEnd) {
+            char c = markdown.charAt(i);
+
+            int next;
+            if (c == '\\') {
+                // Escaped character, neither character should be seen as markdown
+                next = Math.min(i + 2, lineEnd);
+                builder.append(markdown, i, next);
+            } else if (c == '`') {
+                next = skipCodeSpan(markdown, i, lineEnd, builder);
+            } else if (c == '[') {
+                next = adjustMarkdownLink(markdown, i, lineEnd, builder, matchers);
+            } else if (isAtWordStart(builder)) {
+                next = adjustWord(markdown, i, lineEnd, builder, matchers);
+            } else {
+                next = -1;
+            }
 
-        // Need to escape characters like ?
-        return this.replace(markdown, pattern, replaceFormat);
+            if (next == -1) {
+                builder.append(c);
+                i++;
+            } else {
+                i = next;
+            }
+        }
     }
 
     /**
-     * Wraps reddit links to subreddits (r/... and /r/...) with markdown links
+     * Adjusts header spacing.
      *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
+     * <p>Headers in markdown are recognized by a hashtag (#), and there can be multiple hashtags
+     * in a row to produce smaller headers. Proper markdown has to have a space between the header
+     * and the content of the header, and this function ensures that is added</p>
+     *
+     * <p>Markdown works on lines, so only the first hashtags of the line are a header. If another
+     * hashtag that would be seen as a header appears later in the line nothing is done</p>
+     *
+     * @param markdown The full markdown text
+     * @param lineStart The index the line starts at
+     * @param lineEnd The index the line ends at (exclusive)
+     * @param builder The builder to append the header symbols (and space) to
+     * @return The index the rest of the line starts at
      */
-    private String replaceSubredditLinks(String markdown) {
-        // Matches either the start of the text, or a whitespace preceding the subreddit
-        // TODO it should also match at the start anything not a normal character (so that superscript with ^r/subreddit) works correctly
-        String pattern = "(^|\\s)/?(r|R)/[A-Za-z_]+";
-        String replaceFormat = "[%s](https://www.reddit.com/%s/)";
+    private int adjustHeaderSpace(String markdown, int lineStart, int lineEnd, StringBuilder builder) {
+        if (lineStart == lineEnd || markdown.charAt(lineStart) != '#') {
+            return lineStart;
+        }
 
-        return this.replace(markdown, pattern, replaceFormat);
+        // Technically max 6 # should be a header, but it's not super important to be strictly compliant here
+        int textStart = lineStart + countRepeated(markdown, lineStart, lineEnd);
+        builder.append(markdown, lineStart, textStart);
+
+        if (textStart < lineEnd && markdown.charAt(textStart) != ' ') {
+            builder.append(' ');
+        }
+
+        return textStart;
     }
 
     /**
-     * Wraps reddit links to user profiles (u/... and /u/...) with markdown links
+     * Appends a code span (`code`) as it is
      *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
+     * @param markdown The full markdown text
+     * @param start The index of the first backtick
+     * @param lineEnd The index the line ends at (exclusive)
+     * @param builder The builder to append to
+     * @return The index after the code span, or after the backticks if they don't start a code span
      */
-    private String replaceRedditUserLinks(String markdown) {
-        String pattern = "(^|\\s)/?(u|U)/[0-9A-Za-z_-]+";
-        String replaceFormat = "[%s](https://www.reddit.com/%s/)";
+    private int skipCodeSpan(String markdown, int start, int lineEnd, StringBuilder builder) {
+        int ticks = countRepeated(markdown, start, lineEnd);
+        int i = start + ticks;
+
+        // The code span is closed by the same amount of backticks
+        while (i < lineEnd) {
+            if (markdown.charAt(i) == '`') {
+                int closingTicks = countRepeated(markdown, i, lineEnd);
+                if (closingTicks == ticks) {
+                    builder.append(markdown, start, i + ticks);
+                    return i + ticks;
+                }
+                i += closingTicks;
+            } else {
+                i++;
+            }
+        }
 
-        return this.replace(markdown, pattern, replaceFormat);
+        // Not closed, so the backticks are just text
+        builder.append(markdown, start, start + ticks);
+        return start + ticks;
     }
 
     /**
-     * Replaces every occurrence of a pattern with a given format
+     * Adjusts a markdown link, [text](link)
      *
-     * <p>For reddit links that start with a slash (ie. /r/...) the first slash is removed</p>
+     * <p>If {@link #checkUrlEncoding} is set, the link is URL encoded. If {@link #convertImageLinksToMarkdown}
+     * is set, and the text and link are the same link to an image, the link is converted to an image</p>
      *
-     * @param markdown The text to replace in
-     * @param pattern The pattern to replace
-     * @param replaceFormat The format to use for the replacement
-     * @return The full replaced text
+     * <p>The link is appended as a whole, so that nothing in a link is wrapped in another link</p>
+     *
+     * @param markdown The full markdown text
+     * @param start The index of the "["
+     * @param lineEnd The index the line ends at (exclusive)
+     * @param builder The builder to append to
+     * @param matchers The matchers for {@code markdown}
+     * @return The index after the link, or -1 if there is no markdown link at {@code start}
      */
-    private String replace(String markdown, String pattern, String replaceFormat) {
-        Pattern p = Pattern.compile(pattern);
-        Matcher m = p.matcher(markdown);
-
-        // Map holding the "r/subreddit" mapped to its linked string "[r/subreddit](https://...)"
-        Map<String, String> map = new HashMap<>();
-
-        while (m.find()) {
-            // Although we do care about the whitespace in front, we will later just replace
-            // the subreddit text itself, so the whitespace won't matter
-            String replaced = m.group().trim();
-
-            String withoutSlash = replaced;
-
-            // Remove the first slash if present (for reddit links)
-            if (replaced.charAt(0) == '/') {
-                withoutSlash = replaced.substring(1);
-            }
-
-            String formatted = String.format(replaceFormat, replaced, withoutSlash);
+    private int adjustMarkdownLink(String markdown, int start, int lineEnd, StringBuilder builder, Matchers matchers) {
+        int textEnd = start + 1;
+        while (textEnd < lineEnd && "[])".indexOf(markdown.charAt(textEnd)) == -1) {
+            textEnd++;
+        }
+        // The text has to be at least one character and followed by "]("
+        if (textEnd == start + 1 || textEnd + 1 >= lineEnd
+                || markdown.charAt(textEnd) != ']' || markdown.charAt(textEnd + 1) != '(') {
+            return -1;
+        }
 
-            map.put(replaced, formatted);
+        int linkStart = textEnd + 2;
+        int linkEnd = linkStart;
+        while (linkEnd < lineEnd && markdown.charAt(linkEnd) != '(' && markdown.charAt(linkEnd) != ')') {
+            linkEnd++;
+        }
+        if (linkEnd == linkStart || linkEnd == lineEnd || markdown.charAt(linkEnd) != ')') {
+            return -1;
         }
 
-        for (Map.Entry<String, String> entry : map.entrySet()) {
-            String sub = entry.getKey();
-            String formatted = entry.getValue();
+        // Links where the text is the same as the link to an image are converted to images
+        if (convertImageLinksToMarkdown && (start == 0 || markdown.charAt(start - 1) != '!')
+                && textEnd - start - 1 == linkEnd - linkStart
+                && markdown.regionMatches(start + 1, markdown, linkStart, linkEnd - linkStart)
+                && matchers.imageLink.region(linkStart, linkEnd).matches()) {
+            builder.append('!');
+        }
 
-            markdown = markdown.replace(sub, formatted);
+        builder.append(markdown, start, linkStart);
+        if (checkUrlEncoding) {
+            appendUrlEncoded(markdown, linkStart, linkEnd, builder);
+        } else {
+            builder.append(markdown, linkStart, linkEnd);
         }
+        builder.append(')');
 
-        return markdown;
+        return linkEnd + 1;
     }
 
-
     /**
-     * Adds spaces between a header symbol and the content
+     * Adjusts incorrect URL encoding in a link, which might cause markdown renderers not to recognize
+     * it as a link
      *
-     * @param markdown The markdown to change
-     * @return A string with the markdown adjusted (if necessary)
+     * <ol>
+     *     <li>Spaces to %20</li>
+     *     <li>Double quotes to %22</li>
+     *     <li>Opening curly brackets to %7B</li>
+     *     <li>Closing curly brackets to %7D</li>
+     * </ol>
+     *
+     * @param markdown The full markdown text
+     * @param start The index the link starts at
+     * @param end The index the link ends at (exclusive)
+     * @param builder The builder to append the link to
      */
-    private String addSpacesToHeader(String markdown) {
-        // Not a header, return the text
-        if (markdown.isEmpty() || markdown.charAt(0) != '#') {
-            return markdown;
+    private void appendUrlEncoded(String markdown, int start, int end, StringBuilder builder) {
+        for (int i = start; i < end; i++) {
+            char c = markdown.charAt(i);
+            switch (c) {
+                case ' ':
+                    builder.append("%20");
+                    break;
+                case '"':
+                    builder.append("%22");
+                    break;
+                case '{':
+                    builder.append("%7B");
+                    break;
+                case '}':
+                    builder.append("%7D");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
         }
+    }
 
-        // The starting point of the actual header
-        int textStart = -1;
-        boolean startTextFound = false;
-
-        // Start at the next character
-        int i = 1;
-
-        // Find the starting point of the text content
-        while (!startTextFound && i < markdown.length()) {
-            char character = markdown.charAt(i);
+    /**
+     * Adjusts a word that isn't in markdown formatting, wrapping reddit specific links and normal links
+     * in markdown links and image links in markdown images
+     *
+     * @param markdown The full markdown text
+     * @param start The index the word starts at
+     * @param lineEnd The index the line ends at (exclusive)
+     * @param builder The builder to append to
+     * @param matchers The matchers for {@code markdown}
+     * @return The index after what was adjusted, or -1 if nothing was adjusted
+     */
+    private int adjustWord(String markdown, int start, int lineEnd, StringBuilder builder, Matchers matchers) {
+        char c = markdown.charAt(start);
+
+        if (c == 'h') {
+            if (convertImageLinksToMarkdown) {
+                int wordEnd = start;
+                while (wordEnd < lineEnd && !Character.isWhitespace(markdown.charAt(wordEnd))) {
+                    wordEnd++;
+                }
 
-            // No longer on the header (can be multiple hashtags, ie. ###Header) and first
-            // time on a different character
-            if (character != '#') {
-                // Already a space here, no need to do anything
-                if (character == ' ') {
-                    break;
+                if (matchers.imageLink.region(start, wordEnd).matches()) {
+                    builder.append("![image](").append(markdown, start, wordEnd).append(')');
+                    return wordEnd;
                 }
-                textStart = i;
             }
 
-            startTextFound = textStart != -1;
-            i++;
-        }
+            if (checkNormalLinks && lookingAt(matchers.normalLink, start, lineEnd)) {
+                int end = matchers.normalLink.end();
+                builder.append('[').append(markdown, start, end).append("](").append(markdown, start, end).append(')');
+                return end;
+            }
+        } else if (checkRedditSpecificLinks && (c == '/' || c == 'r' || c == 'R' || c == 'u' || c == 'U')) {
+            Matcher matcher = null;
+            if (lookingAt(matchers.subredditLink, start, lineEnd)) {
+                matcher = matchers.subredditLink;
+            } else if (lookingAt(matchers.userLink, start, lineEnd)) {
+                matcher = matchers.userLink;
+            }
+
+            if (matcher != null) {
+                int end = matcher.end();
+                // For links that start with a slash (ie. /r/...) the first slash is removed from the URL
+                int pathStart = c == '/' ? start + 1 : start;
 
-        // If we need to insert the space
-        if (textStart != -1) {
-            StringBuilder stringBuilder = new StringBuilder(markdown);
-            stringBuilder.insert(textStart, ' ');
-            markdown = stringBuilder.toString();
+                builder.append('[').append(markdown, start, end)
+                        .append("](https://www.reddit.com/").append(markdown, pathStart, end).append("/)");
+                return end;
+            }
         }
 
-        return markdown;
+        return -1;
     }
 
-
-    /**
-     * Adjusts incorrect URL encoding in markdown links
-     *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
-     */
-    private String adjustUrlEncoding(String markdown) {
-        // Find all markdown links: (some text)[some text which is the link]
-        // Replace characters that should be replaced
-        // Spaces = %20
-        // Double quotes = %22
-        // Opening curly brackets = %7B
-        // Closing curly brackets = %7D
-
-        // Match []() with anything between both [] and ()
-        Pattern p = Pattern.compile("\\[([^\\[\\])]+)]\\(([^()]+)\\)");
-        Matcher m = p.matcher(markdown);
-
-        // The amount of characters added to the markdown string during the loop
-        int charactersAdded = 0;
-
-        while (m.find()) {
-            int start = m.start();
-            String group = m.group();
-
-            // Find pos of the first "]" as that will be the end of the text, the next pos is a "(" which is the
-            // start of the link wrapper, and the link is everything from after the "(" to a ")"
-            // From "](<here>)" to "<here>)"
-            int linkStart = group.indexOf(']') + 2;
-            int linkEnd = group.length() - 1;
-
-            String link = group.substring(linkStart, linkEnd);
-
-            int markdownLength = markdown.length();
-
-            // Perform all replacements
-            link = link.replaceAll(" ", "%20");
-            link = link.replaceAll("\"", "%22");
-            link = link.replaceAll("\\{", "%7B");
-            // If "}" isn't escaped it fails when using it in the android app, but it doesn't in tests ¯\_(ツ)_/¯
-            link = link.replaceAll("\\}", "%7D");
-
-            // Replace the new link in the original text
-            StringBuilder buffer = new StringBuilder(markdown);
-
-            int startInMarkdown = start + linkStart + charactersAdded;
-            int endInMarkdown = start + linkEnd + charactersAdded;
-            buffer.replace(startInMarkdown, endInMarkdown, link);
-
-            markdown = buffer.toString();
-
-            // For when multiple matches occur we need to save how many characters have been previously added
-            // as we're changing the markdown text in the loop, which messes up the matcher somewhat
-            // as "start" will be what the start would have been before any changes
-            charactersAdded += markdown.length() - markdownLength;
-        }
-
-        return markdown;
+    private static boolean lookingAt(Matcher matcher, int start, int end) {
+        return matcher.region(start, end).lookingAt();
     }
 
     /**
-     * Wraps image URLs in markdown images, ie.: ![image](https://imgur.com/rthrth.png)
-     *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
+     * @return True if the next character appended to the builder is at the start of a word
      */
-    private String convertImageLinks(String markdown) {
-        // This would also match stuff like "https:///.png", but I'm taking the chance that that won't happen
-        // over bothering to create a proper URL regex (it very likely won't happen)
-        // This has to match https only, as this will load actual images over the network, which might not
-        // support cleartext
-        String replaceFormat = "![image](%s)";
-
-        String firstReplace = this.replace(markdown, IMAGE_LINK_PATTERN, replaceFormat);
-        return replaceImageUrlsWithImageMarkdown(firstReplace);
+    private static boolean isAtWordStart(StringBuilder builder) {
+        return builder.length() == 0 || Character.isWhitespace(builder.charAt(builder.length() - 1));
     }
 
     /**
-     * Converts image URLs found in markdown links where the text and link are identical (the link
-     * to the image) and converts it to be image markdown instead.
-     *
-     * Example: [https://imgur.com/rthrth.png](https://imgur.com/rthrth.png) will be converted to
-     * ![https://imgur.com/rthrth.png](https://imgur.com/rthrth.png)
+     * Finds the start of a code fence (at least 3 backticks or tildes, indented by at most 3 spaces)
      *
-     * If the text is not identical, it will not be adjusted, ie. [link to image](https://imgur.com/rthrth.png)
-     * will stay as it is
-     *
-     * @param markdown The markdown to adjust
-     * @return The adjusted markdown
+     * @return The index of the first fence character, or -1 if the line isn't a code fence
      */
-    private String replaceImageUrlsWithImageMarkdown(String markdown) {
-        // Find all markdown links, and afterwards check if they contain links to images
-        Pattern pattern = Pattern.compile("\\[(.*?)]\\(.*?\\)");
-        Matcher matcher = pattern.matcher(markdown);
-
-        List<Integer> positionsToAdd = new ArrayList<>();
-
-        while (matcher.find()) {
-            String group = matcher.group().trim();
-
-            int startPos = matcher.start();
-            // The markdown link is already as an image
-            if (startPos >= 1 && markdown.charAt(startPos - 1) == '!') {
-                continue;
-            }
+    private static int findFenceStart(String markdown, int lineStart, int lineEnd) {
+        int i = lineStart;
+        while (i < lineEnd && i - lineStart < 3 && markdown.charAt(i) == ' ') {
+            i++;
+        }
 
-            int textEnd = group.indexOf(']');
+        if (i == lineEnd) {
+            return -1;
+        }
 
-            // Remove the brackets around the text
-            String text = group.substring(1, textEnd);
-            // Remove the parentheses around the link
-            String link = group.substring(textEnd + 2, group.length() - 1);
+        char c = markdown.charAt(i);
+        if ((c == '`' || c == '~') && countRepeated(markdown, i, lineEnd) >= 3) {
+            return i;
+        }
+        return -1;
+    }
 
-            if (text.equals(link) && text.matches(IMAGE_LINK_PATTERN)) {
-                positionsToAdd.add(startPos);
+    /**
+     * @return True if there is only whitespace between {@code start} and {@code end}
+     */
+    private static boolean isBlank(String markdown, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(markdown.charAt(i))) {
+                return false;
             }
         }
+        return true;
+    }
 
-        // No image links found
-        if (positionsToAdd.size() == 0) {
-            return markdown;
+    /**
+     * @return The amount of times the character at {@code start} is repeated from {@code start}
+     */
+    private static int countRepeated(String markdown, int start, int end) {
+        char c = markdown.charAt(start);
+        int i = start + 1;
+        while (i < end && markdown.charAt(i) == c) {
+            i++;
         }
+        return i - start;
+    }
 
-        StringBuilder builder = new StringBuilder(markdown);
-
-        for (int i = 0; i < positionsToAdd.size(); i++) {
-            // Insert at the position, and add "i" as it needs to offset the previous inserted ones as well
-            int pos = positionsToAdd.get(i) + i;
-            builder.insert(pos, '!');
+    /**
+     * The matchers for the patterns used in {@link #adjust(String)}, so that the matchers are only
+     * created once for each text
+     */
+    private static class Matchers {
+        final Matcher imageLink;
+        final Matcher normalLink;
+        final Matcher subredditLink;
+        final Matcher userLink;
+
+        Matchers(String markdown) {
+            imageLink = IMAGE_LINK_PATTERN.matcher(markdown);
+            normalLink = NORMAL_LINK_PATTERN.matcher(markdown);
+            subredditLink = SUBREDDIT_LINK_PATTERN.matcher(markdown);
+            userLink = USER_LINK_PATTERN.matcher(markdown);
         }
-
-        return builder.toString();
     }
 }
@@ -0,0 +1,113 @@
+package com.example.hakonsreader.api.utils
+
+/**
+ * A block of markdown created by [MarkdownSplitter]
+ *
+ * @param markdown The markdown of the block
+ * @param header The text of the header the block starts with, or null if the block doesn't start with a header
+ * @param headerLevel The level of the header (1-6), or 0 if the block doesn't start with a header
+ */
+data class MarkdownBlock(
+        val markdown: String,
+        val header: String?,
+        val headerLevel: Int
+)
+
+/**
+ * Splits large markdown documents (such as wiki pages) into blocks that can be rendered and shown
+ * separately, so that only the blocks that are shown have to be rendered
+ *
+ * A new block is started at every header. Blocks without headers longer than [maxBlockLength] are
+ * split at blank lines between top-level paragraphs. Nothing in a code block is ever split.
+ * Link reference definitions (`[name]: https://...`) are added to every block so the references work in all blocks
+ *
+ * @param maxBlockLength The length a block without headers can grow to before it is split at the next blank line
+ */
+class MarkdownSplitter(private val maxBlockLength: Int = DEFAULT_MAX_BLOCK_LENGTH) {
+
+    companion object {
+        /**
+         * The default length a block can grow to before it is split at blank lines
+         */
+        const val DEFAULT_MAX_BLOCK_LENGTH = 2000
+
+        private val HEADER_PATTERN = Regex("^ {0,3}(#{1,6})(.*)$")
+        private val FENCE_PATTERN = Regex("^ {0,3}(`{3,}|~{3,})")
+        private val REFERENCE_DEFINITION_PATTERN = Regex("^ {0,3}\\[[^\\]]+]:\\s*\\S+")
+    }
+
+    /**
+     * Splits markdown into blocks
+     *
+     * @param markdown The markdown to split
+     * @return The blocks, in the order they appear in the markdown. Blocks with only whitespace are not included
+     */
+    fun split(markdown: String): List<MarkdownBlock> {
+        val blocks = ArrayList<MarkdownBlock>()
+        val referenceDefinitions = ArrayList<String>()
+
+        val current = StringBuilder()
+        var header: String? = null
+        var headerLevel = 0
+
+        fun finishBlock() {
+            if (current.isNotBlank()) {
+                blocks.add(MarkdownBlock(current.toString().trimEnd('\n'), header, headerLevel))
+            }
+            current.setLength(0)
+            header = null
+            headerLevel = 0
+        }
+
+        val lines = markdown.lines()
+
+        // The fence of the code block the line is in, or null if not in a code block
+        var fence: String? = null
+
+        for ((i, line) in lines.withIndex()) {
+            if (fence != null) {
+                if (line.trimStart().startsWith(fence)) {
+                    fence = null
+                }
+            } else {
+                val fenceMatch = FENCE_PATTERN.find(line)
+                val headerMatch = HEADER_PATTERN.find(line)
+
+                when {
+                    fenceMatch != null -> fence = fenceMatch.groupValues[1]
+
+                    headerMatch != null -> {
+                        finishBlock()
+                        headerLevel = headerMatch.groupValues[1].length
+                        header = headerMatch.groupValues[2].trim().trimEnd('#').trim()
+                    }
+
+                    REFERENCE_DEFINITION_PATTERN.containsMatchIn(line) -> referenceDefinitions.add(line.trim())
+
+                    line.isBlank() && current.length >= maxBlockLength && canStartBlock(lines.getOrNull(i + 1)) -> {
+                        finishBlock()
+                        continue
+                    }
+                }
+            }
+
+            current.append(line).append('\n')
+        }
+        finishBlock()
+
+        return if (referenceDefinitions.isEmpty() || blocks.size < 2) {
+            blocks
+        } else {
+            val definitions = referenceDefinitions.joinToString(separator = "\n", prefix = "\n\n")
+            blocks.map { it.copy(markdown = it.markdown + definitions) }
+        }
+    }
+
+    /**
+     * Checks if a block can start at a line following a blank line. Indented lines continue the
+     * previous block (eg. lists and indented code), so a block can't start at those
+     */
+    private fun canStartBlock(line: String?): Boolean {
+        return line != null && line.isNotEmpty() && !line[0].isWhitespace()
+    }
+}
@@ -12,6 +12,8 @@ public class SharedPreferencesConstants {
 
     /**
      * The name of the SharedPreferences storing the post opened values
+     *
+     * <p>Post opened values are now stored in the database, this is only kept to migrate old values</p>
      */
     public static final String PREFS_NAME_POST_OPENED = "preferencesPostOpened";
 
@@ -36,6 +38,8 @@ public class SharedPreferencesConstants {
      * key and the post ID should be a part of the key as well to differentiate the different post.
      *
      * <p>The value stored should be a Unix timestamp.</p>
+     *
+     * <p>Post opened values are now stored in the database, this is only kept to migrate old values</p>
      */
     public static final String POST_LAST_OPENED_TIMESTAMP = "postLastOpenedTimestamp";
 
@@ -20,6 +20,7 @@ import dagger.hilt.InstallIn
 import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
 import okhttp3.Cache
+import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import java.io.File
 import javax.inject.Singleton
@@ -34,7 +35,7 @@ object ApiModule {
 
     @Singleton
     @Provides
-    fun provideApi(@ApplicationContext context: Context) : RedditApi {
+    fun provideApi(@ApplicationContext context: Context, httpClient: OkHttpClient) : RedditApi {
         // This module is only for production, so the application context will always be App
         context as App
 
@@ -70,7 +71,9 @@ object ApiModule {
                 thirdPartyCache = thirdPartyCache,
                 thirdPartyCacheAge = thirdPartyCacheAge,
 
-                thirdPartyOptions = getThirdPartyOptions(PreferenceManager.getDefaultSharedPreferences(context), context)
+                thirdPartyOptions = getThirdPartyOptions(PreferenceManager.getDefaultSharedPreferences(context), context),
+
+                httpClient = httpClient
         ).apply {
             enablePrivateBrowsing(privatelyBrowsing)
         }
@@ -36,6 +36,12 @@ object DatabaseModule {
         return RedditDatabase.getInstance(context)
     }
 
+    @Singleton
+    @Provides
+    fun provideWriteQueue(database: RedditDatabase) : DatabaseWriteQueue {
+        return DatabaseWriteQueue(database)
+    }
+
     @Singleton
     @Provides
     fun providePostsDao(database: RedditDatabase) : RedditPostsDao {
@@ -66,4 +72,16 @@ object DatabaseModule {
         return database.messages()
     }
 
-}
\ No newline at end of file
+    @Singleton
+    @Provides
+    fun providePostVisitsDao(database: RedditDatabase) : RedditPostVisitsDao {
+        return database.postVisits()
+    }
+
+    @Singleton
+    @Provides
+    fun provideWikiPagesDao(database: RedditDatabase) : RedditWikiPagesDao {
+        return database.wikiPages()
+    }
+
+}
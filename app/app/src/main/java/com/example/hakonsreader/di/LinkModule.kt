@@ -0,0 +1,21 @@
+package com.example.hakonsreader.di
+
+import android.content.Context
+import com.example.hakonsreader.misc.LinkIconResolver
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.android.qualifiers.ApplicationContext
+import dagger.hilt.components.SingletonComponent
+import javax.inject.Singleton
+
+@InstallIn(SingletonComponent::class)
+@Module
+object LinkModule {
+
+    @Singleton
+    @Provides
+    fun provideLinkIconResolver(@ApplicationContext context: Context): LinkIconResolver {
+        return LinkIconResolver(context)
+    }
+}
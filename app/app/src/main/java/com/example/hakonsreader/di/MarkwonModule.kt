@@ -1,9 +1,12 @@
 package com.example.hakonsreader.di
 
 import android.content.Context
+import androidx.core.text.PrecomputedTextCompat
+import androidx.core.widget.TextViewCompat
 import com.example.hakonsreader.api.utils.MarkdownAdjuster
 import com.example.hakonsreader.markwonplugins.*
 import com.example.hakonsreader.misc.Settings
+import com.example.hakonsreader.views.util.MarkdownCache
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -61,7 +64,8 @@ annotation class AdjusterWithoutImages
 
 
 /**
- * Module for providing [Markwon] and [MarkdownAdjuster] instances.
+ * Module for providing [Markwon] and [MarkdownAdjuster] instances, and the [MarkdownCache] markdown
+ * rendered with these is cached in.
  *
  * Two instances are provided, one with image support and one without. Use [MarkwonWithImages]/[AdjusterWithImages] and
  * [MarkwonWithoutImages]/[AdjusterWithoutImages] to inject different instances
@@ -81,12 +85,29 @@ object MarkwonModule {
                 .usePlugin(StrikethroughPlugin.create())
 
                 // Custom plugins
-                .usePlugin(RedditSpoilerPlugin())
-                .usePlugin(RedditLinkPlugin())
-                .usePlugin(SuperscriptPlugin())
-                .usePlugin(LinkPlugin())
+                .usePlugin(RedditMarkdownPlugin())
                 .usePlugin(EnlargeLinkPlugin(settings))
                 .usePlugin(ThemePlugin(context))
+
+                .textSetter(precomputedTextSetter)
+    }
+
+    /**
+     * Sets markdown that has been precomputed (see [com.example.hakonsreader.views.MarkdownTextView.setMarkdownAsync])
+     * without copying it, so the precomputed layout is used. Other markdown is set as normal
+     */
+    private val precomputedTextSetter = Markwon.TextSetter { textView, markdown, bufferType, onComplete ->
+        if (markdown is PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(textView, markdown)
+            } catch (e: IllegalArgumentException) {
+                // The text appearance of the view has changed since the text was precomputed
+                textView.setText(markdown, bufferType)
+            }
+        } else {
+            textView.setText(markdown, bufferType)
+        }
+        onComplete.run()
     }
 
     @MarkwonWithImages
@@ -145,4 +166,10 @@ object MarkwonModule {
                 .checkUrlEncoding()
                 .build()
     }
-}
\ No newline at end of file
+
+    @Singleton
+    @Provides
+    fun provideMarkdownCache(@ApplicationContext context: Context) : MarkdownCache {
+        return MarkdownCache(context)
+    }
+}
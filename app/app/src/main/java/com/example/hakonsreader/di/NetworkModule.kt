@@ -0,0 +1,49 @@
+package com.example.hakonsreader.di
+
+import com.example.hakonsreader.misc.ConnectionStats
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.EntryPoint
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+import okhttp3.ConnectionPool
+import okhttp3.OkHttpClient
+import java.util.concurrent.TimeUnit
+import javax.inject.Singleton
+
+/**
+ * Module providing the [OkHttpClient] that all network traffic (API calls, images, and videos) is
+ * based on. Clients that need a different configuration should be created with [OkHttpClient.newBuilder]
+ * on the provided client, so that the connection pool, dispatcher, and DNS lookups are shared
+ */
+@InstallIn(SingletonComponent::class)
+@Module
+object NetworkModule {
+
+    /**
+     * Entry point for classes that can't be injected, such as the Glide module and video players
+     */
+    @EntryPoint
+    @InstallIn(SingletonComponent::class)
+    interface NetworkEntryPoint {
+        fun httpClient(): OkHttpClient
+        fun connectionStats(): ConnectionStats
+    }
+
+    @Singleton
+    @Provides
+    fun provideConnectionStats(): ConnectionStats {
+        return ConnectionStats()
+    }
+
+    @Singleton
+    @Provides
+    fun provideHttpClient(connectionStats: ConnectionStats): OkHttpClient {
+        return OkHttpClient.Builder()
+                // Images and videos are loaded from a few hosts (i.redd.it, v.redd.it etc.), so keep a
+                // few more idle connections than the default
+                .connectionPool(ConnectionPool(10, 5, TimeUnit.MINUTES))
+                .eventListener(connectionStats)
+                .build()
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.hakonsreader.di
+
+import android.app.Activity
+import androidx.lifecycle.LifecycleOwner
+import com.example.hakonsreader.recyclerviewadapters.PostsViewPool
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.android.components.ActivityComponent
+import dagger.hilt.android.scopes.ActivityScoped
+
+/**
+ * Module for RecyclerView pools shared between lists in an activity. The pools are scoped to
+ * activities (and not the application) as the views in them are created with an activity context
+ */
+@InstallIn(ActivityComponent::class)
+@Module
+object ViewPoolModule {
+
+    @ActivityScoped
+    @Provides
+    fun providePostsViewPool(activity: Activity): PostsViewPool {
+        return PostsViewPool(activity).also {
+            // Release the resources held by the pooled views when the activity is destroyed
+            (activity as? LifecycleOwner)?.lifecycle?.addObserver(it)
+        }
+    }
+}
@@ -2,14 +2,19 @@ package com.example.hakonsreader.fragments
 
 import android.content.Intent
 import android.os.Bundle
+import android.os.SystemClock
+import android.util.Log
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import androidx.core.app.ActivityOptionsCompat
 import androidx.core.content.ContextCompat
+import androidx.core.os.TraceCompat
+import androidx.core.view.doOnPreDraw
 import androidx.fragment.app.Fragment
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
+import com.bumptech.glide.Glide
 import com.example.hakonsreader.R
 import com.example.hakonsreader.activities.PostActivity
 import com.example.hakonsreader.activities.VideoActivity
@@ -21,10 +26,13 @@ import com.example.hakonsreader.databinding.FragmentPostsBinding
 import com.example.hakonsreader.interfaces.SortableWithTime
 import com.example.hakonsreader.misc.Settings
 import com.example.hakonsreader.recyclerviewadapters.PostsAdapter
+import com.example.hakonsreader.recyclerviewadapters.PostsImagePreloader
+import com.example.hakonsreader.recyclerviewadapters.PostsViewPool
 import com.example.hakonsreader.recyclerviewadapters.listeners.PostScrollListener
 import com.example.hakonsreader.viewmodels.PostsViewModel
 import com.example.hakonsreader.viewmodels.assistedViewModel
 import com.example.hakonsreader.views.Content
+import com.example.hakonsreader.views.util.VideoPrefetcher
 import com.google.gson.Gson
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.MainScope
@@ -42,9 +50,12 @@ import kotlin.collections.ArrayList
 class PostsFragment : Fragment(), SortableWithTime {
 
     companion object {
-        @Suppress("UNUSED")
         private const val TAG = "PostsFragment"
 
+        /**
+         * The name of the async trace section from the view is created until the first posts are drawn
+         */
+        private const val FIRST_POSTS_TRACE_SECTION = "PostsFragment.firstPostsDrawn"
 
         /**
          * The key stored in [getArguments] saying the name the of the subreddit/user the posts are for
@@ -158,6 +169,12 @@ class PostsFragment : Fragment(), SortableWithTime {
     lateinit var postsViewModelFactory: PostsViewModel.Factory
     private val postsViewModel: PostsViewModel by assistedViewModel { postsViewModelFactory.create(name, isForUser, settings, it) }
 
+    /**
+     * The pool of post ViewHolders shared with the other lists of posts in the activity
+     */
+    @Inject
+    lateinit var postsViewPool: PostsViewPool
+
     private val postsScrollListener: PostScrollListener = PostScrollListener()
 
     /**
@@ -184,8 +201,28 @@ class PostsFragment : Fragment(), SortableWithTime {
      */
     var onLoadingChange: ((Boolean) -> Unit)? = null
 
+    /**
+     * The timestamp, from [SystemClock.uptimeMillis], the view of the fragment was created at. This
+     * is reset when the first posts have been drawn
+     */
+    private var viewCreatedAt = -1L
+
+    /**
+     * The cookie of the [FIRST_POSTS_TRACE_SECTION] of this fragment
+     */
+    private val firstPostsTraceCookie = System.identityHashCode(this)
+
+    /**
+     * True while the [FIRST_POSTS_TRACE_SECTION] of this fragment has been started but not ended
+     */
+    private var firstPostsTraceStarted = false
+
 
     override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View {
+        viewCreatedAt = SystemClock.uptimeMillis()
+        TraceCompat.beginAsyncSection(FIRST_POSTS_TRACE_SECTION, firstPostsTraceCookie)
+        firstPostsTraceStarted = true
+
         // Posts in the activity open new activities with a transition, which requires an activity context
         // the LayoutInflater we get with Hilt isn't with an activity context
         return FragmentPostsBinding.inflate(LayoutInflater.from(requireActivity())).apply {
@@ -221,7 +258,7 @@ class PostsFragment : Fragment(), SortableWithTime {
         (binding.posts.adapter as PostsAdapter?)?.let {
             // Tell all the view holders to save their extras and then deselect them (primarily to pause videos)
             it.viewHolders.forEach { viewHolder ->
-                viewHolder.saveExtras()
+                viewHolder.saveExtras(it.postExtras)
                 viewHolder.onUnselected()
             }
             postsViewModel.savedPostStates = it.postExtras
@@ -251,7 +288,14 @@ class PostsFragment : Fragment(), SortableWithTime {
         (binding.posts.adapter as PostsAdapter?)?.let {
             postsViewModel.savedPostStates = it.postExtras
         }
-        binding.posts.adapter = null
+        // The view might be destroyed before any posts were drawn
+        endFirstPostsTrace()
+        viewCreatedAt = -1
+
+        // Swapping instead of setting the adapter to null recycles the views into the shared pool
+        binding.posts.swapAdapter(null, true)
+        postsScrollListener.setPrefetcher(null)
+        postsScrollListener.setVideoPrefetcher(null)
 
         _binding = null
         super.onDestroyView()
@@ -304,9 +348,19 @@ class PostsFragment : Fragment(), SortableWithTime {
      * layout manager
      */
     private fun setupPostsList() {
+        // The pool must be set before the adapter, otherwise the ViewHolders are created in a separate pool
+        binding.posts.setRecycledViewPool(postsViewPool)
+
         PostsAdapter { postsViewModel.loadPosts() }.apply {
             lifecycleOwner = viewLifecycleOwner
             binding.posts.adapter = this
+            postsViewPool.warmUp(binding.posts, this)
+
+            // Buffer a page when the list stops scrolling when loading isn't restricted
+            prefetcher.keepPageBuffered = !settings.dataSavingEnabled()
+            postsScrollListener.setPrefetcher(prefetcher)
+            postsScrollListener.setVideoPrefetcher(VideoPrefetcher(requireContext(), settings))
+            binding.posts.addOnScrollListener(PostsImagePreloader(this, Glide.with(this@PostsFragment), settings).createPreloader())
 
             onVideoManuallyPaused = { contentVideo ->
                 // Ignore post when scrolling if manually paused
@@ -342,16 +396,9 @@ class PostsFragment : Fragment(), SortableWithTime {
                 val redditPost = post.redditPost ?: return@OnPostClicked
                 postsScrollListener.postToIgnore = redditPost.id
 
-                val bitmap = post.getContent()?.bitmap
-                if (bitmap != null) {
-                    PostActivity.BITMAP = PostActivity.BitmapWrapper(
-                        bitmap = bitmap,
-                        postId = redditPost.id
-                    )
-                }
-
                 val intent = Intent(context, PostActivity::class.java).apply {
                     putExtra(PostActivity.EXTRAS_POST_KEY, Gson().toJson(redditPost))
+                    post.getContent()?.loadedImage?.let { putExtra(PostActivity.EXTRAS_LOADED_IMAGE, it.toBundle()) }
                     putExtra(Content.EXTRAS, post.extras)
                     putExtra(PostActivity.EXTRAS_HIDE_SCORE_KEY, post.hideScore)
                 }
@@ -411,6 +458,7 @@ class PostsFragment : Fragment(), SortableWithTime {
                 }
 
                 adapter?.submitList(posts)
+                logFirstFrame()
             })
 
             onLoadingCountChange.observe(viewLifecycleOwner, { onLoadingChange?.invoke(it) })
@@ -423,6 +471,41 @@ class PostsFragment : Fragment(), SortableWithTime {
         }
     }
 
+    /**
+     * Reports the time it took from the view was created until the first posts were drawn. This ends
+     * the [FIRST_POSTS_TRACE_SECTION] trace section, reports the activity as fully drawn, and logs the
+     * time. This is only reported once per view
+     */
+    private fun logFirstFrame() {
+        if (viewCreatedAt < 0) {
+            return
+        }
+        val createdAt = viewCreatedAt
+        val submittedAt = SystemClock.uptimeMillis()
+        viewCreatedAt = -1
+
+        val list = binding.posts
+        list.doOnPreDraw {
+            endFirstPostsTrace()
+            // Only the first call for the activity is reported by the system
+            activity?.reportFullyDrawn()
+
+            val now = SystemClock.uptimeMillis()
+            Log.d(TAG, "First posts drawn for $name: ${now - createdAt}ms after view created, ${now - submittedAt}ms after posts submitted")
+            (list.adapter as PostsAdapter?)?.logStats()
+        }
+    }
+
+    /**
+     * Ends the [FIRST_POSTS_TRACE_SECTION] of this fragment, if it has been started
+     */
+    private fun endFirstPostsTrace() {
+        if (firstPostsTraceStarted) {
+            TraceCompat.endAsyncSection(FIRST_POSTS_TRACE_SECTION, firstPostsTraceCookie)
+            firstPostsTraceStarted = false
+        }
+    }
+
     /**
      * Refreshes the posts in the fragment
      */
@@ -19,6 +19,7 @@ import com.example.hakonsreader.interfaces.LanguageListener
 import com.example.hakonsreader.interfaces.OnUnreadMessagesBadgeSettingChanged
 import com.example.hakonsreader.views.preferences.multicolor.MultiColorFragCompat
 import com.example.hakonsreader.views.preferences.multicolor.MultiColorPreference
+import com.example.hakonsreader.views.util.VideoCache
 import com.google.firebase.crashlytics.ktx.crashlytics
 import com.google.firebase.installations.FirebaseInstallations
 import com.google.firebase.ktx.Firebase
@@ -132,6 +133,11 @@ class SettingsFragment : PreferenceFragmentCompat() {
             it.onPreferenceChangeListener = inboxFrequencyListener
         }
 
+        findPreference<SeekBarPreference>(getString(R.string.prefs_key_video_cache_size))?.onPreferenceChangeListener = Preference.OnPreferenceChangeListener { _, newValue ->
+            VideoCache.setMaxSize((newValue as Int) * 1024 * 1024L)
+            true
+        }
+
         // This setting shouldn't be changed when gestures is enabled (can we actually check if it is enabled?)
         if (Build.VERSION.SDK_INT >= 29) {
             findPreference<SwitchPreference>(getString(R.string.prefs_key_show_subreddit_info_button))?.isEnabled = false
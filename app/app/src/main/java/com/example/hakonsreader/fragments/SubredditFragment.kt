@@ -41,10 +41,12 @@ import com.example.hakonsreader.api.exceptions.NoSubredditInfoException
 import com.example.hakonsreader.api.exceptions.SubredditNotFoundException
 import com.example.hakonsreader.api.model.Subreddit
 import com.example.hakonsreader.api.model.flairs.RedditFlair
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditFlairsDao
 import com.example.hakonsreader.api.persistence.RedditPostsDao
 import com.example.hakonsreader.api.persistence.RedditSubredditRulesDao
 import com.example.hakonsreader.api.persistence.RedditSubredditsDao
+import com.example.hakonsreader.api.persistence.RedditWikiPagesDao
 import com.example.hakonsreader.api.responses.GenericError
 import com.example.hakonsreader.databinding.*
 import com.example.hakonsreader.dialogadapters.RedditFlairAdapter
@@ -54,11 +56,13 @@ import com.example.hakonsreader.misc.Settings
 import com.example.hakonsreader.misc.handleGenericResponseErrors
 import com.example.hakonsreader.states.LoggedInState
 import com.example.hakonsreader.recyclerviewadapters.SubredditRulesAdapter
+import com.example.hakonsreader.recyclerviewadapters.WikiBlocksAdapter
 import com.example.hakonsreader.viewmodels.*
 import com.example.hakonsreader.views.util.ViewUtil
 import com.example.hakonsreader.views.util.goneIf
 import com.example.hakonsreader.views.util.invisibleIf
 import com.example.hakonsreader.views.util.showPopupSortWithTime
+import com.github.zawadz88.materialpopupmenu.popupMenu
 import dagger.hilt.android.AndroidEntryPoint
 import java.lang.RuntimeException
 import java.util.*
@@ -145,6 +149,9 @@ class SubredditFragment : Fragment() {
     @Inject
     lateinit var postsDao: RedditPostsDao
 
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
     @Inject
     lateinit var subredditsDao: RedditSubredditsDao
 
@@ -415,7 +422,8 @@ class SubredditFragment : Fragment() {
                 subredditName,
                 api,
                 subredditsDao,
-                postsDao
+                postsDao,
+                writeQueue
         )).get(SubredditViewModel::class.java).apply {
             subreddit.observe(viewLifecycleOwner) {
                 val old = this@SubredditFragment.subreddit
@@ -893,6 +901,9 @@ class SubredditFragment : Fragment() {
         @Inject
         lateinit var api: RedditApi
 
+        @Inject
+        lateinit var wikiPagesDao: RedditWikiPagesDao
+
         private var _binding: FragmentSubredditWikiBinding? = null
         private val binding get() = _binding!!
 
@@ -901,7 +912,7 @@ class SubredditFragment : Fragment() {
                     ?: throw RuntimeException("No subreddit name given to wiki")
         }
 
-        private val wikiViewModel: SubredditWikiViewModel by viewModels { SubredditWikiViewModel.Factory(api.subreddit(name)) }
+        private val wikiViewModel: SubredditWikiViewModel by viewModels { SubredditWikiViewModel.Factory(name, api.subreddit(name), wikiPagesDao) }
 
         /**
          * A movement method to be used in the wiki that checks if the clicked link is another wiki page, and
@@ -958,10 +969,15 @@ class SubredditFragment : Fragment() {
                 enableTransitionType(LayoutTransition.CHANGING)
             }
 
-            binding.wikiContent.movementMethod = wikiLinkMovementMethod
+            binding.wikiBlocks.layoutManager = LinearLayoutManager(requireContext())
+            binding.wikiBlocks.adapter = WikiBlocksAdapter(wikiLinkMovementMethod)
+
             binding.wikiGoBack.setOnClickListener {
                 wikiViewModel.pop()
             }
+            binding.wikiTableOfContents.setOnClickListener {
+                showTableOfContents(it)
+            }
 
             setupViewModel()
 
@@ -980,17 +996,21 @@ class SubredditFragment : Fragment() {
         private fun setupViewModel() {
             with (wikiViewModel) {
                 page.observe(viewLifecycleOwner) {
-                    binding.wikiPage = it
+                    (binding.wikiBlocks.adapter as WikiBlocksAdapter).submitList(it.blocks)
 
                     binding.wikiGoBack.goneIf(!canGoBack())
+                    // The table of contents itself isn't created until it is shown
+                    binding.wikiTableOfContents.goneIf(it.blocks.none { block -> block.header != null })
 
-                    if (it.content.isBlank()) {
-                        binding.wikiContent.text = getString(R.string.subredditWikiEmpty)
+                    if (it.blocks.isEmpty()) {
+                        showMessage(R.string.subredditWikiEmpty)
                         return@observe
                     }
 
+                    binding.wikiMessage.visibility = View.GONE
+
                     // Ensure we're at the top when loading a new page (this might have to be stored in onSaveInstanceState)
-                    binding.scroller.scrollTo(0, 0)
+                    binding.wikiBlocks.scrollToPosition(0)
                 }
 
                 isLoading.observe(viewLifecycleOwner) {
@@ -1005,25 +1025,62 @@ class SubredditFragment : Fragment() {
 
         fun isLoading() = wikiViewModel.isLoading.value
 
+        /**
+         * Shows the table of contents of the current page. Clicking on a header scrolls to the header
+         *
+         * @param view The view to attach the popup to
+         */
+        private fun showTableOfContents(view: View) {
+            val tableOfContents = wikiViewModel.page.value?.tableOfContents ?: return
+
+            popupMenu {
+                style = R.style.Widget_MPM_Menu_Dark_CustomBackground
+
+                section {
+                    tableOfContents.forEach { (position, block) ->
+                        item {
+                            // Indent subheaders to show the structure of the page
+                            label = "  ".repeat(block.headerLevel - 1) + block.header
+                            callback = {
+                                (binding.wikiBlocks.layoutManager as LinearLayoutManager).scrollToPositionWithOffset(position, 0)
+                            }
+                        }
+                    }
+                }
+            }.show(view.context, view)
+        }
+
+        /**
+         * Shows a message instead of the content of a wiki page
+         */
+        private fun showMessage(message: Int) {
+            _binding?.let {
+                (it.wikiBlocks.adapter as WikiBlocksAdapter).submitList(emptyList())
+                it.wikiTableOfContents.visibility = View.GONE
+                it.wikiMessage.text = getString(message)
+                it.wikiMessage.visibility = View.VISIBLE
+            }
+        }
+
         private fun handleErrors(error: ErrorWrapper) {
             when (error.error.reason) {
                 // Disabled is basically if the subreddit hasn't created a wiki (or disabled later I suppose)
                 GenericError.WIKI_DISABLED -> {
                     // Just use this I guess
-                    _binding?.wikiContent?.text = getString(R.string.subredditWikiDisabled)
+                    showMessage(R.string.subredditWikiDisabled)
                 }
 
                 GenericError.WIKI_PAGE_NOT_FOUND -> {
-                    _binding?.wikiContent?.text = getString(R.string.subredditWikiNotFound)
+                    showMessage(R.string.subredditWikiNotFound)
                 }
 
                 // Moderator accessing a page not created
                 GenericError.WIKI_PAGE_NOT_CREATED -> {
-                    _binding?.wikiContent?.text = getString(R.string.subredditWikiNotCreated)
+                    showMessage(R.string.subredditWikiNotCreated)
                 }
 
                 GenericError.WIKI_MAY_NOT_VIEW -> {
-                    _binding?.wikiContent?.text = getString(R.string.subredditWikiCannotView)
+                    showMessage(R.string.subredditWikiCannotView)
                 }
 
                 else -> {
@@ -84,7 +84,7 @@ class ContentInfoBottomSheet : BottomSheetDialogFragment() {
             if (currentPostJson != null) {
                 val currentPost = Gson().fromJson(currentPostJson, RedditPost::class.java)
 
-                val contentView = generatePostContent(requireContext(), currentPost, showTextContent = false, reusableViews = null)
+                val contentView = generatePostContent(requireContext(), currentPost, showTextContent = false)
                 if (contentView != null) {
                     if (contentView is ContentVideo) {
                         contentView.observeVideoLifecycle(viewLifecycleOwner)
@@ -9,7 +9,7 @@ import com.bumptech.glide.Glide
 import com.example.hakonsreader.api.model.RedditAward
 import com.example.hakonsreader.databinding.BottomSheetShowAwardBinding
 import com.example.hakonsreader.markwonplugins.EnlargeLinkPlugin
-import com.example.hakonsreader.markwonplugins.RedditLinkPlugin
+import com.example.hakonsreader.markwonplugins.RedditMarkdownPlugin
 import com.example.hakonsreader.misc.InternalLinkMovementMethod
 import com.example.hakonsreader.misc.Settings
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment
@@ -63,7 +63,7 @@ class ShowAwardBottomSheet : BottomSheetDialogFragment() {
 
         // Some descriptions have subreddit links, so ensure those are linked
         // This text isn't markdown text, so using the default Markwon from App is unnecessary and inefficient
-        Markwon.builder(requireContext()).usePlugin(RedditLinkPlugin()).usePlugin(EnlargeLinkPlugin(settings)).build().apply {
+        Markwon.builder(requireContext()).usePlugin(RedditMarkdownPlugin()).usePlugin(EnlargeLinkPlugin(settings)).build().apply {
             setMarkdown(binding.description, desc)
         }
 
@@ -1,22 +1,23 @@
 package com.example.hakonsreader.markwonplugins
 
-import android.text.SpannableString
-import android.text.Spanned
 import android.text.style.RelativeSizeSpan
 import android.text.style.URLSpan
-import android.widget.TextView
 import com.example.hakonsreader.misc.Settings
 import io.noties.markwon.AbstractMarkwonPlugin
+import io.noties.markwon.MarkwonVisitor
+import org.commonmark.node.Node
 
 /**
  * Markwon plugin that goes over the entire text and applies a [RelativeSizeSpan] to the text where a
  * [URLSpan] is found.
  *
- * The scale applied is the scale returned by [Settings.linkScale]
+ * The scale applied is the scale returned by [Settings.linkScale]. The spans are set when the markdown is
+ * rendered, so the rendered text can be precomputed (which doesn't allow spans that affect the size of
+ * the text to be set after it has been precomputed)
  */
 class EnlargeLinkPlugin(private val settings: Settings) : AbstractMarkwonPlugin() {
-    override fun afterSetText(textView: TextView) {
-        super.afterSetText(textView)
+    override fun afterRender(node: Node, visitor: MarkwonVisitor) {
+        super.afterRender(node, visitor)
 
         val linkScale = settings.linkScale()
 
@@ -27,13 +28,11 @@ class EnlargeLinkPlugin(private val settings: Settings) : AbstractMarkwonPlugin(
 
         val scale = linkScale / 100f
 
-        val string = textView.text as SpannableString
-        val urlSpans = string.getSpans(0, string.length, URLSpan::class.java)
+        val builder = visitor.builder()
+        val urlSpans = builder.getSpans(0, builder.length).filter { it.what is URLSpan }
 
         for (urlSpan in urlSpans) {
-            val start = string.getSpanStart(urlSpan)
-            val end = string.getSpanEnd(urlSpan)
-            string.setSpan(RelativeSizeSpan(scale), start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+            builder.setSpan(RelativeSizeSpan(scale), urlSpan.start, urlSpan.end)
         }
     }
-}
\ No newline at end of file
+}
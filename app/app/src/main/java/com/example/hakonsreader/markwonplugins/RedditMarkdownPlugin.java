@@ -0,0 +1,428 @@
+package com.example.hakonsreader.markwonplugins;
+
+import android.text.SpannableStringBuilder;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.URLSpan;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.commonmark.ext.gfm.tables.TableCell;
+import org.commonmark.node.AbstractVisitor;
+import org.commonmark.node.Block;
+import org.commonmark.node.Image;
+import org.commonmark.node.Link;
+import org.commonmark.node.Node;
+import org.commonmark.node.Text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import io.noties.markwon.AbstractMarkwonPlugin;
+import io.noties.markwon.MarkwonVisitor;
+import io.noties.markwon.Prop;
+import io.noties.markwon.SpannableBuilder;
+
+
+/**
+ * Markwon plugin for Reddit specific markdown and links: spoilers, superscripts, links to subreddits
+ * and users, and raw URLs. See {@link RedditMarkdownScanner}
+ *
+ * <p>The text of each text node is scanned once when it is rendered, and the spans are set directly
+ * when rendering. This means the rendered text doesn't have to be scanned again before it is set on
+ * a TextView, and text in code is never scanned. Text already in a link is not linked again</p>
+ *
+ * <p>The syntax of spoilers and superscripts (">!", "!<", "^(", ")" and "^") is removed from the rendered
+ * text, so the text only contains what is shown. The syntax is marked when it is found and removed when the
+ * document has been rendered, as other nodes that started after the syntax still have to set their spans.
+ * Table cells are moved out of the text when they have been rendered, so syntax in table cells is removed
+ * when the text it is in has been rendered, where possible</p>
+ *
+ * <p>This replaces how {@link io.noties.markwon.core.CorePlugin} renders {@link Text} nodes, and must be added after it</p>
+ */
+public class RedditMarkdownPlugin extends AbstractMarkwonPlugin {
+
+    /**
+     * The renderer for the document being rendered. Markwon creates new render props for every render,
+     * so this is not shared between renders on different threads
+     */
+    private static final Prop<Renderer> RENDERER = Prop.of("RedditMarkdownPlugin-renderer");
+
+    @NonNull
+    @Override
+    public String processMarkdown(@NonNull String markdown) {
+        // replace all `>!` with `&gt;!` so no blockquote would be parsed (when spoiler starts at new line)
+        return markdown.replace(">!", "&gt;!");
+    }
+
+    @Override
+    public void configureVisitor(@NonNull MarkwonVisitor.Builder builder) {
+        builder.on(Text.class, (visitor, text) -> getRenderer(visitor).render(text));
+    }
+
+    @Override
+    public void afterRender(@NonNull Node node, @NonNull MarkwonVisitor visitor) {
+        Renderer renderer = RENDERER.get(visitor.renderProps());
+        if (renderer != null) {
+            renderer.removeSyntax();
+        }
+    }
+
+    /**
+     * Scans the text nodes of a parsed document the way they are scanned when the document is rendered,
+     * without rendering it. This doesn't need Android, so it can be used outside of Markwon (eg. in benchmarks)
+     *
+     * <p>The positions given to the output are positions in the text of the text nodes. Links in the markdown
+     * (eg. "[text](url)") are given to {@link RedditMarkdownScanner.Output#onLink} as well, so the links are
+     * the links that would be clickable in the rendered text</p>
+     *
+     * @param document The parsed document. The markdown should be processed with {@link #processMarkdown(String)}
+     * before it was parsed
+     * @param output The output to give what is found to
+     */
+    public static void scan(@NonNull Node document, @NonNull RedditMarkdownScanner.Output output) {
+        RedditMarkdownScanner scanner = new RedditMarkdownScanner(output);
+
+        document.accept(new AbstractVisitor() {
+            private int length;
+            private char previous = '\n';
+
+            @Override
+            public void visit(Link link) {
+                int start = length;
+                visitChildren(link);
+                output.onLink(link.getDestination(), start, length);
+            }
+
+            @Override
+            public void visit(Text text) {
+                String literal = text.getLiteral();
+                scanner.scan(literal, length, previous, findBlock(text), !isInLink(text));
+
+                length += literal.length();
+                if (!literal.isEmpty()) {
+                    previous = literal.charAt(literal.length() - 1);
+                }
+            }
+        });
+    }
+
+    private static Renderer getRenderer(@NonNull MarkwonVisitor visitor) {
+        Renderer renderer = RENDERER.get(visitor.renderProps());
+        if (renderer == null) {
+            renderer = new Renderer(visitor.builder());
+            RENDERER.set(visitor.renderProps(), renderer);
+        }
+        return renderer;
+    }
+
+    /**
+     * Finds the block a node is in. Table cells are rendered separately, so these are seen as blocks
+     */
+    private static Node findBlock(@NonNull Node node) {
+        Node parent = node.getParent();
+        while (parent != null && !(parent instanceof Block) && !(parent instanceof TableCell)) {
+            parent = parent.getParent();
+        }
+        return parent != null ? parent : node;
+    }
+
+    private static boolean isInLink(@NonNull Node node) {
+        Node parent = node.getParent();
+        while (parent != null && !(parent instanceof Block)) {
+            if (parent instanceof Link || parent instanceof Image) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
+    private static boolean isAncestor(@NonNull Node ancestor, @NonNull Node node) {
+        Node parent = node.getParent();
+        while (parent != null) {
+            if (parent == ancestor) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Marks syntax that should be removed from the rendered text
+     */
+    private static class SyntaxSpan {
+        /**
+         * The position of the syntax in the scanned text
+         */
+        final int start;
+        final int end;
+
+        /**
+         * The text node the syntax is in. This is only set for syntax in table cells
+         */
+        Text text;
+
+        SyntaxSpan(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Renders text nodes and sets the spans for what is found by the scanner
+     *
+     * <p>The positions from the scanner are positions in the text as if no syntax had been removed. Syntax is
+     * only removed while rendering in table cells, so outside of table cells these are the positions in
+     * the rendered text</p>
+     */
+    private static class Renderer implements RedditMarkdownScanner.Output {
+        private final SpannableBuilder builder;
+        private final RedditMarkdownScanner scanner = new RedditMarkdownScanner(this);
+
+        /**
+         * The block and text node being rendered
+         */
+        private Node block;
+        private Text text;
+
+        /**
+         * True if syntax has been found outside of table cells, which is removed when the document has been rendered
+         */
+        private boolean hasSyntax;
+
+        /**
+         * The text nodes rendered in the current table cell, with the position they start at in the scanned text
+         */
+        private final List<Text> cellTexts = new ArrayList<>();
+        private final List<Integer> cellTextStarts = new ArrayList<>();
+
+        /**
+         * Syntax in the current table cell that hasn't been removed yet
+         */
+        private final List<SyntaxSpan> cellSyntax = new ArrayList<>();
+
+        /**
+         * Syntax that has been removed from the current table cell
+         */
+        private final List<SyntaxSpan> removedCellSyntax = new ArrayList<>();
+        private int removedCellLength;
+
+        Renderer(SpannableBuilder builder) {
+            this.builder = builder;
+        }
+
+        void render(@NonNull Text text) {
+            final Node block = findBlock(text);
+            if (block != this.block) {
+                this.block = block;
+
+                // Syntax left in the previous cell can't be removed as the cell has been moved to the table
+                cellTexts.clear();
+                cellTextStarts.clear();
+                cellSyntax.clear();
+                removedCellSyntax.clear();
+                removedCellLength = 0;
+            }
+            this.text = text;
+
+            final boolean inTableCell = block instanceof TableCell;
+            final String literal = text.getLiteral();
+
+            final int start = builder.length();
+            final char previous = start == 0 ? '\n' : builder.charAt(start - 1);
+            builder.append(literal);
+
+            final int offset = start + removedCellLength;
+            if (inTableCell) {
+                cellTexts.add(text);
+                cellTextStarts.add(offset);
+            }
+
+            scanner.scan(literal, offset, previous, block, !isInLink(text));
+
+            if (inTableCell && !cellSyntax.isEmpty()) {
+                removeCellSyntax();
+            }
+        }
+
+        @Override
+        public void onLink(@NonNull String url, int start, int end) {
+            // By setting a URL span we can handle the link in InternalLinkMovementMethod which looks for
+            // URLSpans, so we can get the highlight when touched
+            builder.setSpan(new URLSpan(url), toRendered(start), toRendered(end));
+        }
+
+        @Override
+        public void onSpoiler(int start, int end) {
+            builder.setSpan(new RedditSpoilerSpan(), toRendered(start), toRendered(end));
+        }
+
+        @Override
+        public void onSuperscript(int start, int end) {
+            // SuperscriptSpan puts it higher, and RelativeSizeSpan makes the text smaller
+            builder.setSpan(new SuperscriptSpan(), toRendered(start), toRendered(end));
+            builder.setSpan(new RelativeSizeSpan(0.9f), toRendered(start), toRendered(end));
+        }
+
+        @Override
+        public void onSyntax(int start, int end) {
+            SyntaxSpan syntax = new SyntaxSpan(start, end);
+            builder.setSpan(syntax, toRendered(start), toRendered(end));
+
+            if (block instanceof TableCell) {
+                syntax.text = findCellText(start);
+                cellSyntax.add(syntax);
+            } else {
+                hasSyntax = true;
+            }
+        }
+
+        /**
+         * Removes the syntax found outside of table cells from the rendered text
+         */
+        void removeSyntax() {
+            if (hasSyntax) {
+                removeSyntax(0, null);
+                hasSyntax = false;
+            }
+        }
+
+        /**
+         * Removes the syntax in the current table cell that can be removed now
+         */
+        private void removeCellSyntax() {
+            List<SyntaxSpan> remove = new ArrayList<>();
+            int from = builder.length();
+
+            Iterator<SyntaxSpan> iterator = cellSyntax.iterator();
+            while (iterator.hasNext()) {
+                SyntaxSpan syntax = iterator.next();
+                if (canRemove(syntax)) {
+                    from = Math.min(from, toRendered(syntax.start));
+                    remove.add(syntax);
+                    iterator.remove();
+                }
+            }
+
+            if (remove.isEmpty()) {
+                return;
+            }
+
+            removeSyntax(from, remove);
+
+            for (SyntaxSpan syntax : remove) {
+                removedCellSyntax.add(syntax);
+                removedCellLength += syntax.end - syntax.start;
+            }
+        }
+
+        /**
+         * Checks if syntax can be removed while rendering. Nodes the current text is in that started after the
+         * syntax haven't set their spans yet, and would set them at the wrong position if the syntax is removed
+         * (eg. the link in "^[link](https://...)")
+         */
+        private boolean canRemove(SyntaxSpan syntax) {
+            if (syntax.text == text) {
+                return true;
+            }
+
+            for (Node parent = text.getParent(); parent != null && parent != block; parent = parent.getParent()) {
+                if (!isAncestor(parent, syntax.text)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Removes syntax from the rendered text
+         *
+         * @param from The position to remove from. All the syntax must be after this
+         * @param syntax The syntax to remove, or null to remove all syntax after {@code from}
+         */
+        private void removeSyntax(int from, @Nullable Collection<SyntaxSpan> syntax) {
+            // The text is moved out of the builder and back again, so the spans that are moved with it are
+            // adjusted when the syntax is removed. Spans that start before and end after the position
+            // must be moved as well
+            from = findStartOfSpansAt(from);
+
+            CharSequence removed = builder.removeFromEnd(from);
+            SpannableStringBuilder text = removed instanceof SpannableStringBuilder
+                    ? (SpannableStringBuilder) removed
+                    : new SpannableStringBuilder(removed);
+
+            if (syntax == null) {
+                syntax = Arrays.asList(text.getSpans(0, text.length(), SyntaxSpan.class));
+            }
+
+            for (SyntaxSpan span : syntax) {
+                int start = text.getSpanStart(span);
+                int end = text.getSpanEnd(span);
+                text.removeSpan(span);
+
+                if (start != -1 && start < end) {
+                    text.delete(start, end);
+                }
+            }
+
+            builder.append(text);
+        }
+
+        /**
+         * Finds the start of the spans that start before and end after a position
+         *
+         * @return The start of the first span, or the position if no spans are set over the position
+         */
+        private int findStartOfSpansAt(int position) {
+            if (position == 0) {
+                return 0;
+            }
+
+            boolean moved;
+            do {
+                moved = false;
+                for (SpannableBuilder.Span span : builder.getSpans(0, builder.length())) {
+                    if (span.start < position && span.end > position) {
+                        position = span.start;
+                        moved = true;
+                    }
+                }
+            } while (moved);
+
+            return position;
+        }
+
+        /**
+         * Converts a position in the scanned text to the position in the rendered text
+         */
+        private int toRendered(int position) {
+            int rendered = position;
+            for (SyntaxSpan removed : removedCellSyntax) {
+                if (removed.end <= position) {
+                    rendered -= removed.end - removed.start;
+                } else if (removed.start < position) {
+                    rendered -= position - removed.start;
+                }
+            }
+            return rendered;
+        }
+
+        /**
+         * Finds the text node in the current table cell a position in the scanned text is in
+         */
+        private Text findCellText(int position) {
+            for (int i = cellTextStarts.size() - 1; i >= 0; i--) {
+                if (cellTextStarts.get(i) <= position) {
+                    return cellTexts.get(i);
+                }
+            }
+            return text;
+        }
+    }
+}
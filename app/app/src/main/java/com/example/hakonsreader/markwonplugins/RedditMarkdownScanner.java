@@ -0,0 +1,326 @@
+package com.example.hakonsreader.markwonplugins;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds Reddit specific markdown and links in the text of a markdown document, for {@link RedditMarkdownPlugin}
+ *
+ * <p>The following is found:</p>
+ * <ol>
+ *     <li>Spoilers: >!spoiler!<</li>
+ *     <li>Superscripts: ^word and ^(sentence). Superscripts can be nested, ie. ^(hello ^(there))</li>
+ *     <li>Links to subreddits and users: r/subreddit, /r/subreddit, u/user, /u/user, user/user</li>
+ *     <li>Raw URLs: https://...</li>
+ * </ol>
+ *
+ * <p>The text is given one text node at a time, in the order the nodes are rendered, with
+ * {@link #scan(String, int, char, Object, boolean)}. Spoilers and superscripts can span multiple text nodes
+ * (eg. ">!spoiler with *emphasis*!<"), so their start is remembered until they are closed, as long
+ * as the text is in the same block</p>
+ *
+ * <p>A scanner must only be used for one document</p>
+ */
+public class RedditMarkdownScanner {
+
+    /**
+     * Receives what is found by the scanner. The positions are the positions in the scanned text, as given
+     * by the offsets passed to {@link #scan(String, int, char, Object, boolean)}
+     */
+    public interface Output {
+        /**
+         * Called when a link has been found
+         *
+         * @param url The URL of the link
+         * @param start The start of the link
+         * @param end The end of the link (exclusive)
+         */
+        void onLink(@NonNull String url, int start, int end);
+
+        /**
+         * Called when a spoiler has been found. The range includes the syntax
+         */
+        void onSpoiler(int start, int end);
+
+        /**
+         * Called when a superscript has been found. The range includes the syntax
+         */
+        void onSuperscript(int start, int end);
+
+        /**
+         * Called for markdown syntax that should not be shown, such as the "^(" and ")" of a superscript.
+         * This is called after the spoiler or superscript the syntax is for
+         */
+        void onSyntax(int start, int end);
+    }
+
+    /**
+     * Matches raw URLs. Pattern taken from: https://stackoverflow.com/a/3809435/7750841
+     */
+    private static final Pattern URL_PATTERN =
+            Pattern.compile("https://(www\\.)?[-a-zA-Z0-9@:%._+~#=]{1,256}\\.[a-zA-Z0-9()]{1,6}\\b([-a-zA-Z0-9()@:%_+.~#?&/=,]*)");
+
+    /**
+     * Matches links to subreddits and users. Subreddits are alphanumericals and underscores, users
+     * are the same and dashes. The slash at the beginning and end is optional
+     */
+    private static final Pattern REDDIT_LINK_PATTERN =
+            Pattern.compile("/?(r/[a-z0-9_]+|u(ser)?/[a-z0-9_-]+)/?(?![a-z0-9_/-])", Pattern.CASE_INSENSITIVE);
+
+    private static final int SPOILER = 0;
+    private static final int SENTENCE_SUPERSCRIPT = 1;
+    private static final int WORD_SUPERSCRIPT = 2;
+
+    /**
+     * The start of a spoiler or superscript that hasn't been closed yet
+     */
+    private static class Marker {
+        final int type;
+        final int start;
+
+        /**
+         * For sentence superscripts, the amount of parentheses opened in the superscript
+         */
+        int depth;
+
+        Marker(int type, int start) {
+            this.type = type;
+            this.start = start;
+        }
+    }
+
+    private final Output output;
+
+    /**
+     * The markers not yet closed, with the latest at the top
+     */
+    private final ArrayDeque<Marker> markers = new ArrayDeque<>();
+
+    /**
+     * The block the last text scanned was in
+     */
+    private Object block;
+
+    private Matcher urlMatcher;
+    private Matcher redditLinkMatcher;
+
+    /**
+     * @param output The output to give what is found to
+     */
+    public RedditMarkdownScanner(@NonNull Output output) {
+        this.output = output;
+    }
+
+    /**
+     * Scans the text of a text node
+     *
+     * @param text The text to scan
+     * @param offset The position of the text in the scanned text. This is the position in the rendered text,
+     * as if no syntax has been removed from it
+     * @param previous The character rendered before the text, or a newline if the text is at the start
+     * @param block The block the text is in. Spoilers and superscripts can't span multiple blocks
+     * @param linkify True to look for links. This should be false for text that is already in a link
+     */
+    public void scan(@NonNull String text, int offset, char previous, @NonNull Object block, boolean linkify) {
+        if (block != this.block) {
+            this.block = block;
+            markers.clear();
+            previous = '\n';
+        }
+
+        if (linkify) {
+            urlMatcher = URL_PATTERN.matcher(text);
+            redditLinkMatcher = REDDIT_LINK_PATTERN.matcher(text);
+        }
+
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = text.charAt(i);
+            int position = offset + i;
+
+            if (linkify) {
+                int linkEnd = findLink(text, i, previous);
+                if (linkEnd != -1) {
+                    output.onLink(text.substring(i, linkEnd), position, offset + linkEnd);
+                    previous = text.charAt(linkEnd - 1);
+                    i = linkEnd;
+                    continue;
+                }
+            }
+
+            switch (c) {
+                case '!':
+                    if (previous == '>') {
+                        markers.push(new Marker(SPOILER, position - 1));
+                    }
+                    break;
+
+                case '<':
+                    if (previous == '!') {
+                        closeSpoiler(position + 1);
+                    }
+                    break;
+
+                case '^':
+                    if (i + 1 < length && text.charAt(i + 1) == '(') {
+                        markers.push(new Marker(SENTENCE_SUPERSCRIPT, position));
+                        previous = '(';
+                        i += 2;
+                        continue;
+                    }
+                    markers.push(new Marker(WORD_SUPERSCRIPT, position));
+                    break;
+
+                case '(':
+                    Marker top = markers.peek();
+                    if (top != null && top.type == SENTENCE_SUPERSCRIPT) {
+                        top.depth++;
+                    }
+                    break;
+
+                case ')':
+                    closeSentenceSuperscript(position);
+                    break;
+
+                default:
+                    if (Character.isWhitespace(c)) {
+                        closeWordSuperscripts(position, true);
+                    }
+                    break;
+            }
+
+            previous = c;
+            i++;
+        }
+
+        // Word superscripts end with the text node, unless nothing is in the superscript yet, as the
+        // word is then in the next node (eg. "^[link](https://...)" or "^*word*")
+        closeWordSuperscripts(offset + length, false);
+    }
+
+    /**
+     * Finds a link at a position in the text
+     *
+     * @return The end of the link, or -1 if there is no link at the position
+     */
+    private int findLink(String text, int start, char previous) {
+        char c = text.charAt(start);
+
+        if (c == 'h' && text.startsWith("https://", start)) {
+            if (urlMatcher.region(start, text.length()).lookingAt()) {
+                return urlMatcher.end();
+            }
+        } else if ((c == '/' || c == 'r' || c == 'R' || c == 'u' || c == 'U')
+                // Text might randomly include r/something without the intention being to link
+                // to a subreddit, so only links at the start of a word (or in a parenthesis) are matched
+                && (Character.isWhitespace(previous) || previous == '(')) {
+            if (redditLinkMatcher.region(start, text.length()).lookingAt()) {
+                return redditLinkMatcher.end();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Closes the latest spoiler, if there is one with at least one character in it
+     *
+     * @param end The end of the spoiler, after the "!<"
+     */
+    private void closeSpoiler(int end) {
+        Marker spoiler = null;
+        for (Marker marker : markers) {
+            if (marker.type == SPOILER) {
+                spoiler = marker;
+                break;
+            }
+        }
+
+        // ">!<" is not a spoiler, the "!" can't be both the start and the end
+        if (spoiler == null || end - spoiler.start < 5) {
+            return;
+        }
+
+        // Anything opened in the spoiler and not closed is not closed by anything after the spoiler
+        while (markers.pop() != spoiler) {
+            // Nothing to do
+        }
+
+        output.onSpoiler(spoiler.start, end);
+        output.onSyntax(spoiler.start, spoiler.start + 2);
+        output.onSyntax(end - 2, end);
+    }
+
+    /**
+     * Closes the latest sentence superscript, if it isn't closing a parenthesis opened in the superscript
+     *
+     * @param position The position of the ")"
+     */
+    private void closeSentenceSuperscript(int position) {
+        // The ")" ends words in the sentence, ie. "^(hello ^there)", but ")" is a part of the word if
+        // the word isn't in a sentence
+        Marker sentence = null;
+        for (Marker marker : markers) {
+            if (marker.type != WORD_SUPERSCRIPT) {
+                if (marker.type == SENTENCE_SUPERSCRIPT) {
+                    sentence = marker;
+                }
+                break;
+            }
+        }
+        if (sentence == null) {
+            return;
+        }
+
+        closeWordSuperscripts(position, true);
+
+        if (sentence.depth > 0) {
+            sentence.depth--;
+            return;
+        }
+
+        markers.pop();
+        output.onSuperscript(sentence.start, position + 1);
+        output.onSyntax(sentence.start, sentence.start + 2);
+        output.onSyntax(position, position + 1);
+    }
+
+    /**
+     * Closes the word superscripts at the top of the markers
+     *
+     * @param end The end of the words
+     * @param closeEmpty True to also close words with nothing in them, which are then not superscripts.
+     * If false these are kept open
+     */
+    private void closeWordSuperscripts(int end, boolean closeEmpty) {
+        List<Marker> empty = null;
+
+        while (!markers.isEmpty() && markers.peek().type == WORD_SUPERSCRIPT) {
+            Marker word = markers.pop();
+
+            if (word.start + 1 < end) {
+                output.onSuperscript(word.start, end);
+                output.onSyntax(word.start, word.start + 1);
+            } else if (!closeEmpty) {
+                if (empty == null) {
+                    empty = new ArrayList<>();
+                }
+                empty.add(word);
+            }
+        }
+
+        if (empty != null) {
+            // Push back in the original order
+            for (int i = empty.size() - 1; i >= 0; i--) {
+                markers.push(empty.get(i));
+            }
+        }
+    }
+}
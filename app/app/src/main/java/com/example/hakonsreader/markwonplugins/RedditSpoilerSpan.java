@@ -0,0 +1,55 @@
+package com.example.hakonsreader.markwonplugins;
+
+import android.graphics.Color;
+import android.text.TextPaint;
+import android.text.style.ClickableSpan;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import io.noties.markwon.utils.ColorUtils;
+
+/**
+ * Span for Reddit spoilers. The text is hidden until the spoiler is clicked
+ *
+ * <p>The span holds if the spoiler has been revealed, so the same span must not be shown in multiple
+ * TextViews. Use {@link #copy()} to get a span that hasn't been revealed</p>
+ */
+public class RedditSpoilerSpan extends ClickableSpan {
+
+    private boolean revealed;
+
+    @Override
+    public void onClick(@NonNull View widget) {
+        revealed = true;
+        widget.postInvalidateOnAnimation();
+    }
+
+    @Override
+    public void updateDrawState(@NonNull TextPaint tp) {
+        if (!revealed) {
+            // use the same text color
+            tp.bgColor = Color.GRAY;
+            tp.setColor(Color.GRAY);
+        } else {
+            // for example keep a bit of black background to remind that it is a spoiler
+            tp.bgColor = ColorUtils.applyAlpha(Color.GRAY, 50);
+        }
+    }
+
+    public boolean isRevealed() {
+        return revealed;
+    }
+
+    public void setRevealed(boolean revealed) {
+        this.revealed = revealed;
+    }
+
+    /**
+     * @return A new span for the same spoiler, which is not revealed
+     */
+    @NonNull
+    public RedditSpoilerSpan copy() {
+        return new RedditSpoilerSpan();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.hakonsreader.misc
+
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import okhttp3.Protocol
+import java.net.InetSocketAddress
+import java.net.Proxy
+
+/**
+ * [EventListener] that counts the connections used per host, so that it can be verified that
+ * connections are reused between the API, images, and videos
+ *
+ * All functions are thread safe
+ */
+class ConnectionStats : EventListener() {
+
+    private val lock = Any()
+
+    /**
+     * The amount of connections opened, mapped to the host
+     */
+    private val opened = HashMap<String, Int>()
+
+    /**
+     * The amount of connections currently in use by calls, mapped to the host
+     */
+    private val inUse = HashMap<String, Int>()
+
+    /**
+     * The amount of times a connection was acquired by a call, mapped to the host
+     */
+    private val acquired = HashMap<String, Int>()
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+        increment(opened, call.request().url().host())
+    }
+
+    override fun connectionAcquired(call: Call, connection: Connection) {
+        val host = connection.route().address().url().host()
+        synchronized(lock) {
+            increment(inUse, host)
+            increment(acquired, host)
+        }
+    }
+
+    override fun connectionReleased(call: Call, connection: Connection) {
+        val host = connection.route().address().url().host()
+        synchronized(lock) {
+            inUse[host]?.let { inUse[host] = it - 1 }
+        }
+    }
+
+    private fun increment(counts: MutableMap<String, Int>, host: String) {
+        synchronized(lock) {
+            counts[host] = (counts[host] ?: 0) + 1
+        }
+    }
+
+    /**
+     * @return The amount of connections opened, mapped to the host
+     */
+    fun getOpenedConnections(): Map<String, Int> = synchronized(lock) { HashMap(opened) }
+
+    /**
+     * @return The amount of connections currently in use by calls, mapped to the host
+     */
+    fun getConnectionsInUse(): Map<String, Int> = synchronized(lock) { HashMap(inUse) }
+
+    /**
+     * @return The amount of times a connection was acquired by a call, mapped to the host. Compared
+     * to [getOpenedConnections] this shows how often connections were reused
+     */
+    fun getAcquiredConnections(): Map<String, Int> = synchronized(lock) { HashMap(acquired) }
+
+    override fun toString(): String {
+        return synchronized(lock) {
+            opened.keys.sorted().joinToString(separator = "\n") { host ->
+                "$host: opened=${opened[host]}; acquired=${acquired[host] ?: 0}; in use=${inUse[host] ?: 0}"
+            }
+        }
+    }
+}
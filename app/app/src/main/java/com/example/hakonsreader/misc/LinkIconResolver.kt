@@ -0,0 +1,146 @@
+package com.example.hakonsreader.misc
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.content.pm.PackageManager
+import android.graphics.drawable.Drawable
+import android.net.Uri
+import android.util.LruCache
+import kotlinx.coroutines.*
+
+/**
+ * Resolves the icon of the application a link opens in, for link previews
+ *
+ * Creating the intent for a link and querying the package manager is too slow to do on the main thread
+ * for every link shown, so links are resolved in the background and the result is cached. Links with
+ * the same host and the same type of path (see [createKey]) resolve to the same application, so the
+ * result is cached for that and not for every link. The cache is cleared when applications are
+ * installed, updated or removed, as the links might then resolve to a different application
+ *
+ * @param context The context to resolve icons and listen for package changes with
+ */
+class LinkIconResolver(context: Context) {
+
+    companion object {
+        /**
+         * The max amount of link types to cache icons for
+         */
+        private const val MAX_CACHED_LINK_TYPES = 100
+    }
+
+    /**
+     * The application a link type resolves to
+     *
+     * @param packageName The package name of the application, or null if no application handles the link
+     */
+    private class ResolvedLink(val packageName: String?, val icon: Drawable?)
+
+    private val context = context.applicationContext
+    private val cache = LruCache<String, ResolvedLink>(MAX_CACHED_LINK_TYPES)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    init {
+        val packageChangesReceiver = object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                cache.evictAll()
+            }
+        }
+        val filter = IntentFilter().apply {
+            addAction(Intent.ACTION_PACKAGE_ADDED)
+            addAction(Intent.ACTION_PACKAGE_CHANGED)
+            addAction(Intent.ACTION_PACKAGE_REPLACED)
+            addAction(Intent.ACTION_PACKAGE_REMOVED)
+            addDataScheme("package")
+        }
+        this.context.registerReceiver(packageChangesReceiver, filter)
+    }
+
+    /**
+     * Gets the icon of the application a link opens in
+     *
+     * If the icon is cached [onResolved] is called immediately, otherwise the link is resolved in the
+     * background and [onResolved] is called on the main thread
+     *
+     * @param url The link to get the icon for
+     * @param onResolved Called with the icon, or null if no application handles the link. This is not
+     * called if the returned job is cancelled
+     * @return The job resolving the link, or null if the icon was cached
+     */
+    fun loadIcon(url: String, onResolved: (Drawable?) -> Unit): Job? {
+        if (url.isBlank()) {
+            onResolved(null)
+            return null
+        }
+
+        val key = createKey(url)
+        cache.get(key)?.let {
+            onResolved(copyIcon(it))
+            return null
+        }
+
+        return scope.launch {
+            val resolved = resolve(url)
+            cache.put(key, resolved)
+
+            withContext(Dispatchers.Main) {
+                onResolved(copyIcon(resolved))
+            }
+        }
+    }
+
+    /**
+     * Resolves which application a link opens in
+     */
+    private fun resolve(url: String): ResolvedLink {
+        // Create the intent with internal links as false, otherwise any link would show our app
+        // icon as it would resolve to WebViewActivity/VideoYoutubeActivity (if the user had that option enabled)
+        val intent = createIntent(url, CreateIntentOptions(openLinksInternally = false, openYoutubeVideosInternally = false), context)
+
+        // Could potentially check if this matches the default browser and not show icon for that, as
+        // it will always show something in that case
+        val packageName = context.packageManager.queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY)
+                .firstOrNull()
+                ?.activityInfo
+                ?.packageName
+                ?: return ResolvedLink(null, null)
+
+        val icon = try {
+            context.packageManager.getApplicationIcon(packageName)
+        } catch (e: PackageManager.NameNotFoundException) {
+            // Removed after it was resolved
+            null
+        }
+
+        return ResolvedLink(packageName, icon)
+    }
+
+    /**
+     * Creates a copy of a cached icon, so the cached icon isn't changed by the view it is shown in
+     * (eg. when the bounds are set)
+     */
+    private fun copyIcon(resolved: ResolvedLink): Drawable? {
+        val icon = resolved.icon ?: return null
+        return icon.constantState?.newDrawable(context.resources) ?: icon
+    }
+
+    /**
+     * Creates the key a link is cached with. This is the host, the first path segment (if it isn't
+     * the only segment, as that is typically an ID or a name), and the file extension of the last segment
+     *
+     * Eg. "https://www.reddit.com/r/GlobalOffensive/comments/abc" is "reddit.com/r", and
+     * "https://i.redd.it/abc.png" is "i.redd.it/.png"
+     */
+    private fun createKey(url: String): String {
+        // URLs sent here might be of "/r/whatever", which are links to reddit.com
+        val uri = Uri.parse(url)
+        val host = uri.host?.lowercase()?.removePrefix("www.") ?: "reddit.com"
+
+        val segments = uri.pathSegments
+        val firstSegment = if (segments.size >= 2) segments.first().lowercase() else ""
+        val extension = segments.lastOrNull()?.substringAfterLast('.', "")?.lowercase() ?: ""
+
+        return if (extension.isEmpty()) "$host/$firstSegment" else "$host/$firstSegment.$extension"
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.hakonsreader.misc
+
+import android.content.Context
+import com.bumptech.glide.Glide
+import com.bumptech.glide.Registry
+import com.bumptech.glide.annotation.GlideModule
+import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader
+import com.bumptech.glide.load.model.GlideUrl
+import com.bumptech.glide.module.AppGlideModule
+import com.example.hakonsreader.di.NetworkModule
+import dagger.hilt.android.EntryPointAccessors
+import java.io.InputStream
+
+/**
+ * Glide module that loads images with the shared OkHttp client, so that images share connections
+ * (and HTTP/2 multiplexing) with the rest of the app
+ */
+@GlideModule
+class ReaderGlideModule : AppGlideModule() {
+
+    override fun registerComponents(context: Context, glide: Glide, registry: Registry) {
+        val client = EntryPointAccessors.fromApplication(context, NetworkModule.NetworkEntryPoint::class.java).httpClient()
+        registry.replace(GlideUrl::class.java, InputStream::class.java, OkHttpUrlLoader.Factory(client))
+    }
+
+    // The OkHttp integration is registered above, so the manifest doesn't have to be parsed
+    override fun isManifestParsingEnabled() = false
+}
@@ -51,6 +51,11 @@ class Settings(context: Context) {
             .isWiFiAvailable()
     }
 
+    /**
+     * @return True if the device is currently connected to WiFi
+     */
+    fun isWiFiConnected() = isWifiConnected
+
     /**
      * Registers network callbacks that modify [isWifiConnected] with API level in mind
      */
@@ -90,6 +95,19 @@ class Settings(context: Context) {
         return preferences.getBoolean(resources.getString(R.string.prefs_key_cache_nsfw), resources.getBoolean(R.bool.prefs_default_value_cache_nsfw))
     }
 
+    /**
+     * Returns the max size of the video cache
+     *
+     * @return The size in bytes
+     */
+    fun videoCacheSize(): Long {
+        val sizeInMb = preferences.getInt(
+                resources.getString(R.string.prefs_key_video_cache_size),
+                resources.getInteger(R.integer.prefs_default_video_cache_size)
+        )
+        return sizeInMb * 1024 * 1024L
+    }
+
     /**
      * Returns if videos should be automatically played or not
      *
@@ -6,7 +6,6 @@ import android.content.Context
 import android.content.Intent
 import android.content.pm.PackageManager
 import android.content.res.Resources
-import android.graphics.drawable.Drawable
 import android.net.ConnectivityManager
 import android.net.NetworkCapabilities
 import android.net.Uri
@@ -39,6 +38,8 @@ import com.example.hakonsreader.api.exceptions.ThreadLockedException
 import com.example.hakonsreader.api.model.images.RedditImage
 import com.example.hakonsreader.api.model.RedditPost
 import com.example.hakonsreader.api.responses.GenericError
+import com.example.hakonsreader.api.utils.LinkRoute
+import com.example.hakonsreader.api.utils.LinkRouter
 import com.example.hakonsreader.api.utils.LinkUtils
 import com.example.hakonsreader.constants.NetworkConstants
 import com.example.hakonsreader.enums.ShowNsfwPreview
@@ -250,7 +251,10 @@ fun startLoginIntent(context: Context) {
 }
 
 
-private val IMAGE_FORMATS = Collections.unmodifiableList(listOf("png", "jpg", "jpeg"))
+/**
+ * Regex matching URLs starting with http or https
+ */
+private val HTTP_REGEX = "^http(s)?.*".toRegex()
 
 /**
  * Options class used for [createIntent]. All values for this class has a default of `true`
@@ -258,42 +262,6 @@ private val IMAGE_FORMATS = Collections.unmodifiableList(listOf("png", "jpg", "j
 class CreateIntentOptions(val openLinksInternally: Boolean = true, val openYoutubeVideosInternally: Boolean = true)
 
 
-/**
- * Gets an apps icon based on what a URL resolves to
- *
- * Note: This function can induce sever jank when used in RecyclerViews as it is a fairly heavy operation
- *
- * @param context The context to retrieve application info from
- * @param url The URL to resolve. If this does not match http/https then "https://reddit.com" is assumed
- *
- * @return A drawable of the icon the URL matches, or null if there is no icon found
- */
-fun getAppIconFromUrl(context: Context, url: String) : Drawable? {
-    if (url.isBlank()) {
-        return null
-    }
-
-    // URLs sent here might be of "/r/whatever", so assume those are links to within reddit.com
-    // and add the full url so that links that our app resolves will be shown correctly
-    val link = if (!url.matches("^http(s)?.*".toRegex())) {
-        "https://reddit.com" + (if (url.firstOrNull() == '/') "" else "/") + url
-    } else url
-
-    // Create the intent with internal links as false, otherwise any link would show our app
-    // icon as it would resolve to WebViewActivity/VideoYoutubeActivity (if the user had that option enabled)
-    val intent = createIntent(link, CreateIntentOptions(openLinksInternally = false, openYoutubeVideosInternally = false), context)
-
-    // Find all activities this intent would resolve to
-    val intentActivities = context.packageManager.queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY)
-
-    // Could potentially check if this matches the default browser and not show icon for that, as
-    // it will always show something in that case
-    return if (intentActivities.isNotEmpty()) {
-        val packageName = intentActivities[0].activityInfo.packageName
-        context.packageManager.getApplicationIcon(packageName)
-    } else null
-}
-
 /**
  * Creates an intent based on the passed URL
  *
@@ -311,7 +279,7 @@ fun createIntent(url: String, options: CreateIntentOptions, context: Context) :
     // URLs sent here might be of "/r/whatever", so assume those are links to within reddit.com
     // and add the full url so it doesn't have to be handled separately, and potential links we don't
     // handle are sent out correctly to the browser
-    if (!convertedUrl.matches("^http(s)?.*".toRegex())) {
+    if (!convertedUrl.matches(HTTP_REGEX)) {
         convertedUrl = "https://reddit.com" + (if (convertedUrl.firstOrNull() == '/') "" else "/") + convertedUrl
     }
 
@@ -319,7 +287,7 @@ fun createIntent(url: String, options: CreateIntentOptions, context: Context) :
 }
 
 /**
- * Creates an intent based on the passed URL
+ * Creates an intent based on the route [LinkRouter] resolves the passed URL to
  *
  * @param url The URL to create an intent for
  * @param options The options for the intent
@@ -327,27 +295,16 @@ fun createIntent(url: String, options: CreateIntentOptions, context: Context) :
  * @return An [Intent]
  */
 private fun createIntentInternal(url: String, options: CreateIntentOptions, context: Context): Intent {
-    val asUri = Uri.parse(url)
-    val pathSegments = asUri.pathSegments
-
-    // Get the last segment to check for file extensions
-    val lastSegment = if (pathSegments.isNotEmpty()) {
-        pathSegments.last()
-    } else ""
-
-    val youtubeVideoId = asUri.getQueryParameter("v")
-
-    return when {
+    return when (val route = LinkRouter.route(url)) {
         // "reddit.com", which is in a sense front page, but it makes more sense to treat this
         // as a "start the app" intent
-        url.matches("^http(s)?://(.*\\.)?reddit\\.com(/)?$".toRegex()) || url.matches("^http(s)?://(.*\\.)?redd.it(/)?$".toRegex()) -> {
+        is LinkRoute.FrontPage -> {
             Intent(context, MainActivity::class.java)
         }
 
         // Subreddits: https://reddit.com/r/GlobalOffensive
-        url.matches(LinkUtils.SUBREDDIT_REGEX_COMBINED.toRegex(RegexOption.IGNORE_CASE)) -> {
-            // First is "r", second is the subreddit
-            val subreddit = pathSegments[1].lowercase(Locale.getDefault())
+        is LinkRoute.Subreddit -> {
+            val subreddit = route.subreddit
 
             // TODO if the application is "new" we can also pass the subreddit to MainActivity since
             //  the subreddit will be sent to the navbar subreddit and we wont mess up anything else
@@ -363,185 +320,143 @@ private fun createIntentInternal(url: String, options: CreateIntentOptions, cont
         }
 
         // Subreddits with sort: https://reddit.com/r/GlobalOffensive/top?t=all
-        url.matches(LinkUtils.SUBREDDIT_SORT_REGEX_WITH_HTTPS.toRegex()) -> {
-            // First is "r", second is the subreddit
-            val subreddit = pathSegments[1]
-
-            // Either "r/GlobalOffensive/top" or "r/GlobalOffensive?sort=top"
-            val sort = if (pathSegments.size >= 3) {
-                pathSegments[2]
-            } else {
-                asUri.getQueryParameter("sort")
-            }
-
-            val timeSort = asUri.getQueryParameter("t")
-
+        is LinkRoute.SubredditSort -> {
             Intent(context, SubredditActivity::class.java).apply {
-                putExtra(SubredditActivity.EXTRAS_SUBREDDIT_KEY, subreddit)
+                putExtra(SubredditActivity.EXTRAS_SUBREDDIT_KEY, route.subreddit)
 
-                // These might be null, but that does not matter
-                putExtra(SubredditActivity.EXTRAS_SORT, sort)
-                putExtra(SubredditActivity.EXTRAS_TIME_SORT, timeSort)
+                // The time sort might be null, but that does not matter
+                putExtra(SubredditActivity.EXTRAS_SORT, route.sort)
+                putExtra(SubredditActivity.EXTRAS_TIME_SORT, route.timeSort)
             }
         }
 
         // Subreddits with rules: https://reddit.com/r/GlobalOffensive/about/rules
-        url.matches(LinkUtils.SUBREDDIT_RULES_REGEX_WITH_HTTPS.toRegex()) -> {
-            // First is "r", second is the subreddit
-            val subreddit = pathSegments[1]
-
+        is LinkRoute.SubredditRules -> {
             Intent(context, SubredditActivity::class.java).apply {
-                putExtra(SubredditActivity.EXTRAS_SUBREDDIT_KEY, subreddit)
+                putExtra(SubredditActivity.EXTRAS_SUBREDDIT_KEY, route.subreddit)
                 putExtra(SubredditActivity.EXTRAS_SHOW_RULES, true)
             }
         }
 
-
         // Users: https://reddit.com/user/hakonschia OR https://reddit.com/u/hakonschia
-        url.matches(LinkUtils.USER_REGEX.toRegex()) -> {
-            // Same as with subreddits, first is "u", second is the username
-            val username = pathSegments[1]
+        is LinkRoute.User -> {
             Intent(context, ProfileActivity::class.java).apply {
-                putExtra(ProfileActivity.EXTRAS_USERNAME_KEY, username)
+                putExtra(ProfileActivity.EXTRAS_USERNAME_KEY, route.username)
             }
         }
 
         // Private messages: https://reddit.com/message/compose?to=hakonschia&subject=hello
-        url.matches("http(s)?://([A-Za-z0-9]+\\.)?reddit.com/message/compose.*".toRegex()) -> {
-            val recipient = asUri.getQueryParameter("to")
-            val subject = asUri.getQueryParameter("subject")
-            val message = asUri.getQueryParameter("message")
-
+        is LinkRoute.ComposeMessage -> {
             Intent(context, SendPrivateMessageActivity::class.java).apply {
-                putExtra(SendPrivateMessageActivity.EXTRAS_RECIPIENT, recipient)
-                putExtra(SendPrivateMessageActivity.EXTRAS_SUBJECT, subject)
-                putExtra(SendPrivateMessageActivity.EXTRAS_MESSAGE, message)
+                putExtra(SendPrivateMessageActivity.EXTRAS_RECIPIENT, route.recipient)
+                putExtra(SendPrivateMessageActivity.EXTRAS_SUBJECT, route.subject)
+                putExtra(SendPrivateMessageActivity.EXTRAS_MESSAGE, route.message)
             }
         }
 
-        // TODO the link below shouldn't match here as it can cause a crash (the "fix" so far is just to check
-        //  if it matches /message/compose before this, which is obviously a terrible fix)
-        //  https://www.reddit.com/message/compose/?to=RemindMeBot&subject=Reminder&message=%5Bhttps://www.reddit.com/r/AskHistorians/comments/ne8bcc/when_did_it_stop_being_acceptable_to_openly/%5D%0A%0ARemindMe!%202%20days
-
-        // Posts: https://reddit.com/r/GlobalOffensive/comments/gwcxmm/....
-        url.matches("^${LinkUtils.POST_REGEX}".toRegex()) -> {
-            // The URL will look like: reddit.com/r/<subreddit>/comments/<postId/...
-            val postId = pathSegments[3]
-
+        // Posts: https://reddit.com/r/GlobalOffensive/comments/gwcxmm/...., https://reddit.com/comments/gwcxmm
+        // and https://redd.it/gwcxmm
+        is LinkRoute.Post -> {
             Intent(context, PostActivity::class.java).apply {
-                putExtra(PostActivity.EXTRAS_POST_ID_KEY, postId)
+                putExtra(PostActivity.EXTRAS_POST_ID_KEY, route.postId)
 
                 // Add the ID of the comment chain specified, if available
-                if (pathSegments.size >= 6) {
-                    putExtra(PostActivity.EXTRAS_COMMENT_ID_CHAIN, pathSegments[5])
+                if (route.commentChainId != null) {
+                    putExtra(PostActivity.EXTRAS_COMMENT_ID_CHAIN, route.commentChainId)
                 }
             }
-            // TODO when the post is in a "user" subreddit it doesnt work
-            //  eg: https://www.reddit.com/user/HyperBirchyBoy/comments/jbkw1f/moon_landing_with_benny_hill_and_sped_up/?utm_source=share&utm_medium=ios_app&utm_name=iossmf
-        }
-
-        // https://reddit.com/comments/gwcxmm
-        url.matches(LinkUtils.POST_REGEX_NO_SUBREDDIT.toRegex()) -> {
-            // The URL will look like: reddit.com/comments/<postId>
-            val postId = pathSegments[1]
-            Intent(context, PostActivity::class.java).apply {
-                putExtra(PostActivity.EXTRAS_POST_ID_KEY, postId)
-            }
-        }
-
-        // Posts from shortened urls: https://redd.it/gwcxmm
-        url.matches(LinkUtils.POST_SHORTENED_URL_REGEX.toRegex()) -> {
-            // The URL will look like: redd.it/<postId>
-            val postId = pathSegments[0]
-            Intent(context, PostActivity::class.java).apply {
-                putExtra(PostActivity.EXTRAS_POST_ID_KEY, postId)
-            }
         }
 
         // Images, load directly in the app
-        lastSegment.matches(".+(.png|.jpeg|.jpg)$".toRegex())
-                // Some links (like twitter images) don't end in ".png" but have "?format=png" so
-                // if the format parameter is an image format assume this is an image
-                || IMAGE_FORMATS.contains(asUri.getQueryParameter("format")) -> {
+        is LinkRoute.Image -> {
             Intent(context, ImageActivity::class.java).apply {
-                putExtra(ImageActivity.EXTRAS_IMAGE_URL, url)
+                putExtra(ImageActivity.EXTRAS_IMAGE_URL, route.url)
             }
         }
 
         // YouTube links, open in activity if user wants to
-        options.openYoutubeVideosInternally &&
-                (!youtubeVideoId.isNullOrEmpty() || url.matches(".*youtu.be.*".toRegex())) -> {
-
-            // https://www.youtube.com/watch?v=90X5NJleYJQ or
-            // https://youtu.be/90X5NJleYJQ
-
-            val videoId = youtubeVideoId ?: pathSegments.first()
-
-            val timestamp = asUri.getQueryParameter("t")
-            val timeStampAsFloat = if (timestamp != null) {
-                parseYouTubeTimestamp(timestamp).toFloat()
-            } else 0F
-
-            Intent(context, VideoYoutubeActivity::class.java).apply {
-                putExtra(VideoYoutubeActivity.EXTRAS_VIDEO_ID, videoId)
-                putExtra(VideoYoutubeActivity.EXTRAS_TIMESTAMP, timeStampAsFloat)
+        // https://www.youtube.com/watch?v=90X5NJleYJQ or https://youtu.be/90X5NJleYJQ
+        is LinkRoute.YouTubeVideo -> {
+            if (options.openYoutubeVideosInternally) {
+                val timeStampAsFloat = if (route.timestamp != null) {
+                    parseYouTubeTimestamp(route.timestamp).toFloat()
+                } else 0F
+
+                Intent(context, VideoYoutubeActivity::class.java).apply {
+                    putExtra(VideoYoutubeActivity.EXTRAS_VIDEO_ID, route.videoId)
+                    putExtra(VideoYoutubeActivity.EXTRAS_TIMESTAMP, timeStampAsFloat)
+                }
+            } else {
+                createExternalIntent(url, options, context)
             }
         }
 
-        // No direct handling, redirect to an external app if found, otherwise to WebViewActivity/browser
-        else -> {
-            val baseIntent = Intent(Intent.ACTION_VIEW, asUri)
+        is LinkRoute.External -> createExternalIntent(url, options, context)
+    }
+}
 
-            // Find all activities context intent would resolve to
-            val intentActivities = context.packageManager.queryIntentActivities(baseIntent, PackageManager.MATCH_DEFAULT_ONLY)
+/**
+ * Creates an intent for a URL not handled directly by the app
+ *
+ * @param url The URL to create an intent for
+ * @param options The options for the intent
+ * @param context The context to create the intent with
+ * @return An intent to an external app if one is found, otherwise to WebViewActivity or the browser
+ */
+private fun createExternalIntent(url: String, options: CreateIntentOptions, context: Context): Intent {
+    val asUri = Uri.parse(url)
 
-            // To check if the intent matches an app we need to find the default browser
-            val defaultBrowserIntent = Intent(Intent.ACTION_VIEW, Uri.parse("https://plsdontesolvetoarealapp.com"))
-            val browserInfoList = context.packageManager.queryIntentActivities(defaultBrowserIntent, PackageManager.MATCH_DEFAULT_ONLY)
+    // No direct handling, redirect to an external app if found, otherwise to WebViewActivity/browser
+    val baseIntent = Intent(Intent.ACTION_VIEW, asUri)
 
-            // On API 30 this is empty
-            if (browserInfoList.isEmpty()) {
-                return baseIntent
-            }
+    // Find all activities context intent would resolve to
+    val intentActivities = context.packageManager.queryIntentActivities(baseIntent, PackageManager.MATCH_DEFAULT_ONLY)
 
-            val defaultBrowserPackageName = browserInfoList
-                    // There might be more browsers, so I'm assuming the list is ordered based on how
-                    // they would resolve, so that the first is the default that it actually resolves to
-                    .first().activityInfo.packageName
-
-            // The package name for our app
-            val appPackageName = context.applicationContext.packageName
-            var externalAppFound = false
-
-            // Check if there are intents not leading to a browser
-            for (intentActivity in intentActivities) {
-                val packageName = intentActivity.activityInfo.packageName
-
-                // If the this intents package name:
-                // 1. Doesn't match the default browser
-                // 2. Doesn't match our own app (as that would cause an infinite loop)
-                // 3. Doesn't match a "webview" type package (on some devices, maybe only emulators, there
-                // is some sort of webview testing thing which browser intents would also resolve to)
-                // Then we found a separate activity to handle this intent (an app that can open it)
-                if (packageName != defaultBrowserPackageName
-                        && packageName != appPackageName
-                        && !packageName.matches(".*webview.*".toRegex())
-                ) {
-                    externalAppFound = true
-                    break
-                }
-            }
+    // To check if the intent matches an app we need to find the default browser
+    val defaultBrowserIntent = Intent(Intent.ACTION_VIEW, Uri.parse("https://plsdontesolvetoarealapp.com"))
+    val browserInfoList = context.packageManager.queryIntentActivities(defaultBrowserIntent, PackageManager.MATCH_DEFAULT_ONLY)
 
-            // If no external app was found and the user wants to open links in app, open in WebView (internal browser)
-            if (!externalAppFound && options.openLinksInternally) {
-                Intent(context, WebViewActivity::class.java).apply {
-                    putExtra(WebViewActivity.EXTRAS_URL, url)
-                }
-            } else {
-                baseIntent
-            }
+    // On API 30 this is empty
+    if (browserInfoList.isEmpty()) {
+        return baseIntent
+    }
+
+    val defaultBrowserPackageName = browserInfoList
+            // There might be more browsers, so I'm assuming the list is ordered based on how
+            // they would resolve, so that the first is the default that it actually resolves to
+            .first().activityInfo.packageName
+
+    // The package name for our app
+    val appPackageName = context.applicationContext.packageName
+    var externalAppFound = false
+
+    // Check if there are intents not leading to a browser
+    for (intentActivity in intentActivities) {
+        val packageName = intentActivity.activityInfo.packageName
+
+        // If the this intents package name:
+        // 1. Doesn't match the default browser
+        // 2. Doesn't match our own app (as that would cause an infinite loop)
+        // 3. Doesn't match a "webview" type package (on some devices, maybe only emulators, there
+        // is some sort of webview testing thing which browser intents would also resolve to)
+        // Then we found a separate activity to handle this intent (an app that can open it)
+        if (packageName != defaultBrowserPackageName
+                && packageName != appPackageName
+                && !packageName.contains("webview")
+        ) {
+            externalAppFound = true
+            break
         }
     }
+
+    // If no external app was found and the user wants to open links in app, open in WebView (internal browser)
+    return if (!externalAppFound && options.openLinksInternally) {
+        Intent(context, WebViewActivity::class.java).apply {
+            putExtra(WebViewActivity.EXTRAS_URL, url)
+        }
+    } else {
+        baseIntent
+    }
 }
 
 /**
@@ -1057,16 +972,25 @@ fun toDays(time: Long): Long {
  * @param post The post to generate for. Note that [Content.setRedditPost] is NOT called here
  * as callers of this function might want to set extra values before this is called
  * @param showTextContent If false content will not be created if [post] is a text post
- * @param reusableViews The list of reusable views that will be used instead of generating new views.
- * If a view is reused from this list it will be removed automatically, and [Content.recycle] will be called
  * @return A view with the content of the post
  */
 fun generatePostContent(
     context: Context,
     post: RedditPost,
-    showTextContent: Boolean,
-    reusableViews: MutableList<Content>?
+    showTextContent: Boolean
 ): Content? {
+    val contentType = getPostContentType(post, showTextContent) ?: return null
+    return createPostContent(context, contentType)
+}
+
+/**
+ * Gets the type of content view that should be used to display a post
+ *
+ * @param post The post to get the content type for
+ * @param showTextContent If false no type will be returned if [post] is a text post
+ * @return The class of the content view to use, or null if the post should not have a content view
+ */
+fun getPostContentType(post: RedditPost, showTextContent: Boolean): Class<out Content>? {
     val hasTextContent = post.getPostType() == PostType.TEXT
             // If the post is a crosspost and the crosspost is a text post, it's seen as LINK
             // post as the post is a "link" to the crosspost, so check here if it's a text post
@@ -1076,34 +1000,23 @@ fun generatePostContent(
         return null
     }
 
-    val margin = context.resources.getDimension(R.dimen.postMargin).toInt()
-    val marginParams = ViewGroup.MarginLayoutParams(
-        ViewGroup.LayoutParams.MATCH_PARENT,
-        ViewGroup.LayoutParams.WRAP_CONTENT
-    ).apply {
-        setMargins(margin, 0, margin, 0)
-    }
-
     // If the post has been removed don't try to render the content as it can cause a crash later
     // Just show that the post has been removed
     // For instance, if the post is not uploaded to reddit the URL will still link to something (like an imgur gif)
     // TODO maybe the only posts actually removed completely so they're not able ot be watched are videos? Even text/images uploaded
     //  to reddit directly are still there
     if (post.removedByCategory != null) {
-        return ContentPostRemoved(context).apply {
-            redditPost = post
-            layoutParams = marginParams
-        }
+        return ContentPostRemoved::class.java
     }
 
     // Generate the content based on the crosspost. Videos hosted on reddit aren't sent to the "child"
     // post (this post) but it is in the parent
     val crosspost = post.crossposts?.firstOrNull()
     if (crosspost != null) {
-        return generatePostContent(context, crosspost, showTextContent, reusableViews)
+        return getPostContentType(crosspost, showTextContent)
     }
 
-    val contentType = when (post.getPostType()) {
+    return when (post.getPostType()) {
         PostType.IMAGE -> {
             ContentImage::class.java
         }
@@ -1141,27 +1054,57 @@ fun generatePostContent(
 
         else -> null
     }
+}
 
-    val reusedContentView = reusableViews?.find { it::class.java == contentType }
+/**
+ * Calculates the height the content view of a post will have, based on the dimensions of the
+ * image/video/gallery given by Reddit. This doesn't require the content to be created or laid out,
+ * so the height can be calculated when the posts are retrieved and set on the content before it is
+ * laid out.
+ *
+ * @param post The post to calculate for
+ * @param width The width the content will be displayed with (the content fills the width of the post)
+ * @return The height, or [ViewGroup.LayoutParams.WRAP_CONTENT] if the height depends on the layout
+ * of the content (eg. for links and text)
+ */
+fun getPostContentHeight(post: RedditPost, width: Int): Int {
+    return when (getPostContentType(post, showTextContent = true)) {
+        ContentImage::class.java -> ContentImage.calculateHeight(post, width)
+        ContentVideo::class.java -> ContentVideo.calculateHeight(post, width)
+        ContentGallery::class.java -> ContentGallery.calculateHeight(post, width)
+        else -> ViewGroup.LayoutParams.WRAP_CONTENT
+    }
+}
 
-    return when {
-        reusedContentView != null -> {
-            reusableViews.remove(reusedContentView)
-            reusedContentView
-        }
+/**
+ * Creates an empty content view of a given type
+ *
+ * @param contentType The type of content to create, as returned from [getPostContentType]
+ * @return The content view. [Content.setRedditPost] has not been called on the view
+ */
+fun createPostContent(context: Context, contentType: Class<out Content>): Content {
+    val content = when (contentType) {
+        ContentImage::class.java -> ContentImage(context)
+        ContentVideo::class.java -> ContentVideo(context)
+        ContentGallery::class.java -> ContentGallery(context)
+        ContentLink::class.java -> ContentLink(context)
+        ContentText::class.java -> ContentText(context)
+        ContentPostRemoved::class.java -> ContentPostRemoved(context)
+        else -> throw IllegalArgumentException("Unknown content type: ${contentType.simpleName}")
+    }
 
-        contentType != null -> {
-            // val content = ContentImage(context) etc.
-            (contentType.constructors[0].newInstance(context) as Content).also { content ->
-                // Text and Link content have margins, others fill the entire width
-                if (content is ContentText || content is ContentLink) {
-                    content.layoutParams = marginParams
-                }
-            }
+    // Text, link, and removed content have margins, others fill the entire width
+    if (content is ContentText || content is ContentLink || content is ContentPostRemoved) {
+        val margin = context.resources.getDimension(R.dimen.postMargin).toInt()
+        content.layoutParams = ViewGroup.MarginLayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT,
+            ViewGroup.LayoutParams.WRAP_CONTENT
+        ).apply {
+            setMargins(margin, 0, margin, 0)
         }
-
-        else -> null
     }
+
+    return content
 }
 
 
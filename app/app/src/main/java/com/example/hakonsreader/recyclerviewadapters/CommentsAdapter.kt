@@ -18,6 +18,7 @@ import androidx.constraintlayout.widget.ConstraintSet
 import androidx.core.content.ContextCompat
 import androidx.core.graphics.drawable.DrawableCompat
 import androidx.core.text.toSpannable
+import androidx.core.util.Pools
 import androidx.databinding.BindingAdapter
 import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
@@ -78,6 +79,11 @@ class CommentsAdapter constructor(
          * a hidden comment
          */
         private const val HIDDEN_COMMENT_TYPE = 2
+
+        /**
+         * The max amount of link previews kept in [linkPreviewPool]
+         */
+        private const val MAX_POOLED_LINK_PREVIEWS = 10
     }
 
     /**
@@ -87,6 +93,12 @@ class CommentsAdapter constructor(
     // and cannot change during the adapters life
     private val sidebarColors = settings.commentSidebarColors()
 
+    /**
+     * Link previews that have been removed from a comment, which can be reused by other comments
+     * instead of creating new views
+     */
+    private val linkPreviewPool = Pools.SimplePool<LinkPreview>(MAX_POOLED_LINK_PREVIEWS)
+
     /**
      * The list of comments shown in the adapter
      */
@@ -342,18 +354,18 @@ class CommentsAdapter constructor(
             // hit for a lot cleaner code (setting constraints via code is kind of messy)
             // Also moving where the previews are in the layout is a lot easier, if I want to change that later
 
-            // Remove all previews views
-            binding.linkPreviews.removeAllViews()
-
-            binding.linkPreviews.visibility = if (urls.isNotEmpty()) {
+            // The previews already in the layout are reused, and any previews not used are
+            // given to the pool so other comments can use them
+            val previewsShown = if (urls.isNotEmpty()) {
                 // The spans seems to always be in reversed order, so reverse them to the original order
                 urls.reverse()
                 setLinkPreviews(text, urls)
-                VISIBLE
-            } else {
-                // Set to gone if no previews to remove the top margin the link layout has
-                GONE
-            }
+            } else 0
+
+            releaseLinkPreviews(previewsShown)
+
+            // Set to gone if no previews to remove the top margin the link layout has
+            binding.linkPreviews.visibility = if (previewsShown > 0) VISIBLE else GONE
         }
 
         /**
@@ -361,9 +373,11 @@ class CommentsAdapter constructor(
          *
          * @param fullText The spannable holding the entire text
          * @param spans The array of URLSpans to show previews for
+         * @return The amount of previews shown
          */
-        private fun setLinkPreviews(fullText: Spannable, spans: Array<URLSpan>) {
+        private fun setLinkPreviews(fullText: Spannable, spans: Array<URLSpan>): Int {
             val showPreviewForIdenticalLinks = settings.showLinkPreviewForIdenticalLinks()
+            var previewsShown = 0
 
             spans.forEach { span ->
                 val start = fullText.getSpanStart(span)
@@ -373,29 +387,50 @@ class CommentsAdapter constructor(
                 // The url in the span might be empty if someone comments a link like:
                 // [https://whydidiputthelinkhere.com]()
                 // Such as: https://www.reddit.com/r/formula1/comments/rpmzl0/comment/hq56tny
-                // TODO this still causes some issues with Markdown, as Markdown and my LinkPlugin both
-                //  recognize the link, so two link previews will show up if the user has enabled
-                //  link previews for identical links. Not really a big issue though
                 val url = if (span.url.isNotEmpty()) span.url else text
 
-                // TODO "text" will actually include superscripts, since that text isn't actually removed
-                //  from the text, it uses a RelativeSizeSpan with 0f to "remove" the characters
-                //  best solution would be to remove the text in the Markwon plugin
-                //  Easiest solution is probably to check if "text" starts with "^" or "^(" and remove it here
-                //  (and ")" at the end if it starts with "^("
-
                 // If the text and the url is the same and the user doesn't want to preview those
                 if (text == url && !showPreviewForIdenticalLinks) {
                     return@forEach
                 }
 
-                LinkPreview(binding.root.context).run {
-                    layoutParams = ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT)
+                getLinkPreview(previewsShown).run {
                     setText(text)
                     setLink(url)
-
-                    binding.linkPreviews.addView(this)
                 }
+                previewsShown++
+            }
+
+            return previewsShown
+        }
+
+        /**
+         * Gets the link preview at a position in the layout. If there is no preview at the position a
+         * preview is taken from the pool, or created, and added to the layout
+         */
+        private fun getLinkPreview(position: Int): LinkPreview {
+            if (position < binding.linkPreviews.childCount) {
+                return binding.linkPreviews.getChildAt(position) as LinkPreview
+            }
+
+            val preview = linkPreviewPool.acquire() ?: LinkPreview(binding.root.context).apply {
+                layoutParams = ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT)
+            }
+            binding.linkPreviews.addView(preview)
+            return preview
+        }
+
+        /**
+         * Removes the link previews in the layout after the previews in use, and releases them to the pool
+         *
+         * @param inUse The amount of previews in use
+         */
+        private fun releaseLinkPreviews(inUse: Int) {
+            while (binding.linkPreviews.childCount > inUse) {
+                val last = binding.linkPreviews.childCount - 1
+                val preview = binding.linkPreviews.getChildAt(last) as LinkPreview
+                binding.linkPreviews.removeViewAt(last)
+                linkPreviewPool.release(preview)
             }
         }
     }
@@ -1,6 +1,9 @@
 package com.example.hakonsreader.recyclerviewadapters
 
+import android.content.res.Resources
 import android.os.Bundle
+import android.util.Log
+import android.util.SparseIntArray
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
@@ -12,7 +15,9 @@ import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.example.hakonsreader.R
 import com.example.hakonsreader.api.model.RedditPost
-import com.example.hakonsreader.misc.generatePostContent
+import com.example.hakonsreader.misc.createPostContent
+import com.example.hakonsreader.misc.getPostContentHeight
+import com.example.hakonsreader.misc.getPostContentType
 import com.example.hakonsreader.recyclerviewadapters.diffutils.PostsDiffCallback
 import com.example.hakonsreader.views.*
 
@@ -25,8 +30,15 @@ import com.example.hakonsreader.views.*
  * might not be released, and if [lifecycleOwner] is set these references will also not be cleared).
  * [postExtras] will be set when this is done to store the states of the ViewHolders
  *
+ * Each type of content (images, videos etc.) has its own view type, so that a ViewHolder keeps its
+ * content view when it is recycled and is only rebound to posts with the same type of content.
+ * The amount of recycled ViewHolders kept for each type is limited by [getMaxRecycledViews]
+ *
+ * ViewHolders are not tied to a specific adapter, so a [PostsViewPool] can be shared between
+ * multiple lists of posts
+ *
  * @param onEndOfListReached The callback that is invoked when the bottom of the list has almost been reached.
- * The threshold for what is seen as the bottom of the list is determined by [numRemainingPostsBeforeEndOfList]. The
+ * The threshold for what is seen as the bottom of the list is determined by [prefetcher]. The
  * callback will be invoked when the [onBindViewHolder] is called for any position after the given position, and
  * will only be called once (reset with [resetOnEndOfList])
  */
@@ -35,19 +47,109 @@ class PostsAdapter(
 ) : RecyclerView.Adapter<PostsAdapter.ViewHolder>() {
 
     companion object {
-        @Suppress("UNUSED")
         private const val TAG = "PostsAdapter"
+
+        /**
+         * View type for posts without content (eg. text posts)
+         */
+        const val VIEW_TYPE_NO_CONTENT = 0
+        const val VIEW_TYPE_IMAGE = 1
+        const val VIEW_TYPE_VIDEO = 2
+        const val VIEW_TYPE_GALLERY = 3
+        const val VIEW_TYPE_LINK = 4
+        const val VIEW_TYPE_TEXT = 5
+        const val VIEW_TYPE_REMOVED = 6
+
+        /**
+         * The view types, mapped to the content class of the view type
+         */
+        private val contentTypes = mapOf(
+                VIEW_TYPE_IMAGE to ContentImage::class.java,
+                VIEW_TYPE_VIDEO to ContentVideo::class.java,
+                VIEW_TYPE_GALLERY to ContentGallery::class.java,
+                VIEW_TYPE_LINK to ContentLink::class.java,
+                VIEW_TYPE_TEXT to ContentText::class.java,
+                VIEW_TYPE_REMOVED to ContentPostRemoved::class.java
+        )
+
+        /**
+         * All the view types of the adapter
+         */
+        val VIEW_TYPES = listOf(VIEW_TYPE_NO_CONTENT) + contentTypes.keys
+
+        /**
+         * Gets the view type for a type of content
+         *
+         * @param contentType The class of the content, or null for no content
+         * @return The view type
+         */
+        fun getViewType(contentType: Class<out Content>?): Int {
+            if (contentType == null) {
+                return VIEW_TYPE_NO_CONTENT
+            }
+            return contentTypes.entries.first { it.value == contentType }.key
+        }
+
+        /**
+         * Gets the max amount of recycled ViewHolders to keep for a view type. Videos and galleries
+         * hold on to more resources (such as video players) so fewer of those are kept
+         *
+         * @param viewType The view type
+         * @return The max amount of recycled ViewHolders
+         */
+        fun getMaxRecycledViews(viewType: Int): Int {
+            return when (viewType) {
+                VIEW_TYPE_VIDEO -> 2
+                VIEW_TYPE_GALLERY -> 3
+                VIEW_TYPE_REMOVED -> 2
+                VIEW_TYPE_LINK -> 6
+                else -> 10
+            }
+        }
     }
     
     private var posts: List<RedditPost> = ArrayList()
 
     /**
-     * A list holding the currently unused content views from recycled posts
+     * The heights of the content of the posts, mapped to the ID of the post. This is calculated when
+     * the posts are submitted so that the content can be given its height when bound
+     */
+    private val contentHeights = HashMap<String, Int>()
+
+    /**
+     * The width the content of the posts is displayed with, which is the width of the RecyclerView
+     * without its padding. This is the width of the screen until the RecyclerView has been laid out
      */
-    private val unusedContentViews: MutableList<Content> = ArrayList()
+    private var contentWidth = Resources.getSystem().displayMetrics.widthPixels
 
     /**
-     * A list of the view holders this adapter has
+     * Recalculates [contentHeights] when the width of the RecyclerView changes, as the RecyclerView
+     * doesn't necessarily fill the screen (eg. on tablets or in split screen)
+     */
+    private val widthChangeListener = View.OnLayoutChangeListener { view, left, _, right, _, _, _, _, _ ->
+        val width = right - left - view.paddingLeft - view.paddingRight
+        if (width > 0 && width != contentWidth) {
+            contentWidth = width
+            contentHeights.clear()
+            calculateContentHeights(posts)
+
+            // This is called at the end of a layout pass, so the posts can't be rebound until after it
+            view.post { notifyItemRangeChanged(0, posts.size) }
+        }
+    }
+
+    /**
+     * The amount of ViewHolders created for each view type
+     */
+    private val createCounts = SparseIntArray()
+
+    /**
+     * The amount of times a ViewHolder has been bound for each view type
+     */
+    private val bindCounts = SparseIntArray()
+
+    /**
+     * A list of the view holders this adapter currently has bound
      */
     val viewHolders = ArrayList<ViewHolder>()
 
@@ -86,9 +188,10 @@ class PostsAdapter(
     var onVideoFullscreenListener: ((ContentVideo) -> Unit)? = null
 
     /**
-     * The amount of posts left in the list before calling [onEndOfListReached]
+     * Decides the amount of posts left in the list before calling [onEndOfListReached]. Scroll
+     * updates must be passed to this for the distance to adapt to the scroll speed
      */
-    var numRemainingPostsBeforeEndOfList = 10
+    val prefetcher = PostsPrefetcher()
 
     /**
      * The amount of items in the list at the last attempt at loading more posts
@@ -118,6 +221,30 @@ class PostsAdapter(
      */
     fun resetOnEndOfList() {
         lastLoadAttemptCount = -1
+        prefetcher.onPageFailed()
+    }
+
+    /**
+     * Call when the list has stopped scrolling. With [PostsPrefetcher.keepPageBuffered] the next page is
+     * requested if the list is less than a page from the end
+     *
+     * @param lastVisiblePosition The position of the last visible post
+     */
+    fun onListIdle(lastVisiblePosition: Int) {
+        if (prefetcher.shouldLoadWhenIdle(lastVisiblePosition, posts.size)) {
+            requestNextPage()
+        }
+    }
+
+    /**
+     * Invokes [onEndOfListReached], if it hasn't already been invoked for the current list size
+     */
+    private fun requestNextPage() {
+        if (posts.isNotEmpty() && lastLoadAttemptCount < posts.size) {
+            lastLoadAttemptCount = posts.size
+            prefetcher.onPageRequested()
+            onEndOfListReached.invoke()
+        }
     }
 
     /**
@@ -130,6 +257,11 @@ class PostsAdapter(
             clearPosts()
         } else {
             val previous = posts
+            if (list.size > previous.size) {
+                prefetcher.onPageLoaded()
+            }
+
+            calculateContentHeights(list)
 
             val diffResults = DiffUtil.calculateDiff(
                     PostsDiffCallback(previous, list),
@@ -141,12 +273,24 @@ class PostsAdapter(
         }
     }
 
+    /**
+     * Calculates the content heights of the posts not already in [contentHeights]
+     */
+    private fun calculateContentHeights(list: List<RedditPost>) {
+        list.forEach { post ->
+            if (!contentHeights.containsKey(post.id)) {
+                contentHeights[post.id] = getPostContentHeight(post, contentWidth)
+            }
+        }
+    }
+
     /**
      * Removes all posts from the list
      */
     fun clearPosts() {
         val size = posts.size
         posts = ArrayList()
+        contentHeights.clear()
         notifyItemRangeRemoved(0, size)
     }
 
@@ -156,24 +300,27 @@ class PostsAdapter(
 
         // Eg.:
         // posts.size = 25
-        // position = 3, numRemainingPostsBeforeRun = 10
-        // pos + numRemaining = 13, don't invoke
+        // position = 3, prefetchDistance = 10
+        // pos + prefetchDistance = 13, don't invoke
 
         // position = 15
-        // pos + numRemaining = 25, invoke it as we're now close to the end (if we haven't already)
-        if (position + numRemainingPostsBeforeEndOfList >= posts.size && lastLoadAttemptCount < posts.size) {
-            lastLoadAttemptCount = posts.size
-            onEndOfListReached.invoke()
+        // pos + prefetchDistance = 25, invoke it as we're now close to the end (if we haven't already)
+        if (position + prefetcher.prefetchDistance >= posts.size) {
+            requestNextPage()
         }
+        prefetcher.onPostBound(position, posts.size)
 
         val post = posts[position]
+        bindCounts.put(holder.itemViewType, bindCounts[holder.itemViewType] + 1)
 
-        val content = generatePostContent(
-            holder.view.context,
-            post,
-            showTextContent = false,
-            unusedContentViews
-        )?.also { content ->
+        // The ViewHolder might have been created by another adapter sharing the same view pool
+        if (!viewHolders.contains(holder)) {
+            viewHolders.add(holder)
+        }
+        holder.onPostClicked = onPostClicked
+        holder.post.lifecycleOwner = lifecycleOwner
+
+        val content = holder.content?.also { content ->
             if (content is ContentVideo) {
                 onVideoManuallyPaused?.let { content.setOnVideoManuallyPaused(it) }
                 onVideoFullscreenListener?.let { content.setOnVideoFullscreenListener(it) }
@@ -189,53 +336,130 @@ class PostsAdapter(
             //content.redditPost = post
         }
 
-        holder.addContent(content)
+        // A new post is never selected until the scroll listener selects it. If the ViewHolder is
+        // rebound to another post while selected the previous post has to be unselected, otherwise
+        // its video would keep playing. When rebinding the same post it stays selected
+        if (holder.isSelected && holder.getPostId() != post.id) {
+            holder.onUnselected()
+        }
+        holder.addContent(content, contentHeights[post.id])
         holder.post.redditPost = post
     }
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
+        createCounts.put(viewType, createCounts[viewType] + 1)
+
         val view = LayoutInflater.from(parent.context).inflate(
                 R.layout.list_item_post,
                 parent,
                 false
         )
 
-        return ViewHolder(view).also {
-            viewHolders.add(it)
-        }
+        val content = contentTypes[viewType]?.let { createPostContent(parent.context, it) }
+
+        return ViewHolder(view, content)
     }
 
     override fun getItemCount() = posts.size
 
+    /**
+     * @param position The position of the post
+     * @return The post at [position], or null if there is no post at the position
+     */
+    fun getPost(position: Int): RedditPost? = posts.getOrNull(position)
+
+    /**
+     * @param post The post to get the content height for
+     * @return The height the content of the post will have, as calculated when the post was submitted,
+     * or null if the height isn't known
+     */
+    fun getContentHeight(post: RedditPost): Int? = contentHeights[post.id]
+
+    override fun getItemViewType(position: Int): Int {
+        return getViewType(getPostContentType(posts[position], showTextContent = false))
+    }
+
     override fun onAttachedToRecyclerView(recyclerView: RecyclerView) {
         super.onAttachedToRecyclerView(recyclerView)
+        recyclerView.recycledViewPool.run {
+            VIEW_TYPES.forEach { setMaxRecycledViews(it, getMaxRecycledViews(it)) }
+        }
+
         val divider = ListDivider(ContextCompat.getDrawable(recyclerView.context, R.drawable.list_divider))
         recyclerView.addItemDecoration(divider)
+
+        recyclerView.addOnLayoutChangeListener(widthChangeListener)
     }
 
     override fun onDetachedFromRecyclerView(recyclerView: RecyclerView) {
         super.onDetachedFromRecyclerView(recyclerView)
+        recyclerView.removeOnLayoutChangeListener(widthChangeListener)
         viewHolders.forEach {
-            it.saveExtras()
+            it.saveExtras(postExtras)
            // it.destroy()
         }
 
         viewHolders.clear()
-        unusedContentViews.clear()
+        logStats()
 
         lifecycleOwner = null
     }
 
     override fun onViewRecycled(holder: ViewHolder) {
-        holder.saveExtras()
-        val content = holder.getAndRemoveContent()
-        // There is no point in storing remove post content as it is rare and a non-expensive view
-        if (content != null && content !is ContentPostRemoved) {
-            unusedContentViews.add(content)
+        // The content stays in the ViewHolder, as it will only be rebound to posts with the same type of content
+        holder.saveExtras(postExtras)
+        viewHolders.remove(holder)
+
+        // A fast scroll can remove a post from the list before the scroll listener unselects it
+        if (holder.isSelected) {
+            holder.onUnselected()
+        }
+
+        // The ViewHolder might be bound by another adapter with another lifecycle, so it should no
+        // longer be tied to this lifecycle
+        holder.onPostClicked = null
+        holder.post.lifecycleOwner = null
+        when (val content = holder.content) {
+            is ContentVideo -> content.stopObservingVideoLifecycle()
+            is ContentGallery -> content.lifecycleOwner = null
         }
     }
 
-    inner class ViewHolder(val view: View) : RecyclerView.ViewHolder(view) {
+    /**
+     * @param viewType The view type
+     * @return The amount of ViewHolders this adapter has created for the view type
+     */
+    fun getCreatedCount(viewType: Int) = createCounts[viewType]
+
+    /**
+     * @param viewType The view type
+     * @return The amount of times this adapter has bound a ViewHolder of the view type
+     */
+    fun getBoundCount(viewType: Int) = bindCounts[viewType]
+
+    /**
+     * Logs how many ViewHolders have been created and bound for each view type
+     */
+    fun logStats() {
+        val stats = VIEW_TYPES.joinToString { viewType ->
+            val name = contentTypes[viewType]?.simpleName ?: "NoContent"
+            "$name=${createCounts[viewType]}/${bindCounts[viewType]}"
+        }
+        Log.d(TAG, "ViewHolders created/bound: $stats")
+    }
+
+    /**
+     * @param view The view of the ViewHolder
+     * @param content The content view of the ViewHolder. This is kept for the lifetime of the
+     * ViewHolder and reused for every post bound to it
+     */
+    class ViewHolder(val view: View, val content: Content?) : RecyclerView.ViewHolder(view) {
+
+        /**
+         * Listener for when the post has been clicked. This is set by the adapter the ViewHolder is bound in
+         */
+        var onPostClicked: OnPostClicked? = null
+
         val post: Post = view.findViewById<Post>(R.id.post).apply {
             setOnClickListener {
                 if (absoluteAdapterPosition != RecyclerView.NO_POSITION) {
@@ -243,8 +467,6 @@ class PostsAdapter(
                 }
             }
 
-            lifecycleOwner = this@PostsAdapter.lifecycleOwner
-
             // Text posts shouldn't be shown in lists of posts
             showTextContent = false
         }
@@ -261,6 +483,7 @@ class PostsAdapter(
          * Call when the view holder has been selected (ie. it is now the main visible view holder)
          */
         fun onSelected() {
+            isSelected = true
             post.viewSelected()
         }
 
@@ -268,25 +491,34 @@ class PostsAdapter(
          * Call when the view holder has been unselected (ie. not the main visible view holder anymore)
          */
         fun onUnselected() {
+            isSelected = false
             post.viewUnselected()
         }
 
         /**
-         * Gets the position of the contents Y position on the screen
+         * True if the ViewHolder is currently selected (with [onSelected])
+         */
+        var isSelected = false
+            private set
+
+        /**
+         * Gets the Y position of the top of the content, relative to the RecyclerView
          *
+         * @param recyclerView The RecyclerView the ViewHolder is in
          * @return The Y position of the content
          */
-        fun getContentY(): Int {
-            return post.getContentY()
+        fun getContentY(recyclerView: RecyclerView): Int {
+            return post.getContentY(recyclerView)
         }
 
         /**
-         * Gets the bottom position of the contents Y position on the screen
+         * Gets the Y position of the bottom of the content, relative to the RecyclerView
          *
+         * @param recyclerView The RecyclerView the ViewHolder is in
          * @return The Y position of the bottom of the content
          */
-        fun getContentBottomY(): Int {
-            return post.getContentBottomY()
+        fun getContentBottomY(recyclerView: RecyclerView): Int {
+            return getContentY(recyclerView) + post.getContentHeight()
         }
 
         /**
@@ -308,9 +540,12 @@ class PostsAdapter(
         }
 
         /**
-         * Saves the extras of the view holder to [postExtras]
+         * Saves the extras of the view holder
+         *
+         * @param postExtras The map to save the extras in, mapped to the ID of the post (this
+         * should be [PostsAdapter.postExtras] of the adapter the ViewHolder is bound in)
          */
-        fun saveExtras() {
+        fun saveExtras(postExtras: MutableMap<String, Bundle>) {
             val rp = post.redditPost
             if (rp != null) {
                 val extras = post.extras
@@ -324,16 +559,12 @@ class PostsAdapter(
 
         /**
          * Adds content to the post
+         *
+         * @param content The content to add
+         * @param contentHeight The height of the content, or null to calculate it when added
          */
-        fun addContent(content: Content?) {
-            post.supplyContent(content)
-        }
-
-        /**
-         * Retrieves the content from the post and removes the view from the view hierarchy
-         */
-        fun getAndRemoveContent(): Content? {
-            return post.getAndRemoveContent()
+        fun addContent(content: Content?, contentHeight: Int?) {
+            post.supplyContent(content, contentHeight)
         }
     }
 
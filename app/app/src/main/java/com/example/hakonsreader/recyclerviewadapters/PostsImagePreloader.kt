@@ -0,0 +1,93 @@
+package com.example.hakonsreader.recyclerviewadapters
+
+import android.content.res.Resources
+import com.bumptech.glide.ListPreloader
+import com.bumptech.glide.RequestBuilder
+import com.bumptech.glide.RequestManager
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader
+import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.misc.Settings
+import com.example.hakonsreader.misc.createDoubleImageViewState
+import com.example.hakonsreader.misc.getImageVariantsForRedditPost2
+import com.example.hakonsreader.views.DoubleImageView
+import com.example.hakonsreader.views.util.ImageRequestKey
+import com.example.hakonsreader.views.util.ImageRequests
+
+/**
+ * Provides the images to preload for image posts in a [PostsAdapter], so that images are loaded
+ * before the posts are scrolled to. Use [createPreloader] to create the scroll listener that
+ * preloads the images.
+ *
+ * The image preloaded is the same image the post will load (respecting NSFW previews and data saving),
+ * with the same size and format as the content of the post will have, so that the preloaded image is taken
+ * directly from the memory cache when the post is shown
+ *
+ * @param adapter The adapter with the posts
+ * @param requestManager The request manager to preload with
+ * @param settings The settings used to decide which image a post will load
+ */
+class PostsImagePreloader(
+        private val adapter: PostsAdapter,
+        private val requestManager: RequestManager,
+        private val settings: Settings
+) : ListPreloader.PreloadModelProvider<RedditPost>, ListPreloader.PreloadSizeProvider<RedditPost> {
+
+    companion object {
+        /**
+         * The max amount of posts ahead of the visible posts to preload images for
+         */
+        const val MAX_PRELOAD = 4
+    }
+
+    /**
+     * Creates the scroll listener that preloads images for the posts after the visible posts in the
+     * scroll direction. The RecyclerView must use a LinearLayoutManager
+     */
+    fun createPreloader(): RecyclerViewPreloader<RedditPost> {
+        return RecyclerViewPreloader(requestManager, this, this, MAX_PRELOAD)
+    }
+
+    override fun getPreloadItems(position: Int): List<RedditPost> {
+        if (adapter.getItemViewType(position) != PostsAdapter.VIEW_TYPE_IMAGE) {
+            return emptyList()
+        }
+
+        return adapter.getPost(position)?.let { listOf(it) } ?: emptyList()
+    }
+
+    override fun getPreloadRequestBuilder(item: RedditPost): RequestBuilder<*>? {
+        val url = getUrlToLoad(item) ?: return null
+        val (width, height) = getPreloadSize(item, 0, 0) ?: return null
+
+        return ImageRequests.create(requestManager, ImageRequestKey(url, width, height, settings.dataSavingEnabled(), shouldCache(item)))
+    }
+
+    override fun getPreloadSize(item: RedditPost, adapterPosition: Int, perItemPosition: Int): IntArray? {
+        val height = adapter.getContentHeight(item) ?: return null
+        // Unknown heights (WRAP_CONTENT) would preload at another size than what is loaded
+        if (height <= 0) {
+            return null
+        }
+
+        // Posts fill the width of the screen, as in DoubleImageView
+        return intArrayOf(Resources.getSystem().displayMetrics.widthPixels, height)
+    }
+
+    /**
+     * Gets the URL the content of a post will load, as done in [com.example.hakonsreader.views.ContentImage]
+     */
+    private fun getUrlToLoad(post: RedditPost): String? {
+        val (normal, normalLowRes, obfuscated) = getImageVariantsForRedditPost2(post)
+        normal ?: return null
+
+        val state = createDoubleImageViewState(post, normal, normalLowRes, obfuscated, settings)
+        return DoubleImageView.getInitialUrl(state)
+    }
+
+    /**
+     * @return True if the image of the post should be cached, as done in [com.example.hakonsreader.views.Content]
+     */
+    private fun shouldCache(post: RedditPost): Boolean {
+        return !post.isNsfw || settings.cacheNsfw()
+    }
+}
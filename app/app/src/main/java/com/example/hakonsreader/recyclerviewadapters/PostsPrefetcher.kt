@@ -0,0 +1,216 @@
+package com.example.hakonsreader.recyclerviewadapters
+
+import android.os.SystemClock
+import android.util.Log
+import androidx.recyclerview.widget.RecyclerView
+import kotlin.math.ceil
+
+/**
+ * Decides how many posts from the end of a list the next page of posts should be requested at,
+ * based on how fast the list is scrolled, how long it takes to load a page, and how tall the posts are.
+ *
+ * When the list is scrolled fast the next page is requested earlier so that it is loaded before the
+ * end of the list is reached, and when the list is scrolled slowly it is requested later so that
+ * pages aren't loaded long before they are needed.
+ *
+ * Scroll updates should be passed with [onScrolled] and [onScrollStateChanged] (this is done by
+ * [com.example.hakonsreader.recyclerviewadapters.listeners.PostScrollListener])
+ *
+ * @param minDistance The minimum amount of posts from the end of the list to request the next page at
+ * @param maxDistance The maximum amount of posts from the end of the list to request the next page at
+ */
+class PostsPrefetcher(
+        var minDistance: Int = DEFAULT_MIN_DISTANCE,
+        var maxDistance: Int = DEFAULT_MAX_DISTANCE
+) {
+
+    companion object {
+        private const val TAG = "PostsPrefetcher"
+
+        /**
+         * The amount of posts in a page of posts
+         */
+        const val PAGE_SIZE = 25
+
+        /**
+         * The default minimum amount of posts from the end of the list to request the next page at
+         */
+        const val DEFAULT_MIN_DISTANCE = 4
+
+        /**
+         * The default maximum amount of posts from the end of the list to request the next page at
+         */
+        const val DEFAULT_MAX_DISTANCE = PAGE_SIZE * 2
+
+        /**
+         * How much of a new sample is used when updating an average (between 0 and 1)
+         */
+        private const val SMOOTHING = 0.2f
+
+        /**
+         * The predicted distance is multiplied by this to account for variations in latency and speed
+         */
+        private const val SAFETY_FACTOR = 1.5f
+
+        /**
+         * The page latency, in milliseconds, to assume before any pages have been loaded
+         */
+        private const val INITIAL_LATENCY = 1000f
+
+        /**
+         * The height, in pixels, of a post to assume before any posts have been measured
+         */
+        private const val INITIAL_ITEM_HEIGHT = 800f
+    }
+
+    /**
+     * If true, the next page is requested when the list stops scrolling less than one page from the end
+     * of the list (see [shouldLoadWhenIdle]), so that a page is buffered while the posts are being read.
+     * While scrolling the next page is still requested at [prefetchDistance]
+     */
+    var keepPageBuffered = false
+
+    /**
+     * The average scroll velocity downwards, in pixels per millisecond
+     */
+    var velocity = 0f
+        private set
+
+    /**
+     * The average time, in milliseconds, it takes to load a page
+     */
+    var averageLatency = INITIAL_LATENCY
+        private set
+
+    /**
+     * The average height, in pixels, of the posts in the list
+     */
+    var averageItemHeight = INITIAL_ITEM_HEIGHT
+        private set
+
+    /**
+     * The amount of pages requested
+     */
+    var pagesRequested = 0
+        private set
+
+    /**
+     * The amount of times the last post in the list was shown while the next page was still loading
+     * (ie. the loading indicator was shown)
+     */
+    var endOfListHits = 0
+        private set
+
+    private var lastScrollTime = 0L
+    private var pageRequestedAt = -1L
+    private var lastHitItemCount = -1
+
+    /**
+     * The amount of posts from the end of the list the next page should be requested at
+     */
+    val prefetchDistance: Int
+        get() {
+            val itemsPerMs = velocity / averageItemHeight
+            val predicted = ceil(itemsPerMs * averageLatency * SAFETY_FACTOR).toInt()
+
+            return predicted.coerceIn(minDistance, maxOf(minDistance, maxDistance))
+        }
+
+    /**
+     * Checks if the next page should be requested now that the list has stopped scrolling. This is
+     * only true with [keepPageBuffered], when the last visible post is less than one page from the end
+     * of the list
+     *
+     * @param lastVisiblePosition The position of the last visible post
+     * @param itemCount The amount of posts in the list
+     */
+    fun shouldLoadWhenIdle(lastVisiblePosition: Int, itemCount: Int): Boolean {
+        return keepPageBuffered && lastVisiblePosition >= 0 && lastVisiblePosition + maxOf(PAGE_SIZE, prefetchDistance) >= itemCount
+    }
+
+    /**
+     * Call when the list has been scrolled
+     *
+     * @param recyclerView The RecyclerView scrolled. The visible children are used to measure the
+     * height of the posts
+     * @param dy The amount of pixels scrolled vertically
+     */
+    fun onScrolled(recyclerView: RecyclerView, dy: Int) {
+        val now = SystemClock.uptimeMillis()
+        val elapsed = now - lastScrollTime
+        lastScrollTime = now
+
+        // Long gaps between scroll events are from separate scrolls, so the elapsed time isn't meaningful
+        if (elapsed in 1..100) {
+            // Only scrolling down brings the end of the list closer
+            val sample = maxOf(dy, 0) / elapsed.toFloat()
+            velocity += (sample - velocity) * SMOOTHING
+        }
+
+        for (i in 0 until recyclerView.childCount) {
+            val height = recyclerView.getChildAt(i).height
+            if (height > 0) {
+                averageItemHeight += (height - averageItemHeight) * SMOOTHING
+            }
+        }
+    }
+
+    /**
+     * Call when the scroll state of the list has changed
+     *
+     * @param newState The new scroll state
+     */
+    fun onScrollStateChanged(newState: Int) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            velocity = 0f
+        }
+    }
+
+    /**
+     * Call when a post has been bound
+     *
+     * @param position The position of the post
+     * @param itemCount The amount of posts in the list
+     */
+    fun onPostBound(position: Int, itemCount: Int) {
+        // Rebinding the last post while still waiting for the same page should only count once
+        if (position == itemCount - 1 && pageRequestedAt >= 0 && lastHitItemCount != itemCount) {
+            lastHitItemCount = itemCount
+            endOfListHits++
+            Log.d(TAG, "End of list reached before the next page was loaded, hits=$endOfListHits, pages=$pagesRequested")
+        }
+    }
+
+    /**
+     * Call when the next page has been requested
+     */
+    fun onPageRequested() {
+        pagesRequested++
+        pageRequestedAt = SystemClock.uptimeMillis()
+    }
+
+    /**
+     * Call when the requested page has been loaded
+     */
+    fun onPageLoaded() {
+        if (pageRequestedAt >= 0) {
+            val latency = SystemClock.uptimeMillis() - pageRequestedAt
+            averageLatency += (latency - averageLatency) * SMOOTHING
+            pageRequestedAt = -1
+        }
+    }
+
+    /**
+     * Call when the requested page failed to load
+     */
+    fun onPageFailed() {
+        pageRequestedAt = -1
+    }
+
+    /**
+     * @return The ratio of requested pages where the end of the list was reached before the page loaded
+     */
+    fun getEndOfListHitRate(): Float {
+        return if (pagesRequested == 0) 0f else endOfListHits / pagesRequested.toFloat()
+    }
+}
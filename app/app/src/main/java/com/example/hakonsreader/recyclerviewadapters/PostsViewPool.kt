@@ -0,0 +1,135 @@
+package com.example.hakonsreader.recyclerviewadapters
+
+import android.content.Context
+import android.os.Looper
+import android.view.ViewGroup
+import android.util.Log
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleObserver
+import androidx.lifecycle.OnLifecycleEvent
+import androidx.recyclerview.widget.RecyclerView
+
+/**
+ * RecycledViewPool for lists of posts that is shared between all [PostsAdapter] lists in an activity,
+ * so that switching between lists of posts (eg. opening a new subreddit) reuses the ViewHolders
+ * already inflated instead of inflating new ones.
+ *
+ * RecyclerView clears its pool when a new adapter is set while no other list is attached to the pool,
+ * which is what happens when one list of posts replaces another. To keep the ViewHolders between lists
+ * the pool is attached to a list that isn't shown for as long as the pool lives.
+ *
+ * The pool can be warmed with [warmUp], which creates ViewHolders while the main thread is idle.
+ *
+ * ViewHolders in the pool might hold on to resources (such as video players), which are released when
+ * the pool is full, when the pool is cleared, and when the activity is destroyed (the pool must be
+ * added as an observer to the lifecycle of the activity)
+ */
+class PostsViewPool(context: Context) : RecyclerView.RecycledViewPool(), LifecycleObserver {
+
+    companion object {
+        private const val TAG = "PostsViewPool"
+
+        /**
+         * The amount of ViewHolders to create for each view type in [warmUp]
+         */
+        private val WARM_UP_COUNTS = mapOf(
+                PostsAdapter.VIEW_TYPE_NO_CONTENT to 3,
+                PostsAdapter.VIEW_TYPE_IMAGE to 4,
+                PostsAdapter.VIEW_TYPE_LINK to 2,
+                PostsAdapter.VIEW_TYPE_VIDEO to 1
+        )
+    }
+
+    private var warmedUp = false
+
+    /**
+     * The list that keeps the pool attached. This is never laid out, and its adapter has no items
+     */
+    private val attachedList = RecyclerView(context)
+
+    init {
+        PostsAdapter.VIEW_TYPES.forEach {
+            setMaxRecycledViews(it, PostsAdapter.getMaxRecycledViews(it))
+        }
+
+        attachedList.setRecycledViewPool(this)
+        attachedList.adapter = EmptyAdapter()
+    }
+
+    /**
+     * Creates ViewHolders for the most common view types and adds them to the pool. One ViewHolder is
+     * created each time the main thread is idle so that frames aren't delayed. This only has an effect
+     * the first time it is called
+     *
+     * The ViewHolders are created on the main thread as posts use data binding and inject dependencies
+     * when they are created, which can't be done on a background thread.
+     *
+     * @param recyclerView The RecyclerView to use as the parent of the ViewHolders. If the adapter
+     * of the RecyclerView changes the warm up is stopped
+     * @param adapter The adapter to create the ViewHolders with
+     */
+    fun warmUp(recyclerView: RecyclerView, adapter: PostsAdapter) {
+        if (warmedUp) {
+            return
+        }
+        warmedUp = true
+
+        val pending = ArrayDeque(WARM_UP_COUNTS.flatMap { (viewType, count) -> List(count) { viewType } })
+        var created = 0
+
+        Looper.myQueue().addIdleHandler {
+            val viewType = pending.removeFirstOrNull()
+            if (viewType == null || recyclerView.adapter !== adapter) {
+                Log.d(TAG, "warmUp: # of ViewHolders created=$created")
+                return@addIdleHandler false
+            }
+
+            if (getRecycledViewCount(viewType) < PostsAdapter.getMaxRecycledViews(viewType)) {
+                putRecycledView(adapter.createViewHolder(recyclerView, viewType))
+                created++
+            }
+
+            true
+        }
+    }
+
+    override fun putRecycledView(scrap: RecyclerView.ViewHolder) {
+        // The pool won't keep the ViewHolder when it's full, so it has to be released here
+        if (getRecycledViewCount(scrap.itemViewType) >= PostsAdapter.getMaxRecycledViews(scrap.itemViewType)) {
+            (scrap as? PostsAdapter.ViewHolder)?.destroy()
+        }
+        super.putRecycledView(scrap)
+    }
+
+    override fun clear() {
+        PostsAdapter.VIEW_TYPES.forEach { viewType ->
+            var viewHolder = getRecycledView(viewType)
+            while (viewHolder != null) {
+                (viewHolder as? PostsAdapter.ViewHolder)?.destroy()
+                viewHolder = getRecycledView(viewType)
+            }
+        }
+        super.clear()
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    private fun destroyed() {
+        attachedList.adapter = null
+        clear()
+    }
+
+    /**
+     * Adapter without any items, used for [attachedList]
+     */
+    private class EmptyAdapter : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+        override fun getItemCount() = 0
+
+        override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder {
+            throw UnsupportedOperationException("EmptyAdapter has no items")
+        }
+
+        override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
+            // No items to bind
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.hakonsreader.recyclerviewadapters
+
+import android.annotation.SuppressLint
+import android.text.Spanned
+import android.view.LayoutInflater
+import android.view.ViewGroup
+import androidx.recyclerview.widget.RecyclerView
+import com.example.hakonsreader.api.utils.MarkdownBlock
+import com.example.hakonsreader.databinding.ListItemWikiBlockBinding
+import com.example.hakonsreader.misc.InternalLinkMovementMethod
+import com.example.hakonsreader.views.util.setLongClickToPeekUrl
+
+/**
+ * RecyclerView adapter for displaying the [MarkdownBlock]s of a wiki page. Each block is rendered in the
+ * background when it is bound, so only the blocks that are shown (or about to be shown) are rendered
+ *
+ * The rendered blocks are kept until new blocks are submitted, so a block isn't blanked and rendered again
+ * when it is scrolled back into view. Blocks with tables or images aren't cached in
+ * [com.example.hakonsreader.views.util.MarkdownCache], so these would otherwise be rendered on every bind
+ *
+ * @param movementMethod The movement method to handle links in the blocks with
+ */
+class WikiBlocksAdapter(
+        private val movementMethod: InternalLinkMovementMethod
+) : RecyclerView.Adapter<WikiBlocksAdapter.ViewHolder>() {
+
+    private var blocks: List<MarkdownBlock> = ArrayList()
+
+    /**
+     * The rendered text of [blocks], by position. A block is only shown in one view at a time, so its
+     * text can be set again even if it has spans bound to the view it was last shown in
+     */
+    private var rendered = arrayOfNulls<Spanned>(0)
+
+    /**
+     * Sets the blocks to show. This replaces all the previous blocks, as the blocks of different
+     * pages have nothing in common
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    fun submitList(list: List<MarkdownBlock>) {
+        blocks = list
+        rendered = arrayOfNulls(list.size)
+        notifyDataSetChanged()
+    }
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
+        val binding = ListItemWikiBlockBinding.inflate(
+                LayoutInflater.from(parent.context),
+                parent,
+                false
+        )
+        binding.wikiBlock.movementMethod = movementMethod
+        binding.wikiBlock.setLongClickToPeekUrl()
+
+        return ViewHolder(binding)
+    }
+
+    override fun onBindViewHolder(holder: ViewHolder, position: Int) {
+        holder.bind(blocks[position], position)
+    }
+
+    override fun onViewRecycled(holder: ViewHolder) {
+        holder.recycle()
+    }
+
+    override fun getItemCount() = blocks.size
+
+    inner class ViewHolder(private val binding: ListItemWikiBlockBinding) : RecyclerView.ViewHolder(binding.root) {
+        fun bind(block: MarkdownBlock, position: Int) {
+            val text = rendered[position]
+
+            if (text != null) {
+                binding.wikiBlock.setRenderedMarkdown(text)
+            } else {
+                val renderedBlocks = rendered
+                binding.wikiBlock.setMarkdownNoLongClickAsync(block.markdown) {
+                    // New blocks might have been submitted in the meantime
+                    renderedBlocks[position] = it
+                }
+            }
+        }
+
+        /**
+         * Removes the text without Markwon unscheduling its spans, as the text might be shown in
+         * another view when the block is bound again
+         */
+        fun recycle() {
+            binding.wikiBlock.text = null
+        }
+    }
+}
@@ -1,17 +1,19 @@
 package com.example.hakonsreader.recyclerviewadapters.listeners;
 
-import android.content.res.Resources;
+import android.os.Trace;
+import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
-import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.hakonsreader.api.model.RedditPost;
 import com.example.hakonsreader.recyclerviewadapters.PostsAdapter;
+import com.example.hakonsreader.recyclerviewadapters.PostsPrefetcher;
 import com.example.hakonsreader.views.Content;
+import com.example.hakonsreader.views.util.VideoPrefetcher;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -21,16 +23,16 @@ import org.jetbrains.annotations.Nullable;
  * when it is the main content on the screen. The behaviour of being "selected" and "unselected"
  * is defined in subclasses' implementation of {@link Content#viewSelected()} and {@link Content#viewUnselected()}
  *
- * This listener can currently only be attached to a {@link RecyclerView} with a {@link LinearLayoutManager}
- * and {@link PostsAdapter} attached to it
+ * This listener can be attached to a {@link RecyclerView} with any layout manager (such as a grid)
+ * and a {@link PostsAdapter} attached to it. Only the children currently attached to the RecyclerView
+ * are checked, and their positions are relative to the RecyclerView, so no objects are allocated
+ * while scrolling. Posts are only selected/unselected when their state changes
  *
  * This listener implements {@link LifecycleObserver} and will listen to {@link Lifecycle.Event#ON_RESUME} and
  * {@link Lifecycle.Event#ON_PAUSE} which will ensure the listener never listens to anything in a paused state
  */
 public class PostScrollListener extends RecyclerView.OnScrollListener implements LifecycleObserver {
 
-    private final int SCREEN_HEIGHT = Resources.getSystem().getDisplayMetrics().heightPixels;
-
 
     /**
      * The ID of the post to ignore when calling {@link PostsAdapter.ViewHolder#onSelected()}
@@ -49,6 +51,18 @@ public class PostScrollListener extends RecyclerView.OnScrollListener implements
      */
     private boolean scrollingUp = false;
 
+    /**
+     * The prefetcher to pass scroll updates to
+     */
+    @Nullable
+    private PostsPrefetcher prefetcher = null;
+
+    /**
+     * The prefetcher to pass selected posts to
+     */
+    @Nullable
+    private VideoPrefetcher videoPrefetcher = null;
+
     /**
      * Sets the ID of a post to ignore when calling {@link PostsAdapter.ViewHolder#onSelected()}, so that
      * scrolling past the post will be ignored. This will be reset when {@link PostsAdapter.ViewHolder#onUnselected()}
@@ -74,9 +88,35 @@ public class PostScrollListener extends RecyclerView.OnScrollListener implements
         return postToIgnore;
     }
 
+    /**
+     * Sets the prefetcher that scroll updates should be passed to, so that it can adapt to the scroll speed
+     *
+     * @param prefetcher The prefetcher, or null to not pass scroll updates
+     */
+    public void setPrefetcher(@Nullable PostsPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Sets the prefetcher that selected posts should be passed to, so that the videos of the next
+     * posts in the scroll direction can be prefetched
+     *
+     * @param videoPrefetcher The prefetcher, or null to not pass selected posts
+     */
+    public void setVideoPrefetcher(@Nullable VideoPrefetcher videoPrefetcher) {
+        if (this.videoPrefetcher != null && this.videoPrefetcher != videoPrefetcher) {
+            this.videoPrefetcher.cancelAll();
+        }
+        this.videoPrefetcher = videoPrefetcher;
+    }
+
     @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
     private void paused() {
         paused = true;
+
+        if (videoPrefetcher != null) {
+            videoPrefetcher.cancelAll();
+        }
     }
 
     @OnLifecycleEvent(Lifecycle.Event.ON_RESUME)
@@ -90,6 +130,14 @@ public class PostScrollListener extends RecyclerView.OnScrollListener implements
             return;
         }
 
+        if (prefetcher != null) {
+            prefetcher.onScrollStateChanged(newState);
+
+            if (newState == RecyclerView.SCROLL_STATE_IDLE && posts.getAdapter() instanceof PostsAdapter) {
+                ((PostsAdapter) posts.getAdapter()).onListIdle(findLastVisiblePosition(posts));
+            }
+        }
+
         // We don't want to select views when we're scrolling
         if (newState == RecyclerView.SCROLL_STATE_IDLE) {
             // This function is responsible for selecting views
@@ -104,83 +152,98 @@ public class PostScrollListener extends RecyclerView.OnScrollListener implements
         }
         scrollingUp = dy < 0;
 
+        if (prefetcher != null) {
+            prefetcher.onScrolled(posts, dy);
+        }
+
         // This function is responsible for unselecting views
         this.checkSelectedPost(posts, true);
     }
 
     /**
-     * Goes through the selected range of posts and calls {@link PostsAdapter.ViewHolder#onSelected()}
+     * Finds the position of the last visible post, without allocating anything
+     *
+     * @param posts The RecyclerView with the posts
+     * @return The highest adapter position of the attached children, or {@link RecyclerView#NO_POSITION}
+     */
+    private int findLastVisiblePosition(RecyclerView posts) {
+        int last = RecyclerView.NO_POSITION;
+        for (int i = 0; i < posts.getChildCount(); i++) {
+            last = Math.max(last, posts.getChildAdapterPosition(posts.getChildAt(i)));
+        }
+        return last;
+    }
+
+    /**
+     * Goes through the visible posts and calls {@link PostsAdapter.ViewHolder#onSelected()}
      * and {@link PostsAdapter.ViewHolder#onUnselected()} based on if a post has been "selected" (ie. is the main
-     * item on the screen) or "unselected" (ie. no longer the main item)
+     * item on the screen) or "unselected" (ie. no longer the main item). The functions are only called
+     * when the selected state of the post changes
      *
-     * @param posts The RecyclerView with the posts. If the layout manager for this is not a {@link LinearLayoutManager}
-     *              then nothing is done
+     * @param posts The RecyclerView with the posts
      * @param onlyUnselect If true only {@link PostsAdapter.ViewHolder#onUnselected()} will be called
      */
     private void checkSelectedPost(RecyclerView posts, boolean onlyUnselect) {
         // The behavior is:
         // When scrolling UP:
         // 1. postToIgnore is reset when any view is UNSELECTED
-        // 1. If the bottom of the content is under the screen, the view is UN SELECTED
+        // 1. If the bottom of the content is under the list, the view is UN SELECTED
 
         // When scrolling DOWN:
-        // 1. If the top of the content is above the screen, the view is UNSELECTED
-        // 2. If the bottom of the content is under the screen, the view is UNSELECTED
-        // 3. If the top of the content is above 3/4th of the screen, the view is SELECTED
+        // 1. If the top of the content is above the list, the view is UNSELECTED
+        // 2. If the bottom of the content is under the list, the view is UNSELECTED
+        // 3. If the top of the content is above 35% of the list, the view is SELECTED
 
-        RecyclerView.LayoutManager layoutManager = posts.getLayoutManager();
-
-        // Currently this listener only supports a LinearLayoutManager. This will cause issues later
-        // if we want to use a different one for future layouts, but currently it will work fine
-        if (!(layoutManager instanceof LinearLayoutManager)) {
-            return;
-        }
-
-        LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
-
-        // Find the positions of first and last visible items to find all visible items
-        int posFirstItem = linearLayoutManager.findFirstVisibleItemPosition();
-        int posLastItem = linearLayoutManager.findLastVisibleItemPosition();
+        Trace.beginSection("PostScrollListener.checkSelectedPost");
 
+        // (0, 0) is the top left of the list
+        int listHeight = posts.getHeight();
 
-        // Go through all visible views and select/un select the view holder based on where on the screen they are
-        for (int i = posFirstItem; i <= posLastItem; i++) {
-            PostsAdapter.ViewHolder viewHolder = (PostsAdapter.ViewHolder)posts.findViewHolderForLayoutPosition(i);
+        // Go through all visible views and select/un select the view holder based on where in the list they are
+        for (int i = 0; i < posts.getChildCount(); i++) {
+            View child = posts.getChildAt(i);
+            RecyclerView.ViewHolder holder = posts.getChildViewHolder(child);
 
-            // If we have no view holder there isn't anything we can do later
-            if (viewHolder == null) {
+            if (!(holder instanceof PostsAdapter.ViewHolder)) {
                 continue;
             }
+            PostsAdapter.ViewHolder viewHolder = (PostsAdapter.ViewHolder) holder;
 
             RedditPost post = viewHolder.getPost().getRedditPost();
             if (post == null) {
-                return;
+                continue;
             }
 
+            int viewTop = viewHolder.getContentY(posts);
+            int viewBottom = viewHolder.getContentBottomY(posts);
 
-            // (0, 0) is top left
-            int viewTop = viewHolder.getContentY();
-            int viewBottom = viewHolder.getContentBottomY();
-
-            // If the bottom of the view is above the screen height it is "unselected"
-            // If the top of the view is above the screen (< 0) it is "unselected"
-            // If the top of the view is below 35% of the screen height and the bottom is above 50 %
-            //  of the screen height (to not select small posts at the top of the screen) it is "selected"
+            // If the bottom of the view is below the list it is "unselected"
+            // If the top of the view is above the list (< 0) it is "unselected"
+            // If the top of the view is above 35% of the list height and the bottom is below 50 %
+            //  of the list height (to not select small posts at the top of the list) it is "selected"
 
-            if (viewTop < 0 || viewBottom > SCREEN_HEIGHT) {
-                viewHolder.onUnselected();
+            if (viewTop < 0 || viewBottom > listHeight) {
+                if (viewHolder.isSelected()) {
+                    viewHolder.onUnselected();
+                }
 
                 // We only want to reset the post to ignore on scrolling up, otherwise we have to ensure
                 // that the view being unselected is the post that is being ignored
                 if (scrollingUp) {
                     postToIgnore = "";
                 }
-            } else if (!onlyUnselect && !post.getId().equals(postToIgnore)) {
+            } else if (!onlyUnselect && !viewHolder.isSelected() && !post.getId().equals(postToIgnore)) {
                 // This if could be merged with the one above, but I think it's easier to read if split
-                if (viewTop < SCREEN_HEIGHT * 0.35f && viewBottom > SCREEN_HEIGHT * 0.5f) {
+                if (viewTop < listHeight * 0.35f && viewBottom > listHeight * 0.5f) {
                     viewHolder.onSelected();
+
+                    if (videoPrefetcher != null) {
+                        videoPrefetcher.onPostSelected(posts, viewHolder.getBindingAdapterPosition(), scrollingUp);
+                    }
                 }
             }
         }
+
+        Trace.endSection();
     }
 }
@@ -8,7 +8,7 @@ import com.example.hakonsreader.api.interfaces.LockableListing
 import com.example.hakonsreader.api.model.RedditComment
 import com.example.hakonsreader.api.model.RedditPost
 import com.example.hakonsreader.api.model.RedditUser
-import com.example.hakonsreader.api.persistence.RedditPostsDao
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.responses.ApiResponse
 import com.example.hakonsreader.states.AppState
 import com.example.hakonsreader.misc.handleGenericResponseErrors
@@ -76,16 +76,16 @@ fun unblockUser(view: View, username: String, loggedInUser: RedditUser, api: Red
  *
  * @param view The view to attach the snackbar to
  * @param listing The listing to lock
- * @param postsDao If the listing is a post, pass the DAO to update the post
+ * @param writeQueue If the listing is a post, pass the write queue to update the post
  * @param commentsAdapter If this is locking a comment, pass the comments adapter to update the comment
  */
-fun lockListingOnClick(view: View, listing: LockableListing, api: RedditApi, postsDao: RedditPostsDao? = null, commentsAdapter: CommentsAdapter? = null) {
+fun lockListingOnClick(view: View, listing: LockableListing, api: RedditApi, writeQueue: DatabaseWriteQueue? = null, commentsAdapter: CommentsAdapter? = null) {
     CoroutineScope(IO).launch {
         val newLock = !listing.isLocked
         listing.isLocked = newLock
 
         val request = if (listing is RedditPost) {
-            postsDao?.update(listing)
+            writeQueue?.updatePost(listing)
             api.post(listing.id)
         } else {
             // Update adapter
@@ -106,7 +106,7 @@ fun lockListingOnClick(view: View, listing: LockableListing, api: RedditApi, pos
             is ApiResponse.Error -> {
                 listing.isLocked = !newLock
                 if (listing is RedditPost) {
-                    postsDao?.update(listing)
+                    writeQueue?.updatePost(listing)
                 } else {
                     withContext(Main) {
                         commentsAdapter?.notifyItemChanged(listing as RedditComment)
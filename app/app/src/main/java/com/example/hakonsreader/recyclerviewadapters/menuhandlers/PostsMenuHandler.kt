@@ -10,7 +10,7 @@ import android.widget.Button
 import com.example.hakonsreader.R
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.model.RedditPost
-import com.example.hakonsreader.api.persistence.RedditPostsDao
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.responses.ApiResponse
 import com.example.hakonsreader.states.AppState
 import com.example.hakonsreader.misc.Settings
@@ -31,8 +31,9 @@ import kotlinx.coroutines.withContext
  *
  * @param view The view clicked
  * @param post The post the popup is for
+ * @param writeQueue The queue changes to the post are written to the database through
  */
-fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, api: RedditApi, settings: Settings) {
+fun showPopupForPost(view: View, post: RedditPost?, writeQueue: DatabaseWriteQueue, api: RedditApi, settings: Settings) {
     // If the menu is clicked before the post loads, it will be passed as null
     if (post == null) {
         return
@@ -76,7 +77,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         R.string.savePost
                     }
                     icon = R.drawable.ic_bookmark_24dp
-                    callback = { savePostOnClick(view, post, api) }
+                    callback = { savePostOnClick(view, post, api, writeQueue) }
                 }
 
                 // Post by the logged in user (technically if we failed to get user information this
@@ -99,7 +100,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         // This would be kind of fun to have a car spoiler, but I'm definitely not going
                         // to create that myself
                         icon = R.drawable.ic_help_24dp
-                        callback = { markSpoilerOnClick(view, post, api, postsDao) }
+                        callback = { markSpoilerOnClick(view, post, api, writeQueue) }
                     }
 
                     item {
@@ -110,7 +111,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         }
 
                         icon = R.drawable.ic_pin_icon_color_24dp
-                        callback = { markNsfwOnClick(view, post, api, postsDao) }
+                        callback = { markNsfwOnClick(view, post, api, writeQueue) }
                     }
                 } else {
                     // Post NOT be logged in user
@@ -136,7 +137,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         R.string.postDistinguishAsMod
                     }
                     icon = R.drawable.ic_admin_24px
-                    callback = { distinguishAsModOnClick(view, post, api, postsDao) }
+                    callback = { distinguishAsModOnClick(view, post, api, writeQueue) }
                 }
 
                 item {
@@ -147,7 +148,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                     }
 
                     icon = R.drawable.ic_pin_icon_color_24dp
-                    callback = { stickyOnClick(view, post, api, postsDao) }
+                    callback = { stickyOnClick(view, post, api, writeQueue) }
                 }
 
                 item {
@@ -159,7 +160,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         icon = R.drawable.ic_lock_24dp
                     }
 
-                    callback = { lockListingOnClick(view, post, api, postsDao) }
+                    callback = { lockListingOnClick(view, post, api, writeQueue) }
                 }
 
                 // Don't create the nsfw/spoiler items if the user is also the poster, as they will
@@ -177,7 +178,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         // This would be kind of fun to have a car spoiler, but I'm definitely not going
                         // to create that myself
                         icon = R.drawable.ic_help_24dp
-                        callback = { markSpoilerOnClick(view, post, api, postsDao) }
+                        callback = { markSpoilerOnClick(view, post, api, writeQueue) }
                     }
 
                     item {
@@ -188,7 +189,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
                         }
 
                         icon = R.drawable.ic_pin_icon_color_24dp
-                        callback = { markNsfwOnClick(view, post, api, postsDao) }
+                        callback = { markNsfwOnClick(view, post, api, writeQueue) }
                     }
                 }
             }
@@ -197,7 +198,7 @@ fun showPopupForPost(view: View, post: RedditPost?, postsDao: RedditPostsDao, ap
 }
 
 
-private fun savePostOnClick(view: View, post: RedditPost, api: RedditApi) {
+private fun savePostOnClick(view: View, post: RedditPost, api: RedditApi, writeQueue: DatabaseWriteQueue) {
     CoroutineScope(IO).launch {
         val save = !post.isSaved
         val response = if (save) {
@@ -209,6 +210,7 @@ private fun savePostOnClick(view: View, post: RedditPost, api: RedditApi) {
         when (response) {
             is ApiResponse.Success -> {
                 post.isSaved = save
+                writeQueue.updatePost(post)
                 val saveString = if (save) {
                     R.string.postSaved
                 } else {
@@ -221,15 +223,15 @@ private fun savePostOnClick(view: View, post: RedditPost, api: RedditApi) {
     }
 }
 
-private fun distinguishAsModOnClick(view: View, post: RedditPost, api: RedditApi, postsDao: RedditPostsDao) {
+private fun distinguishAsModOnClick(view: View, post: RedditPost, api: RedditApi, writeQueue: DatabaseWriteQueue) {
     CoroutineScope(IO).launch {
         val response = if (post.isMod()) {
             post.distinguished = null
-            postsDao.update(post)
+            writeQueue.updatePost(post)
             api.post(post.id).removeModDistinguish()
         } else {
             post.distinguished = "moderator"
-            postsDao.update(post)
+            writeQueue.updatePost(post)
             api.post(post.id).distinguishAsMod()
         }
 
@@ -242,11 +244,11 @@ private fun distinguishAsModOnClick(view: View, post: RedditPost, api: RedditApi
     }
 }
 
-private fun stickyOnClick(view: View, post: RedditPost, api: RedditApi, postsDao: RedditPostsDao) {
+private fun stickyOnClick(view: View, post: RedditPost, api: RedditApi, writeQueue: DatabaseWriteQueue) {
     CoroutineScope(IO).launch {
         val newSticky = !post.isStickied
         post.isStickied = newSticky
-        postsDao.update(post)
+        writeQueue.updatePost(post)
 
         val response = if (newSticky) {
             api.post(post.id).sticky()
@@ -259,18 +261,18 @@ private fun stickyOnClick(view: View, post: RedditPost, api: RedditApi, postsDao
             is ApiResponse.Error -> {
                 // Revert back
                 post.isStickied = !post.isStickied
-                postsDao.update(post)
+                writeQueue.updatePost(post)
                 handleGenericResponseErrors(view, response.error, response.throwable)
             }
         }
     }
 }
 
-private fun markNsfwOnClick(view: View, post: RedditPost, api: RedditApi, postsDao: RedditPostsDao) {
+private fun markNsfwOnClick(view: View, post: RedditPost, api: RedditApi, writeQueue: DatabaseWriteQueue) {
     CoroutineScope(IO).launch {
         val newNsfw = !post.isNsfw
         post.isNsfw = newNsfw
-        postsDao.update(post)
+        writeQueue.updatePost(post)
 
         val response = if (newNsfw) {
             api.post(post.id).markNsfw()
@@ -283,18 +285,18 @@ private fun markNsfwOnClick(view: View, post: RedditPost, api: RedditApi, postsD
             is ApiResponse.Error -> {
                 // Revert back
                 post.isNsfw = !post.isNsfw
-                postsDao.update(post)
+                writeQueue.updatePost(post)
                 handleGenericResponseErrors(view, response.error, response.throwable)
             }
         }
     }
 }
 
-private fun markSpoilerOnClick(view: View, post: RedditPost, api: RedditApi, postsDao: RedditPostsDao) {
+private fun markSpoilerOnClick(view: View, post: RedditPost, api: RedditApi, writeQueue: DatabaseWriteQueue) {
     CoroutineScope(IO).launch {
         val newSpoiler = !post.isSpoiler
         post.isSpoiler = newSpoiler
-        postsDao.update(post)
+        writeQueue.updatePost(post)
 
         val response = if (newSpoiler) {
             api.post(post.id).markSpoiler()
@@ -307,7 +309,7 @@ private fun markSpoilerOnClick(view: View, post: RedditPost, api: RedditApi, pos
             is ApiResponse.Error -> {
                 // Revert back
                 post.isSpoiler = !post.isSpoiler
-                postsDao.update(post)
+                writeQueue.updatePost(post)
                 handleGenericResponseErrors(view, response.error, response.throwable)
             }
         }
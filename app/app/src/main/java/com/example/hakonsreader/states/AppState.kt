@@ -10,11 +10,12 @@ import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.model.AccessToken
 import com.example.hakonsreader.api.model.RedditUser
 import com.example.hakonsreader.api.model.RedditUserInfo
-import com.example.hakonsreader.api.persistence.RedditDatabase
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditUserInfoDatabase
 import com.example.hakonsreader.constants.SharedPreferencesConstants
 import com.example.hakonsreader.misc.SharedPreferencesManager
 import com.example.hakonsreader.misc.TokenManager
+import com.example.hakonsreader.views.util.VideoCache
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
@@ -24,7 +25,7 @@ import kotlinx.coroutines.withContext
  * Global app state. Must be initialized during startup by using [init]
  */
 object AppState {
-    private lateinit var database: RedditDatabase
+    private lateinit var writeQueue: DatabaseWriteQueue
     private lateinit var userInfoDatabase: RedditUserInfoDatabase
     private lateinit var api: RedditApi
 
@@ -50,8 +51,8 @@ object AppState {
      *
      * This should only be called during startup
      */
-    fun init(api: RedditApi, database: RedditDatabase, userInfoDatabase: RedditUserInfoDatabase) {
-        AppState.database = database
+    fun init(api: RedditApi, writeQueue: DatabaseWriteQueue, userInfoDatabase: RedditUserInfoDatabase) {
+        AppState.writeQueue = writeQueue
         AppState.userInfoDatabase = userInfoDatabase
         AppState.api = api
 
@@ -198,7 +199,7 @@ object AppState {
     fun switchAccount(userId: String, activity: AppCompatActivity) {
         CoroutineScope(Dispatchers.IO).launch {
             // Ensure no user state from one account is used for the new one
-            database.clearUserState()
+            writeQueue.clearUserState()
 
             val token = TokenManager.getTokenByUserId(userId)
             if (token != null) {
@@ -268,7 +269,8 @@ object AppState {
             api.logOut()
 
             // Clear any user specific state from database records (such as vote status on posts)
-            database.clearUserState()
+            writeQueue.clearUserState()
+            VideoCache.clear()
 
             getUserInfo()?.let {
                 userInfoDatabase.userInfo().delete(it)
@@ -1,6 +1,5 @@
 package com.example.hakonsreader.viewmodels
 
-import android.content.SharedPreferences
 import android.os.Bundle
 import android.os.Parcelable
 import androidx.lifecycle.LiveData
@@ -11,9 +10,10 @@ import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.enums.Thing
 import com.example.hakonsreader.api.model.RedditComment
 import com.example.hakonsreader.api.model.RedditPost
-import com.example.hakonsreader.api.persistence.RedditPostsDao
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
+import com.example.hakonsreader.api.persistence.PostVisit
+import com.example.hakonsreader.api.persistence.RedditPostVisitsDao
 import com.example.hakonsreader.api.responses.ApiResponse
-import com.example.hakonsreader.constants.SharedPreferencesConstants
 import com.example.hakonsreader.misc.Settings
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.Dispatchers.IO
@@ -31,7 +31,8 @@ import javax.inject.Inject
 @HiltViewModel
 class CommentsViewModel @Inject constructor(
     private val api: RedditApi,
-    private val postsDao: RedditPostsDao,
+    private val writeQueue: DatabaseWriteQueue,
+    private val postVisitsDao: RedditPostVisitsDao,
     private val settings: Settings
 ) : ViewModel() {
 
@@ -51,10 +52,15 @@ class CommentsViewModel @Inject constructor(
     val error: LiveData<ErrorWrapper> = _error
 
     /**
-     * The SharedPreferences used to hold the time posts were last opened. This should be set before
-     * comments are loaded to provide the expected behaviour
+     * The visit stored for the post before it was opened this time, or null if the post hasn't been
+     * opened before
      */
-    var preferences: SharedPreferences? = null
+    private var previousVisit: PostVisit? = null
+
+    /**
+     * True if [previousVisit] has been retrieved from the database
+     */
+    private var previousVisitLoaded = false
 
     /**
      * The ID of the comment parent coming of the currently show chain, or null if no chain is shown
@@ -120,10 +126,16 @@ class CommentsViewModel @Inject constructor(
                         resp.value.post.thirdPartyObject = thirdPartyObject
                     }
 
-                    preferences?.let { prefs ->
+                    withContext(IO) {
+                        // Only retrieve the previous visit the first time, otherwise refreshing the
+                        // comments would retrieve the visit stored below
+                        if (!previousVisitLoaded) {
+                            previousVisit = postVisitsDao.get(postId)
+                            previousVisitLoaded = true
+                        }
+
                         // Update the value for when the post was opened
-                        val lastTimeOpenedKey = postId + SharedPreferencesConstants.POST_LAST_OPENED_TIMESTAMP
-                        prefs.edit().putLong(lastTimeOpenedKey, lastTimeOpened).apply()
+                        postVisitsDao.insert(PostVisit(postId, lastTimeOpened, resp.value.post.amountOfComments))
                     }
 
                     allComments = resp.value.comments
@@ -136,9 +148,7 @@ class CommentsViewModel @Inject constructor(
                     }
 
                     _post.postValue(resp.value.post)
-                    withContext(IO) {
-                        insertPostIntoDb(resp.value.post)
-                    }
+                    insertPostIntoDb(resp.value.post)
                 }
                 is ApiResponse.Error -> _error.postValue(ErrorWrapper(resp.error, resp.throwable))
             }
@@ -248,12 +258,7 @@ class CommentsViewModel @Inject constructor(
 
         _post.value?.let { redditPost ->
             redditPost.amountOfComments++
-
-            viewModelScope.launch {
-                withContext(IO) {
-                    postsDao.update(redditPost)
-                }
-            }
+            writeQueue.updatePost(redditPost)
         }
     }
 
@@ -473,19 +478,14 @@ class CommentsViewModel @Inject constructor(
             post.crosspostIds = crosspostIds
         }
 
-        postsDao.insertAll(postsToInsertIntoDb)
+        writeQueue.insertPosts(postsToInsertIntoDb)
     }
 
     /**
-     * @return The time the post was last opened, or -1 if not applicable
+     * @return The time the post was last opened before this time, or -1 if not applicable
      */
     fun getLastTimePostOpened(): Long {
-        if (postId.isBlank() || preferences == null) {
-            return -1
-        }
-
-        val lastTimeOpenedKey = postId + SharedPreferencesConstants.POST_LAST_OPENED_TIMESTAMP
-        return preferences!!.getLong(lastTimeOpenedKey, -1)
+        return previousVisit?.lastOpened ?: -1
     }
 
     /**
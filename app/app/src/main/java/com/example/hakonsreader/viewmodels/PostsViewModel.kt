@@ -8,6 +8,7 @@ import com.example.hakonsreader.api.enums.PostTimeSort
 import com.example.hakonsreader.api.enums.SortingMethods
 import com.example.hakonsreader.api.enums.Thing
 import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditPostsDao
 import com.example.hakonsreader.api.responses.ApiResponse
 import com.example.hakonsreader.api.utils.createFullName
@@ -39,6 +40,7 @@ class PostsViewModel @AssistedInject constructor (
         @Assisted private val savedStateHandle: SavedStateHandle,
         private val api: RedditApi,
         private val postsDao: RedditPostsDao,
+        private val writeQueue: DatabaseWriteQueue,
 ) : ViewModel() {
 
     companion object {
@@ -238,7 +240,7 @@ class PostsViewModel @AssistedInject constructor (
         // Store (or update) the posts in the database
         // We use all the posts here as duplicates will just be updated, which is fine
         // This must be called after the crossposts are set or else the IDs wont be stored
-        postsDao.insertAll(postsToInsertIntoDb)
+        writeQueue.insertPosts(postsToInsertIntoDb)
     }
 
     /**
@@ -288,10 +290,17 @@ class PostsViewModel @AssistedInject constructor (
         // Posts are saved for 2 days, so if the user hasn't opened the app for a long time they might
         // have been removed (not sure if SavedStateHandle saves for an infinite amount of time?)
         CoroutineScope(IO).launch {
+            // The posts might still be waiting to be written
+            writeQueue.flush()
+
             val posts = postsDao.getPostsById(ids)
-            posts.forEach {
-                if (!it.crosspostIds.isNullOrEmpty()) {
-                    it.crossposts = postsDao.getPostsById(it.crosspostIds!!)
+
+            // Retrieve the crossposts for all posts at once instead of one query per post
+            val crosspostIds = posts.flatMap { it.crosspostIds ?: emptyList() }
+            if (crosspostIds.isNotEmpty()) {
+                val crossposts = postsDao.getPostsById(crosspostIds).associateBy { it.id }
+                posts.forEach { post ->
+                    post.crosspostIds?.let { postCrosspostIds -> post.crossposts = postCrosspostIds.mapNotNull { crossposts[it] } }
                 }
             }
 
@@ -3,6 +3,7 @@ package com.example.hakonsreader.viewmodels
 import androidx.lifecycle.*
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.model.Subreddit
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditSubredditsDao
 import com.example.hakonsreader.api.responses.ApiResponse
 import com.example.hakonsreader.states.AppState
@@ -12,7 +13,6 @@ import dagger.assisted.AssistedInject
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers.IO
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.withContext
 
 /**
  * ViewModel for retrieving subreddits. The subreddits retrieved are automatically chosen for
@@ -21,6 +21,7 @@ import kotlinx.coroutines.withContext
 class SelectSubredditsViewModel @AssistedInject constructor(
         private val api: RedditApi,
         private val subredditsDao: RedditSubredditsDao,
+        private val writeQueue: DatabaseWriteQueue,
         @Assisted var isForLoggedInUser: Boolean
 ) : ViewModel() {
 
@@ -99,7 +100,7 @@ class SelectSubredditsViewModel @AssistedInject constructor(
 
                     // Although NSFW subs might be inserted with this, it's fine as if the user
                     // has subscribed to them it's fine (for non-logged in users, default subs don't include NSFW)
-                    withContext(IO) {
+                    writeQueue.writeAfterFlush {
                         subredditsDao.insertAll(subreddits)
                     }
                 }
@@ -119,7 +120,7 @@ class SelectSubredditsViewModel @AssistedInject constructor(
         subreddit.isFavorited = favorite
 
         viewModelScope.launch {
-            withContext(IO) {
+            writeQueue.writeAfterFlush {
                 subredditsDao.update(subreddit)
             }
             when (val response = api.subreddit(subreddit.name).favorite(favorite)) {
@@ -129,7 +130,7 @@ class SelectSubredditsViewModel @AssistedInject constructor(
 
                     // Request failed, revert
                     subreddit.isFavorited = !favorite
-                    withContext(IO) {
+                    writeQueue.writeAfterFlush {
                         subredditsDao.update(subreddit)
                     }
                 }
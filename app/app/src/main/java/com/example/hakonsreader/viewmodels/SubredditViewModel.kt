@@ -6,6 +6,7 @@ import androidx.lifecycle.viewModelScope
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.model.Subreddit
 import com.example.hakonsreader.api.model.flairs.RedditFlair
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditPostsDao
 import com.example.hakonsreader.api.persistence.RedditSubredditsDao
 import com.example.hakonsreader.api.requestmodels.SubredditRequest
@@ -20,21 +21,23 @@ class SubredditViewModel(
         api: RedditApi,
         dao: RedditSubredditsDao,
         postsDao: RedditPostsDao,
+        writeQueue: DatabaseWriteQueue,
 ) : ViewModel() {
 
     class Factory(
             private val subredditName: String,
             private val api: RedditApi,
             private val dao: RedditSubredditsDao,
-            private val postsDao: RedditPostsDao
+            private val postsDao: RedditPostsDao,
+            private val writeQueue: DatabaseWriteQueue
     ) : ViewModelProvider.Factory {
         @Suppress("UNCHECKED_CAST")
         override fun <T : ViewModel?> create(modelClass: Class<T>): T {
-            return SubredditViewModel(subredditName, api, dao, postsDao) as T
+            return SubredditViewModel(subredditName, api, dao, postsDao, writeQueue) as T
         }
     }
 
-    private val repo = SubredditRepository(subredditName, api, dao, postsDao)
+    private val repo = SubredditRepository(subredditName, api, dao, postsDao, writeQueue)
 
     val subreddit = repo.getSubreddit()
     val errors = repo.errors
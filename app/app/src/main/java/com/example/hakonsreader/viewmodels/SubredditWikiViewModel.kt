@@ -2,40 +2,70 @@ package com.example.hakonsreader.viewmodels
 
 import androidx.lifecycle.*
 import com.example.hakonsreader.api.model.SubredditWikiPage
+import com.example.hakonsreader.api.persistence.RedditWikiPagesDao
 import com.example.hakonsreader.api.requestmodels.SubredditRequest
 import com.example.hakonsreader.api.responses.ApiResponse
+import com.example.hakonsreader.api.utils.MarkdownBlock
+import com.example.hakonsreader.api.utils.MarkdownSplitter
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import kotlin.collections.ArrayDeque
 import kotlin.collections.HashMap
 
 /**
  * ViewModel for loading wiki pages for a subreddit
+ *
+ * Pages are stored in the database, and a stored page is shown while the page is loaded from the API.
+ * The content of a page is split into [MarkdownBlock]s, which is only done again when the revision of the page changes
  */
 class SubredditWikiViewModel(
-        private val api: SubredditRequest
+        private val subredditName: String,
+        private val api: SubredditRequest,
+        private val dao: RedditWikiPagesDao
 ) : ViewModel() {
 
     class Factory(
-            private val api: SubredditRequest
+            private val subredditName: String,
+            private val api: SubredditRequest,
+            private val dao: RedditWikiPagesDao
     ) : ViewModelProvider.Factory {
         @Suppress("UNCHECKED_CAST")
         override fun <T : ViewModel?> create(modelClass: Class<T>): T {
-            return SubredditWikiViewModel(api) as T
+            return SubredditWikiViewModel(subredditName, api, dao) as T
+        }
+    }
+
+    /**
+     * A wiki page with its content split into blocks
+     *
+     * @param page The wiki page
+     * @param blocks The blocks of the content of the page
+     */
+    class WikiPageBlocks(val page: SubredditWikiPage, val blocks: List<MarkdownBlock>) {
+        /**
+         * The blocks that start with a header, with the position of the block in [blocks]. This is
+         * only created when it is used
+         */
+        val tableOfContents: List<IndexedValue<MarkdownBlock>> by lazy {
+            blocks.withIndex().filter { it.value.header != null }
         }
     }
 
     private val pageStack = ArrayDeque<String>()
 
     /**
-     * A cache of the previously stored wiki pages
+     * A cache of the previously loaded wiki pages
      */
-    private val pages = HashMap<String, SubredditWikiPage>()
+    private val pages = HashMap<String, WikiPageBlocks>()
 
-    private val _page = MutableLiveData<SubredditWikiPage>()
+    private val splitter = MarkdownSplitter()
+
+    private val _page = MutableLiveData<WikiPageBlocks>()
     private val _isLoading = MutableLiveData<Boolean>()
     private val _error = MutableLiveData<ErrorWrapper>()
 
-    val page: LiveData<SubredditWikiPage> = _page
+    val page: LiveData<WikiPageBlocks> = _page
     val isLoading: LiveData<Boolean> = _isLoading
     val error: LiveData<ErrorWrapper> = _error
 
@@ -75,23 +105,62 @@ class SubredditWikiViewModel(
             pageStack.addLast(actualPageName)
         }
 
-        if (pages.containsKey(actualPageName)) {
-            _page.value = pages[actualPageName]
+        pages[actualPageName]?.let {
+            _page.value = it
             return
         }
 
         _isLoading.value = true
         viewModelScope.launch {
+            // Show the stored page while the newest revision is loaded
+            val stored = withContext(Dispatchers.IO) {
+                dao.get(subredditName, actualPageName)
+            }?.let { split(it) }
+
+            if (stored != null) {
+                pages[actualPageName] = stored
+                postIfCurrent(actualPageName, stored)
+            }
+
             when (val resp = api.wiki(actualPageName)) {
                 is ApiResponse.Success -> {
                     val wikiPage = resp.value
-                    pages[actualPageName] = wikiPage
-                    _page.postValue(wikiPage)
+
+                    // Only split and show the page again if it has changed
+                    if (stored == null || stored.page.revisionId != wikiPage.revisionId) {
+                        val blocks = split(wikiPage)
+                        pages[actualPageName] = blocks
+                        postIfCurrent(actualPageName, blocks)
+                    }
+
+                    // Stored even if it hasn't changed, so pages still in use aren't removed as old pages
+                    withContext(Dispatchers.IO) {
+                        dao.insert(wikiPage)
+                    }
+                }
+
+                is ApiResponse.Error -> {
+                    // If the stored page is shown the error isn't relevant
+                    if (stored == null) {
+                        _error.postValue(ErrorWrapper(resp.error, resp.throwable))
+                    }
                 }
-                is ApiResponse.Error -> _error.postValue(ErrorWrapper(resp.error, resp.throwable))
             }
 
             _isLoading.postValue(false)
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Posts a page to [page] if the page is still the page at the top of the stack
+     */
+    private fun postIfCurrent(pageName: String, page: WikiPageBlocks) {
+        if (pageStack.lastOrNull() == pageName) {
+            _page.postValue(page)
+        }
+    }
+
+    private suspend fun split(page: SubredditWikiPage) = withContext(Dispatchers.Default) {
+        WikiPageBlocks(page, splitter.split(page.content))
+    }
+}
@@ -6,6 +6,7 @@ import androidx.lifecycle.Transformations
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.model.Subreddit
 import com.example.hakonsreader.api.model.flairs.RedditFlair
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.persistence.RedditPostsDao
 import com.example.hakonsreader.api.persistence.RedditSubredditsDao
 import com.example.hakonsreader.api.responses.ApiResponse
@@ -19,7 +20,8 @@ class SubredditRepository(
         private val subredditName: String,
         private val api: RedditApi,
         private val dao: RedditSubredditsDao,
-        private val postsDao: RedditPostsDao
+        private val postsDao: RedditPostsDao,
+        private val writeQueue: DatabaseWriteQueue
 ) {
 
     private var infoLoaded = false
@@ -53,7 +55,9 @@ class SubredditRepository(
             is ApiResponse.Success -> {
                 infoLoaded = true
                 val sub = resp.value
-                dao.insert(sub)
+                writeQueue.writeAfterFlush {
+                    dao.insert(sub)
+                }
 
                 // If a redirect occurred, a different subreddit will be sent back
                 // Eg. if this is for the subreddit "random", a random subreddit will be returned
@@ -76,6 +80,8 @@ class SubredditRepository(
      */
     suspend fun subscribe() {
         val subreddit = withContext(IO) {
+            // A previous subscription change might not be written yet
+            writeQueue.flush()
             dao.get(subredditNameObservable.value!!)
         } ?: return
 
@@ -83,10 +89,7 @@ class SubredditRepository(
         val newSubscription = !subreddit.isSubscribed
         subreddit.isSubscribed = newSubscription
         subreddit.subscribers += if (newSubscription) 1 else -1
-
-        withContext(IO) {
-            dao.update(subreddit)
-        }
+        writeQueue.updateSubreddit(subreddit)
 
         when (val response = api.subreddit(subredditNameObservable.value!!).subscribe(newSubscription)) {
             is ApiResponse.Success -> { }
@@ -94,9 +97,7 @@ class SubredditRepository(
                 // Revert back
                 subreddit.isSubscribed = !newSubscription
                 subreddit.subscribers += if (!newSubscription) 1 else -1
-                withContext(IO) {
-                    dao.update(subreddit)
-                }
+                writeQueue.updateSubreddit(subreddit)
 
                 _errors.postValue(ErrorWrapper(response.error, response.throwable))
             }
@@ -112,6 +113,7 @@ class SubredditRepository(
      */
     suspend fun updateFlair(username: String, flair: RedditFlair?) {
         val subreddit = withContext(IO) {
+            writeQueue.flush()
             dao.get(subredditName)
         } ?: return
 
@@ -120,19 +122,18 @@ class SubredditRepository(
         subreddit.userFlairText = flair?.text
         subreddit.userFlairTextColor = flair?.textColor
 
-        withContext(IO) {
-            dao.update(subreddit)
-
-            // Update all posts the user potentially has in the database
-            postsDao.getPostsByUser(username).apply {
-                forEach {
-                    it.authorFlairBackgroundColor = flair?.backgroundColor
-                    it.authorRichtextFlairs = flair?.richtextFlairs ?: ArrayList()
-                    it.authorFlairText = flair?.text
-                    it.authorFlairTextColor = flair?.textColor
-                }
-                postsDao.updateAll(this)
-            }
+        writeQueue.updateSubreddit(subreddit)
+
+        // Update all posts the user potentially has in the database. Pending inserts of the posts would
+        // otherwise overwrite the new flair when they are flushed
+        writeQueue.writeAfterFlush {
+            postsDao.updateAuthorFlair(
+                    username,
+                    text = flair?.text,
+                    textColor = flair?.textColor,
+                    backgroundColor = flair?.backgroundColor,
+                    richtextFlairs = flair?.richtextFlairs ?: ArrayList()
+            )
         }
 
         when (val resp = api.subreddit(subredditNameObservable.value!!).selectFlair(username, flair?.id)) {
@@ -15,6 +15,7 @@ import androidx.core.util.Pair;
 
 import com.example.hakonsreader.api.model.RedditPost;
 import com.example.hakonsreader.misc.Settings;
+import com.example.hakonsreader.views.util.ImageRequestKey;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -70,6 +71,9 @@ public abstract class Content extends FrameLayout {
     @Nullable
     protected Bitmap bitmap;
 
+    @Nullable
+    protected ImageRequestKey loadedImage;
+
     @Inject
     Settings settings;
 
@@ -208,6 +212,28 @@ public abstract class Content extends FrameLayout {
         return bitmap;
     }
 
+    /**
+     * Sets the key of an image that has already been loaded for the post elsewhere (eg. in a list of
+     * posts). The image is shown from Glide's memory cache while the image of the content loads
+     *
+     * <p>Images are passed as keys instead of bitmaps, as the bitmaps are owned by Glide and can be
+     * reused for other images when the request they were loaded with is cleared</p>
+     *
+     * @param loadedImage The key of the image
+     */
+    public void setLoadedImage(@Nullable ImageRequestKey loadedImage) {
+        this.loadedImage = loadedImage;
+    }
+
+    /**
+     * @return The key of the image currently displayed by the content, if applicable. Otherwise, the key
+     * passed to {@link #setLoadedImage(ImageRequestKey)} is returned
+     */
+    @Nullable
+    public ImageRequestKey getLoadedImage() {
+        return loadedImage;
+    }
+
     /**
      * @return The list of posts this view has previously displayed. Does not include the current post
      */
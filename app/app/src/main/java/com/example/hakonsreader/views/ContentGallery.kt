@@ -24,6 +24,7 @@ import com.example.hakonsreader.api.model.thirdparty.imgur.ImgurGif
 import com.example.hakonsreader.databinding.ContentGalleryBinding
 import com.example.hakonsreader.misc.Coordinates
 import com.example.hakonsreader.misc.Settings
+import com.example.hakonsreader.views.util.ImageRequestKey
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -69,6 +70,80 @@ class ContentGallery @JvmOverloads constructor(
                 return galleryImages.isNotEmpty()
             }
         }
+
+        /**
+         * Gets the images to display for a gallery post
+         *
+         * @return The images, or null if the post has no gallery images
+         */
+        private fun getGalleryImages(redditPost: RedditPost): List<GalleryImage>? {
+            val thirdParty = redditPost.thirdPartyObject
+            return if (thirdParty is ImgurAlbum) {
+                thirdParty.images!!
+            } else {
+                // Example, in the link below the last image failed (at the time of writing at least)
+                // https://www.reddit.com/r/RATS/comments/nqwcun/my_poor_gus_only_last_night_you_were_fishing_for/
+                val post = redditPost.crossposts?.firstOrNull() ?: redditPost
+                val galleryImages = post.galleryImages ?: return null
+
+                galleryImages.filter { it.status == RedditGalleryItem.STATUS_VALID }
+            }
+        }
+
+        /**
+         * Calculates the height a gallery will have when displayed with a given width. The gallery
+         * is sized to fit the largest image in the gallery
+         *
+         * @param redditPost The post to calculate for
+         * @param width The width the gallery will be displayed with
+         * @return The height, or [ViewGroup.LayoutParams.WRAP_CONTENT] if the size of the images isn't known
+         */
+        fun calculateHeight(redditPost: RedditPost, width: Int): Int {
+            val images = getGalleryImages(redditPost) ?: return ViewGroup.LayoutParams.WRAP_CONTENT
+            val (maxWidth, maxHeight) = getMaxWidthAndHeight(images, width)
+            if (maxWidth <= 0) {
+                return ViewGroup.LayoutParams.WRAP_CONTENT
+            }
+
+            // Should scale height to fit with the width as the image will be scaled later
+            val widthScale = width / maxWidth.toFloat()
+            return (maxHeight * widthScale).toInt()
+        }
+
+        /**
+         * @param width The width the gallery will be displayed with, used to resize videos
+         */
+        private fun getMaxWidthAndHeight(galleryImages: List<GalleryImage>, width: Int): Coordinates {
+            var maxHeight = -1
+            var maxWidth = -1
+            var hasVideo = false
+
+            // Find the largest height and width and set the layout to that
+            for (image in galleryImages) {
+                if (image is RedditGalleryItem && image.mimeType == null) {
+                    continue
+                }
+
+                if (image is ImgurGif || (image is RedditGalleryItem && image.source.mp4Url != null)) {
+                    hasVideo = true
+                }
+
+                val height = image.height
+                val width = image.width
+                if (height > maxHeight) {
+                    maxHeight = height
+                }
+                if (width > maxWidth) {
+                    maxWidth = width
+                }
+            }
+
+            return if (hasVideo) {
+                VideoPlayer.createResizedVideoSize(maxWidth, maxHeight, width)
+            } else {
+                Coordinates(maxWidth, maxHeight)
+            }
+        }
     }
 
 
@@ -120,25 +195,18 @@ class ContentGallery @JvmOverloads constructor(
     }
 
     override fun updateView() {
-        val images: List<GalleryImage> = if (redditPost.thirdPartyObject is ImgurAlbum) {
-            (redditPost.thirdPartyObject as ImgurAlbum).images!!
-        } else {
-            // Example, in the link below the last image failed (at the time of writing at least)
-            // https://www.reddit.com/r/RATS/comments/nqwcun/my_poor_gus_only_last_night_you_were_fishing_for/
-            val post = redditPost.crossposts?.firstOrNull() ?: redditPost
-            val galleryImages = post.galleryImages ?: return
+        val images = getGalleryImages(redditPost) ?: return
 
-            galleryImages.filter { it.status == RedditGalleryItem.STATUS_VALID }
-        }
+        // The gallery fills the width of its parent, which might not be the entire screen (eg. on tablets
+        // or in split screen). The screen width is used until the parent has been laid out
+        val parentWidth = (parent as? View)?.width ?: 0
+        val width = if (parentWidth > 0) parentWidth else Resources.getSystem().displayMetrics.widthPixels
 
         val activeImage = extras.getInt(EXTRAS_ACTIVE_IMAGE, -1)
-        val (maxWidth, maxHeight) = getMaxWidthAndHeight(images)
+        val (_, maxHeight) = getMaxWidthAndHeight(images, width)
         this.maxHeight = maxHeight
 
-        // Should scale height to fit with the width as the image will be scaled later
-        val screenWidth = Resources.getSystem().displayMetrics.widthPixels
-        val widthScale = screenWidth / maxWidth.toFloat()
-        layoutParams = ViewGroup.LayoutParams(screenWidth, (maxHeight * widthScale).toInt())
+        layoutParams = ViewGroup.LayoutParams(width, calculateHeight(redditPost, width))
 
         binding.galleryImages.adapter = Adapter(images, activeImage)
 
@@ -184,38 +252,6 @@ class ContentGallery @JvmOverloads constructor(
         binding.activeImageText.visibility = VISIBLE
     }
 
-    private fun getMaxWidthAndHeight(galleryImages: List<GalleryImage>): Coordinates {
-        var maxHeight = -1
-        var maxWidth = -1
-        var hasVideo = false
-
-        // Find the largest height and width and set the layout to that
-        for (image in galleryImages) {
-            if (image is RedditGalleryItem && image.mimeType == null) {
-                continue
-            }
-
-            if (image is ImgurGif || (image is RedditGalleryItem && image.source.mp4Url != null)) {
-                hasVideo = true
-            }
-
-            val height = image.height
-            val width = image.width
-            if (height > maxHeight) {
-                maxHeight = height
-            }
-            if (width > maxWidth) {
-                maxWidth = width
-            }
-        }
-
-        return if (hasVideo) {
-            VideoPlayer.createResizedVideoSize(maxWidth, maxHeight)
-        } else {
-            Coordinates(maxWidth, maxHeight)
-        }
-    }
-
     /**
      * Updates the text in [ContentGalleryBinding.activeImageText]
      *
@@ -277,6 +313,10 @@ class ContentGallery @JvmOverloads constructor(
         return currentView?.getImageBitmap()
     }
 
+    override fun getLoadedImage(): ImageRequestKey? {
+        return currentView?.getLoadedImage()
+    }
+
     override fun getWantedHeight() = maxHeight
 
     /**
@@ -310,6 +350,7 @@ class ContentGallery @JvmOverloads constructor(
                 // but it's not a big issue so it should be fine
                 if (activeImagePos == position) {
                     this.bitmap = this@ContentGallery.bitmap
+                    this.placeholderImage = this@ContentGallery.loadedImage
                 }
 
                 // Prefer using the viewExtras, as that will be most up-to-date
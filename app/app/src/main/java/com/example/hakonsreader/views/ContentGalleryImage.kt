@@ -23,6 +23,7 @@ import com.example.hakonsreader.api.model.thirdparty.imgur.ImgurImage
 import com.example.hakonsreader.databinding.ContentGalleryImageBinding
 import com.example.hakonsreader.misc.Settings
 import com.example.hakonsreader.misc.createDoubleImageViewState
+import com.example.hakonsreader.views.util.ImageRequestKey
 import com.example.hakonsreader.views.util.goneIf
 import dagger.hilt.android.AndroidEntryPoint
 import javax.inject.Inject
@@ -65,6 +66,11 @@ class ContentGalleryImage @JvmOverloads constructor(
 
     var bitmap: Bitmap? = null
 
+    /**
+     * The key of an image already loaded for the gallery image, shown while the image loads
+     */
+    var placeholderImage: ImageRequestKey? = null
+
     @Inject
     lateinit var settings: Settings
 
@@ -95,16 +101,19 @@ class ContentGalleryImage @JvmOverloads constructor(
     }
 
     /**
-     * Gets a bitmap representation of the view, or null
+     * Gets a bitmap of the current frame if the view is a video, or null
      */
     fun getImageBitmap(): Bitmap? {
         val view = if (binding.content.childCount > 0) binding.content[0] else return null
+        return (view as? VideoPlayer)?.getCurrentFrame()
+    }
 
-        return when (view) {
-            is DoubleImageView -> view.getImageBitmap()
-            is VideoPlayer -> view.getCurrentFrame()
-            else -> null
-        }
+    /**
+     * Gets the key of the image displayed if the view is an image, or null
+     */
+    fun getLoadedImage(): ImageRequestKey? {
+        val view = if (binding.content.childCount > 0) binding.content[0] else return null
+        return (view as? DoubleImageView)?.getLoadedImage()
     }
 
     /**
@@ -132,6 +141,7 @@ class ContentGalleryImage @JvmOverloads constructor(
                 is RedditGalleryItem -> asRedditGalleryImage(it)
                 is ImgurImage -> asImgurGalleryImage(it)
                 is Image -> DoubleImageView(context).apply {
+                    lowMemoryFormat = settings.dataSavingEnabled()
                     state = DoubleImageView.DoubleImageState.OneImage(url = it.url)
                 }
 
@@ -178,6 +188,8 @@ class ContentGalleryImage @JvmOverloads constructor(
                 val images = getGalleryImages(galleryItem)
 
                 bitmap = this@ContentGalleryImage.bitmap
+                placeholderImage = this@ContentGalleryImage.placeholderImage
+                lowMemoryFormat = settings.dataSavingEnabled()
                 this@ContentGalleryImage.extras?.let {
                     extras = it
                 }
@@ -198,6 +210,7 @@ class ContentGalleryImage @JvmOverloads constructor(
             asImgurVideo(image)
         } else {
             DoubleImageView(context).apply {
+                lowMemoryFormat = settings.dataSavingEnabled()
                 state = DoubleImageView.DoubleImageState.OneImage(url = image.url)
             }
         }
@@ -1,14 +1,17 @@
 package com.example.hakonsreader.views
 
 import android.content.Context
-import android.graphics.Bitmap
+import android.content.res.Resources
 import android.os.Bundle
 import android.util.AttributeSet
 import android.view.LayoutInflater
 import android.view.View
+import android.view.ViewGroup
 import androidx.core.util.Pair
+import com.example.hakonsreader.api.model.RedditPost
 import com.example.hakonsreader.databinding.ContentImageBinding
 import com.example.hakonsreader.misc.*
+import com.example.hakonsreader.views.util.ImageRequestKey
 import dagger.hilt.android.AndroidEntryPoint
 import javax.inject.Inject
 
@@ -22,6 +25,27 @@ class ContentImage @JvmOverloads constructor(
         defStyleAttr: Int = 0
 ) : Content(context, attrs, defStyleAttr) {
 
+    companion object {
+        /**
+         * Calculates the height the image of a post will have when displayed with a given width
+         *
+         * @param post The post to calculate for
+         * @param width The width the image will be displayed with
+         * @return The height, or [ViewGroup.LayoutParams.WRAP_CONTENT] if the size of the image isn't known
+         */
+        fun calculateHeight(post: RedditPost, width: Int): Int {
+            val source = post.getSourcePreview()
+            if (source == null || source.width <= 0) {
+                return ViewGroup.LayoutParams.WRAP_CONTENT
+            }
+
+            // This is how Glide will scale it, which scales it to the match the width of the parent
+            // Ie. layout_width=match_parent, and scale with the same aspect ratio to fit that
+            val widthRatio: Float = source.width.toFloat() / width
+            return (source.height / widthRatio).toInt()
+        }
+    }
+
     @Inject
     lateinit var settings: Settings
 
@@ -29,10 +53,10 @@ class ContentImage @JvmOverloads constructor(
 
 
     /**
-     * Gets a bitmap representation of the image being displayed
+     * Gets the key of the image being displayed
      */
-    override fun getBitmap(): Bitmap? {
-        return binding.root.getImageBitmap()
+    override fun getLoadedImage(): ImageRequestKey? {
+        return binding.root.getLoadedImage()
     }
 
     override fun recycle() {
@@ -56,40 +80,33 @@ class ContentImage @JvmOverloads constructor(
     override fun updateView() {
         val (normal, normalLowRes, obfuscated) = getImageVariantsForRedditPost2(redditPost)
 
-        // getWantedHeight() needs access to the parent view to return anything useful, which might
-        // not be accessible instantly (but it is in post{})
-        post {
-            binding.root.cache = cache
-            binding.root.extras = extras
-            binding.root.bitmap = bitmap
-            binding.root.predefinedHeight = wantedHeight
-
-            if (normal != null) {
-                binding.root.state = createDoubleImageViewState(
-                    redditPost,
-                    normalUrl = normal,
-                    lowResUrl = normalLowRes,
-                    obfuscatedUrl = obfuscated,
-                    settings = settings
-                )
-            }
+        binding.root.cache = cache
+        binding.root.extras = extras
+        binding.root.bitmap = bitmap
+        binding.root.placeholderImage = loadedImage
+        binding.root.predefinedHeight = wantedHeight
+        // Data saving is mainly for network usage, but low end devices are also the ones that need to save memory
+        binding.root.lowMemoryFormat = settings.dataSavingEnabled()
+
+        if (normal != null) {
+            binding.root.state = createDoubleImageViewState(
+                redditPost,
+                normalUrl = normal,
+                lowResUrl = normalLowRes,
+                obfuscatedUrl = obfuscated,
+                settings = settings
+            )
         }
     }
 
     override fun getWantedHeight(): Int {
-        val source = redditPost?.getSourcePreview()
-        val personWhoBroughtMeIntoTheWorld = parent
+        val post = redditPost ?: return super.getWantedHeight()
 
-        if (source == null || personWhoBroughtMeIntoTheWorld !is View) {
-            return super.getWantedHeight()
-        }
+        // The image fills the width of the screen, so the screen width can be used until the parent
+        // has been laid out. This allows the height to be known before the view is added
+        val parentWidth = (parent as? View)?.width ?: 0
+        val width = if (parentWidth > 0) parentWidth else Resources.getSystem().displayMetrics.widthPixels
 
-        // This is how Glide will scale it, which scales it to the match the width of the parent
-        // Ie. layout_width=match_parent, and scale with the same aspect ratio to fit that
-        val width = source.width
-        val height = source.height
-        val widthRatio: Float = width.toFloat() / personWhoBroughtMeIntoTheWorld.width
-        
-        return (height / widthRatio).toInt()
+        return calculateHeight(post, width)
     }
 }
\ No newline at end of file
@@ -22,7 +22,7 @@ class ContentText : Content {
         val post = redditPost.crossposts?.firstOrNull() ?: redditPost
         val markdown: String = post.selftext
         if (markdown.isNotEmpty()) {
-            binding.content.setMarkdown(markdown)
+            binding.content.setMarkdownAsync(markdown)
         }
     }
 }
\ No newline at end of file
@@ -5,7 +5,9 @@ import android.os.Bundle
 import android.util.AttributeSet
 import android.view.LayoutInflater
 import android.view.View
+import android.view.ViewGroup
 import androidx.core.util.Pair
+import androidx.lifecycle.Lifecycle
 import androidx.lifecycle.LifecycleOwner
 import androidx.lifecycle.lifecycleScope
 import com.example.hakonsreader.R
@@ -49,6 +51,68 @@ class ContentVideo @JvmOverloads constructor(
             return post.getVideo() != null || post.getVideoGif() != null || post.getMp4Source() != null
                     || post.thirdPartyObject is ThirdPartyGif
         }
+
+        /**
+         * Calculates the height the video of a post will be displayed with, as resized by
+         * [VideoPlayer.createResizedVideoSize]
+         *
+         * @param redditPost The post to calculate for
+         * @param width The width the video will be displayed with
+         * @return The height, or [ViewGroup.LayoutParams.WRAP_CONTENT] if the size of the video isn't known
+         */
+        fun calculateHeight(redditPost: RedditPost, width: Int): Int {
+            val post = redditPost.crossposts?.firstOrNull() ?: redditPost
+            val video = post.getVideo() ?: post.getVideoGif()
+            val thirdParty = redditPost.thirdPartyObject
+
+            // Same precedence as when the video is set on the player
+            val (videoWidth, videoHeight) = when {
+                thirdParty is ThirdPartyGif -> thirdParty.width to thirdParty.height
+                video != null -> video.width to video.height
+                else -> post.getMp4Source()?.let { it.width to it.height } ?: (0 to 0)
+            }
+
+            if (videoWidth <= 0 || videoHeight <= 0 || width <= 0) {
+                return ViewGroup.LayoutParams.WRAP_CONTENT
+            }
+
+            return VideoPlayer.createResizedVideoSize(videoWidth, videoHeight, width).y
+        }
+
+        /**
+         * Gets the URL of the video of a post if the video is played as a progressive (non-DASH) video,
+         * with the same precedence as when the video is set on the player
+         *
+         * @param redditPost The post to get the URL for
+         * @return The URL, or null if the post doesn't have a video or the video is a DASH video
+         */
+        fun getProgressiveVideoUrl(redditPost: RedditPost): String? {
+            val post = redditPost.crossposts?.firstOrNull() ?: redditPost
+            val thirdParty = redditPost.thirdPartyObject
+
+            return when {
+                thirdParty is ThirdPartyGif -> thirdParty.mp4Url
+                (post.getVideo() ?: post.getVideoGif()) != null -> null
+                else -> post.getMp4Source()?.url
+            }
+        }
+
+        /**
+         * Gets the URL of the DASH manifest of the video of a post if the video is played as a DASH video
+         * (ie. Reddit videos and gifs), with the same precedence as when the video is set on the player
+         *
+         * @param redditPost The post to get the URL for
+         * @return The URL, or null if the post doesn't have a video or the video isn't a DASH video
+         */
+        fun getDashVideoUrl(redditPost: RedditPost): String? {
+            val post = redditPost.crossposts?.firstOrNull() ?: redditPost
+
+            return if (redditPost.thirdPartyObject is ThirdPartyGif) {
+                null
+            } else {
+                (post.getVideo() ?: post.getVideoGif())?.dashUrl
+            }
+        }
     }
 
     @Inject
@@ -60,6 +124,16 @@ class ContentVideo @JvmOverloads constructor(
     private val player =
         ContentVideoBinding.inflate(LayoutInflater.from(context), this, true).player
 
+    /**
+     * The lifecycle currently observed by [player], set with [observeVideoLifecycle]
+     */
+    private var observedLifecycle: Lifecycle? = null
+
+    /**
+     * The height copied from this view to [player] in [onMeasure], or -1 if no height has been copied
+     */
+    private var heightSetOnPlayer = -1
+
     init {
         val contextAsLifecycle = context as? LifecycleOwner
 
@@ -91,26 +165,40 @@ class ContentVideo @JvmOverloads constructor(
         }
 
         player.cacheVideo = cache
+        player.nsfw = redditPost.isNsfw
         player.loopVideo = settings.autoLoopVideos()
 
         setAndLoadThumbnail()
         setVideo()
+    }
 
-        // Kind of a really bad way to make the video resize :)  When the post is opened
-        // the video player won't automatically resize, so if the height of the view has been updated
-        // manually (> 0, ie. not wrap_content or match_parent), set those params on the player as well
-        // It would probably be better if this could be done in VideoPlayer instead automatically
-        viewTreeObserver.addOnGlobalLayoutListener {
-            val layoutParams = layoutParams
-            if (layoutParams.height > 0) {
-                player.layoutParams = layoutParams
+    override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        // The player won't automatically resize, so if the height of the view has been set
+        // manually (> 0, ie. not wrap_content or match_parent), use the same height on the player.
+        // This is set directly as it is done during a measure pass, which will measure the player next
+        val height = layoutParams?.height ?: 0
+        val playerParams = player.layoutParams
+        if (playerParams != null) {
+            if (height > 0 && playerParams.height != height) {
+                playerParams.height = height
+                heightSetOnPlayer = height
+                player.forceLayout()
+            } else if (height <= 0 && heightSetOnPlayer > 0 && playerParams.height == heightSetOnPlayer) {
+                // The view has been reused for a post without a known height, so the height from the
+                // previous post must be removed. A height the player has set itself is kept
+                playerParams.height = ViewGroup.LayoutParams.WRAP_CONTENT
+                heightSetOnPlayer = -1
+                player.forceLayout()
             }
         }
+
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec)
     }
 
     override fun recycle() {
         super.recycle()
         player.prepareForNewVideo()
+        heightSetOnPlayer = -1
     }
 
     /**
@@ -319,9 +407,22 @@ class ContentVideo @JvmOverloads constructor(
     }
 
     /**
-     * Observes the video players lifecycle to automatically pause and release the player
+     * Observes the video players lifecycle to automatically pause and release the player. If another
+     * lifecycle was previously observed it is no longer observed
      */
     fun observeVideoLifecycle(lifecycleOwner: LifecycleOwner) {
-        lifecycleOwner.lifecycle.addObserver(player)
+        if (observedLifecycle != lifecycleOwner.lifecycle) {
+            stopObservingVideoLifecycle()
+        }
+        observedLifecycle = lifecycleOwner.lifecycle.also { it.addObserver(player) }
+    }
+
+    /**
+     * Stops observing the lifecycle set with [observeVideoLifecycle]. The player will not be released
+     * when the lifecycle is destroyed after this, so [release] must be called manually
+     */
+    fun stopObservingVideoLifecycle() {
+        observedLifecycle?.removeObserver(player)
+        observedLifecycle = null
     }
 }
\ No newline at end of file
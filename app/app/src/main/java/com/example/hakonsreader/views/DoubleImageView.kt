@@ -1,6 +1,7 @@
 package com.example.hakonsreader.views
 
 import android.content.Context
+import android.content.res.Resources
 import android.graphics.Bitmap
 import android.graphics.drawable.Drawable
 import android.os.Bundle
@@ -9,12 +10,9 @@ import android.view.LayoutInflater
 import android.view.View
 import android.widget.FrameLayout
 import androidx.core.content.ContextCompat
-import androidx.core.graphics.drawable.toBitmap
-import androidx.core.graphics.drawable.toDrawable
 import androidx.core.util.Pair
 import androidx.core.view.updateLayoutParams
 import com.bumptech.glide.Glide
-import com.bumptech.glide.load.engine.DiskCacheStrategy
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions
 import com.bumptech.glide.load.DataSource
 import com.bumptech.glide.load.engine.GlideException
@@ -23,6 +21,8 @@ import com.bumptech.glide.request.target.Target
 import com.example.hakonsreader.R
 import com.example.hakonsreader.databinding.DoubleImageViewBinding
 import com.example.hakonsreader.misc.isAvailableForGlide
+import com.example.hakonsreader.views.util.ImageRequestKey
+import com.example.hakonsreader.views.util.ImageRequests
 import com.example.hakonsreader.views.util.goneIf
 import com.example.hakonsreader.views.util.openImageInFullscreen
 import com.google.android.material.snackbar.Snackbar
@@ -53,6 +53,23 @@ class DoubleImageView @JvmOverloads constructor(
          * [state] is [DoubleImageView.DoubleImageState.HdImage], but `true` does.
          */
         const val EXTRAS_HD_IMAGE_LOADED = "extras_hdImageLoaded"
+
+        /**
+         * Gets the URL that is loaded first when a state is set on the view, which is the URL
+         * that should be preloaded for the state
+         *
+         * @param state The state to get the URL for
+         * @return The URL, or null if no image is loaded for the state
+         */
+        fun getInitialUrl(state: DoubleImageState): String? {
+            return when (state) {
+                DoubleImageState.NoImage -> null
+                is DoubleImageState.OneImage -> state.url
+                // The HD image is only loaded if it has been cached, so the low res image is what is loaded
+                is DoubleImageState.HdImage -> state.lowRes
+                is DoubleImageState.PreviewImage -> state.previewUrl
+            }
+        }
     }
 
     /**
@@ -132,6 +149,23 @@ class DoubleImageView @JvmOverloads constructor(
      */
     var predefinedHeight: Int = -1
 
+    /**
+     * If true images are decoded with a format that uses less memory, at the cost of some quality.
+     * See [ImageRequestKey.lowMemoryFormat]
+     */
+    var lowMemoryFormat: Boolean = false
+
+    /**
+     * The key of an image that has already been loaded elsewhere (eg. the image shown in the list when
+     * a post is opened), which is shown from the memory cache while the image loads
+     */
+    var placeholderImage: ImageRequestKey? = null
+
+    /**
+     * The key of the last image loaded into the view, or null if no image has been loaded with Glide
+     */
+    private var loadedImage: ImageRequestKey? = null
+
 
     /**
      * Recycles the view
@@ -143,6 +177,9 @@ class DoubleImageView @JvmOverloads constructor(
         imageLastOpened = -1
         extras = Bundle()
         predefinedHeight = -1
+        lowMemoryFormat = false
+        placeholderImage = null
+        loadedImage = null
         binding.image.setImageResource(0)
         binding.image.updateLayoutParams {
             height = 0
@@ -150,11 +187,13 @@ class DoubleImageView @JvmOverloads constructor(
     }
 
     /**
-     * Gets a bitmap representation of the image currently being displayed
+     * Gets the key of the image currently being displayed. The image can be loaded from the memory
+     * cache with this key (with [ImageRequests.create]), which should be used instead of retrieving the
+     * bitmap from the view, as the bitmap is owned by Glide and is reused when the request is cleared
+     *
+     * @return The key, or null if no image has been loaded with Glide
      */
-    fun getImageBitmap(): Bitmap? {
-        return binding.image.drawable?.toBitmap()
-    }
+    fun getLoadedImage(): ImageRequestKey? = loadedImage
 
     /**
      * @return A list of pairs that can be used when opening new activities with a transition
@@ -196,7 +235,8 @@ class DoubleImageView @JvmOverloads constructor(
      * @param url The image URL to load
      * @param transition If true a cross fade transition will be used to load the image, otherwise no
      * transition will be used. Default to true
-     * @param placeholder An optional drawable to use as the placeholder
+     * @param thumbnail An optional image to show while [url] loads. This is only loaded from the memory
+     * cache. Defaults to [placeholderImage]
      * @param onlyLoadFromCache If true no network request will be made and the image will only be loaded
      * if it has been previously loaded and is available from cache. Default to false
      * @param listener An optional request listener for when the image has been loaded/failed to load
@@ -204,7 +244,7 @@ class DoubleImageView @JvmOverloads constructor(
     private fun loadUrl(
         url: String,
         transition: Boolean = true,
-        placeholder: Drawable? = null,
+        thumbnail: ImageRequestKey? = placeholderImage,
         onlyLoadFromCache: Boolean = false,
         listener: RequestListener<Drawable>? = null
     ) {
@@ -218,12 +258,22 @@ class DoubleImageView @JvmOverloads constructor(
             }
         }
 
-        var request = Glide.with(binding.image)
-            .load(url)
-            .diskCacheStrategy(if (cache) DiskCacheStrategy.AUTOMATIC else DiskCacheStrategy.NONE)
+        // The image fills the width of the screen. If the height isn't known the image is decoded
+        // with the size of the ImageView once it has been laid out
+        val key = if (predefinedHeight > 0) {
+            ImageRequestKey(url, Resources.getSystem().displayMetrics.widthPixels, predefinedHeight, lowMemoryFormat, cache)
+        } else {
+            ImageRequestKey(url, 0, 0, lowMemoryFormat, cache)
+        }
+        loadedImage = key
+
+        val requestManager = Glide.with(binding.image)
+        var request = ImageRequests.create(requestManager, key)
             // We cannot just use the resource ID here, as it doesn't respect the theme
             .error(ContextCompat.getDrawable(context, R.drawable.ic_image_not_supported_200dp))
-            .placeholder(placeholder)
+            .thumbnail(thumbnail?.takeIf { it != key }?.let {
+                ImageRequests.create(requestManager, it).onlyRetrieveFromCache(true)
+            })
             .onlyRetrieveFromCache(onlyLoadFromCache)
             .listener(listener)
 
@@ -239,6 +289,7 @@ class DoubleImageView @JvmOverloads constructor(
      */
     private fun asNoImage() {
         binding.hdImageIcon.visibility = GONE
+        loadedImage = null
 
         binding.image.setImageResource(R.drawable.ic_image_not_supported_200dp)
     }
@@ -319,11 +370,9 @@ class DoubleImageView @JvmOverloads constructor(
         )
 
         binding.hdImageIcon.setOnClickListener {
-            // Use the current bitmap (the low res image) as the placeholder, otherwise it will flash black
-            // since the image is removed when a new one is loaded by Glide
-            val placeholder = getImageBitmap()?.toDrawable(resources)
-
-            loadUrl(imageState.highRes, transition = false, placeholder = placeholder, listener = object : RequestListener<Drawable>{
+            // Show the current image (the low res image) from the memory cache while loading, otherwise
+            // it will flash black since the image is removed when a new one is loaded by Glide
+            loadUrl(imageState.highRes, transition = false, thumbnail = loadedImage, listener = object : RequestListener<Drawable>{
                 override fun onLoadFailed(
                     e: GlideException?,
                     model: Any?,
@@ -378,8 +427,8 @@ class DoubleImageView @JvmOverloads constructor(
      * ensures that the image cannot be opened multiple times in short succession
      *
      * @param url The URL of the image that should be opened
-     * @param useBitmapFromView If set to true the bitmap in the image will be used
-     * directly. If false then [url] will be used
+     * @param useBitmapFromView If set to true the image loaded in the view will be shown while [url]
+     * is loaded in fullscreen. If false then only [url] will be used
      */
     private fun setClickListener(url: String, useBitmapFromView: Boolean) {
         setOnClickListener {
@@ -392,7 +441,7 @@ class DoubleImageView @JvmOverloads constructor(
                     binding.image,
                     url,
                     cache,
-                    useBitmapFromView
+                    if (useBitmapFromView) loadedImage else null
                 )
             }
         }
@@ -10,11 +10,12 @@ import android.widget.FrameLayout
 import com.example.hakonsreader.R
 import com.example.hakonsreader.activities.DispatcherActivity
 import com.example.hakonsreader.databinding.LinkPreviewBinding
+import com.example.hakonsreader.misc.LinkIconResolver
 import com.example.hakonsreader.misc.Settings
-import com.example.hakonsreader.misc.getAppIconFromUrl
 import com.google.android.material.snackbar.BaseTransientBottomBar
 import com.google.android.material.snackbar.Snackbar
 import dagger.hilt.android.AndroidEntryPoint
+import kotlinx.coroutines.Job
 import javax.inject.Inject
 
 /**
@@ -36,6 +37,14 @@ class LinkPreview @JvmOverloads constructor(
     @Inject
     lateinit var settings: Settings
 
+    @Inject
+    lateinit var linkIconResolver: LinkIconResolver
+
+    /**
+     * The job resolving the icon of the current link
+     */
+    private var iconJob: Job? = null
+
     private val binding = LinkPreviewBinding.inflate(LayoutInflater.from(context), this, true).apply {
         setOnClickListener { openLink() }
         setOnLongClickListener { copyLink(); return@setOnLongClickListener true }
@@ -56,6 +65,7 @@ class LinkPreview @JvmOverloads constructor(
     fun setText(text: String) {
         if (text.isNotEmpty()) {
             binding.linkText.text = text
+            binding.linkText.visibility = VISIBLE
         } else {
             binding.linkText.visibility = GONE
         }
@@ -73,12 +83,18 @@ class LinkPreview @JvmOverloads constructor(
     }
 
     /**
-     * Sets the link icon to the icon for the installed application the link resolves to
+     * Sets the link icon to the icon for the installed application the link resolves to. The icon is
+     * resolved in the background, and the default link icon is shown until it is resolved
      */
     private fun setIcon(link: String) {
-        val icon = getAppIconFromUrl(context, link)
-        if (icon != null) {
-            binding.linkSymbol.setImageDrawable(icon)
+        // The view might be reused for a different link
+        iconJob?.cancel()
+        binding.linkSymbol.setImageResource(R.drawable.ic_baseline_link_24)
+
+        iconJob = linkIconResolver.loadIcon(link) { icon ->
+            if (icon != null) {
+                binding.linkSymbol.setImageDrawable(icon)
+            }
         }
     }
 
@@ -2,7 +2,10 @@ package com.example.hakonsreader.views;
 
 import android.app.Dialog;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
+import android.text.Spanned;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -16,17 +19,22 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 
 import com.example.hakonsreader.R;
 import com.example.hakonsreader.databinding.MarkdownInputBinding;
 import com.example.hakonsreader.di.MarkwonWithoutImages;
+import com.example.hakonsreader.views.util.MarkdownHighlighter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 
 import dagger.hilt.android.AndroidEntryPoint;
 import io.noties.markwon.Markwon;
 import io.noties.markwon.editor.MarkwonEditor;
-import io.noties.markwon.editor.MarkwonEditorTextWatcher;
 
 /**
  * Class wrapping a text input field with markdown buttons to easily insert markdown formatting
@@ -36,6 +44,17 @@ import io.noties.markwon.editor.MarkwonEditorTextWatcher;
 public class MarkdownInput extends FrameLayout {
     private static final String TAG = "MarkdownInput";
 
+    /**
+     * The amount of milliseconds to wait after the text has changed before updating the live preview
+     */
+    private static final long LIVE_PREVIEW_DEBOUNCE_DELAY = 300;
+
+    /**
+     * The executor markdown is highlighted and the live preview is rendered on. Only one input is
+     * typically being written in at a time, so one thread is shared between all inputs
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
     // This markwon is used for previews, and images aren't shown in the preview
     // This is the raw markdown that is submitted to Reddit, and we don't want to support giving
     // bad markdown, so don't use any adjuster
@@ -51,6 +70,17 @@ public class MarkdownInput extends FrameLayout {
      */
     private Dialog linkDialog;
 
+    private MarkdownHighlighter highlighter;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable livePreviewRunnable = this::renderLivePreview;
+
+    /**
+     * Incremented every time the live preview is rendered. A rendered preview is only shown if this
+     * hasn't changed since the rendering was started
+     */
+    private int livePreviewGeneration;
+
 
     public MarkdownInput(Context context) {
         this(context, null, 0, 0);
@@ -93,6 +123,7 @@ public class MarkdownInput extends FrameLayout {
         binding.markdownCodeBlock.setOnClickListener(this::codeBlockOnClick);
         binding.markdownBulletList.setOnClickListener(this::bulletListOnClick);
         binding.markdownNumberedList.setOnClickListener(this::numberedListOnClick);
+        binding.markdownLivePreview.setOnClickListener(v -> setLivePreviewShown(!isLivePreviewShown()));
     }
 
     /**
@@ -108,7 +139,29 @@ public class MarkdownInput extends FrameLayout {
 
         // Set text listeners
         // Updates the EditText to show what is markdown syntax
-        binding.replyText.addTextChangedListener(MarkwonEditorTextWatcher.withProcess(editor));
+        highlighter = new MarkdownHighlighter(binding.replyText, editor, EXECUTOR);
+        binding.replyText.addTextChangedListener(highlighter);
+
+        // Updates the live preview, if it is shown
+        binding.replyText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                // Not used
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                // Not used
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (isLivePreviewShown()) {
+                    handler.removeCallbacks(livePreviewRunnable);
+                    handler.postDelayed(livePreviewRunnable, LIVE_PREVIEW_DEBOUNCE_DELAY);
+                }
+            }
+        });
 
         // Listens to changes and automatically continues markdown syntax
         binding.replyText.addTextChangedListener(new MarkdownInsertTextWatcher());
@@ -187,6 +240,73 @@ public class MarkdownInput extends FrameLayout {
         return binding.replyText;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        // Highlighting cancelled when the view was detached
+        if (highlighter != null) {
+            highlighter.resume();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        handler.removeCallbacks(livePreviewRunnable);
+        if (highlighter != null) {
+            highlighter.cancel();
+        }
+    }
+
+    /**
+     * Shows or hides the live preview below the input field. The live preview is updated as the text changes
+     *
+     * @param shown True to show the live preview
+     */
+    public void setLivePreviewShown(boolean shown) {
+        binding.livePreview.setVisibility(shown ? VISIBLE : GONE);
+        binding.markdownLivePreview.setSelected(shown);
+
+        if (shown) {
+            renderLivePreview();
+        } else {
+            handler.removeCallbacks(livePreviewRunnable);
+            livePreviewGeneration++;
+        }
+    }
+
+    /**
+     * @return True if the live preview is shown
+     */
+    public boolean isLivePreviewShown() {
+        return binding.livePreview.getVisibility() == VISIBLE;
+    }
+
+    /**
+     * Renders the input text and shows it in the live preview. The text is rendered and precomputed on
+     * the same executor as the highlighting, and set on the main thread
+     */
+    private void renderLivePreview() {
+        final String markdown = getInputText();
+        final int key = ++livePreviewGeneration;
+        final TextView preview = binding.livePreview;
+        final PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(preview);
+
+        EXECUTOR.execute(() -> {
+            final Spanned rendered = markwon.toMarkdown(markdown);
+            final PrecomputedTextCompat precomputed = PrecomputedTextCompat.create(rendered, params);
+
+            handler.post(() -> {
+                // The text has changed (or the preview has been hidden) since this was started
+                if (key == livePreviewGeneration) {
+                    markwon.setParsedMarkdown(preview, precomputed);
+                }
+            });
+        });
+    }
+
     /**
      * Shows a preview of the markdown input in a popup dialog
      */
@@ -1,8 +1,11 @@
 package com.example.hakonsreader.views
 
 import android.content.Context
+import android.text.Spanned
 import android.util.AttributeSet
 import androidx.appcompat.widget.AppCompatTextView
+import androidx.core.text.PrecomputedTextCompat
+import androidx.core.widget.TextViewCompat
 import com.example.hakonsreader.R
 import com.example.hakonsreader.api.utils.MarkdownAdjuster
 import com.example.hakonsreader.di.AdjusterWithImages
@@ -11,9 +14,16 @@ import com.example.hakonsreader.di.MarkwonWithImages
 import com.example.hakonsreader.di.MarkwonWithoutImages
 import com.example.hakonsreader.misc.InternalLinkMovementMethod
 import com.example.hakonsreader.misc.Settings
+import com.example.hakonsreader.views.util.MarkdownCache
 import com.example.hakonsreader.views.util.setLongClickToPeekUrl
 import dagger.hilt.android.AndroidEntryPoint
 import io.noties.markwon.Markwon
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import javax.inject.Inject
 
 
@@ -21,6 +31,9 @@ import javax.inject.Inject
  * Extended TextView to parse and set Markdown. Use [setMarkdown] or [setMarkdownNoLongClick], or the
  * XML equivalents `app:markdown=""` and `app:markdownNoLongClick=""`. If both are set, `markdownNoLongClick`
  * has precedence
+ *
+ * For large texts use [setMarkdownAsync] or [setMarkdownNoLongClickAsync] (or `app:markdownAsync=""`
+ * with data binding), which renders the markdown in the background
  */
 @AndroidEntryPoint
 class MarkdownTextView @JvmOverloads constructor(
@@ -29,6 +42,14 @@ class MarkdownTextView @JvmOverloads constructor(
         defStyleAttr: Int = 0
 ) : AppCompatTextView(context, attrs, defStyleAttr) {
 
+    companion object {
+        /**
+         * The scope markdown is rendered in with [setMarkdownNoLongClickAsync]. The renderings are
+         * cancelled by the views themselves (see [renderJob])
+         */
+        private val renderScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    }
+
     @MarkwonWithImages
     @Inject
     lateinit var markwon: Markwon
@@ -48,6 +69,27 @@ class MarkdownTextView @JvmOverloads constructor(
     @Inject
     lateinit var settings: Settings
 
+    @Inject
+    lateinit var markdownCache: MarkdownCache
+
+    /**
+     * The markdown being rendered in the background, cancelled when new markdown is set or the view is
+     * detached
+     */
+    private var renderJob: Job? = null
+
+    /**
+     * The renderer of markdown that was set with [setMarkdownNoLongClickAsync] but hasn't been rendered
+     * yet. If the view is detached before the rendering is done, it is started again when the view is
+     * attached again
+     */
+    private var pendingRenderer: Renderer? = null
+
+    /**
+     * Called with the markdown rendered for [pendingRenderer]
+     */
+    private var pendingListener: ((Spanned) -> Unit)? = null
+
     init {
         val array = context.theme.obtainStyledAttributes(attrs, R.styleable.MarkdownTextView, 0, 0)
         try {
@@ -75,17 +117,160 @@ class MarkdownTextView @JvmOverloads constructor(
     }
 
     /**
-     * Sets the markdown without setting [setLongClickToPeekUrl]
+     * Sets the markdown without setting [setLongClickToPeekUrl]. The rendered markdown is cached in
+     * [MarkdownCache], so setting the same markdown again doesn't render it again
      */
     fun setMarkdownNoLongClick(markdown: String) {
+        prepareMovementMethod()
+
+        // Any markdown still being rendered in the background is now outdated
+        cancelRender()
+
+        val renderer = createRenderer(markdown)
+        renderer.markwon.setParsedMarkdown(this, renderer.render())
+    }
+
+    /**
+     * Sets the markdown as well as setting the long click listener on the view to [setLongClickToPeekUrl]
+     * with no default. The markdown is rendered in the background, see [setMarkdownNoLongClickAsync]
+     */
+    fun setMarkdownAsync(markdown: String, onRendered: ((Spanned) -> Unit)? = null) {
+        setLongClickToPeekUrl()
+        setMarkdownNoLongClickAsync(markdown, onRendered)
+    }
+
+    /**
+     * Sets the markdown without setting [setLongClickToPeekUrl]. The markdown is parsed and rendered, and
+     * the layout of the text is precomputed, in the background, and the text is set on the main thread
+     * when done. This should be used for large texts (such as long self posts and wiki pages) that would
+     * otherwise block the main thread
+     *
+     * If the markdown is in [MarkdownCache] it is set directly. Otherwise the text of the view is removed
+     * until the markdown has been rendered. If the markdown is set again, or the view is detached, before
+     * the rendering is done, the rendering is cancelled
+     *
+     * @param onRendered Called on the main thread with the text set when the markdown has been rendered.
+     * Text that isn't cached in [MarkdownCache] (such as text with tables) can be stored and set again
+     * with [setRenderedMarkdown], as long as it is only shown in one view at a time
+     */
+    fun setMarkdownNoLongClickAsync(markdown: String, onRendered: ((Spanned) -> Unit)? = null) {
+        prepareMovementMethod()
+        cancelRender()
+
+        val renderer = createRenderer(markdown)
+        val cached = renderer.getCached()
+        if (cached != null) {
+            renderer.markwon.setParsedMarkdown(this, cached)
+            onRendered?.invoke(cached)
+            return
+        }
+
+        text = null
+        pendingRenderer = renderer
+        pendingListener = onRendered
+
+        if (isAttachedToWindow) {
+            startRender(renderer)
+        }
+    }
+
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        pendingRenderer?.let { startRender(it) }
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+
+        // The renderer is kept in pendingRenderer, so the rendering is started again if the view is attached again
+        renderJob?.cancel()
+        renderJob = null
+    }
+
+    /**
+     * Renders markdown in the background and sets it on the main thread when done
+     */
+    private fun startRender(renderer: Renderer) {
+        val params = TextViewCompat.getTextMetricsParams(this)
+
+        renderJob?.cancel()
+        renderJob = renderScope.launch {
+            val precomputed = PrecomputedTextCompat.create(renderer.render(), params)
+
+            // Not run if the job has been cancelled in the meantime, which is done on the main thread
+            withContext(Dispatchers.Main) {
+                val listener = pendingListener
+                pendingRenderer = null
+                pendingListener = null
+                renderJob = null
+
+                renderer.markwon.setParsedMarkdown(this@MarkdownTextView, precomputed)
+                listener?.invoke(precomputed)
+            }
+        }
+    }
+
+    /**
+     * Cancels markdown being rendered in the background, if any
+     */
+    private fun cancelRender() {
+        renderJob?.cancel()
+        renderJob = null
+        pendingRenderer = null
+        pendingListener = null
+    }
+
+    /**
+     * Sets markdown that has already been rendered, as given to the listener of [setMarkdownNoLongClickAsync],
+     * without setting [setLongClickToPeekUrl]
+     */
+    fun setRenderedMarkdown(rendered: Spanned) {
+        prepareMovementMethod()
+        cancelRender()
+
+        val markwon = if (settings.dataSavingEnabled()) markwonWithoutImages else markwon
+        markwon.setParsedMarkdown(this, rendered)
+    }
+
+    private fun prepareMovementMethod() {
         if (movementMethod == null) {
             movementMethod = InternalLinkMovementMethod()
         }
+    }
+
+    /**
+     * Creates a renderer for markdown with the current settings. This must be called on the main thread,
+     * but the renderer can be used on any thread
+     */
+    private fun createRenderer(markdown: String): Renderer {
+        val dataSaving = settings.dataSavingEnabled()
+        val key = markdownCache.createKey(context, markdown, dataSaving, settings.linkScale())
 
-        if (settings.dataSavingEnabled()) {
-            markwonWithoutImages.setMarkdown(this, adjusterWithoutImages.adjust(markdown))
+        return if (dataSaving) {
+            Renderer(key, markwonWithoutImages, adjusterWithoutImages, markdownCache)
         } else {
-            markwon.setMarkdown(this, adjuster.adjust(markdown))
+            Renderer(key, markwon, adjuster, markdownCache)
+        }
+    }
+
+    /**
+     * Renders markdown through [MarkdownCache]
+     */
+    private class Renderer(
+            val key: MarkdownCache.Key,
+            val markwon: Markwon,
+            val adjuster: MarkdownAdjuster,
+            val cache: MarkdownCache
+    ) {
+        /**
+         * @return The rendered markdown if it is in the cache, otherwise null
+         */
+        fun getCached(): Spanned? = cache.get(key)
+
+        fun render(): Spanned {
+            return cache.getOrRender(key) {
+                markwon.toMarkdown(adjuster.adjust(key.markdown))
+            }
         }
     }
-}
\ No newline at end of file
+}
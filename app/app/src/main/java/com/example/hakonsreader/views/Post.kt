@@ -4,12 +4,12 @@ import android.animation.ValueAnimator
 import android.app.AlertDialog
 import android.content.Context
 import android.content.Intent
+import android.content.res.Resources
 import android.os.Bundle
 import android.util.AttributeSet
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
-import android.view.ViewTreeObserver.OnGlobalLayoutListener
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.content.ContextCompat
 import androidx.core.util.Pair
@@ -23,12 +23,15 @@ import com.example.hakonsreader.activities.PostActivity
 import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.enums.PostType
 import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
+import com.example.hakonsreader.api.persistence.PostFeedCard
 import com.example.hakonsreader.api.persistence.RedditPostsDao
 import com.example.hakonsreader.databinding.PostBinding
 import com.example.hakonsreader.fragments.bottomsheets.ContentInfoBottomSheet
 import com.example.hakonsreader.fragments.bottomsheets.PeekTextPostBottomSheet
 import com.example.hakonsreader.misc.Settings
 import com.example.hakonsreader.misc.generatePostContent
+import com.example.hakonsreader.misc.getPostContentHeight
 import com.example.hakonsreader.recyclerviewadapters.menuhandlers.showPopupForPost
 import com.example.hakonsreader.views.util.ViewUtil
 import com.google.android.material.snackbar.Snackbar
@@ -43,7 +46,10 @@ import javax.inject.Inject
  *
  * If wanted, the max height of the post can be set with [maxHeight] (and [updateMaxHeight] to update
  * after the content has been created) which will ensure post does not go above said height. The
- * content of the post will be resized to fit the given height.
+ * content of the post will be resized to fit the given height when the post is measured.
+ *
+ * The content is given its height (if it can be calculated from the post, see [getPostContentHeight])
+ * before it is laid out, so that it doesn't change size when the image/video is loaded.
  */
 @AndroidEntryPoint
 class Post @JvmOverloads constructor(
@@ -70,6 +76,9 @@ class Post @JvmOverloads constructor(
     @Inject
     lateinit var postsDao: RedditPostsDao
 
+    @Inject
+    lateinit var writeQueue: DatabaseWriteQueue
+
     @Inject
     lateinit var settings: Settings
 
@@ -80,7 +89,7 @@ class Post @JvmOverloads constructor(
 
     private val binding = PostBinding.inflate(LayoutInflater.from(context), this, true).apply {
         postPopupMenu.setOnClickListener {
-            showPopupForPost(it, redditPost, postsDao, api, settings)
+            showPopupForPost(it, redditPost, writeQueue, api, settings)
         }
 
         this.showAwards = this@Post.showAwards
@@ -175,34 +184,27 @@ class Post @JvmOverloads constructor(
     /**
      * The LiveData that is currently being observed
      */
-    private var postLiveData: LiveData<RedditPost>? = null
+    private var postLiveData: LiveData<PostFeedCard?>? = null
 
     /**
      * The observer [postLiveData] uses
      */
-    private var postObserver = Observer<RedditPost> {
-        if (it != null) {
-            // Crossposts aren't stored in the database, and the new post is from the database
-            // so copy the old ones, if possible.
-            // Same with third party objects, as they are stored as a raw string it's faster to just
-            // copy it instead of bothering with the json parsing
-            // TODO imgur albums dont seem to be passed along correctly? Possibly issue with all albums
-            redditPost?.let { old ->
-                it.crossposts = old.crossposts
-                it.thirdPartyObject = old.thirdPartyObject
-            }
-
-            updatePostInfo(it)
+    private var postObserver = Observer<PostFeedCard?> { card ->
+        // Only the values that can change are observed, so copy them onto the current post. This
+        // also keeps the crossposts and third party object, which aren't stored in the database
+        val post = redditPost
+        if (card != null && post != null && card.id == post.id) {
+            card.applyTo(post)
+            updatePostInfo(post)
         }
     }
 
     private var suppliedContent: Content? = null
 
     /**
-     * Listener for layout changes for the content of the post, which is used to resize the content
-     * based on [maxHeight]
+     * The height of [suppliedContent], or null if it should be calculated when the content is added
      */
-    private lateinit var contentOnGlobalLayoutListener: OnGlobalLayoutListener
+    private var suppliedContentHeight: Int? = null
 
 
     // Thank god this is a one person project, because I would feel really bad for anyone having
@@ -213,11 +215,6 @@ class Post @JvmOverloads constructor(
      * @param maxHeight The height limit
      */
     fun updateMaxHeight(maxHeight: Int) {
-        // Ensure that the layout listener is removed. If this is still present, it will cause an infinite
-        // callback loop since the height will most likely be changed inside the listener
-        if (this::contentOnGlobalLayoutListener.isInitialized) {
-            binding.content.viewTreeObserver.removeOnGlobalLayoutListener(contentOnGlobalLayoutListener)
-        }
         this.maxHeight = maxHeight
 
         val content = binding.content.getChildAt(0) as Content? ?: return
@@ -352,9 +349,10 @@ class Post @JvmOverloads constructor(
      * The height of the post is resized to match [Post.maxHeight], if needed
      */
     private fun addContent() {
-        val content = suppliedContent ?: generatePostContent(context, redditPost, showTextContent, null)
+        val content = suppliedContent ?: generatePostContent(context, redditPost, showTextContent)
         content?.also { c ->
             c.bitmap = bitmap
+            c.loadedImage = loadedImage
 
             postExtras?.let {
                 c.setExtras(it)
@@ -378,27 +376,62 @@ class Post @JvmOverloads constructor(
         postExtras = null
 
         if (content != null) {
-            binding.content.addView(content)
-            if (maxHeight != NO_MAX_HEIGHT) {
-                contentOnGlobalLayoutListener = OnGlobalLayoutListener {
-
-                    // Get height of the content and the total height of the entire post so we can resize the content correctly
-                    val height = content.measuredHeight
-                    val totalHeight = binding.postsParentLayout.measuredHeight
-
-                    // Entire post is too large, set new content height
-                    if (totalHeight > maxHeight) {
-                        val params = content.layoutParams as LayoutParams
-                        params.height = maxHeight - totalHeight + height
-                        content.layoutParams = params
-                    }
-                }
-                binding.content.viewTreeObserver.addOnGlobalLayoutListener(contentOnGlobalLayoutListener)
+            // The content is full width, so the screen width is used as it might not be laid out yet
+            val height = suppliedContentHeight ?: getPostContentHeight(redditPost, Resources.getSystem().displayMetrics.widthPixels)
+            setContentLayoutHeight(content, height)
+
+            // Content reused by a ViewHolder of the same type is already in the view hierarchy
+            if (content.parent != binding.content) {
+                binding.content.removeAllViews()
+                binding.content.addView(content)
             }
         }
 
         // We don't want to keep this reference any longer than necessary
         suppliedContent = null
+        suppliedContentHeight = null
+    }
+
+    /**
+     * Sets the layout height of the content. Reused content might have the height of the previous
+     * post, so this should always be set
+     *
+     * @param height The height to set, or [ViewGroup.LayoutParams.WRAP_CONTENT]
+     */
+    private fun setContentLayoutHeight(content: Content, height: Int) {
+        val params = content.layoutParams
+        if (params == null) {
+            if (height != ViewGroup.LayoutParams.WRAP_CONTENT) {
+                content.layoutParams = ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, height)
+            }
+        } else if (params.height != height) {
+            params.height = height
+            content.layoutParams = params
+        }
+    }
+
+    override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec)
+
+        val content = getContent()
+        if (maxHeight == NO_MAX_HEIGHT || content == null || measuredHeight <= maxHeight) {
+            return
+        }
+
+        // The entire post is too large, so shrink the content to fit and measure again. The height
+        // is set directly on the layout params (instead of requesting a new layout) so that this is
+        // done in the same layout pass
+        val params = content.layoutParams ?: return
+        params.height = maxOf(content.measuredHeight - (measuredHeight - maxHeight), 0)
+
+        // The layouts between this and the content cache their measurements, so they must be told to measure again
+        var view: View? = content
+        while (view != null && view != this) {
+            view.forceLayout()
+            view = view.parent as? View
+        }
+
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec)
     }
 
     /**
@@ -424,24 +457,29 @@ class Post @JvmOverloads constructor(
     }
 
     /**
-     * Gets the position of the contents Y position on the screen
+     * Gets the Y position of the top of the content relative to an ancestor of the post, as drawn
+     * (ie. with the translation of the views and the scroll of their parents). This does not allocate,
+     * so it can be used when scrolling
      *
-     * @return The Y position of the content
+     * @param ancestor The view to get the position relative to. This must be an ancestor of the post
+     * @return The Y position of the content, relative to [ancestor]
      */
-    fun getContentY(): Int {
-        // Get the views position on the screen
-        val location = IntArray(2)
-        binding.content.getLocationOnScreen(location)
-        return location[1]
+    fun getContentY(ancestor: View): Int {
+        var y = 0f
+        var view: View = binding.content
+        while (view != ancestor) {
+            val parent = view.parent as? View
+            y += view.top + view.translationY - (parent?.scrollY ?: 0)
+            view = parent ?: break
+        }
+        return y.toInt()
     }
 
     /**
-     * Gets the bottom position of the contents Y position on the screen
-     *
-     * @return The Y position of the bottom of the content
+     * @return The height of the content
      */
-    fun getContentBottomY(): Int {
-        return getContentY() + binding.content.measuredHeight
+    fun getContentHeight(): Int {
+        return binding.content.measuredHeight
     }
 
     /**
@@ -457,9 +495,11 @@ class Post @JvmOverloads constructor(
      *
      * @param content The content to supply. If this View has a parent then it will be removed from
      * the parent
+     * @param contentHeight The height of the content, if already calculated with [getPostContentHeight]
      */
-    fun supplyContent(content: Content?) {
+    fun supplyContent(content: Content?, contentHeight: Int? = null) {
         suppliedContent = content
+        suppliedContentHeight = contentHeight
     }
 
     /**
@@ -495,7 +535,7 @@ class Post @JvmOverloads constructor(
         // New post set, remove observer on previous LiveData and get a new one from the database to observe
         lifecycleOwner?.let {
             postLiveData?.removeObserver(postObserver)
-            postLiveData = postsDao.getPostById(redditPost.id).apply { observe(it, postObserver) }
+            postLiveData = postsDao.getFeedCardById(redditPost.id).apply { observe(it, postObserver) }
         }
     }
 
@@ -5,7 +5,10 @@ import android.content.Context
 import android.content.res.Resources
 import android.graphics.Bitmap
 import android.os.Bundle
+import android.os.SystemClock
 import android.util.AttributeSet
+import android.view.GestureDetector
+import android.view.MotionEvent
 import android.view.TextureView
 import android.view.View
 import android.view.ViewGroup
@@ -27,7 +30,9 @@ import com.example.hakonsreader.fragments.bottomsheets.VideoPlaybackErrorBottomS
 import com.example.hakonsreader.misc.Coordinates
 import com.example.hakonsreader.misc.createVideoDuration
 import com.example.hakonsreader.misc.isAvailableForGlide
-import com.example.hakonsreader.views.util.VideoCache
+import com.example.hakonsreader.views.util.ExoPlayerPool
+import com.example.hakonsreader.views.util.VideoPrefetcher
+import com.example.hakonsreader.views.util.VideoDataSources
 import com.example.hakonsreader.views.util.goneIf
 import com.google.android.exoplayer2.*
 import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory
@@ -36,13 +41,9 @@ import com.google.android.exoplayer2.source.MediaSource
 import com.google.android.exoplayer2.source.ProgressiveMediaSource
 import com.google.android.exoplayer2.source.TrackGroupArray
 import com.google.android.exoplayer2.source.dash.DashMediaSource
-import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection
-import com.google.android.exoplayer2.trackselection.DefaultTrackSelector
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray
 import com.google.android.exoplayer2.ui.PlayerView
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory
-import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import com.google.android.exoplayer2.video.VideoListener
 
 /**
  * Class for wrapping an [ExoPlayer] and a [PlayerView] in one class. The size of the video should
@@ -57,6 +58,11 @@ import com.google.android.exoplayer2.upstream.cache.CacheDataSource
  *
  * To control if the video should be cached, use [cacheVideo]
  *
+ * The ExoPlayer is borrowed from [ExoPlayerPool] when the video is played (or the view is tapped,
+ * so the controls can be used), and given back when the view is reused for a new video or released.
+ * The pool might take the player back when another view needs one, in which case the position of
+ * the video is kept and the player is acquired again when needed.
+ *
  * The video played is set with [url], and optionally if the URL is pointing to a DASH video,
  * set [dashVideo] to `true`.
  *
@@ -168,13 +174,18 @@ class VideoPlayer @JvmOverloads constructor(
          *
          * @param potentialWidth The width of the potential video (what [videoWidth] would be set to)
          * @param potentialHeight The height of the potential video (what [videoHeight] would be set to)
+         * @param availableWidth The width the video can be displayed with, such as the width of the list
+         * the video is in. Defaults to the width of the screen
          */
-        fun createResizedVideoSize(potentialWidth: Int, potentialHeight: Int): Coordinates {
-            val screenWidth = Resources.getSystem().displayMetrics.widthPixels
+        fun createResizedVideoSize(
+                potentialWidth: Int,
+                potentialHeight: Int,
+                availableWidth: Int = Resources.getSystem().displayMetrics.widthPixels
+        ): Coordinates {
             val screenHeight = Resources.getSystem().displayMetrics.heightPixels
 
-            // Ensure the video size to screen ratio isn't too large or too small
-            var widthRatio: Float = potentialWidth.toFloat() / screenWidth
+            // Ensure the video size to available width ratio isn't too large or too small
+            var widthRatio: Float = potentialWidth.toFloat() / availableWidth
             if (widthRatio > MAX_WIDTH_RATIO) {
                 widthRatio = MAX_WIDTH_RATIO
             } else if (widthRatio < MIN_WIDTH_RATIO) {
@@ -182,7 +193,7 @@ class VideoPlayer @JvmOverloads constructor(
             }
 
             // Calculate and set the new width and height
-            val width = (screenWidth * widthRatio).toInt()
+            val width = (availableWidth * widthRatio).toInt()
 
             // Find how much the width was scaled by and use that to find the new height
             val widthScaledBy = potentialWidth / width.toFloat()
@@ -241,6 +252,14 @@ class VideoPlayer @JvmOverloads constructor(
      */
     var cacheVideo = true
 
+    /**
+     * True if the video is NSFW. NSFW videos are cached separately from other videos. This must be
+     * set before a video is loaded.
+     *
+     * Default to `false`
+     */
+    var nsfw = false
+
     /**
      * True if it is known before the video loads if the video has audio. Setting this to false
      * will remove the audio button
@@ -380,12 +399,7 @@ class VideoPlayer @JvmOverloads constructor(
     var loopVideo: Boolean = false
         set(value) {
             field = value
-
-            exoPlayer.repeatMode = if (value) {
-                Player.REPEAT_MODE_ALL
-            } else {
-                Player.REPEAT_MODE_OFF
-            }
+            exoPlayer?.let { updateRepeatMode(it) }
         }
 
     /**
@@ -402,9 +416,47 @@ class VideoPlayer @JvmOverloads constructor(
 
 
     /**
-     * The ExoPlayer displaying the video
+     * The ExoPlayer displaying the video, or null if no player is currently acquired from [ExoPlayerPool]
+     */
+    private var exoPlayer: SimpleExoPlayer? = null
+
+    /**
+     * The owner used when acquiring players from [ExoPlayerPool]
+     */
+    private val playerOwner = ExoPlayerPool.Owner { onPlayerRevoked(it) }
+
+    /**
+     * The listener added to [exoPlayer]
+     */
+    private val playerListener = createPlayerListener()
+
+    /**
+     * The listener added to [exoPlayer] to measure the time to the first frame of the video
+     */
+    private val firstFrameListener = object : VideoListener {
+        override fun onRenderedFirstFrame() {
+            if (playRequestedAt >= 0) {
+                VideoPrefetcher.onFirstFrameRendered(url, SystemClock.uptimeMillis() - playRequestedAt)
+                playRequestedAt = -1
+            }
+        }
+    }
+
+    /**
+     * The timestamp, from [SystemClock.uptimeMillis], the video was played at before its first frame
+     * was rendered, or -1 if the first frame has been rendered
+     */
+    private var playRequestedAt = -1L
+
+    /**
+     * The position of the video, used when no player is acquired (or the player hasn't been prepared yet)
      */
-    private val exoPlayer = createExoPlayer()
+    private var position = 0L
+
+    /**
+     * True if the audio of the video is on
+     */
+    private var volumeOn = true
 
     /**
      * The ImageView displaying [thumbnailUrl]
@@ -430,6 +482,19 @@ class VideoPlayer @JvmOverloads constructor(
      */
     private var thumbnailLoadedFromBitmap = false
 
+    /**
+     * Detects taps on the view when no player is acquired, to acquire a player so the controls can be used
+     */
+    private val tapDetector = GestureDetector(context, object : GestureDetector.SimpleOnGestureListener() {
+        override fun onDown(e: MotionEvent) = true
+
+        override fun onSingleTapConfirmed(e: MotionEvent): Boolean {
+            acquirePlayer()
+            showController()
+            return true
+        }
+    })
+
     init {
         controllerShowTimeoutMs = CONTROLLER_TIMEOUT
 
@@ -438,9 +503,8 @@ class VideoPlayer @JvmOverloads constructor(
         findViewById<View>(R.id.exo_duration).visibility = VISIBLE
         findViewById<TextView>(R.id.duration).visibility = GONE
 
-        player = exoPlayer
-
         setFullscreenListener()
+        setPlayButtonListener()
         setPauseButtonListener()
         setVolumeListener()
         setPlaybackErrorListener()
@@ -450,10 +514,9 @@ class VideoPlayer @JvmOverloads constructor(
      * Prepares the VideoPlayer to be reused with a new video
      */
     fun prepareForNewVideo() {
-        // Ie. if a video has actually been played before we want to remove the old media item
-        exoPlayer.clearMediaItems()
-
-        isPrepared = false
+        // The next video might never be played, so give the player back to the pool
+        releasePlayer()
+        position = 0L
 
         videoSize = -1
         videoDuration = -1
@@ -473,33 +536,21 @@ class VideoPlayer @JvmOverloads constructor(
         videoHeight = -1
         actualVideoHeight = -1
 
-        exoPlayer.playWhenReady = false
+        // The height set for the previous video shouldn't be used for the next one
+        layoutParams?.height = ViewGroup.LayoutParams.WRAP_CONTENT
+
         thumbnail.visibility = VISIBLE
 
         playbackError = null
     }
 
     /**
-     * Creates a new [ExoPlayer]
+     * Creates the listener for buffering changes, playback changes etc. that is added to [exoPlayer]
      */
-    private fun createExoPlayer(): ExoPlayer {
-        // The load control is responsible for how much to buffer at a time
-        val loadControl: LoadControl = DefaultLoadControl.Builder()
-            // Buffer size between 2.5 and 7.5 seconds, with minimum of 1 second for playback to start
-            .setBufferDurationsMs(2500, 7500, 1000, 500)
-            .build()
-
-        val player = SimpleExoPlayer.Builder(context)
-            .setLoadControl(loadControl)
-            .setBandwidthMeter(DefaultBandwidthMeter.Builder(context).build())
-            .setTrackSelector(DefaultTrackSelector(context, AdaptiveTrackSelection.Factory()))
-            .setHandleAudioBecomingNoisy(true)
-            .build()
-
+    private fun createPlayerListener(): Player.EventListener {
         val loader: ProgressBar = findViewById(R.id.buffering)
 
-        // Add listener for buffering changes, playback changes etc.
-        player.addListener(object : Player.EventListener {
+        return object : Player.EventListener {
 
             override fun onTracksChanged(
                 trackGroups: TrackGroupArray,
@@ -543,9 +594,90 @@ class VideoPlayer @JvmOverloads constructor(
             override fun onPlayerError(error: ExoPlaybackException) {
                 playbackError = error
             }
-        })
+        }
+    }
+
+    /**
+     * Acquires a player from [ExoPlayerPool] and sets it on the view, if a player isn't already acquired
+     *
+     * @return The player
+     */
+    private fun acquirePlayer(): SimpleExoPlayer {
+        exoPlayer?.let { return it }
+
+        return ExoPlayerPool.acquire(context, playerOwner).also {
+            it.addListener(playerListener)
+            it.addVideoListener(firstFrameListener)
+            it.volume = if (volumeOn) 1f else 0f
+            updateRepeatMode(it)
+
+            exoPlayer = it
+            isPrepared = false
+            player = it
+        }
+    }
+
+    /**
+     * Gives the player back to [ExoPlayerPool], keeping the position of the video
+     */
+    private fun releasePlayer() {
+        val p = exoPlayer ?: return
+        detachPlayer(p)
+        ExoPlayerPool.release(p)
+    }
+
+    /**
+     * Called when the player has been taken back by [ExoPlayerPool]
+     */
+    private fun onPlayerRevoked(p: SimpleExoPlayer) {
+        if (p == exoPlayer) {
+            detachPlayer(p)
+        }
+    }
 
-        return player
+    /**
+     * Removes the player from the view. The position of the video is kept so it can be resumed
+     * with a new player
+     */
+    private fun detachPlayer(p: SimpleExoPlayer) {
+        if (isPrepared) {
+            position = p.currentPosition
+        }
+
+        p.removeListener(playerListener)
+        p.removeVideoListener(firstFrameListener)
+        playRequestedAt = -1
+        p.playWhenReady = false
+
+        exoPlayer = null
+        isPrepared = false
+        player = null
+
+        keepScreenOn = false
+        findViewById<ProgressBar>(R.id.buffering).visibility = GONE
+
+        // Without a player nothing is drawn, so show the thumbnail instead
+        thumbnail.visibility = VISIBLE
+    }
+
+    /**
+     * Updates the repeat mode of the player based on [loopVideo]
+     */
+    private fun updateRepeatMode(p: SimpleExoPlayer) {
+        p.repeatMode = if (loopVideo) {
+            Player.REPEAT_MODE_ALL
+        } else {
+            Player.REPEAT_MODE_OFF
+        }
+    }
+
+    override fun onTouchEvent(ev: MotionEvent): Boolean {
+        // PlayerView ignores touches without a player. A player is only acquired when the view is
+        // tapped, not on every touch, as touches are also from scrolling past the video
+        if (exoPlayer == null && url.isNotEmpty()) {
+            return tapDetector.onTouchEvent(ev)
+        }
+        return super.onTouchEvent(ev)
     }
 
     private fun createMediaSource(): MediaSource {
@@ -555,11 +687,9 @@ class VideoPlayer @JvmOverloads constructor(
         //  https://google.github.io/ExoPlayer/supported-devices.html
 
         val dataSourceFactory = if (cacheVideo) {
-            CacheDataSource.Factory()
-                .setUpstreamDataSourceFactory(DefaultDataSourceFactory(context))
-                .setCache(VideoCache.getCache(context))
+            VideoDataSources.createCacheFactory(context, nsfw)
         } else {
-            DefaultDataSourceFactory(context)
+            VideoDataSources.createUpstreamFactory(context)
         }
 
         val mediaItem = MediaItem.Builder()
@@ -601,7 +731,14 @@ class VideoPlayer @JvmOverloads constructor(
      * Updates the size of the view (´this´) by the values in [videoHeight] and [videoWidth]
      */
     private fun updateSize() {
-        val (_, height) = createResizedVideoSize(videoWidth, videoHeight)
+        // The player fills the width of its parent, which might not be the entire screen (eg. on tablets
+        // or in split screen). If the parent hasn't been laid out yet the screen width is used
+        val parentWidth = (parent as? View)?.width ?: 0
+        val (_, height) = if (parentWidth > 0) {
+            createResizedVideoSize(videoWidth, videoHeight, parentWidth)
+        } else {
+            createResizedVideoSize(videoWidth, videoHeight)
+        }
 
         actualVideoHeight = height
 
@@ -624,6 +761,22 @@ class VideoPlayer @JvmOverloads constructor(
         }
     }
 
+    /**
+     * Sets a custom onClickListener for the play button. The default listener does nothing without a
+     * player, and the player is only acquired when the video is played
+     */
+    private fun setPlayButtonListener() {
+        findViewById<ImageButton>(R.id.exo_play).setOnClickListener {
+            // The default listener restarts the video when it has ended
+            exoPlayer?.let {
+                if (it.playbackState == Player.STATE_ENDED) {
+                    it.seekToDefaultPosition()
+                }
+            }
+            play()
+        }
+    }
+
     /**
      * Sets a custom onClickListener for the pause button.
      *
@@ -719,20 +872,24 @@ class VideoPlayer @JvmOverloads constructor(
             return
         }
 
+        val p = acquirePlayer()
+
         // Create the media source and prepare the exoPlayer
         val mediaSource = createMediaSource()
 
-        exoPlayer.setMediaSource(mediaSource)
-        exoPlayer.prepare()
+        p.setMediaSource(mediaSource)
+        p.prepare()
+        if (position > 0) {
+            p.seekTo(position)
+        }
         isPrepared = true
     }
 
     /**
-     * Releases the video to free up its resources
+     * Releases the video to free up its resources. The player is given back to [ExoPlayerPool]
      */
     fun release() {
-        exoPlayer.release()
-        player = null
+        releasePlayer()
     }
 
     /**
@@ -741,7 +898,10 @@ class VideoPlayer @JvmOverloads constructor(
      * @see pause
      */
     fun play() {
-        exoPlayer.playWhenReady = true
+        if (!isPrepared) {
+            playRequestedAt = SystemClock.uptimeMillis()
+        }
+        acquirePlayer().playWhenReady = true
     }
 
     /**
@@ -750,30 +910,38 @@ class VideoPlayer @JvmOverloads constructor(
      * @see play
      */
     fun pause() {
-        exoPlayer.playWhenReady = false
+        exoPlayer?.playWhenReady = false
     }
 
     /**
      * Returns if the video is currently playing
      */
-    fun isPlaying() = exoPlayer.playWhenReady
+    fun isPlaying() = exoPlayer?.playWhenReady ?: false
 
     /**
      * Gets the current timestamp of the video
      * @see setPosition
      */
-    fun getPosition() = exoPlayer.currentPosition
+    fun getPosition(): Long {
+        val p = exoPlayer
+        return if (p != null && isPrepared) p.currentPosition else position
+    }
 
     /**
      * Sets the timestamp to seek to in the video
      * @see getPosition
      */
-    fun setPosition(timestamp: Long) = exoPlayer.seekTo(timestamp)
+    fun setPosition(timestamp: Long) {
+        position = timestamp
+        if (isPrepared) {
+            exoPlayer?.seekTo(timestamp)
+        }
+    }
 
     /**
      * Returns if the audio is currently enabled on the video
      */
-    fun isAudioOn() = exoPlayer.audioComponent?.volume?.toInt() == 1
+    fun isAudioOn() = volumeOn
 
     /**
      * Toggles the volume on/off
@@ -782,22 +950,17 @@ class VideoPlayer @JvmOverloads constructor(
      * if false the volume is turned off. If this is null, the volume will be toggled based on the current state
      */
     fun toggleVolume(on: Boolean? = null) {
-        exoPlayer.audioComponent?.let {
-            val volume = it.volume
-
-            // If volume is off (not 1), set it to on
-            // Use value of "on" if not null, otherwise toggle
-            val volumeOn = on ?: (volume.toInt() != 1)
+        // Use value of "on" if not null, otherwise toggle
+        volumeOn = on ?: !volumeOn
 
-            val drawable = ContextCompat.getDrawable(
-                context,
-                if (volumeOn) R.drawable.ic_volume_up_24dp else R.drawable.ic_volume_off_24dp
-            )
-            val button = findViewById<ImageButton>(R.id.volumeButton)
-            button.setImageDrawable(drawable)
+        val drawable = ContextCompat.getDrawable(
+            context,
+            if (volumeOn) R.drawable.ic_volume_up_24dp else R.drawable.ic_volume_off_24dp
+        )
+        val button = findViewById<ImageButton>(R.id.volumeButton)
+        button.setImageDrawable(drawable)
 
-            it.volume = if (volumeOn) 1f else 0f
-        }
+        exoPlayer?.volume = if (volumeOn) 1f else 0f
     }
 
     /**
@@ -871,10 +1034,12 @@ class VideoPlayer @JvmOverloads constructor(
 
         toggleVolume(volumeOn)
 
-        // Video has been played previously so make sure the player is prepared
-        if (timestamp != 0L) {
+        setPosition(timestamp)
+
+        // Video has been played previously so make sure the player is prepared. If the player has
+        // been given back to the pool the video is prepared when played again
+        if (timestamp != 0L && exoPlayer != null) {
             prepare()
-            setPosition(timestamp)
         } else {
             thumbnail.visibility = VISIBLE
             loadThumbnail()
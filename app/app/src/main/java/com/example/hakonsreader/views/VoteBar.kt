@@ -12,7 +12,7 @@ import com.example.hakonsreader.api.RedditApi
 import com.example.hakonsreader.api.enums.VoteType
 import com.example.hakonsreader.api.interfaces.VoteableListing
 import com.example.hakonsreader.api.model.RedditPost
-import com.example.hakonsreader.api.persistence.RedditPostsDao
+import com.example.hakonsreader.api.persistence.DatabaseWriteQueue
 import com.example.hakonsreader.api.responses.ApiResponse
 import com.example.hakonsreader.databinding.VoteBarBinding
 import com.example.hakonsreader.misc.handleGenericResponseErrors
@@ -50,7 +50,7 @@ class VoteBar @JvmOverloads constructor(
     lateinit var api: RedditApi
 
     @Inject
-    lateinit var postsDao: RedditPostsDao
+    lateinit var writeQueue: DatabaseWriteQueue
 
     /**
      * If set to true, the score of the listing will be hidden
@@ -115,7 +115,7 @@ class VoteBar @JvmOverloads constructor(
 
             CoroutineScope(IO).launch {
                 val resp = if (it is RedditPost) {
-                    postsDao.update(it)
+                    writeQueue.updatePost(it)
                     api.post(id)
                 } else {
                     api.comment(id)
@@ -127,7 +127,7 @@ class VoteBar @JvmOverloads constructor(
                         // Request failed, set back to default
                         it.voteType = currentVote
                         if (it is RedditPost) {
-                            postsDao.update(it)
+                            writeQueue.updatePost(it)
                         }
 
                         withContext(Main) {
@@ -2,12 +2,9 @@ package com.example.hakonsreader.views.util
 
 import android.content.Intent
 import android.view.View
-import android.widget.ImageView
 import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.app.ActivityOptionsCompat
-import androidx.core.content.ContextCompat
-import androidx.core.graphics.drawable.toBitmap
 import com.example.hakonsreader.R
 import com.example.hakonsreader.activities.ImageActivity
 import com.example.hakonsreader.activities.ProfileActivity
@@ -63,27 +60,16 @@ fun openProfileInActivity(view: View, username: String?) {
  * with usage in XML layouts
  * @param imageUrl The URL to the image
  * @param cache True to cache the image once opened
- * @param useBitmapFromView If set to true [ImageActivity.BITMAP] will be set to the bitmap [view] holds,
- * if [view] is an ImageView with a BitmapDrawable. If the ImageView holds the drawable
- * [R.drawable.ic_image_not_supported_200dp] then the bitmap will not be used.
+ * @param loadedImage The request the image in [view] was loaded with, if it was loaded with
+ * [ImageRequests.create]. The image is then shown from the memory cache while [imageUrl] is loaded
  */
-fun openImageInFullscreen(view: View, imageUrl: String?, cache: Boolean, useBitmapFromView: Boolean) {
+@JvmOverloads
+fun openImageInFullscreen(view: View, imageUrl: String?, cache: Boolean, loadedImage: ImageRequestKey? = null) {
     val context = view.context
 
     Intent(context, ImageActivity::class.java).run {
-        if (useBitmapFromView && view is ImageView) {
-            val isDrawableImageErrorDrawable = view
-                .drawable
-                ?.constantState
-                ?.equals(ContextCompat.getDrawable(
-                    view.context,
-                    R.drawable.ic_image_not_supported_200dp
-                )?.constantState)
-
-            // Only use the bitmap if it isn't an "Error loading image" bitmap
-            if (isDrawableImageErrorDrawable == false) {
-                ImageActivity.BITMAP = view.drawable?.toBitmap()
-            }
+        if (loadedImage != null) {
+            putExtra(ImageActivity.EXTRAS_LOADED_IMAGE, loadedImage.toBundle())
         }
 
         putExtra(ImageActivity.EXTRAS_IMAGE_URL, imageUrl)
@@ -0,0 +1,150 @@
+package com.example.hakonsreader.views.util
+
+import android.content.Context
+import android.util.Log
+import com.google.android.exoplayer2.DefaultLoadControl
+import com.google.android.exoplayer2.LoadControl
+import com.google.android.exoplayer2.Player
+import com.google.android.exoplayer2.SimpleExoPlayer
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter
+
+/**
+ * App wide pool of [SimpleExoPlayer] instances. Creating a player is expensive, and every player
+ * holds on to decoders while it is prepared, so instead of every video view creating its own player
+ * the players are borrowed from this pool when a video is played, and given back when the video is
+ * no longer needed.
+ *
+ * At most [MAX_PLAYERS] players are created. If all players are in use when a player is acquired,
+ * a player is taken from one of the current owners (preferably one that isn't playing), which is
+ * notified with [Owner.onPlayerRevoked].
+ *
+ * All players share the same bandwidth meter, so that bitrate estimates carry over between videos.
+ *
+ * This must only be used from the main thread.
+ */
+object ExoPlayerPool {
+    private const val TAG = "ExoPlayerPool"
+
+    /**
+     * The max amount of players the pool will create
+     */
+    const val MAX_PLAYERS = 3
+
+    /**
+     * Interface for owners of a player from the pool
+     */
+    fun interface Owner {
+        /**
+         * Called when the player acquired by the owner has been taken away from it and given to another
+         * owner. The owner must not use the player after this is called
+         *
+         * @param player The player taken
+         */
+        fun onPlayerRevoked(player: SimpleExoPlayer)
+    }
+
+    /**
+     * The players not in use
+     */
+    private val idlePlayers = ArrayDeque<SimpleExoPlayer>()
+
+    /**
+     * The players in use, mapped to their owner, in the order they were acquired
+     */
+    private val ownedPlayers = LinkedHashMap<SimpleExoPlayer, Owner>()
+
+    /**
+     * The amount of players created
+     */
+    var playersCreated = 0
+        private set
+
+    /**
+     * The amount of times a player has been taken from an owner
+     */
+    var playersRevoked = 0
+        private set
+
+    /**
+     * Acquires a player. The player should be given back with [release] when it is no longer needed.
+     *
+     * The player will not have any media items, and will have the default settings (eg. volume and repeat mode)
+     *
+     * @param context The context to create the player with, if a new player is created. The
+     * application context is used
+     * @param owner The owner of the player
+     * @return A player for the owner to use
+     */
+    fun acquire(context: Context, owner: Owner): SimpleExoPlayer {
+        val player = idlePlayers.removeFirstOrNull() ?: if (playersCreated < MAX_PLAYERS) {
+            createPlayer(context.applicationContext)
+        } else {
+            revokePlayer()
+        }
+
+        ownedPlayers[player] = owner
+        return player
+    }
+
+    /**
+     * Gives a player back to the pool. The player is stopped and its media items are removed
+     *
+     * @param player The player to give back. If the player isn't owned by anyone nothing is done
+     */
+    fun release(player: SimpleExoPlayer) {
+        if (ownedPlayers.remove(player) == null) {
+            return
+        }
+
+        reset(player)
+        idlePlayers.addLast(player)
+    }
+
+    /**
+     * Takes a player from its current owner. Owners not currently playing are preferred, otherwise
+     * the player acquired the longest time ago is taken
+     */
+    private fun revokePlayer(): SimpleExoPlayer {
+        val (player, owner) = ownedPlayers.entries.find { !it.key.playWhenReady } ?: ownedPlayers.entries.first()
+
+        ownedPlayers.remove(player)
+        owner.onPlayerRevoked(player)
+        reset(player)
+
+        playersRevoked++
+        Log.d(TAG, "revokePlayer: # of players created=$playersCreated; # of players revoked=$playersRevoked")
+
+        return player
+    }
+
+    /**
+     * Resets a player to its default state, so that it can be used by a new owner
+     */
+    private fun reset(player: SimpleExoPlayer) {
+        player.playWhenReady = false
+        player.stop()
+        player.clearMediaItems()
+        player.seekTo(0)
+        player.volume = 1f
+        player.repeatMode = Player.REPEAT_MODE_OFF
+    }
+
+    private fun createPlayer(context: Context): SimpleExoPlayer {
+        // The load control is responsible for how much to buffer at a time
+        val loadControl: LoadControl = DefaultLoadControl.Builder()
+            // Buffer size between 2.5 and 7.5 seconds, with minimum of 1 second for playback to start
+            .setBufferDurationsMs(2500, 7500, 1000, 500)
+            .build()
+
+        playersCreated++
+
+        return SimpleExoPlayer.Builder(context)
+            .setLoadControl(loadControl)
+            .setBandwidthMeter(DefaultBandwidthMeter.getSingletonInstance(context))
+            .setTrackSelector(DefaultTrackSelector(context, AdaptiveTrackSelection.Factory()))
+            .setHandleAudioBecomingNoisy(true)
+            .build()
+    }
+}
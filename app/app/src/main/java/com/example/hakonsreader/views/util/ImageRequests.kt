@@ -0,0 +1,103 @@
+package com.example.hakonsreader.views.util
+
+import android.graphics.drawable.Drawable
+import android.os.Build
+import android.os.Bundle
+import com.bumptech.glide.RequestBuilder
+import com.bumptech.glide.RequestManager
+import com.bumptech.glide.load.DecodeFormat
+import com.bumptech.glide.load.engine.DiskCacheStrategy
+import com.bumptech.glide.load.resource.bitmap.Downsampler
+
+/**
+ * Describes an image loaded with [ImageRequests.create]. The size and format of the image are part of
+ * the key Glide stores the decoded image with in the memory cache, so a request created with the same
+ * key somewhere else (eg. in another activity) gets the same image from the memory cache
+ *
+ * @param url The URL of the image
+ * @param width The width to decode the image with, or 0 to use the size of the view the image is loaded into
+ * @param height The height to decode the image with, or 0 to use the size of the view the image is loaded into
+ * @param lowMemoryFormat True to decode the image with a format that uses half the memory, at the cost
+ * of quality. Images with transparency are still decoded with the normal format
+ * @param cache True if the image should be cached on disk
+ */
+data class ImageRequestKey(
+        val url: String,
+        val width: Int,
+        val height: Int,
+        val lowMemoryFormat: Boolean,
+        val cache: Boolean
+) {
+    companion object {
+        private const val KEY_URL = "imageRequestKey_url"
+        private const val KEY_WIDTH = "imageRequestKey_width"
+        private const val KEY_HEIGHT = "imageRequestKey_height"
+        private const val KEY_LOW_MEMORY_FORMAT = "imageRequestKey_lowMemoryFormat"
+        private const val KEY_CACHE = "imageRequestKey_cache"
+
+        /**
+         * Reads a key stored with [toBundle]
+         *
+         * @return The key, or null if [bundle] doesn't hold a key
+         */
+        fun fromBundle(bundle: Bundle?): ImageRequestKey? {
+            val url = bundle?.getString(KEY_URL) ?: return null
+
+            return ImageRequestKey(
+                    url,
+                    bundle.getInt(KEY_WIDTH),
+                    bundle.getInt(KEY_HEIGHT),
+                    bundle.getBoolean(KEY_LOW_MEMORY_FORMAT),
+                    bundle.getBoolean(KEY_CACHE, true)
+            )
+        }
+    }
+
+    /**
+     * Stores the key in a bundle, which can be read with [fromBundle]
+     */
+    fun toBundle() = Bundle().apply {
+        putString(KEY_URL, url)
+        putInt(KEY_WIDTH, width)
+        putInt(KEY_HEIGHT, height)
+        putBoolean(KEY_LOW_MEMORY_FORMAT, lowMemoryFormat)
+        putBoolean(KEY_CACHE, cache)
+    }
+}
+
+/**
+ * Creates the Glide requests images in lists are loaded with. Images are decoded at the size they are
+ * displayed with instead of their full size, and with the least amount of memory possible:
+ * * With [ImageRequestKey.lowMemoryFormat] images are decoded as RGB_565 (2 bytes per pixel instead of 4)
+ * * Otherwise hardware bitmaps are allowed (API 26+), which are stored only in graphics memory instead
+ * of in both graphics memory and the app heap. Hardware bitmaps can't be drawn on a software canvas, so
+ * bitmaps from these requests must not be drawn with [android.graphics.Canvas] directly
+ */
+object ImageRequests {
+
+    /**
+     * Creates a request for an image. Everything that loads or preloads the same image must use this
+     * so that the image is only decoded once
+     *
+     * @param requestManager The request manager to create the request with
+     * @param key The image to load
+     */
+    fun create(requestManager: RequestManager, key: ImageRequestKey): RequestBuilder<Drawable> {
+        var request = requestManager.load(key.url)
+                .diskCacheStrategy(if (key.cache) DiskCacheStrategy.AUTOMATIC else DiskCacheStrategy.NONE)
+                // Loading into an ImageView with the default scale type applies this transformation,
+                // so it's set here to give preloads and other targets the same key as the ImageView
+                .optionalFitCenter()
+
+        if (key.width > 0 && key.height > 0) {
+            request = request.override(key.width, key.height)
+        }
+
+        return if (key.lowMemoryFormat) {
+            request.format(DecodeFormat.PREFER_RGB_565)
+        } else {
+            request.format(DecodeFormat.PREFER_ARGB_8888)
+                    .set(Downsampler.ALLOW_HARDWARE_CONFIG, Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.hakonsreader.views.util
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.SharedPreferences
+import android.content.res.Configuration
+import android.text.SpannableString
+import android.text.Spanned
+import android.util.LruCache
+import androidx.preference.PreferenceManager
+import com.example.hakonsreader.R
+import com.example.hakonsreader.markwonplugins.RedditSpoilerSpan
+import io.noties.markwon.ext.tables.TableRowSpan
+import io.noties.markwon.image.AsyncDrawableSpan
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * App-wide LRU cache of rendered markdown, so markdown that is shown again (eg. when scrolling back up
+ * in comments) doesn't have to be parsed and rendered again
+ *
+ * Everything that changes how the markdown is rendered is a part of the [Key]. The cache is also cleared
+ * when the settings that are a part of the key are changed, since entries with the old values will never
+ * be used again, and when the system is low on memory
+ *
+ * The rendered text given out is a copy with its own spans for what holds state (spoilers), so that
+ * changes done to the text of one view (eg. revealing a spoiler) doesn't show up in other views.
+ * Text with spans that are bound to the view they are shown in (images and tables) is not cached
+ *
+ * All functions are thread safe
+ *
+ * @param context The context to listen to settings and memory changes with
+ * @param maxSize The max size of the cache, in characters of markdown and rendered text
+ */
+class MarkdownCache(context: Context, maxSize: Int = DEFAULT_MAX_SIZE) {
+
+    companion object {
+        /**
+         * The default max size of the cache, in characters. A character is stored as 2 bytes, and the
+         * spans add some more, so this is a few MB
+         */
+        const val DEFAULT_MAX_SIZE = 500_000
+    }
+
+    /**
+     * The key rendered markdown is stored with
+     *
+     * @param markdown The markdown that was rendered. The markdown itself is stored, and not only its hash,
+     * so that two texts with the same hash never get the same rendered text
+     * @param dataSaving If data saving was enabled (images aren't rendered with data saving)
+     * @param nightMode The night mode of the configuration the text is shown in
+     * @param linkScale The link scale setting
+     */
+    data class Key(
+            val markdown: String,
+            val dataSaving: Boolean,
+            val nightMode: Int,
+            val linkScale: Int
+    )
+
+    private val cache = object : LruCache<Key, Spanned>(maxSize) {
+        override fun sizeOf(key: Key, value: Spanned) = key.markdown.length + value.length
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * The preference keys that affect how markdown is rendered
+     */
+    private val renderPreferenceKeys = setOf(
+            context.getString(R.string.prefs_key_theme),
+            context.getString(R.string.prefs_key_data_saving),
+            context.getString(R.string.prefs_key_link_scale)
+    )
+
+    // SharedPreferences only holds a weak reference to the listener, so it has to be stored here
+    private val preferenceListener = SharedPreferences.OnSharedPreferenceChangeListener { _, key ->
+        if (key in renderPreferenceKeys) {
+            clear()
+        }
+    }
+
+    /**
+     * The amount of times rendered markdown was found in the cache
+     */
+    val hitCount: Long
+        get() = hits.get()
+
+    /**
+     * The amount of times markdown had to be rendered
+     */
+    val missCount: Long
+        get() = misses.get()
+
+    init {
+        PreferenceManager.getDefaultSharedPreferences(context).registerOnSharedPreferenceChangeListener(preferenceListener)
+
+        context.applicationContext.registerComponentCallbacks(object : ComponentCallbacks2 {
+            override fun onTrimMemory(level: Int) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                    clear()
+                } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                    cache.trimToSize(cache.maxSize() / 2)
+                }
+            }
+
+            override fun onLowMemory() {
+                clear()
+            }
+
+            override fun onConfigurationChanged(newConfig: Configuration) {
+                // Night mode is a part of the key
+            }
+        })
+    }
+
+    /**
+     * Creates a key for markdown shown in a view
+     *
+     * @param context The context of the view the markdown is shown in
+     * @param markdown The markdown to show
+     * @param dataSaving If data saving is enabled
+     * @param linkScale The link scale setting
+     */
+    fun createKey(context: Context, markdown: String, dataSaving: Boolean, linkScale: Int): Key {
+        val nightMode = context.resources.configuration.uiMode and Configuration.UI_MODE_NIGHT_MASK
+        return Key(markdown, dataSaving, nightMode, linkScale)
+    }
+
+    /**
+     * Gets rendered markdown from the cache, without rendering it if it isn't in the cache. This
+     * is cheap enough to call on the main thread
+     *
+     * @param key The key of the markdown
+     * @return A copy of the rendered markdown, or null if it isn't cached. Only hits are counted here,
+     * a miss is counted when the markdown is rendered with [getOrRender]
+     */
+    fun get(key: Key): Spanned? {
+        val cached = cache.get(key) ?: return null
+        hits.incrementAndGet()
+        return copy(cached)
+    }
+
+    /**
+     * Gets rendered markdown from the cache, or renders and caches it if it isn't in the cache
+     *
+     * @param key The key of the markdown
+     * @param render Renders the markdown, if it isn't cached
+     * @return A copy of the rendered markdown, which can be changed without affecting the cached text
+     */
+    fun getOrRender(key: Key, render: () -> Spanned): Spanned {
+        get(key)?.let { return it }
+
+        misses.incrementAndGet()
+        val rendered = render()
+
+        return if (isCacheable(rendered)) {
+            val stored = SpannableString(rendered)
+            cache.put(key, stored)
+            copy(stored)
+        } else {
+            rendered
+        }
+    }
+
+    /**
+     * Removes all rendered markdown from the cache
+     */
+    fun clear() {
+        cache.evictAll()
+    }
+
+    /**
+     * @return The ratio of lookups that were found in the cache, or 0 if nothing has been looked up
+     */
+    fun getHitRate(): Float {
+        val hitCount = hitCount
+        val total = hitCount + missCount
+        return if (total == 0L) 0f else hitCount / total.toFloat()
+    }
+
+    /**
+     * Checks if rendered text can be shown in multiple views at once. Images and tables have spans
+     * that are scheduled on (and invalidate) the one view the text was last set on
+     */
+    private fun isCacheable(rendered: Spanned): Boolean {
+        return rendered.getSpans(0, rendered.length, AsyncDrawableSpan::class.java).isEmpty()
+                && rendered.getSpans(0, rendered.length, TableRowSpan::class.java).isEmpty()
+    }
+
+    /**
+     * Copies cached text. Spans without state are shared with the cached text, and spoilers are replaced
+     * with spoilers that are not revealed
+     */
+    private fun copy(cached: Spanned): Spanned {
+        val copy = SpannableString(cached)
+
+        copy.getSpans(0, copy.length, RedditSpoilerSpan::class.java).forEach { spoiler ->
+            val start = copy.getSpanStart(spoiler)
+            val end = copy.getSpanEnd(spoiler)
+            val flags = copy.getSpanFlags(spoiler)
+
+            copy.removeSpan(spoiler)
+            copy.setSpan(spoiler.copy(), start, end, flags)
+        }
+
+        return copy
+    }
+
+    override fun toString(): String {
+        return "size=${cache.size()}/${cache.maxSize()}; hits=$hitCount; misses=$missCount; hit rate=${getHitRate()}"
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.hakonsreader.views.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.widget.EditText;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import io.noties.markwon.editor.MarkwonEditor;
+
+/**
+ * TextWatcher that highlights markdown syntax in an EditText with a {@link MarkwonEditor}
+ *
+ * <p>Unlike {@link io.noties.markwon.editor.MarkwonEditorTextWatcher#withProcess(MarkwonEditor)}, which
+ * highlights the entire text on the main thread on every change, this waits until the text hasn't
+ * changed for {@link #DEBOUNCE_DELAY} milliseconds, and then only highlights the paragraphs that have
+ * changed. The highlighting is pre-rendered on a background executor, and the spans are set on the main thread</p>
+ */
+public class MarkdownHighlighter implements TextWatcher {
+
+    /**
+     * The amount of milliseconds to wait after the text has changed before highlighting
+     */
+    public static final long DEBOUNCE_DELAY = 150;
+
+    private static final String[] CODE_FENCES = {"```", "~~~"};
+
+    private final EditText editText;
+    private final MarkwonEditor editor;
+    private final Executor executor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable highlightRunnable = this::highlight;
+
+    /**
+     * The spans set by the highlighter. Only these are removed when highlighting again
+     */
+    private final Set<Object> highlightSpans = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The range of the text that has changed since it was last highlighted, or -1 if nothing has changed.
+     * This includes the range being highlighted in the background, until the highlighting has been set,
+     * so that the range is moved with later changes and highlighted again if the highlighting is outdated
+     */
+    private int changedStart = -1;
+    private int changedEnd = -1;
+
+    /**
+     * Incremented on every change to the text. Highlighting is only set if the text hasn't changed
+     * since the highlighting was started
+     */
+    private int generation;
+
+
+    /**
+     * @param editText The EditText to highlight
+     * @param editor The editor to highlight with
+     * @param executor The executor to pre-render the highlighting on
+     */
+    public MarkdownHighlighter(@NonNull EditText editText, @NonNull MarkwonEditor editor, @NonNull Executor executor) {
+        this.editText = editText;
+        this.editor = editor;
+        this.executor = executor;
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        // Not used
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+        generation++;
+
+        if (changedStart != -1) {
+            changedStart = shift(changedStart, start, before, count);
+            changedEnd = shift(changedEnd, start, before, count);
+        }
+        addChangedRange(start, start + count);
+    }
+
+    /**
+     * Moves a position in the text by a change to the text
+     *
+     * @return The position after the change. A position in the replaced text is moved to the end of the new text
+     */
+    private static int shift(int position, int start, int before, int count) {
+        if (position >= start + before) {
+            return position + count - before;
+        } else if (position > start) {
+            return start + count;
+        }
+        return position;
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+        handler.removeCallbacks(highlightRunnable);
+        handler.postDelayed(highlightRunnable, DEBOUNCE_DELAY);
+    }
+
+    private void addChangedRange(int start, int end) {
+        if (changedStart == -1) {
+            changedStart = start;
+            changedEnd = end;
+        } else {
+            changedStart = Math.min(changedStart, start);
+            changedEnd = Math.max(changedEnd, end);
+        }
+    }
+
+    /**
+     * Starts highlighting the paragraphs that have changed
+     */
+    private void highlight() {
+        if (changedStart == -1) {
+            return;
+        }
+
+        final String text = editText.getText().toString();
+
+        int start = findParagraphStart(text, Math.min(changedStart, text.length()));
+        int end = findParagraphEnd(text, Math.min(changedEnd, text.length()));
+
+        // Code blocks can have blank lines in them, so highlighting only a paragraph might see the
+        // end of a code block as the start
+        String paragraphs = text.substring(start, end);
+        if (containsCodeFence(paragraphs)) {
+            start = 0;
+            end = text.length();
+            paragraphs = text;
+        }
+
+        final int key = generation;
+        final int offset = start;
+        final int rangeEnd = end;
+        final SpannableStringBuilder input = new SpannableStringBuilder(paragraphs);
+
+        executor.execute(() -> editor.preRender(input, result -> {
+            final Editable highlighted = result.resultEditable();
+            handler.post(() -> apply(key, offset, rangeEnd, highlighted));
+        }));
+    }
+
+    /**
+     * Sets the highlighting of a range of the text, if the text hasn't changed since it was highlighted
+     */
+    private void apply(int key, int start, int end, Editable highlighted) {
+        if (key != generation) {
+            // The text has changed and will be highlighted again. The changed range still includes
+            // this range (moved by the changes), so it is highlighted then as well
+            return;
+        }
+
+        // The text hasn't changed since the highlighting was started, so this is everything that had changed
+        changedStart = -1;
+        changedEnd = -1;
+
+        final Editable text = editText.getText();
+
+        for (Object span : text.getSpans(start, end, Object.class)) {
+            if (highlightSpans.remove(span)) {
+                text.removeSpan(span);
+            }
+        }
+
+        for (Object span : highlighted.getSpans(0, highlighted.length(), Object.class)) {
+            text.setSpan(
+                    span,
+                    start + highlighted.getSpanStart(span),
+                    start + highlighted.getSpanEnd(span),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+            );
+            highlightSpans.add(span);
+        }
+
+        // Spans of text that has been removed are removed from the text as well
+        Iterator<Object> iterator = highlightSpans.iterator();
+        while (iterator.hasNext()) {
+            if (text.getSpanStart(iterator.next()) == -1) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Cancels any highlighting waiting to be started, or being highlighted. The changes are still
+     * highlighted if {@link #resume()} is called
+     */
+    public void cancel() {
+        handler.removeCallbacks(highlightRunnable);
+        generation++;
+    }
+
+    /**
+     * Starts highlighting again after {@link #cancel()}, if there are changes that haven't been highlighted
+     */
+    public void resume() {
+        if (changedStart != -1) {
+            handler.removeCallbacks(highlightRunnable);
+            handler.postDelayed(highlightRunnable, DEBOUNCE_DELAY);
+        }
+    }
+
+    /**
+     * Finds the start of the paragraph a position is in, which is after the previous blank line
+     */
+    private static int findParagraphStart(String text, int position) {
+        int blankLine = text.lastIndexOf("\n\n", Math.max(position - 1, 0));
+        return blankLine == -1 ? 0 : blankLine + 2;
+    }
+
+    /**
+     * Finds the end of the paragraph a position is in, which is at the next blank line
+     */
+    private static int findParagraphEnd(String text, int position) {
+        int blankLine = text.indexOf("\n\n", position);
+        return blankLine == -1 ? text.length() : blankLine;
+    }
+
+    private static boolean containsCodeFence(String text) {
+        for (String fence : CODE_FENCES) {
+            if (text.contains(fence)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
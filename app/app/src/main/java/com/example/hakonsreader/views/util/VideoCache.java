@@ -1,32 +1,240 @@
 package com.example.hakonsreader.views.util;
 
 import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 
 import com.google.android.exoplayer2.database.ExoDatabaseProvider;
-import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 
+import java.io.File;
+import java.util.ArrayList;
+
 /**
  * Class for video caching
+ *
+ * Videos are cached in their own directory in the cache directory of the application, with NSFW videos
+ * in a separate cache so that NSFW videos don't evict other videos (and vice versa). The NSFW cache
+ * gets {@link #NSFW_SHARE} of the total size.
+ *
+ * The caches are created lazily and all functions are thread safe. {@link #init(Context, long)} should
+ * be called when the application is created to set the size of the cache
  */
 public class VideoCache {
+    private static final String TAG = "VideoCache";
+
+    /**
+     * The name of the directory in the cache directory the videos are cached in
+     */
+    public static final String DIRECTORY = "video_cache";
+
+    /**
+     * The name of the directory in {@link #DIRECTORY} normal videos are cached in
+     */
+    private static final String DIRECTORY_NORMAL = "normal";
+
+    /**
+     * The name of the directory in {@link #DIRECTORY} NSFW videos are cached in
+     */
+    private static final String DIRECTORY_NSFW = "nsfw";
+
+    /**
+     * The default max size of the cache, in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 100 * 1024 * 1024L;
+
+    /**
+     * The share of the max size given to NSFW videos
+     */
+    public static final float NSFW_SHARE = 0.25f;
+
+    private static final VideoCacheStats stats = new VideoCacheStats();
+
+    private static long maxSize = DEFAULT_MAX_SIZE;
+
+    private static Context appContext;
+
+    private static ExoDatabaseProvider databaseProvider;
     private static SimpleCache cache;
+    private static SimpleCache nsfwCache;
+    private static VideoCacheEvictor evictor;
+    private static VideoCacheEvictor nsfwEvictor;
 
     private VideoCache() { }
 
     /**
-     * Retrieves the singleton instance of the video cache
+     * Sets the max size of the cache. The caches are not created until they are used
+     *
+     * @param context The context for the cache
+     * @param maxSize The max size of the cache in bytes, including NSFW videos
+     */
+    public static synchronized void init(Context context, long maxSize) {
+        appContext = context.getApplicationContext();
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Retrieves the singleton instance of the video cache for non-NSFW videos
      *
      * @param context The context for the cache
      * @return The cache object
      */
     public static SimpleCache getCache(Context context) {
-        if (cache == null) {
-            // 50 MB cache
-            LeastRecentlyUsedCacheEvictor evictor = new LeastRecentlyUsedCacheEvictor(50 * 1024 * 1024);
-            cache = new SimpleCache(context.getCacheDir(), evictor, new ExoDatabaseProvider(context));
+        return getCache(context, false);
+    }
+
+    /**
+     * Retrieves the singleton instance of the video cache
+     *
+     * @param context The context for the cache
+     * @param nsfw True to get the cache for NSFW videos
+     * @return The cache object
+     */
+    public static synchronized SimpleCache getCache(Context context, boolean nsfw) {
+        if (nsfw) {
+            if (nsfwCache == null) {
+                nsfwEvictor = new VideoCacheEvictor(getNsfwMaxSize());
+                nsfwCache = new SimpleCache(getDirectory(context, DIRECTORY_NSFW), nsfwEvictor, getDatabaseProvider(context));
+            }
+            return nsfwCache;
+        } else {
+            if (cache == null) {
+                evictor = new VideoCacheEvictor(getNormalMaxSize());
+                cache = new SimpleCache(getDirectory(context, DIRECTORY_NORMAL), evictor, getDatabaseProvider(context));
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Sets the max size of the cache. If the size is lowered, videos are evicted the next time
+     * something is added to the cache
+     *
+     * @param maxSize The max size of the cache in bytes, including NSFW videos
+     */
+    public static synchronized void setMaxSize(long maxSize) {
+        VideoCache.maxSize = maxSize;
+
+        if (evictor != null) {
+            evictor.setMaxBytes(getNormalMaxSize());
+        }
+        if (nsfwEvictor != null) {
+            nsfwEvictor.setMaxBytes(getNsfwMaxSize());
         }
+    }
+
+    /**
+     * @return The statistics for the cache
+     */
+    @NonNull
+    public static VideoCacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return The amount of bytes evicted from the caches since the application started
+     */
+    public static synchronized long getEvictedBytes() {
+        long evicted = 0;
+        if (evictor != null) {
+            evicted += evictor.getEvictedBytes();
+        }
+        if (nsfwEvictor != null) {
+            evicted += nsfwEvictor.getEvictedBytes();
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes all videos from the cache, eg. when logging out. This must not be called on the main thread.
+     *
+     * {@link #init(Context, long)} must have been called before this, otherwise nothing is done
+     */
+    @WorkerThread
+    public static void clear() {
+        Context context;
+        synchronized (VideoCache.class) {
+            context = appContext;
+        }
+        if (context == null) {
+            return;
+        }
+
+        clear(getCache(context, false));
+        clear(getCache(context, true));
+        Log.d(TAG, "clear: cache cleared, " + stats);
+    }
+
+    private static void clear(SimpleCache cache) {
+        // Copy the keys, as the set is modified when the resources are removed
+        for (String key : new ArrayList<>(cache.getKeys())) {
+            cache.removeResource(key);
+        }
+    }
 
-        return cache;
+    /**
+     * Deletes the files of the cache used before videos were cached in {@link #DIRECTORY}, which was
+     * stored in the root of the cache directory. This must not be called on the main thread
+     *
+     * @param context The context for the cache
+     */
+    @WorkerThread
+    public static void deleteLegacyCache(Context context) {
+        File[] files = context.getCacheDir().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+
+            if (name.equals("cached_content_index.exi") || name.endsWith(".uid")) {
+                file.delete();
+            } else if (file.isDirectory() && name.matches("\\d+") && containsOnlyCacheFiles(file)) {
+                // The cached spans are stored in directories named with numbers
+                File[] spans = file.listFiles();
+                if (spans != null) {
+                    for (File span : spans) {
+                        span.delete();
+                    }
+                }
+                file.delete();
+            }
+        }
+    }
+
+    private static boolean containsOnlyCacheFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return false;
+        }
+
+        for (File file : files) {
+            if (!file.getName().endsWith(".exo")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long getNormalMaxSize() {
+        return maxSize - getNsfwMaxSize();
+    }
+
+    private static long getNsfwMaxSize() {
+        return (long) (maxSize * NSFW_SHARE);
+    }
+
+    private static File getDirectory(Context context, String name) {
+        return new File(new File(context.getCacheDir(), DIRECTORY), name);
+    }
+
+    private static ExoDatabaseProvider getDatabaseProvider(Context context) {
+        if (databaseProvider == null) {
+            databaseProvider = new ExoDatabaseProvider(context.getApplicationContext());
+        }
+        return databaseProvider;
     }
 }
@@ -0,0 +1,79 @@
+package com.example.hakonsreader.views.util
+
+import com.google.android.exoplayer2.C
+import com.google.android.exoplayer2.upstream.cache.Cache
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor
+import com.google.android.exoplayer2.upstream.cache.CacheSpan
+import java.util.*
+
+/**
+ * Evicts the least recently used spans from a cache when the size of the cache exceeds [maxBytes].
+ * This works as [com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor],
+ * except that the max size can be changed after the cache has been created
+ *
+ * @param maxBytes The max amount of bytes the cache can hold
+ */
+class VideoCacheEvictor(maxBytes: Long) : CacheEvictor {
+
+    /**
+     * The max amount of bytes the cache can hold. When lowered the cache is trimmed the next time
+     * a span is added
+     */
+    @Volatile
+    var maxBytes = maxBytes
+
+    /**
+     * The amount of bytes currently held by the cache
+     */
+    @Volatile
+    var currentSize = 0L
+        private set
+
+    /**
+     * The amount of bytes evicted from the cache
+     */
+    @Volatile
+    var evictedBytes = 0L
+        private set
+
+    private val leastRecentlyUsed = TreeSet<CacheSpan> { first, second ->
+        val timestampComparison = first.lastTouchTimestamp.compareTo(second.lastTouchTimestamp)
+        if (timestampComparison == 0) first.compareTo(second) else timestampComparison
+    }
+
+    override fun requiresCacheSpanTouches() = true
+
+    override fun onCacheInitialized() {
+        // Nothing to do
+    }
+
+    override fun onStartFile(cache: Cache, key: String, position: Long, length: Long) {
+        if (length != C.LENGTH_UNSET.toLong()) {
+            evictCache(cache, length)
+        }
+    }
+
+    override fun onSpanAdded(cache: Cache, span: CacheSpan) {
+        leastRecentlyUsed.add(span)
+        currentSize += span.length
+        evictCache(cache, 0)
+    }
+
+    override fun onSpanRemoved(cache: Cache, span: CacheSpan) {
+        leastRecentlyUsed.remove(span)
+        currentSize -= span.length
+    }
+
+    override fun onSpanTouched(cache: Cache, oldSpan: CacheSpan, newSpan: CacheSpan) {
+        onSpanRemoved(cache, oldSpan)
+        onSpanAdded(cache, newSpan)
+    }
+
+    private fun evictCache(cache: Cache, requiredSpace: Long) {
+        while (currentSize + requiredSpace > maxBytes && leastRecentlyUsed.isNotEmpty()) {
+            val span = leastRecentlyUsed.first()
+            evictedBytes += span.length
+            cache.removeSpan(span)
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.hakonsreader.views.util
+
+import com.google.android.exoplayer2.upstream.DataSource
+import com.google.android.exoplayer2.upstream.DataSpec
+import com.google.android.exoplayer2.upstream.TransferListener
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Statistics for [VideoCache]. This listens to the data sources reading from the cache (for hits)
+ * and the network data sources used when the cache doesn't have the data (for misses)
+ *
+ * All functions are thread safe
+ */
+class VideoCacheStats : CacheDataSource.EventListener, TransferListener {
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val bytesFromCache = AtomicLong()
+    private val bytesFromNetwork = AtomicLong()
+
+    /**
+     * The amount of reads served from the cache
+     */
+    val hitCount: Long
+        get() = hits.get()
+
+    /**
+     * The amount of reads that had to go to the network
+     */
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * The amount of bytes served from the cache
+     */
+    val bytesServedFromCache: Long
+        get() = bytesFromCache.get()
+
+    /**
+     * The amount of bytes that had to be loaded from the network
+     */
+    val bytesServedFromNetwork: Long
+        get() = bytesFromNetwork.get()
+
+    /**
+     * @return The ratio of bytes served from the cache, or 0 if nothing has been served
+     */
+    fun getByteHitRate(): Float {
+        val fromCache = bytesServedFromCache
+        val total = fromCache + bytesServedFromNetwork
+        return if (total == 0L) 0f else fromCache / total.toFloat()
+    }
+
+    override fun onCachedBytesRead(cacheSizeBytes: Long, cachedBytesRead: Long) {
+        hits.incrementAndGet()
+        bytesFromCache.addAndGet(cachedBytesRead)
+    }
+
+    override fun onCacheIgnored(reason: Int) {
+        // The upstream source is used directly, which is counted as a miss in onTransferStart
+    }
+
+    override fun onTransferInitializing(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+        // Not used
+    }
+
+    override fun onTransferStart(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+        if (isNetwork) {
+            misses.incrementAndGet()
+        }
+    }
+
+    override fun onBytesTransferred(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean, bytesTransferred: Int) {
+        if (isNetwork) {
+            bytesFromNetwork.addAndGet(bytesTransferred.toLong())
+        }
+    }
+
+    override fun onTransferEnd(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+        // Not used
+    }
+
+    override fun toString(): String {
+        return "hits=$hitCount; misses=$missCount; bytes from cache=$bytesServedFromCache; " +
+                "bytes from network=$bytesServedFromNetwork; byte hit rate=${getByteHitRate()}"
+    }
+}
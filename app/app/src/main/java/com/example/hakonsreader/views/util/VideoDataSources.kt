@@ -0,0 +1,46 @@
+package com.example.hakonsreader.views.util
+
+import android.content.Context
+import com.example.hakonsreader.di.NetworkModule
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSource
+import com.google.android.exoplayer2.upstream.DataSource
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import dagger.hilt.android.EntryPointAccessors
+
+/**
+ * Creates the data sources videos are loaded with. HTTP requests are made with the shared OkHttp
+ * client, so that videos share connections with the rest of the app
+ */
+object VideoDataSources {
+
+    /**
+     * Creates a factory for data sources that load videos directly from the network (or local files)
+     *
+     * @param context The context to create the factory with
+     */
+    fun createUpstreamFactory(context: Context): DataSource.Factory {
+        return DefaultDataSourceFactory(context, createHttpFactory(context))
+    }
+
+    /**
+     * Creates a factory for data sources that read from and write to [VideoCache]. Reads are
+     * counted in [VideoCache.getStats]
+     *
+     * @param context The context to create the factory with
+     * @param nsfw True if the factory is for NSFW videos
+     */
+    fun createCacheFactory(context: Context, nsfw: Boolean): CacheDataSource.Factory {
+        val stats = VideoCache.getStats()
+
+        return CacheDataSource.Factory()
+            .setCache(VideoCache.getCache(context, nsfw))
+            .setUpstreamDataSourceFactory(DefaultDataSourceFactory(context, stats, createHttpFactory(context)))
+            .setEventListener(stats)
+    }
+
+    private fun createHttpFactory(context: Context): DataSource.Factory {
+        val client = EntryPointAccessors.fromApplication(context, NetworkModule.NetworkEntryPoint::class.java).httpClient()
+        return OkHttpDataSource.Factory(client)
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.hakonsreader.views.util
+
+import android.content.Context
+import android.net.Uri
+import android.util.Log
+import androidx.recyclerview.widget.RecyclerView
+import com.example.hakonsreader.api.model.RedditPost
+import com.example.hakonsreader.misc.Settings
+import com.example.hakonsreader.recyclerviewadapters.PostsAdapter
+import com.example.hakonsreader.views.ContentVideo
+import com.google.android.exoplayer2.C
+import com.google.android.exoplayer2.source.dash.DashUtil
+import com.google.android.exoplayer2.source.dash.manifest.RangedUri
+import com.google.android.exoplayer2.source.dash.manifest.Representation
+import com.google.android.exoplayer2.upstream.DataSpec
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import com.google.android.exoplayer2.upstream.cache.CacheWriter
+import kotlinx.coroutines.*
+import java.io.IOException
+import java.util.*
+
+/**
+ * Downloads the start of the videos of the next posts in a list into [VideoCache] while the selected
+ * post is shown, so that the next video can start playing without waiting for the network.
+ *
+ * Posts are passed with [onPostSelected] (this is done by
+ * [com.example.hakonsreader.recyclerviewadapters.listeners.PostScrollListener]). The next [PREFETCH_COUNT]
+ * posts in the scroll direction are prefetched, and prefetches for posts that are no longer among
+ * those (ie. the user has scrolled away) are cancelled.
+ *
+ * Videos are only prefetched when connected to WiFi and data saving isn't enabled. For progressive
+ * videos (ie. MP4s and gifs) the start of the file is prefetched. For DASH videos (ie. Reddit videos
+ * and gifs) the manifest is prefetched, along with the start of the first segment of the audio and
+ * of the video track the player is likely to choose with the current bandwidth estimate.
+ *
+ * @param context The context used to retrieve the cache and create data sources
+ * @param settings The settings used to check data saving and if NSFW videos can be cached
+ */
+class VideoPrefetcher(context: Context, private val settings: Settings) {
+
+    companion object {
+        private const val TAG = "VideoPrefetcher"
+
+        /**
+         * The amount of posts after the selected post to prefetch videos for
+         */
+        const val PREFETCH_COUNT = 2
+
+        /**
+         * The max amount of bytes to prefetch for a video. This is about the first few seconds of most videos
+         */
+        const val MAX_PREFETCH_BYTES = 1024 * 1024L
+
+        /**
+         * The max amount of URLs kept in [prefetchedUrls]
+         */
+        private const val MAX_PREFETCHED_URLS = 200
+
+        /**
+         * The fraction of the bandwidth estimate the player uses when choosing a track (the default
+         * of [com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection])
+         */
+        private const val BANDWIDTH_FRACTION = 0.7f
+
+        /**
+         * URLs of videos that have been fully prefetched, with the least recently used URLs removed
+         * when more than [MAX_PREFETCHED_URLS] are stored. Older videos have likely been evicted
+         * from [VideoCache] anyway
+         */
+        private val prefetchedUrls: MutableSet<String> = Collections.synchronizedSet(
+            Collections.newSetFromMap(object : LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Boolean>?): Boolean {
+                    return size > MAX_PREFETCHED_URLS
+                }
+            })
+        )
+
+        private var firstFrameCount = 0
+        private var firstFrameTotal = 0L
+        private var prefetchedFirstFrameCount = 0
+        private var prefetchedFirstFrameTotal = 0L
+
+        /**
+         * Records the time it took from a video being played until its first frame was rendered
+         *
+         * @param url The URL of the video
+         * @param timeToFirstFrame The time, in milliseconds, until the first frame was rendered
+         */
+        fun onFirstFrameRendered(url: String, timeToFirstFrame: Long) {
+            if (prefetchedUrls.contains(url)) {
+                prefetchedFirstFrameCount++
+                prefetchedFirstFrameTotal += timeToFirstFrame
+            } else {
+                firstFrameCount++
+                firstFrameTotal += timeToFirstFrame
+            }
+
+            Log.d(TAG, "onFirstFrameRendered: time to first frame=${timeToFirstFrame}ms; " +
+                    "average prefetched=${average(prefetchedFirstFrameTotal, prefetchedFirstFrameCount)}ms (${prefetchedFirstFrameCount}); " +
+                    "average not prefetched=${average(firstFrameTotal, firstFrameCount)}ms (${firstFrameCount})")
+        }
+
+        private fun average(total: Long, count: Int) = if (count == 0) 0 else total / count
+    }
+
+    /**
+     * A running prefetch
+     */
+    private class Prefetch {
+        lateinit var job: Job
+
+        /**
+         * The writer currently caching data. DASH videos are cached with multiple writers
+         */
+        @Volatile
+        var writer: CacheWriter? = null
+    }
+
+    /**
+     * A video to prefetch
+     */
+    private data class Video(val url: String, val nsfw: Boolean, val dash: Boolean)
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val dataSourceFactory = VideoDataSources.createCacheFactory(context, nsfw = false)
+    private val nsfwDataSourceFactory = VideoDataSources.createCacheFactory(context, nsfw = true)
+
+    private val bandwidthMeter = DefaultBandwidthMeter.getSingletonInstance(context)
+
+    /**
+     * The running prefetches, mapped to the URL of the video
+     */
+    private val prefetches = HashMap<String, Prefetch>()
+
+    /**
+     * Call when a post has been selected in the list
+     *
+     * @param recyclerView The RecyclerView the post is in. The adapter must be a [PostsAdapter]
+     * @param position The adapter position of the post
+     * @param scrollingUp True if the list is being scrolled upwards
+     */
+    fun onPostSelected(recyclerView: RecyclerView, position: Int, scrollingUp: Boolean) {
+        val adapter = recyclerView.adapter as? PostsAdapter ?: return
+
+        if (!settings.isWiFiConnected() || settings.dataSavingEnabled()) {
+            cancelAll()
+            return
+        }
+
+        val direction = if (scrollingUp) -1 else 1
+        val videos = (1..PREFETCH_COUNT).mapNotNull { offset ->
+            adapter.getPost(position + offset * direction)?.let { getVideoToPrefetch(it) }
+        }
+
+        // Prefetches for posts the user has scrolled away from aren't needed anymore
+        prefetches.keys.filter { url -> videos.none { it.url == url } }.forEach { cancel(it) }
+        videos.forEach { prefetch(it) }
+    }
+
+    /**
+     * Cancels all running prefetches
+     */
+    fun cancelAll() {
+        prefetches.keys.toList().forEach { cancel(it) }
+    }
+
+    /**
+     * @return The video to prefetch for the post, or null if nothing should be prefetched
+     */
+    private fun getVideoToPrefetch(post: RedditPost): Video? {
+        if (post.isSpoiler || (post.isNsfw && !settings.cacheNsfw())) {
+            return null
+        }
+
+        ContentVideo.getProgressiveVideoUrl(post)?.let { return Video(it, post.isNsfw, dash = false) }
+        return ContentVideo.getDashVideoUrl(post)?.let { Video(it, post.isNsfw, dash = true) }
+    }
+
+    private fun prefetch(video: Video) {
+        val url = video.url
+        if (prefetches.containsKey(url) || prefetchedUrls.contains(url)) {
+            return
+        }
+
+        val factory = if (video.nsfw) nsfwDataSourceFactory else dataSourceFactory
+        val prefetch = Prefetch()
+
+        prefetch.job = scope.launch {
+            try {
+                if (video.dash) {
+                    prefetchDash(prefetch, factory.createDataSource(), url)
+                } else {
+                    val dataSpec = DataSpec.Builder()
+                        .setUri(url)
+                        .setLength(MAX_PREFETCH_BYTES)
+                        .build()
+
+                    // Videos shorter than the length prefetched are fully cached
+                    cache(prefetch, factory.createDataSource(), dataSpec)
+                }
+                prefetchedUrls.add(url)
+            } catch (e: IOException) {
+                // Cancelled, or the network failed, in which case the video will be loaded normally
+            } finally {
+                withContext(NonCancellable + Dispatchers.Main) {
+                    if (prefetches[url] === prefetch) {
+                        prefetches.remove(url)
+                    }
+                }
+            }
+        }
+
+        prefetches[url] = prefetch
+    }
+
+    /**
+     * Prefetches a DASH video. The manifest is loaded through the cache, and the initialization data and
+     * the start of the first segment of the chosen representations of the first period are cached
+     *
+     * @param dataSource A data source writing to the cache
+     * @param url The URL of the manifest
+     */
+    private fun CoroutineScope.prefetchDash(prefetch: Prefetch, dataSource: CacheDataSource, url: String) {
+        val manifest = DashUtil.loadManifest(dataSource, Uri.parse(url))
+        if (manifest.periodCount == 0) {
+            return
+        }
+
+        val representations = manifest.getPeriod(0).adaptationSets.mapNotNull { adaptationSet ->
+            when (adaptationSet.type) {
+                C.TRACK_TYPE_VIDEO -> chooseVideoRepresentation(adaptationSet.representations)
+                C.TRACK_TYPE_AUDIO -> adaptationSet.representations.firstOrNull()
+                else -> null
+            }
+        }
+
+        representations.forEach { representation ->
+            ensureActive()
+
+            val firstSegment = representation.index.let { index ->
+                if (index != null) {
+                    representation.initializationUri?.let {
+                        cache(prefetch, dataSource, DashUtil.buildDataSpec(representation, it, 0))
+                    }
+                    index.getSegmentUrl(index.firstSegmentNum)
+                } else {
+                    // Single segment representations (which Reddit uses) are indexed by a segment
+                    // index in the file. Loading it also caches the initialization data and the index
+                    val chunkIndex = DashUtil.loadChunkIndex(dataSource, C.TRACK_TYPE_UNKNOWN, representation)
+                    if (chunkIndex == null || chunkIndex.length == 0) {
+                        null
+                    } else {
+                        RangedUri(null, chunkIndex.offsets[0], chunkIndex.sizes[0].toLong())
+                    }
+                }
+            } ?: return@forEach
+
+            ensureActive()
+
+            val segment = DashUtil.buildDataSpec(representation, firstSegment, 0)
+            val length = if (segment.length == C.LENGTH_UNSET.toLong()) {
+                MAX_PREFETCH_BYTES
+            } else {
+                minOf(segment.length, MAX_PREFETCH_BYTES)
+            }
+            cache(prefetch, dataSource, segment.subrange(0, length))
+        }
+    }
+
+    /**
+     * Chooses the video representation the player will likely start with, which is the representation with
+     * the highest bitrate that fits the bandwidth estimate, or the lowest bitrate if none fit
+     */
+    private fun chooseVideoRepresentation(representations: List<Representation>): Representation? {
+        val bandwidth = bandwidthMeter.bitrateEstimate * BANDWIDTH_FRACTION
+        val sorted = representations.sortedBy { it.format.bitrate }
+
+        return sorted.lastOrNull { it.format.bitrate <= bandwidth } ?: sorted.firstOrNull()
+    }
+
+    /**
+     * Caches data with a [CacheWriter] that is set on [prefetch] so it can be cancelled
+     */
+    private fun cache(prefetch: Prefetch, dataSource: CacheDataSource, dataSpec: DataSpec) {
+        val writer = CacheWriter(dataSource, dataSpec, true, null, null)
+        prefetch.writer = writer
+        writer.cache()
+    }
+
+    private fun cancel(url: String) {
+        prefetches.remove(url)?.let {
+            it.writer?.cancel()
+            it.job.cancel()
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.hakonsreader.workers
+
+import android.content.Context
+import android.util.Log
+import androidx.hilt.work.HiltWorker
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.work.*
+import com.example.hakonsreader.api.persistence.RedditDatabase
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import java.util.concurrent.TimeUnit
+
+/**
+ * A Worker that removes old cached values from the local database, and reclaims the space freed
+ * in the database file afterwards.
+ *
+ * Records are removed in bounded batches so that the database isn't locked for a long time at once.
+ * The amount of bytes reclaimed is set on the output data with the key [OUTPUT_BYTES_RECLAIMED]
+ */
+@HiltWorker
+class DatabaseCompactionWorker @AssistedInject constructor(
+        @Assisted context: Context,
+        @Assisted workerParams: WorkerParameters,
+        private val database: RedditDatabase,
+) : CoroutineWorker(context, workerParams) {
+
+    companion object {
+        private const val TAG = "DatabaseCompactionWorker"
+
+        /**
+         * The name of the Worker responsible for compacting the database
+         */
+        private const val WORKER_COMPACTION = "worker_databaseCompaction"
+
+        /**
+         * The key in the output data holding the amount of bytes reclaimed from the database file
+         */
+        const val OUTPUT_BYTES_RECLAIMED = "output_bytesReclaimed"
+
+        /**
+         * The max age, in seconds, of posts in the database (2 days)
+         */
+        private const val MAX_POST_AGE = 60L * 60 * 24 * 2
+
+        /**
+         * The max age, in seconds, of post visits (2 weeks)
+         */
+        private const val MAX_POST_VISIT_AGE = 60L * 60 * 24 * 14
+
+        /**
+         * The max age, in seconds, of stored wiki pages (2 weeks)
+         */
+        private const val MAX_WIKI_PAGE_AGE = 60L * 60 * 24 * 14
+
+        /**
+         * The amount of records to remove in one transaction
+         */
+        private const val BATCH_SIZE = 200
+
+        /**
+         * Value of `PRAGMA auto_vacuum` when the database uses incremental vacuuming
+         */
+        private const val AUTO_VACUUM_INCREMENTAL = 2L
+
+        /**
+         * Enqueues a unique periodic request to [WorkManager] that runs a [DatabaseCompactionWorker]
+         * once a day while the device is idle. If the work is already enqueued it is kept as is
+         */
+        fun schedule(context: Context) {
+            val request = PeriodicWorkRequestBuilder<DatabaseCompactionWorker>(1, TimeUnit.DAYS)
+                    .setConstraints(Constraints.Builder()
+                            .setRequiresDeviceIdle(true)
+                            .setRequiresBatteryNotLow(true)
+                            .build()
+                    )
+                    .build()
+
+            WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORKER_COMPACTION, ExistingPeriodicWorkPolicy.KEEP, request)
+        }
+    }
+
+
+    override suspend fun doWork(): Result {
+        val now = System.currentTimeMillis() / 1000L
+
+        val deletedPosts = removeOldPosts(now - MAX_POST_AGE)
+        val deletedVisits = removeOldPostVisits(now - MAX_POST_VISIT_AGE)
+        val deletedWikiPages = removeOldWikiPages(now - MAX_WIKI_PAGE_AGE)
+        val bytesReclaimed = vacuum(database.openHelper.writableDatabase)
+
+        Log.d(TAG, "doWork: # of deleted posts=$deletedPosts; # of deleted visits=$deletedVisits; # of deleted wiki pages=$deletedWikiPages; bytes reclaimed=$bytesReclaimed")
+
+        return Result.success(workDataOf(OUTPUT_BYTES_RECLAIMED to bytesReclaimed))
+    }
+
+    /**
+     * Removes posts inserted before [cutoff], as well as the crossposts stored for those posts
+     *
+     * @param cutoff The Unix timestamp (in seconds) posts must have been inserted before to be removed
+     * @return The amount of posts removed
+     */
+    private fun removeOldPosts(cutoff: Long): Int {
+        val postsDao = database.posts()
+        var deleted = 0
+
+        while (!isStopped) {
+            val ids = postsDao.getIdsInsertedBefore(cutoff, BATCH_SIZE)
+            if (ids.isEmpty()) {
+                break
+            }
+
+            // The crossposts are only stored because the parent post references them, so when
+            // the parent is removed the crossposts would otherwise be left orphaned
+            val crosspostIds = postsDao.getCrosspostIds(ids).flatMap { it.crosspostIds ?: emptyList() }
+
+            database.runInTransaction {
+                deleted += postsDao.deleteById(ids)
+                crosspostIds.chunked(BATCH_SIZE).forEach { deleted += postsDao.deleteById(it) }
+            }
+        }
+
+        return deleted
+    }
+
+    /**
+     * Removes post visits opened before [cutoff]
+     *
+     * @param cutoff The Unix timestamp (in seconds) the post must have been opened before to be removed
+     * @return The amount of visits removed
+     */
+    private fun removeOldPostVisits(cutoff: Long): Int {
+        val visitsDao = database.postVisits()
+        var deleted = 0
+
+        while (!isStopped) {
+            val deletedInBatch = visitsDao.deleteOpenedBefore(cutoff, BATCH_SIZE)
+            deleted += deletedInBatch
+
+            if (deletedInBatch < BATCH_SIZE) {
+                break
+            }
+        }
+
+        return deleted
+    }
+
+    /**
+     * Removes wiki pages stored before [cutoff]
+     *
+     * @param cutoff The Unix timestamp (in seconds) the page must have been stored before to be removed
+     * @return The amount of pages removed
+     */
+    private fun removeOldWikiPages(cutoff: Long): Int {
+        val wikiPagesDao = database.wikiPages()
+        var deleted = 0
+
+        while (!isStopped) {
+            val deletedInBatch = wikiPagesDao.deleteInsertedBefore(cutoff, BATCH_SIZE)
+            deleted += deletedInBatch
+
+            if (deletedInBatch < BATCH_SIZE) {
+                break
+            }
+        }
+
+        return deleted
+    }
+
+    /**
+     * Runs an incremental vacuum on the database. If the database does not use incremental vacuuming
+     * it is converted with a full vacuum first
+     *
+     * @return The amount of bytes the database file was reduced by
+     */
+    private fun vacuum(db: SupportSQLiteDatabase): Long {
+        val sizeBefore = getDatabaseSize(db)
+
+        if (queryLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            // Changing auto_vacuum on a database that already has tables only takes effect after
+            // a full VACUUM. This only has to be done once
+            db.query("PRAGMA auto_vacuum = INCREMENTAL").close()
+            db.execSQL("VACUUM")
+        } else {
+            db.query("PRAGMA incremental_vacuum").use { cursor ->
+                // The pages are freed while the cursor is stepped through
+                while (cursor.moveToNext()) { }
+            }
+        }
+
+        return sizeBefore - getDatabaseSize(db)
+    }
+
+    /**
+     * @return The size of the database file in bytes
+     */
+    private fun getDatabaseSize(db: SupportSQLiteDatabase): Long {
+        return queryLong(db, "PRAGMA page_count") * queryLong(db, "PRAGMA page_size")
+    }
+
+    /**
+     * Runs a query that returns a single long value
+     */
+    private fun queryLong(db: SupportSQLiteDatabase, query: String): Long {
+        return db.query(query).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getLong(0) else 0
+        }
+    }
+}
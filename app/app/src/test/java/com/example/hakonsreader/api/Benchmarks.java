@@ -0,0 +1,40 @@
+package com.example.hakonsreader.api;
+
+import org.junit.Assume;
+
+import java.io.File;
+
+/**
+ * Configuration for the JVM benchmarks, set with the system properties in testOptions in build.gradle.
+ * Benchmarks only measure time and don't assert anything, so they are skipped unless enabled
+ */
+final class Benchmarks {
+
+    /**
+     * The system property that enables the benchmarks
+     */
+    static final String ENABLED_PROPERTY = "benchmark";
+
+    /**
+     * The system property with the directory to write benchmark results to
+     */
+    static final String OUTPUT_DIR_PROPERTY = "benchmark.outputDir";
+
+    private Benchmarks() { }
+
+    /**
+     * Skips the calling test if benchmarks aren't enabled. Call this from a method annotated with
+     * {@link org.junit.Before} in benchmark classes
+     */
+    static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks are only run with -Pbenchmark", Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    /**
+     * @param name The name of the file
+     * @return The file to write benchmark results with the given name to
+     */
+    static File getOutputFile(String name) {
+        return new File(System.getProperty(OUTPUT_DIR_PROPERTY, "build/benchmark-results"), name);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.hakonsreader.api
+
+import com.example.hakonsreader.api.utils.LinkRoute
+import com.example.hakonsreader.api.utils.LinkRouter
+import com.example.hakonsreader.api.utils.LinkUtils
+
+/**
+ * A corpus of links used in [LinkRouterTest] and [LinkRouterBenchmark], and how the links were routed
+ * with the regexes in [LinkUtils] before [LinkRouter]
+ */
+internal object LinkCorpus {
+
+    /**
+     * Links from posts and comments, roughly in the proportions they appear
+     */
+    val LINKS = listOf(
+            "https://www.reddit.com/r/GlobalOffensive/comments/gwcxmm/faze_wins_major/",
+            "https://www.reddit.com/r/GlobalOffensive/comments/gwcxmm/faze_wins_major/fsvp4kk/",
+            "https://old.reddit.com/r/AskHistorians/comments/ne8bcc/when_did_it_stop_being_acceptable_to_openly/",
+            "http://np.reddit.com/r/autotldr/comments/31b9fm/faq_autotldr_bot",
+            "https://www.reddit.com/r/hakonschia",
+            "https://reddit.com/r/GlobalOffensive/top/?t=all",
+            "https://reddit.com/r/hakonschia/about/rules",
+            "https://www.reddit.com/user/hakonschia",
+            "https://reddit.com/u/hakonschia",
+            "https://www.reddit.com/user/HyperBirchyBoy/comments/jbkw1f/moon_landing_with_benny_hill_and_sped_up/?utm_source=share&utm_medium=ios_app&utm_name=iossmf",
+            "https://www.reddit.com/message/compose/?to=RemindMeBot&subject=Reminder&message=%5Bhttps://www.reddit.com/r/AskHistorians/comments/ne8bcc/when_did_it_stop_being_acceptable_to_openly/%5D%0A%0ARemindMe!%202%20days",
+            "http://np.reddit.com/message/compose?to=%23autotldr%20%22PM's%20and%20comments%20are%20monitored,%20constructive%20feedback%20is%20welcome.%22",
+            "https://redd.it/kx3hiz",
+            "https://www.reddit.com/comments/kx3hiz",
+            "https://i.redd.it/z4sgyaoenlf61.png",
+            "https://i.imgur.com/0Uytu2X.jpeg",
+            "https://pbs.twimg.com/media/Es_qtWVXEAMKEBd?format=jpg&name=large",
+            "https://www.youtube.com/watch?v=dQw4w9WgXcQ&t=86",
+            "https://youtu.be/dQw4w9WgXcQ?t=1m26s",
+            "https://en.wikipedia.org/wiki/Counter-Strike:_Global_Offensive",
+            "https://www.nrk.no/norge/some-article-1.15432345",
+            "https://github.com/hakonschia/HakonsReader/issues/42",
+            "https://twitter.com/CSGO/status/1382359126284992514",
+            "https://redditsave.com/info?url=https://www.reddit.com/r/AbruptChaos/comments/pe4yfb/firework_show_airstrike/",
+            "https://www.independent.co.uk/news/world/australasia/new-zealand-raises-minimum-wage-to-20-an-hour-b1825634.html?utm_source=reddit.com"
+    )
+
+    /**
+     * Matches a link the way links were previously matched when creating intents, with the regexes
+     * compiled for every link
+     *
+     * @return The class of the route the link matched, [LinkRoute.External] if no regex matched, or null
+     * for links the regexes are known to match wrong
+     */
+    fun matchRegexes(url: String): Class<out LinkRoute>? {
+        val lastSegment = url.substringBefore('?').trimEnd('/').substringAfterLast('/')
+
+        return when {
+            url.contains("/user/") && url.contains("/comments/") -> null
+            url.contains("/message/compose") && url.contains("comments") -> null
+
+            url.matches("^http(s)?://(.*\\.)?reddit\\.com(/)?$".toRegex()) || url.matches("^http(s)?://(.*\\.)?redd.it(/)?$".toRegex()) -> LinkRoute.FrontPage::class.java
+            url.matches(LinkUtils.SUBREDDIT_REGEX_COMBINED.toRegex(RegexOption.IGNORE_CASE)) -> LinkRoute.Subreddit::class.java
+            url.matches(LinkUtils.SUBREDDIT_SORT_REGEX_WITH_HTTPS.toRegex()) -> LinkRoute.SubredditSort::class.java
+            url.matches(LinkUtils.SUBREDDIT_RULES_REGEX_WITH_HTTPS.toRegex()) -> LinkRoute.SubredditRules::class.java
+            url.matches(LinkUtils.USER_REGEX.toRegex()) -> LinkRoute.User::class.java
+            url.matches("http(s)?://([A-Za-z0-9]+\\.)?reddit.com/message/compose.*".toRegex()) -> LinkRoute.ComposeMessage::class.java
+            url.matches("^${LinkUtils.POST_REGEX}".toRegex()) -> LinkRoute.Post::class.java
+            url.matches(LinkUtils.POST_REGEX_NO_SUBREDDIT.toRegex()) -> LinkRoute.Post::class.java
+            url.matches(LinkUtils.POST_SHORTENED_URL_REGEX.toRegex()) -> LinkRoute.Post::class.java
+            lastSegment.matches(".+(.png|.jpeg|.jpg)$".toRegex()) || url.matches(".*[?&]format=(png|jpg|jpeg)(&.*)?".toRegex()) -> LinkRoute.Image::class.java
+            url.matches(".*[?&]v=.+".toRegex()) || url.matches(".*youtu.be.*".toRegex()) -> LinkRoute.YouTubeVideo::class.java
+            else -> LinkRoute.External::class.java
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.hakonsreader.api
+
+import com.example.hakonsreader.api.LinkCorpus.LINKS
+import com.example.hakonsreader.api.LinkCorpus.matchRegexes
+import com.example.hakonsreader.api.utils.LinkRouter
+import com.example.hakonsreader.api.utils.LinkUtils
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Benchmark for [LinkRouter] on the links in [LinkCorpus], compared to matching the links against the
+ * regexes in [LinkUtils] the way links were previously matched when creating intents. The time per link
+ * is printed so it can be compared between changes. That the two give the same routes is tested in
+ * [LinkRouterTest]
+ */
+class LinkRouterBenchmark {
+
+    companion object {
+        private const val WARMUP_ITERATIONS = 20
+        private const val ITERATIONS = 100
+    }
+
+    @Before
+    fun setup() {
+        Benchmarks.assumeEnabled()
+    }
+
+    /**
+     * Benchmarks routing every link in the corpus, with the router and with the previous regex matching
+     */
+    @Test
+    fun benchmarkCorpus() {
+        val routerTime = benchmark { LinkRouter.route(it) }
+        val regexTime = benchmark { matchRegexes(it) }
+
+        println(String.format("corpus: %d links, router %.2f µs per link, regexes %.2f µs per link",
+                LINKS.size, routerTime / 1000.0, regexTime / 1000.0))
+    }
+
+    /**
+     * @return The average time, in nanoseconds, to route one link in the corpus
+     */
+    private fun benchmark(route: (String) -> Any?): Long {
+        repeat(WARMUP_ITERATIONS) {
+            LINKS.forEach { route(it) }
+        }
+
+        val start = System.nanoTime()
+        repeat(ITERATIONS) {
+            LINKS.forEach { route(it) }
+        }
+        return (System.nanoTime() - start) / (ITERATIONS * LINKS.size)
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.hakonsreader.api
+
+import com.example.hakonsreader.api.utils.LinkRoute
+import com.example.hakonsreader.api.utils.LinkRouter
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Tests for [LinkRouter]. Which activities the routes are opened in are tested in CreateIntentTest
+ */
+class LinkRouterTest {
+
+    private fun assertRoute(expected: LinkRoute, url: String) {
+        assertEquals("Wrong route for '$url'", expected, LinkRouter.route(url))
+    }
+
+    /**
+     * Tests links to the front page
+     */
+    @Test
+    fun testFrontPage() {
+        assertRoute(LinkRoute.FrontPage, "https://reddit.com/")
+        assertRoute(LinkRoute.FrontPage, "https://www.reddit.com")
+        assertRoute(LinkRoute.FrontPage, "https://old.reddit.com")
+        assertRoute(LinkRoute.FrontPage, "https://redd.it")
+        assertRoute(LinkRoute.FrontPage, "https://www.redd.it/")
+    }
+
+    /**
+     * Tests links to subreddits, with sorts and rules
+     */
+    @Test
+    fun testSubreddits() {
+        assertRoute(LinkRoute.Subreddit("globaloffensive"), "https://reddit.com/r/GlobalOffensive")
+        assertRoute(LinkRoute.Subreddit("globaloffensive"), "HTTPS://Reddit.com/R/GlobalOffensive/")
+        assertRoute(LinkRoute.Subreddit("all"), "https://old.reddit.com/r/all")
+
+        assertRoute(LinkRoute.SubredditSort("hakonschia", "top", "year"), "https://www.reddit.com/r/hakonschia/top/?t=year")
+        assertRoute(LinkRoute.SubredditSort("hakonschia", "new", null), "https://reddit.com/r/hakonschia/new")
+
+        assertRoute(LinkRoute.SubredditRules("hakonschia"), "https://reddit.com/r/hakonschia/about/rules")
+        assertRoute(LinkRoute.SubredditRules("hakonschia"), "https://reddit.com/r/hakonschia/about/rules/")
+
+        // Paths without a route aren't handled
+        assertRoute(LinkRoute.External, "https://www.reddit.com/r/hakonschia/wiki")
+        assertRoute(LinkRoute.External, "https://www.reddit.com/r/not-a-subreddit")
+    }
+
+    /**
+     * Tests links to users
+     */
+    @Test
+    fun testUsers() {
+        assertRoute(LinkRoute.User("hakonschia"), "https://reddit.com/u/hakonschia")
+        assertRoute(LinkRoute.User("hakonschia"), "https://old.reddit.com/user/hakonschia/")
+        assertRoute(LinkRoute.User("hakonschia-three"), "http://np.reddit.com/user/hakonschia-three")
+    }
+
+    /**
+     * Tests links to posts and comment chains
+     */
+    @Test
+    fun testPosts() {
+        assertRoute(LinkRoute.Post("kx3hiz"), "https://redd.it/kx3hiz")
+        assertRoute(LinkRoute.Post("kx3hiz"), "https://redd.it/kx3hiz/")
+        assertRoute(LinkRoute.Post("kx3hiz"), "https://www.reddit.com/r/hakonschia/comments/kx3hiz/stop_wasting_my_moonlight/")
+        assertRoute(LinkRoute.Post("kx3hiz", "gj8cot6"), "https://www.reddit.com/r/hakonschia/comments/kx3hiz/stop_wasting_my_moonlight/gj8cot6")
+        assertRoute(LinkRoute.Post("kx3hiz"), "https://www.reddit.com/comments/kx3hiz")
+        assertRoute(LinkRoute.Post("31b9fm"), "http://np.reddit.com/r/autotldr/comments/31b9fm/faq_autotldr_bot")
+
+        // Posts in user subreddits
+        assertRoute(LinkRoute.Post("jbkw1f"), "https://www.reddit.com/user/HyperBirchyBoy/comments/jbkw1f/moon_landing/?utm_source=share")
+    }
+
+    /**
+     * Tests links to send private messages, and that the query parameters are decoded
+     */
+    @Test
+    fun testComposeMessage() {
+        assertRoute(LinkRoute.ComposeMessage(null, null, null), "https://reddit.com/message/compose")
+        assertRoute(LinkRoute.ComposeMessage("/r/hakonschia", null, null), "https://reddit.com/message/compose?to=/r/hakonschia")
+        assertRoute(
+                LinkRoute.ComposeMessage("hakonschia", "subject with spaces", "The post should be removed"),
+                "https://old.reddit.com/message/compose?to=hakonschia&subject=subject with spaces&message=The post should be removed"
+        )
+        assertRoute(
+                LinkRoute.ComposeMessage("#autotldr \"PM's", null, null),
+                "http://np.reddit.com/message/compose?to=%23autotldr%20%22PM's"
+        )
+
+        // A link to a post in the message shouldn't be seen as the post
+        assertRoute(
+                LinkRoute.ComposeMessage("RemindMeBot", "Reminder", "[https://www.reddit.com/r/AskHistorians/comments/ne8bcc/when_did/]\n\nRemindMe! 2 days"),
+                "https://www.reddit.com/message/compose/?to=RemindMeBot&subject=Reminder&message=%5Bhttps://www.reddit.com/r/AskHistorians/comments/ne8bcc/when_did/%5D%0A%0ARemindMe!%202%20days"
+        )
+    }
+
+    /**
+     * Tests links to images
+     */
+    @Test
+    fun testImages() {
+        assertRoute(LinkRoute.Image("https://i.imgur.com/0Uytu2X.jpeg"), "https://i.imgur.com/0Uytu2X.jpeg")
+        assertRoute(LinkRoute.Image("https://i.redd.it/z4sgyaoenlf61.png"), "https://i.redd.it/z4sgyaoenlf61.png")
+
+        // No file extension, but it has an image format as a query parameter
+        assertRoute(
+                LinkRoute.Image("https://pbs.twimg.com/media/Es_qtWVXEAMKEBd?format=jpg&name=large"),
+                "https://pbs.twimg.com/media/Es_qtWVXEAMKEBd?format=jpg&name=large"
+        )
+    }
+
+    /**
+     * Tests links to YouTube videos
+     */
+    @Test
+    fun testYouTube() {
+        assertRoute(LinkRoute.YouTubeVideo("dQw4w9WgXcQ", null), "https://www.youtube.com/watch?v=dQw4w9WgXcQ")
+        assertRoute(LinkRoute.YouTubeVideo("dQw4w9WgXcQ", "86"), "https://www.youtube.com/watch?v=dQw4w9WgXcQ&t=86")
+        assertRoute(LinkRoute.YouTubeVideo("dQw4w9WgXcQ", null), "https://youtu.be/dQw4w9WgXcQ")
+        assertRoute(LinkRoute.YouTubeVideo("dQw4w9WgXcQ", "1m26s"), "https://youtu.be/dQw4w9WgXcQ?t=1m26s")
+    }
+
+    /**
+     * Tests that links with Reddit somewhere other than the host aren't routed to Reddit
+     */
+    @Test
+    fun testRedditNotInHost() {
+        assertRoute(LinkRoute.External, "https://www.nrk.no")
+        assertRoute(LinkRoute.External, "https://redditsave.com/info?url=https://www.reddit.com/r/AbruptChaos/comments/pe4yfb/firework_show_airstrike/")
+        assertRoute(LinkRoute.External, "https://somewebsite.com/somepath?url=https://old.reddit.com/r/hakonschia")
+        assertRoute(LinkRoute.External, "https://www.somedomain.com/somepath?someparameter=reddit.com/somemore/reddit.com")
+        assertRoute(LinkRoute.External, "not a link")
+    }
+
+    /**
+     * Tests that the router gives the same routes as the regexes previously used, on the links in [LinkCorpus]
+     * (where the regexes aren't wrong)
+     */
+    @Test
+    fun testSameRoutesAsRegexes() {
+        LinkCorpus.LINKS.forEach {
+            val route = LinkRouter.route(it)
+            val regexRoute = LinkCorpus.matchRegexes(it)
+
+            // The regexes don't match posts in user subreddits or compose links with a post link in the message
+            if (regexRoute != null) {
+                assertEquals("Different route for '$it'", regexRoute, route::class.java)
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.hakonsreader.api;
+
+import com.example.hakonsreader.api.utils.MarkdownAdjuster;
+import com.example.hakonsreader.di.MarkwonModule;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark for {@link MarkdownAdjuster} on large texts, such as long self posts and wiki pages.
+ * The time per adjustment is printed so it can be compared between changes. This is only run when
+ * benchmarks are enabled (see {@link Benchmarks})
+ */
+public class MarkdownAdjusterBenchmark {
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    /**
+     * The adjuster as configured in the app
+     */
+    private final MarkdownAdjuster adjuster = MarkwonModule.INSTANCE.createMarkdownAdjusterWithImages();
+
+    @Before
+    public void setup() {
+        Benchmarks.assumeEnabled();
+    }
+
+    /**
+     * Benchmarks a long self post, mostly text with some links and images
+     */
+    @Test
+    public void benchmarkSelfPost() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("#Part ").append(i).append("\n\n")
+                    .append("This is a long paragraph of text in a self post, which is mostly just normal text ")
+                    .append("with a [link to something](https://www.reddit.com/r/GlobalOffensive/comments/abc def) ")
+                    .append("and sometimes an image https://i.redd.it/z4sgyaoenlf61.png in the middle of it. ")
+                    .append("Some people also mention subreddits like r/GlobalOffensive or users like u/hakonschia.\n\n")
+                    .append("* A list item\n* Another list item with `some code`\n\n");
+        }
+
+        benchmark("self post", builder.toString());
+    }
+
+    /**
+     * Benchmarks a wiki page, with a lot of headers, tables, links and code blocks
+     */
+    @Test
+    public void benchmarkWikiPage() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            builder.append("##Section ").append(i).append("\n\n")
+                    .append("Subreddit | Description | Link\n")
+                    .append(":--|:--|:--\n");
+            for (int row = 0; row < 10; row++) {
+                builder.append("r/subreddit").append(row).append(" | A subreddit | [wiki](/r/subreddit/wiki/index#wiki_section_").append(row).append(")\n");
+            }
+            builder.append("\n```\n#not a header https://i.redd.it/z4sgyaoenlf61.png\n```\n\n")
+                    .append("[https://i.imgur.com/abcdef.jpg](https://i.imgur.com/abcdef.jpg)\n\n");
+        }
+
+        benchmark("wiki page", builder.toString());
+    }
+
+    private void benchmark(String name, String markdown) {
+        String adjusted = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            adjusted = adjuster.adjust(markdown);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            adjusted = adjuster.adjust(markdown);
+        }
+        long average = (System.nanoTime() - start) / ITERATIONS;
+
+        assertNotNull(adjusted);
+        System.out.printf("%s: %d characters, %.3f ms per adjustment%n", name, markdown.length(), average / 1_000_000.0);
+    }
+}
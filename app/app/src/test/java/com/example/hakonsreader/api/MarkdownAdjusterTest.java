@@ -330,4 +330,69 @@ public class MarkdownAdjusterTest {
         actual = adjuster.adjust(markdown);
         assertEquals(expected, actual);
     }
+
+    /**
+     * Tests that text in code blocks and code spans is not adjusted
+     */
+    @Test
+    public void testCodeIsNotAdjusted() {
+        MarkdownAdjuster adjuster = new MarkdownAdjuster.Builder()
+                .checkHeaderSpaces()
+                .checkRedditSpecificLinks()
+                .checkNormalLinks()
+                .checkUrlEncoding()
+                .convertImageLinksToMarkdown()
+                .build();
+
+        // Code blocks
+        String markdown = "```\n#include <stdio.h>\nr/subreddit https://nrk.no\n```\n\n#Header";
+        String expected = "```\n#include <stdio.h>\nr/subreddit https://nrk.no\n```\n\n# Header";
+        String actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+
+        markdown = "~~~python\n#comment\n```\nstill code https://i.redd.it/z4sgyaoenlf61.png\n~~~\nr/subreddit";
+        expected = "~~~python\n#comment\n```\nstill code https://i.redd.it/z4sgyaoenlf61.png\n~~~\n[r/subreddit](https://www.reddit.com/r/subreddit/)";
+        actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+
+        // Code spans
+        markdown = "Use `r/subreddit` or ``[link](https://nrk.no/with spaces)`` but not r/subreddit";
+        expected = "Use `r/subreddit` or ``[link](https://nrk.no/with spaces)`` but not [r/subreddit](https://www.reddit.com/r/subreddit/)";
+        actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+
+        // Unclosed code spans are just backticks
+        markdown = "A single ` and r/subreddit";
+        expected = "A single ` and [r/subreddit](https://www.reddit.com/r/subreddit/)";
+        actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Tests that lines and whitespace not adjusted are kept as they are
+     */
+    @Test
+    public void testFormattingIsKept() {
+        MarkdownAdjuster adjuster = new MarkdownAdjuster.Builder()
+                .checkHeaderSpaces()
+                .checkUrlEncoding()
+                .convertImageLinksToMarkdown()
+                .build();
+
+        String markdown = "#Header\n\n\nText with trailing newlines\n\n";
+        String expected = "# Header\n\n\nText with trailing newlines\n\n";
+        String actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+
+        markdown = "";
+        expected = "";
+        actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+
+        // Links already in markdown links should not be wrapped again
+        markdown = "![alt](https://i.redd.it/z4sgyaoenlf61.png) and https://i.redd.it/z4sgyaoenlf61.png";
+        expected = "![alt](https://i.redd.it/z4sgyaoenlf61.png) and ![image](https://i.redd.it/z4sgyaoenlf61.png)";
+        actual = adjuster.adjust(markdown);
+        assertEquals(expected, actual);
+    }
 }
@@ -0,0 +1,293 @@
+package com.example.hakonsreader.api;
+
+import androidx.annotation.NonNull;
+
+import com.example.hakonsreader.api.utils.LinkRoute;
+import com.example.hakonsreader.api.utils.LinkRouter;
+import com.example.hakonsreader.api.utils.LinkUtils;
+import com.example.hakonsreader.api.utils.MarkdownAdjuster;
+import com.example.hakonsreader.di.MarkwonModule;
+import com.example.hakonsreader.markwonplugins.RedditMarkdownPlugin;
+import com.example.hakonsreader.markwonplugins.RedditMarkdownScanner;
+import com.google.gson.GsonBuilder;
+
+import org.commonmark.ext.gfm.strikethrough.StrikethroughExtension;
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.node.Node;
+import org.commonmark.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark for the parts of the markdown pipeline that run on the JVM, over the markdown corpus in
+ * src/sharedTest/resources/markdown (comments, self posts and wiki pages). The same corpus is rendered on a
+ * device in MarkdownRenderBenchmark, which times the stages that need Android.
+ *
+ * <p>Each stage is timed separately, with the input created by the previous stage beforehand:</p>
+ * <ul>
+ *     <li>adjust: {@link MarkdownAdjuster}, as configured in {@link MarkwonModule}</li>
+ *     <li>parse: Processing with {@link RedditMarkdownPlugin} and parsing with commonmark, with the extensions
+ *     for the Markwon plugins used in the app</li>
+ *     <li>scan: {@link RedditMarkdownScanner} on the text nodes, with {@link RedditMarkdownPlugin#scan}</li>
+ *     <li>links: Routing the links found with {@link LinkRouter} and {@link LinkUtils}</li>
+ * </ul>
+ *
+ * <p>The results of every stage are added to a checksum, so the work can't be optimized away. The results
+ * are printed, and written as JSON to {@link #OUTPUT_FILE} in the benchmark output directory so they can be
+ * compared between commits. This only runs when benchmarks are enabled (see {@link Benchmarks})</p>
+ */
+public class MarkdownCorpusBenchmark {
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    /**
+     * The names of the corpus files, in src/sharedTest/resources/markdown
+     */
+    private static final List<String> CORPORA = Arrays.asList("comments", "selfposts", "wiki");
+
+    /**
+     * The separator between the documents in a corpus file
+     */
+    private static final String DOCUMENT_SEPARATOR = "\n%%%\n";
+
+    /**
+     * The name of the file the results are written to, see {@link Benchmarks#getOutputFile(String)}
+     */
+    private static final String OUTPUT_FILE = "markdown-jvm.json";
+
+    private final MarkdownAdjuster adjuster = MarkwonModule.INSTANCE.createMarkdownAdjusterWithImages();
+    private final RedditMarkdownPlugin redditMarkdownPlugin = new RedditMarkdownPlugin();
+
+    private final Parser parser = Parser.builder()
+            .extensions(Arrays.asList(TablesExtension.create(), StrikethroughExtension.create()))
+            .build();
+
+    /**
+     * The result of one stage on one corpus
+     */
+    private static class Result {
+        final String corpus;
+        final String stage;
+        final int documents;
+        final int characters;
+        final long nanosPerDocument;
+
+        Result(String corpus, String stage, int documents, int characters, long nanosPerDocument) {
+            this.corpus = corpus;
+            this.stage = stage;
+            this.documents = documents;
+            this.characters = characters;
+            this.nanosPerDocument = nanosPerDocument;
+        }
+    }
+
+    /**
+     * The results of a run, as written to {@link #OUTPUT_FILE}
+     */
+    private static class Report {
+        final int warmupIterations = WARMUP_ITERATIONS;
+        final int iterations = ITERATIONS;
+        final List<Result> results = new ArrayList<>();
+
+        /**
+         * The sum of what was returned by the stages
+         */
+        long checksum;
+    }
+
+    /**
+     * A stage of the pipeline, run on one document
+     */
+    private interface Stage<T> {
+        /**
+         * @return A value computed from the result of the stage, which is added to the checksum
+         */
+        int run(T input);
+    }
+
+    @Before
+    public void setup() {
+        Benchmarks.assumeEnabled();
+    }
+
+    /**
+     * Benchmarks every stage on every corpus, and writes the results
+     */
+    @Test
+    public void benchmarkCorpus() throws IOException {
+        Report report = new Report();
+
+        for (String corpus : CORPORA) {
+            List<String> documents = loadCorpus(corpus);
+            assertFalse("Corpus '" + corpus + "' is empty", documents.isEmpty());
+
+            int characters = 0;
+            List<String> adjusted = new ArrayList<>();
+            for (String document : documents) {
+                characters += document.length();
+                adjusted.add(adjuster.adjust(document));
+            }
+
+            List<Node> parsed = new ArrayList<>();
+            for (String document : adjusted) {
+                parsed.add(parse(document));
+            }
+
+            List<List<String>> links = new ArrayList<>();
+            for (Node document : parsed) {
+                links.add(scan(document));
+            }
+
+            report.results.add(new Result(corpus, "adjust", documents.size(), characters,
+                    benchmark(report, documents, document -> adjuster.adjust(document).length())));
+            report.results.add(new Result(corpus, "parse", documents.size(), characters,
+                    benchmark(report, adjusted, document -> countChildren(parse(document)))));
+            report.results.add(new Result(corpus, "scan", documents.size(), characters,
+                    benchmark(report, parsed, document -> scan(document).size())));
+            report.results.add(new Result(corpus, "links", documents.size(), characters,
+                    benchmark(report, links, this::route)));
+        }
+
+        for (Result result : report.results) {
+            System.out.printf("%s/%s: %d documents, %d characters, %.3f ms per document%n",
+                    result.corpus, result.stage, result.documents, result.characters, result.nanosPerDocument / 1_000_000.0);
+        }
+        System.out.println("Checksum: " + report.checksum);
+
+        writeReport(report);
+    }
+
+    /**
+     * @param report The report to add the results of the stage to the checksum of
+     * @return The average time, in nanoseconds, to run the stage on one document
+     */
+    private <T> long benchmark(Report report, List<T> inputs, Stage<T> stage) {
+        long checksum = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (T input : inputs) {
+                checksum += stage.run(input);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (T input : inputs) {
+                checksum += stage.run(input);
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        report.checksum += checksum;
+        return time / ((long) ITERATIONS * inputs.size());
+    }
+
+    /**
+     * Parses a document the way Markwon parses it in the app
+     */
+    private Node parse(String document) {
+        return parser.parse(redditMarkdownPlugin.processMarkdown(document));
+    }
+
+    /**
+     * @return The amount of top level nodes in a document
+     */
+    private static int countChildren(Node document) {
+        int count = 0;
+        for (Node node = document.getFirstChild(); node != null; node = node.getNext()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Scans a document the way RedditMarkdownPlugin does when rendering
+     *
+     * @return The links in the document, both markdown links and links found by the scanner
+     */
+    private List<String> scan(Node document) {
+        List<String> links = new ArrayList<>();
+
+        RedditMarkdownPlugin.scan(document, new RedditMarkdownScanner.Output() {
+            @Override
+            public void onLink(@NonNull String url, int start, int end) {
+                links.add(url);
+            }
+
+            @Override
+            public void onSpoiler(int start, int end) { }
+
+            @Override
+            public void onSuperscript(int start, int end) { }
+
+            @Override
+            public void onSyntax(int start, int end) { }
+        });
+
+        return links;
+    }
+
+    /**
+     * Routes links the way they are routed when clicked
+     *
+     * @return The amount of links routed to something in the app, and the length of the direct URLs
+     */
+    private int route(List<String> links) {
+        int result = 0;
+        for (String link : links) {
+            if (LinkRouter.INSTANCE.route(link) != LinkRoute.External.INSTANCE) {
+                result++;
+            }
+            result += LinkUtils.convertToDirectUrl(link).length();
+        }
+        return result;
+    }
+
+    /**
+     * Loads the documents in a corpus file
+     */
+    private List<String> loadCorpus(String name) throws IOException {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream("markdown/" + name + ".md");
+        assertNotNull("Corpus '" + name + "' not found", stream);
+
+        StringBuilder builder = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+        }
+
+        return Arrays.asList(builder.toString().split(DOCUMENT_SEPARATOR));
+    }
+
+    private void writeReport(Report report) throws IOException {
+        File file = Benchmarks.getOutputFile(OUTPUT_FILE);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+        }
+
+        System.out.println("Results written to " + file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.hakonsreader.api
+
+import com.example.hakonsreader.api.utils.MarkdownSplitter
+import org.junit.Assert.*
+import org.junit.Test
+
+class MarkdownSplitterTest {
+
+    /**
+     * Tests that a new block is started at every header
+     */
+    @Test
+    fun testSplitAtHeaders() {
+        val markdown = """
+            Text before any header
+
+            # First header
+            Text in the first section
+
+            ##Second header ##
+            Text in the second section
+        """.trimIndent()
+
+        val blocks = MarkdownSplitter().split(markdown)
+
+        assertEquals(3, blocks.size)
+
+        assertEquals("Text before any header", blocks[0].markdown)
+        assertNull(blocks[0].header)
+        assertEquals(0, blocks[0].headerLevel)
+
+        assertEquals("# First header\nText in the first section", blocks[1].markdown)
+        assertEquals("First header", blocks[1].header)
+        assertEquals(1, blocks[1].headerLevel)
+
+        assertEquals("##Second header ##\nText in the second section", blocks[2].markdown)
+        assertEquals("Second header", blocks[2].header)
+        assertEquals(2, blocks[2].headerLevel)
+    }
+
+    /**
+     * Tests that nothing in code blocks is seen as headers
+     */
+    @Test
+    fun testCodeIsNotSplit() {
+        val markdown = """
+            # Header
+            ```
+            # Not a header
+
+            # Also not a header
+            ```
+            ~~~
+            # Not a header
+            ~~~
+        """.trimIndent()
+
+        val blocks = MarkdownSplitter(maxBlockLength = 1).split(markdown)
+
+        assertEquals(1, blocks.size)
+        assertEquals(markdown, blocks[0].markdown)
+    }
+
+    /**
+     * Tests that long blocks without headers are split at blank lines, but not where the next line
+     * continues the previous block
+     */
+    @Test
+    fun testLongBlocksAreSplit() {
+        val markdown = """
+            First paragraph
+
+            Second paragraph
+            * List item
+
+              Continued list item
+        """.trimIndent()
+
+        val blocks = MarkdownSplitter(maxBlockLength = 10).split(markdown)
+
+        assertEquals(2, blocks.size)
+        assertEquals("First paragraph", blocks[0].markdown)
+        assertEquals("Second paragraph\n* List item\n\n  Continued list item", blocks[1].markdown)
+
+        // With the default length nothing is split
+        assertEquals(1, MarkdownSplitter().split(markdown).size)
+    }
+
+    /**
+     * Tests that link reference definitions are added to every block
+     */
+    @Test
+    fun testReferenceDefinitionsAreInEveryBlock() {
+        val markdown = """
+            # Header
+            A [link][reddit]
+
+            # Another header
+            [reddit]: https://reddit.com
+        """.trimIndent()
+
+        val blocks = MarkdownSplitter().split(markdown)
+
+        assertEquals(2, blocks.size)
+        blocks.forEach {
+            assertTrue(it.markdown.contains("[reddit]: https://reddit.com"))
+        }
+        assertTrue(blocks[0].markdown.startsWith("# Header\nA [link][reddit]\n\n"))
+    }
+
+    /**
+     * Tests that blocks with only whitespace are not included
+     */
+    @Test
+    fun testEmpty() {
+        assertTrue(MarkdownSplitter().split("").isEmpty())
+        assertTrue(MarkdownSplitter().split("\n  \n").isEmpty())
+    }
+}
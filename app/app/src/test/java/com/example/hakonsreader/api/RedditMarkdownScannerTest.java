@@ -0,0 +1,312 @@
+package com.example.hakonsreader.api;
+
+import androidx.annotation.NonNull;
+
+import com.example.hakonsreader.markwonplugins.RedditMarkdownScanner;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link RedditMarkdownScanner}. The syntax found by the scanner is removed from the scanned text,
+ * so the tests check the text that is shown and what is in the superscripts, spoilers, and links
+ */
+public class RedditMarkdownScannerTest {
+
+    /**
+     * Records what is found by the scanner, and removes the syntax found from the text
+     */
+    private static class Result implements RedditMarkdownScanner.Output {
+        private final StringBuilder scanned = new StringBuilder();
+        private final List<int[]> superscripts = new ArrayList<>();
+        private final List<int[]> spoilers = new ArrayList<>();
+        private final List<int[]> links = new ArrayList<>();
+        private final List<int[]> syntax = new ArrayList<>();
+
+        @Override
+        public void onLink(@NonNull String url, int start, int end) {
+            links.add(new int[]{start, end});
+        }
+
+        @Override
+        public void onSpoiler(int start, int end) {
+            spoilers.add(new int[]{start, end});
+        }
+
+        @Override
+        public void onSuperscript(int start, int end) {
+            superscripts.add(new int[]{start, end});
+        }
+
+        @Override
+        public void onSyntax(int start, int end) {
+            syntax.add(new int[]{start, end});
+        }
+
+        /**
+         * @return The scanned text with the syntax removed
+         */
+        String text() {
+            return textOf(0, scanned.length());
+        }
+
+        List<String> superscripts() {
+            return textsOf(superscripts);
+        }
+
+        List<String> spoilers() {
+            return textsOf(spoilers);
+        }
+
+        List<String> links() {
+            return textsOf(links);
+        }
+
+        private List<String> textsOf(List<int[]> ranges) {
+            List<String> texts = new ArrayList<>();
+            for (int[] range : ranges) {
+                texts.add(textOf(range[0], range[1]));
+            }
+            return texts;
+        }
+
+        private String textOf(int start, int end) {
+            StringBuilder text = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                if (!isSyntax(i)) {
+                    text.append(scanned.charAt(i));
+                }
+            }
+            return text.toString();
+        }
+
+        private boolean isSyntax(int position) {
+            for (int[] range : syntax) {
+                if (position >= range[0] && position < range[1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Scans texts as if they were text nodes in the same block
+     */
+    private Result scan(String... texts) {
+        Object block = new Object();
+        Result result = new Result();
+        RedditMarkdownScanner scanner = new RedditMarkdownScanner(result);
+
+        for (String text : texts) {
+            int offset = result.scanned.length();
+            char previous = offset == 0 ? '\n' : result.scanned.charAt(offset - 1);
+            result.scanned.append(text);
+            scanner.scan(text, offset, previous, block, true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests word and sentence superscripts
+     */
+    @Test
+    public void testSuperscripts() {
+        Result result = scan("^word and ^(a sentence)");
+        assertEquals("word and a sentence", result.text());
+        assertEquals(Arrays.asList("word", "a sentence"), result.superscripts());
+
+        result = scan("^(hello) ^(there)");
+        assertEquals("hello there", result.text());
+        assertEquals(Arrays.asList("hello", "there"), result.superscripts());
+
+        // The word ends at the end of the text
+        result = scan("^word");
+        assertEquals("word", result.text());
+        assertEquals(Collections.singletonList("word"), result.superscripts());
+    }
+
+    /**
+     * Tests superscripts in superscripts
+     */
+    @Test
+    public void testNestedSuperscripts() {
+        Result result = scan("^(hello ^(there))");
+        assertEquals("hello there", result.text());
+        assertEquals(Arrays.asList("there", "hello there"), result.superscripts());
+
+        result = scan("^(hello ^there)");
+        assertEquals("hello there", result.text());
+        assertEquals(Arrays.asList("there", "hello there"), result.superscripts());
+
+        result = scan("^^nested words");
+        assertEquals("nested words", result.text());
+        assertEquals(Arrays.asList("nested", "nested"), result.superscripts());
+
+        result = scan("^(one ^(two ^(three)) four)");
+        assertEquals("one two three four", result.text());
+        assertEquals(Arrays.asList("three", "two three", "one two three four"), result.superscripts());
+    }
+
+    /**
+     * Tests that parentheses in a sentence superscript don't end the superscript
+     */
+    @Test
+    public void testParenthesesInSuperscripts() {
+        Result result = scan("^(a (b) c) d");
+        assertEquals("a (b) c d", result.text());
+        assertEquals(Collections.singletonList("a (b) c"), result.superscripts());
+
+        // The ")" is a part of a word superscript that isn't in a sentence
+        result = scan("(^word) after");
+        assertEquals("(word) after", result.text());
+        assertEquals(Collections.singletonList("word)"), result.superscripts());
+    }
+
+    /**
+     * Tests that syntax that isn't closed is shown
+     */
+    @Test
+    public void testUnclosedSuperscripts() {
+        Result result = scan("^(hello");
+        assertEquals("^(hello", result.text());
+        assertTrue(result.superscripts().isEmpty());
+
+        result = scan("a ^ b");
+        assertEquals("a ^ b", result.text());
+        assertTrue(result.superscripts().isEmpty());
+    }
+
+    /**
+     * Tests superscripts that span multiple text nodes
+     */
+    @Test
+    public void testSuperscriptsAcrossTexts() {
+        Result result = scan("^(hello ", "there", ")");
+        assertEquals("hello there", result.text());
+        assertEquals(Collections.singletonList("hello there"), result.superscripts());
+
+        // Eg. "^[link](https://...)", where the word is in the next text
+        result = scan("^", "link");
+        assertEquals("link", result.text());
+        assertEquals(Collections.singletonList("link"), result.superscripts());
+    }
+
+    /**
+     * Tests that superscripts don't span multiple blocks
+     */
+    @Test
+    public void testSuperscriptsInDifferentBlocks() {
+        Result result = new Result();
+        RedditMarkdownScanner scanner = new RedditMarkdownScanner(result);
+
+        result.scanned.append("^(hello").append("there)");
+        scanner.scan("^(hello", 0, '\n', new Object(), true);
+        scanner.scan("there)", 7, 'o', new Object(), true);
+
+        assertEquals("^(hellothere)", result.text());
+        assertTrue(result.superscripts().isEmpty());
+    }
+
+    /**
+     * Tests spoilers, and superscripts in spoilers
+     */
+    @Test
+    public void testSpoilers() {
+        Result result = scan(">!spoiler!< after");
+        assertEquals("spoiler after", result.text());
+        assertEquals(Collections.singletonList("spoiler"), result.spoilers());
+
+        result = scan(">!a ^(small) spoiler!<");
+        assertEquals("a small spoiler", result.text());
+        assertEquals(Collections.singletonList("a small spoiler"), result.spoilers());
+        assertEquals(Collections.singletonList("small"), result.superscripts());
+
+        // The "!" can't both start and end the spoiler
+        result = scan(">!<");
+        assertEquals(">!<", result.text());
+        assertTrue(result.spoilers().isEmpty());
+    }
+
+    /**
+     * Tests that links in superscripts are found, and that the link text doesn't include the syntax
+     */
+    @Test
+    public void testLinksInSuperscripts() {
+        Result result = scan("^(r/GlobalOffensive and https://nrk.no now)");
+        assertEquals("r/GlobalOffensive and https://nrk.no now", result.text());
+        assertEquals(Arrays.asList("r/GlobalOffensive", "https://nrk.no"), result.links());
+        assertEquals(Collections.singletonList("r/GlobalOffensive and https://nrk.no now"), result.superscripts());
+    }
+
+    /**
+     * Tests subreddit and user links, which are only links when they aren't part of another word
+     */
+    @Test
+    public void testRedditLinks() {
+        assertEquals(Collections.singletonList("r/globaloffensive"), scan("r/globaloffensive").links());
+        assertEquals(Collections.singletonList("R/globaloffensive"), scan("R/globaloffensive").links());
+        assertEquals(Collections.singletonList("/r/GlobalOffensive"), scan("/r/GlobalOffensive").links());
+        assertEquals(Collections.singletonList("/r/GlobalOffensive/"), scan("/r/GlobalOffensive/").links());
+        assertEquals(Collections.singletonList("/R/globaloffensive"), scan("/R/globaloffensive").links());
+        assertEquals(Collections.singletonList("/u/hakonschia"), scan("/u/hakonschia").links());
+        assertEquals(Collections.singletonList("u/hello_there"), scan("u/hello_there").links());
+        assertEquals(Collections.singletonList("u/hello_there/"), scan("u/hello_there/").links());
+        assertEquals(Collections.singletonList("user/hello_there/"), scan("user/hello_there/").links());
+        assertEquals(Collections.singletonList("/user/general_kenobi"), scan("Hello there, /user/general_kenobi").links());
+        assertEquals(Collections.singletonList("/USER/YOUMUSTBEveryproud"), scan("/USER/YOUMUSTBEveryproud").links());
+
+        assertEquals(Arrays.asList("/user/general_kenobi", "u/magnificent-arent_they", "r/prequelmemes"),
+                scan("200 000 units are ready /user/general_kenobi, with a million more on the way u/magnificent-arent_they. See r/prequelmemes for more").links());
+        assertEquals(Arrays.asList("r/GlobalOffensive", "u/hakonschia"),
+                scan("The reason I like r/GlobalOffensive is that I, u/hakonschia, enjoy watching CS:GO").links());
+
+        // Reddit URLs are links as a whole, not subreddit or user links
+        assertEquals(Collections.singletonList("https://www.reddit.com/r/GlobalOffensive/"), scan("https://www.reddit.com/r/GlobalOffensive/").links());
+        assertEquals(Collections.singletonList("https://www.reddit.com/u/hakonschia/"), scan("https://www.reddit.com/u/hakonschia/").links());
+        assertEquals(Collections.singletonList("https://www.reddit.com/user/hakonschia/"), scan("https://www.reddit.com/user/hakonschia/").links());
+
+        // Text might randomly include r/something without the intention being to link to a subreddit or user
+        assertTrue(scan("r/R/globaloffensive").links().isEmpty());
+        assertTrue(scan("This is not a subreddit/r/globaloffensive").links().isEmpty());
+        assertTrue(scan("This is not a hrt/u/globaloffensive").links().isEmpty());
+        assertTrue(scan("This is not a user/user/globaloffensive").links().isEmpty());
+        assertEquals(Collections.singletonList("u/hakonschia"),
+                scan("ar/globaloffensive is not a subreddit, and apeu/erge is not a user. But u/hakonschia is!").links());
+    }
+
+    /**
+     * Tests that links are found in text after syntax that has been removed, with the positions in the
+     * scanned text
+     */
+    @Test
+    public void testLinksAfterSyntax() {
+        Result result = scan(">!spoiler!< r/GlobalOffensive and ^(sup) u/hakonschia");
+        assertEquals("spoiler r/GlobalOffensive and sup u/hakonschia", result.text());
+        assertEquals(Arrays.asList("r/GlobalOffensive", "u/hakonschia"), result.links());
+        assertEquals(Collections.singletonList("spoiler"), result.spoilers());
+        assertEquals(Collections.singletonList("sup"), result.superscripts());
+    }
+
+    /**
+     * Tests that links aren't found in text that is already in a link
+     */
+    @Test
+    public void testTextInLinks() {
+        Result result = new Result();
+        RedditMarkdownScanner scanner = new RedditMarkdownScanner(result);
+
+        result.scanned.append("r/GlobalOffensive ^word");
+        scanner.scan("r/GlobalOffensive ^word", 0, '\n', new Object(), false);
+
+        assertTrue(result.links().isEmpty());
+        assertEquals(Collections.singletonList("word"), result.superscripts());
+    }
+}